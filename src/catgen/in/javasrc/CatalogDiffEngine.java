@@ -1026,6 +1026,9 @@ public class CatalogDiffEngine {
         if (suspect instanceof Table) {
             if (field.equals("signature") || field.equals("tuplelimit") )
                 return null;
+            // planner statistics from @Analyze
+            if (field.equals("estimatedtuplecount"))
+                return null;
 
             if (field.equals("tableType") && prevType != null) {
                 if (((Table)suspect).getTabletype() != ((Table)prevType).getTabletype()) {
@@ -1059,6 +1062,10 @@ public class CatalogDiffEngine {
             if (parent instanceof Statement) {
                 return null;
             }
+            // planner statistics from @Analyze do not touch the data
+            if (field.equals("estimatedndv") || field.equals("histogram")) {
+                return null;
+            }
 
             // all table column changes require snapshot isolation for now
             m_requiresSnapshotIsolation = true;
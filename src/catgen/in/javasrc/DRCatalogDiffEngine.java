@@ -172,7 +172,9 @@ public class DRCatalogDiffEngine extends CatalogDiffEngine {
                 "defaulttype".equals(field) ||
                 "matview".equals(field) ||
                 "aggregatetype".equals(field) ||
-                "matviewsource".equals(field)) {
+                "matviewsource".equals(field) ||
+                "estimatedndv".equals(field) ||
+                "histogram".equals(field)) {
                 return null;
             }
         } else if (isTableLimitDeleteStmt(suspect)) {
@@ -188,6 +188,7 @@ enum class PlanNodeType {
     Nestloop         = 20,
     NestloopIndex    = 21,
     MergeJoin        = 22,
+    HashJoin         = 23,
 
     //
     // Operator Nodes
@@ -368,7 +369,7 @@ enum QuantifierType {
 enum TableIndexType {
     BALANCED_TREE_INDEX     = 1,
     HASH_TABLE_INDEX        = 2,
-    BTREE_INDEX             = 3, // unused
+    BTREE_INDEX             = 3, // packed B+tree, see CompactingBTreeMap
     COVERING_CELL_INDEX     = 4
 };
 
@@ -727,6 +727,9 @@ TableTuple AggregateHashExecutor::p_execute_init(
         CountingPostfilter* parentPostfilter) {
     VOLT_TRACE("hash aggregate executor init..");
     m_hash.clear();
+    m_vectorGroupByExpressions.clear();
+    m_vectorInputExpressions.clear();
+    m_vectorExpressionsCompiled = false;
     return AggregateExecutorBase::p_execute_init(params, pmp, schema, newTempTable, parentPostfilter);
 }
 
@@ -756,6 +759,14 @@ bool AggregateHashExecutor::p_execute(const NValueArray& params) {
 void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     m_pmp->countdownProgress();
     initGroupByKeyTuple(nextTuple);
+    AggregateRow* aggregateRow = findOrCreateGroup(nextTuple);
+    if (aggregateRow != nullptr) {
+        // update the aggregation calculation.
+        advanceAggs(aggregateRow, nextTuple);
+    }
+}
+
+AggregateRow* AggregateHashExecutor::findOrCreateGroup(const TableTuple& nextTuple) {
     AggregateRow* aggregateRow;
     TableTuple& nextGroupByKeyTuple = m_nextGroupByKeyStorage;
     // Search for the matching group.
@@ -780,14 +791,71 @@ void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
 
         if (m_aggTypes.empty()) {
             insertOutputTuple(aggregateRow);
-            return;
+            return nullptr;
         }
     } else {
         // otherwise, the agg row is the second item of the pair...
         aggregateRow = keyIter->second;
     }
-    // update the aggregation calculation.
-    advanceAggs(aggregateRow, nextTuple);
+    return aggregateRow;
+}
+
+void AggregateHashExecutor::compileVectorExpressions() {
+    for (AbstractExpression* groupByExpr : m_groupByExpressions) {
+        m_vectorGroupByExpressions.push_back(VectorizedExpression::compile(groupByExpr, m_inputSchema));
+    }
+    for (AbstractExpression* inputExpr : m_inputExpressions) {
+        // COUNT(*) has no input expression
+        m_vectorInputExpressions.push_back(VectorizedExpression::compile(inputExpr, m_inputSchema));
+    }
+    m_vectorExpressionsCompiled = true;
+}
+
+void AggregateHashExecutor::p_execute_batch(const TupleBatch& batch) {
+    if (! m_vectorExpressionsCompiled) {
+        compileVectorExpressions();
+    }
+    for (auto& vectorExpr : m_vectorGroupByExpressions) {
+        if (vectorExpr) {
+            vectorExpr->evaluate(batch);
+        }
+    }
+    for (auto& vectorExpr : m_vectorInputExpressions) {
+        if (vectorExpr) {
+            vectorExpr->evaluate(batch);
+        }
+    }
+
+    TableTuple nextTuple(m_inputSchema);
+    for (int row = 0; row < batch.size(); ++row) {
+        nextTuple.move(batch.address(row));
+        m_pmp->countdownProgress();
+
+        TableTuple& nextGroupByKeyTuple = m_nextGroupByKeyStorage;
+        if (nextGroupByKeyTuple.isNullTuple()) {
+            m_nextGroupByKeyStorage.allocateActiveTuple();
+        }
+        for (int ii = 0; ii < m_groupByExpressions.size(); ii++) {
+            const VectorizedExpression* vectorExpr = m_vectorGroupByExpressions[ii].get();
+            nextGroupByKeyTuple.setNValue(ii, vectorExpr ? vectorExpr->value(row, nextTuple) :
+                    m_groupByExpressions[ii]->eval(&nextTuple));
+        }
+
+        AggregateRow* aggregateRow = findOrCreateGroup(nextTuple);
+        if (aggregateRow == nullptr) {
+            continue;
+        }
+        Agg** aggs = aggregateRow->m_aggregates;
+        for (int ii = 0; ii < m_aggTypes.size(); ii++) {
+            const VectorizedExpression* vectorExpr = m_vectorInputExpressions[ii].get();
+            AbstractExpression* inputExpr = m_inputExpressions[ii];
+            if (vectorExpr) {
+                aggs[ii]->advance(vectorExpr->value(row, nextTuple));
+            } else {
+                aggs[ii]->advance(inputExpr ? inputExpr->eval(&nextTuple) : NValue());
+            }
+        }
+    }
 }
 
 void AggregateHashExecutor::p_execute_finish() {
@@ -52,6 +52,7 @@
 #include "common/debuglog.h"
 #include "common/tabletuple.h"
 #include "expressions/abstractexpression.h"
+#include "expressions/vectorizedexpression.h"
 #include "execution/ProgressMonitorProxy.h"
 #include "executors/executorutil.h"
 
@@ -244,7 +245,20 @@ std::unordered_map<TableTuple, AggregateRow*, TableTupleHasher, TableTupleEquali
  */
 class AggregateHashExecutor : public AggregateExecutorBase {
     HashAggregateMapType m_hash;
+    // Batch forms of the group by and aggregate input expressions, compiled by the
+    // first p_execute_batch of an execution. Null entries are evaluated row by row.
+    std::vector<std::unique_ptr<VectorizedExpression>> m_vectorGroupByExpressions;
+    std::vector<std::unique_ptr<VectorizedExpression>> m_vectorInputExpressions;
+    bool m_vectorExpressionsCompiled = false;
+
     bool p_execute(const NValueArray& params) override;
+    void compileVectorExpressions();
+
+    /**
+     * Find the group of the key in m_nextGroupByKeyStorage, creating it if needed.
+     * Returns nullptr when there are no aggregates to advance.
+     */
+    AggregateRow* findOrCreateGroup(const TableTuple& nextTuple);
 public:
     AggregateHashExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
         AggregateExecutorBase(engine, abstract_node) { }
@@ -256,6 +270,13 @@ public:
             const TupleSchema * schema, AbstractTempTable* newTempTable  = nullptr,
             CountingPostfilter* parentPredicate = nullptr) override;
     void p_execute_tuple(const TableTuple& nextTuple) override;
+
+    /**
+     * Evaluate a batch of tuples from a scan of the input schema. Equivalent to
+     * p_execute_tuple on each row, with the group by keys and aggregate inputs
+     * evaluated a batch at a time where the expressions allow it.
+     */
+    void p_execute_batch(const TupleBatch& batch);
     void p_execute_finish() override;
 };
 
@@ -51,6 +51,7 @@
 #include "executors/abstractexecutor.h"
 #include "executors/aggregateexecutor.h"
 #include "executors/deleteexecutor.h"
+#include "executors/hashjoinexecutor.h"
 #include "executors/migrateexecutor.h"
 #include "executors/indexscanexecutor.h"
 #include "executors/indexcountexecutor.h"
@@ -113,6 +114,8 @@ AbstractExecutor* getNewExecutor(
          return new NestLoopIndexExecutor(engine, abstract_node);
       case PlanNodeType::MergeJoin:
          return new MergeJoinExecutor(engine, abstract_node);
+      case PlanNodeType::HashJoin:
+         return new HashJoinExecutor(engine, abstract_node);
       case PlanNodeType::OrderBy:
          if (isLargeQuery) {
             return new LargeOrderByExecutor(engine, abstract_node);
@@ -0,0 +1,421 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+#include "hashjoinexecutor.h"
+
+#include <memory>
+
+#include "common/ValuePeeker.hpp"
+#include "execution/ExecutorVector.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/LargeTempTable.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+// Rough footprint of one hash table entry: the node with its key, address,
+// flag and next pointer, plus its share of the bucket array.
+const int64_t HASH_ENTRY_BYTES = 48;
+
+// Bounds on the number of partitions used when the join spills.  Each partition
+// pins one large temp table block while it is being written.
+const int MIN_PARTITIONS = 2;
+const int MAX_PARTITIONS = 64;
+const int RESERVED_BLOCKS = 4;
+
+// A partition whose inner side still does not fit in memory is partitioned
+// again on the next bits of the hash, up to this many levels.  Past that, or
+// when a pass fails to split the inner side at all because its tuples share
+// one key, the partition is joined in memory and the temp table limit decides
+// whether the query can go on.
+const int MAX_PARTITION_LEVELS = 3;
+
+/**
+ * Hash the key values of a tuple.  Integral keys are widened to BIGINT so that
+ * keys of different integer types that compare equal also hash equally.
+ * Returns false if any key is NULL, since such a tuple can not match anything.
+ */
+bool hashKeys(const vector<AbstractExpression*>& keys,
+        const TableTuple* outerTuple, const TableTuple* innerTuple, size_t& hash) {
+    hash = 0;
+    for (AbstractExpression* key : keys) {
+        NValue value = key->eval(outerTuple, innerTuple);
+        if (value.isNull()) {
+            return false;
+        }
+        if (isIntegralType(ValuePeeker::peekValueType(value))) {
+            value = value.castAs(ValueType::tBIGINT);
+        }
+        value.hashCombine(hash);
+    }
+    return true;
+}
+
+// Use the high bits of a scrambled hash to pick a partition so that the hash
+// table built over one partition still sees well distributed hash values.
+// Each level of partitioning skips the bits used by the levels above it.
+inline int partitionOf(size_t hash, int partitionBits, int usedBits) {
+    return static_cast<int>(((static_cast<uint64_t>(hash) * 0x9E3779B97F4A7C15ULL) << usedBits) >>
+            (64 - partitionBits));
+}
+
+// Memory needed to copy the tuples of a table into a temp table and hash them
+inline int64_t buildBytes(Table* table) {
+    return table->activeTupleCount() * (table->schema()->tupleLength() + TUPLE_HEADER_SIZE + HASH_ENTRY_BYTES);
+}
+
+}
+
+int64_t HashJoinExecutor::s_partitionBudgetForTest = 0;
+
+struct HashJoinExecutor::JoinState {
+    const vector<AbstractExpression*>& m_outerKeys;
+    const vector<AbstractExpression*>& m_innerKeys;
+    AbstractExpression* m_preJoinPredicate;
+    AbstractExpression* m_joinPredicate;
+    CountingPostfilter& m_postfilter;
+    ProgressMonitorProxy& m_pmp;
+    TableTuple& m_joinTuple;
+    const int m_outerCols;
+    const int m_innerCols;
+};
+
+bool HashJoinExecutor::p_init(
+        AbstractPlanNode* abstractNode, const ExecutorVector& executorVector) {
+    VOLT_TRACE("init HashJoin Executor");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    vassert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, executorVector)) {
+        return false;
+    }
+
+    // NULL tuples for left and full joins
+    p_init_null_tuples(node->getInputTable(), node->getInputTable(1));
+
+    m_limits = executorVector.limits();
+    m_largeQuery = executorVector.isLargeQuery();
+    return true;
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    vassert(node);
+    vassert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    vassert(m_tmpOutputTable);
+
+    Table* outerTable = node->getInputTable();
+    vassert(outerTable);
+
+    Table* innerTable = node->getInputTable(1);
+    vassert(innerTable);
+
+    VOLT_TRACE ("input table left:\n %s", outerTable->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", innerTable->debug().c_str());
+
+    LimitPlanNode* limitNode = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PlanNodeType::Limit));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limitNode) {
+        tie(limit, offset) = limitNode->getLimitAndOffset(params);
+    }
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    // Init the postfilter
+    CountingPostfilter postfilter(m_tmpOutputTable, node->getWherePredicate(), limit, offset);
+
+    TableTuple joinTuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        joinTuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+    } else {
+        joinTuple = m_tmpOutputTable->tempTuple();
+    }
+
+    JoinState state = { node->getOuterHashExpressions(), node->getInnerHashExpressions(),
+            node->getPreJoinPredicate(), node->getJoinPredicate(),
+            postfilter, pmp, joinTuple,
+            static_cast<int>(outerTable->columnCount()), static_cast<int>(innerTable->columnCount()) };
+
+    if (shouldPartition(innerTable)) {
+        joinPartitioned(outerTable, innerTable, state, 0, 0);
+    } else {
+        TableIterator probeIterator = outerTable->iteratorDeletingAsWeGo();
+        joinInMemory(innerTable, probeIterator, state);
+    }
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    return true;
+}
+
+bool HashJoinExecutor::shouldPartition(Table* innerTable) const {
+    // Tuples of a large temp table may be evicted from memory, so their
+    // addresses can not be kept in a hash table.
+    if (m_largeQuery || dynamic_cast<LargeTempTable*>(innerTable) != NULL) {
+        return true;
+    }
+    if (m_limits == NULL || m_limits->getMemoryLimit() < 0) {
+        return false;
+    }
+    int64_t hashTableBytes = innerTable->activeTupleCount() * HASH_ENTRY_BYTES;
+    return m_limits->getAllocated() + hashTableBytes > m_limits->getMemoryLimit();
+}
+
+void HashJoinExecutor::joinInMemory(Table* buildTable, TableIterator& probeIterator, JoinState& state) {
+    CountingPostfilter& postfilter = state.m_postfilter;
+    ProgressMonitorProxy& pmp = state.m_pmp;
+    TableTuple& joinTuple = state.m_joinTuple;
+    size_t hash;
+
+    //
+    // Build the hash table over the inner tuples.  Inner tuples with a NULL
+    // key can only show up in the output of a FULL join.
+    //
+    HashTable hashTable;
+    hashTable.reserve(buildTable->activeTupleCount());
+    vector<char*> unhashedInnerTuples;
+    TableTuple innerTuple(buildTable->schema());
+    TableIterator buildIterator = buildTable->iterator();
+    while (buildIterator.next(innerTuple)) {
+        pmp.countdownProgress();
+        if (hashKeys(state.m_innerKeys, NULL, &innerTuple, hash)) {
+            hashTable.emplace(hash, BuildEntry{innerTuple.address(), false});
+        } else if (m_joinType == JOIN_TYPE_FULL) {
+            unhashedInnerTuples.push_back(innerTuple.address());
+        }
+    }
+
+    //
+    // Probe it with the outer tuples
+    //
+    TableTuple outerTuple(m_abstractNode->getInputTable()->schema());
+    while (postfilter.isUnderLimit() && probeIterator.next(outerTuple)) {
+        pmp.countdownProgress();
+        joinTuple.setNValues(0, outerTuple, 0, state.m_outerCols);
+
+        // did this loop body find at least one match for this tuple?
+        bool outerMatch = false;
+        if ((state.m_preJoinPredicate == NULL || state.m_preJoinPredicate->eval(&outerTuple, NULL).isTrue()) &&
+                hashKeys(state.m_outerKeys, &outerTuple, NULL, hash)) {
+            auto range = hashTable.equal_range(hash);
+            for (auto itr = range.first; itr != range.second && postfilter.isUnderLimit(); ++itr) {
+                innerTuple.move(itr->second.m_address);
+                // Equal hashes do not imply equal keys, the join predicate decides
+                if (state.m_joinPredicate == NULL || state.m_joinPredicate->eval(&outerTuple, &innerTuple).isTrue()) {
+                    outerMatch = true;
+                    itr->second.m_matched = true;
+                    if (postfilter.eval(&outerTuple, &innerTuple)) {
+                        joinTuple.setNValues(state.m_outerCols, innerTuple, 0, state.m_innerCols);
+                        outputTuple(postfilter, joinTuple, pmp);
+                    }
+                }
+            }
+        }
+
+        if (m_joinType != JOIN_TYPE_INNER && !outerMatch) {
+            outputNullPaddedOuter(outerTuple, state);
+        }
+    }
+
+    //
+    // FULL Outer Join. Iterate over the unmatched inner tuples
+    //
+    if (m_joinType == JOIN_TYPE_FULL) {
+        for (auto itr = hashTable.begin(); itr != hashTable.end() && postfilter.isUnderLimit(); ++itr) {
+            if (!itr->second.m_matched) {
+                innerTuple.move(itr->second.m_address);
+                outputNullPaddedInner(innerTuple, state);
+            }
+        }
+        for (char* address : unhashedInnerTuples) {
+            innerTuple.move(address);
+            outputNullPaddedInner(innerTuple, state);
+        }
+    }
+}
+
+void HashJoinExecutor::joinPartitioned(Table* outerTable, Table* innerTable, JoinState& state,
+        int level, int usedBits) {
+    CountingPostfilter& postfilter = state.m_postfilter;
+    ProgressMonitorProxy& pmp = state.m_pmp;
+    size_t hash;
+
+    // Pick enough partitions for each one to fit in memory, within the number
+    // of blocks the large temp table cache can keep pinned.
+    int64_t innerBytes = buildBytes(innerTable);
+    int64_t budget = partitionBudget();
+    int maxPartitions = max(MIN_PARTITIONS, min(MAX_PARTITIONS,
+            ExecutorContext::getExecutorContext()->lttBlockCache().maxCacheSizeInBlocks() - RESERVED_BLOCKS));
+    int partitionBits = 1;
+    while ((2 << partitionBits) <= maxPartitions && (innerBytes >> partitionBits) > budget) {
+        ++partitionBits;
+    }
+    VOLT_DEBUG("Hash join partitioning into %d partitions at level %d", 1 << partitionBits, level);
+
+    vector<unique_ptr<LargeTempTable>> innerPartitions;
+    vector<unique_ptr<LargeTempTable>> outerPartitions;
+    for (int i = 0; i < (1 << partitionBits); ++i) {
+        innerPartitions.emplace_back(TableFactory::buildCopiedLargeTempTable("hashjoin_inner", innerTable));
+        outerPartitions.emplace_back(TableFactory::buildCopiedLargeTempTable("hashjoin_outer", outerTable));
+    }
+
+    //
+    // Partition the inner table.  Inner tuples with a NULL key never reach a
+    // partition below the first level.
+    //
+    int64_t innerCount = innerTable->activeTupleCount();
+    TableTuple innerTuple(innerTable->schema());
+    TableIterator innerIterator = innerTable->iteratorDeletingAsWeGo();
+    while (innerIterator.next(innerTuple)) {
+        pmp.countdownProgress();
+        if (hashKeys(state.m_innerKeys, NULL, &innerTuple, hash)) {
+            innerPartitions[partitionOf(hash, partitionBits, usedBits)]->insertTuple(innerTuple);
+        } else if (m_joinType == JOIN_TYPE_FULL) {
+            outputNullPaddedInner(innerTuple, state);
+        }
+    }
+    for (auto& partition : innerPartitions) {
+        partition->finishInserts();
+    }
+
+    //
+    // Partition the outer table.  Outer tuples that can not match anything are
+    // resolved right away rather than spilled.
+    //
+    TableTuple outerTuple(outerTable->schema());
+    TableIterator outerIterator = outerTable->iteratorDeletingAsWeGo();
+    while (postfilter.isUnderLimit() && outerIterator.next(outerTuple)) {
+        pmp.countdownProgress();
+        if ((state.m_preJoinPredicate == NULL || state.m_preJoinPredicate->eval(&outerTuple, NULL).isTrue()) &&
+                hashKeys(state.m_outerKeys, &outerTuple, NULL, hash)) {
+            int partition = partitionOf(hash, partitionBits, usedBits);
+            if (innerPartitions[partition]->activeTupleCount() > 0) {
+                outerPartitions[partition]->insertTuple(outerTuple);
+                continue;
+            }
+        }
+        if (m_joinType != JOIN_TYPE_INNER) {
+            outputNullPaddedOuter(outerTuple, state);
+        }
+    }
+    for (auto& partition : outerPartitions) {
+        partition->finishInserts();
+    }
+
+    //
+    // Join the partitions pairwise.  Each inner partition is copied into a
+    // normal temp table so its tuples stay put while the hash table refers to them.
+    // A partition that is still too big is partitioned again, unless this pass
+    // did not split its inner side at all.
+    //
+    unique_ptr<TempTable> buildTable(TableFactory::buildCopiedTempTable("hashjoin_build", innerTable));
+    for (int i = 0; i < innerPartitions.size() && postfilter.isUnderLimit(); ++i) {
+        int64_t partitionCount = innerPartitions[i]->activeTupleCount();
+        if (level + 1 < MAX_PARTITION_LEVELS && partitionCount < innerCount &&
+                buildBytes(innerPartitions[i].get()) > budget) {
+            joinPartitioned(outerPartitions[i].get(), innerPartitions[i].get(), state,
+                    level + 1, usedBits + partitionBits);
+            innerPartitions[i].reset();
+            outerPartitions[i].reset();
+            continue;
+        }
+
+        TableIterator partitionIterator = innerPartitions[i]->iteratorDeletingAsWeGo();
+        while (partitionIterator.next(innerTuple)) {
+            buildTable->insertTempTuple(innerTuple);
+        }
+        innerPartitions[i].reset();
+
+        TableIterator probeIterator = outerPartitions[i]->iteratorDeletingAsWeGo();
+        joinInMemory(buildTable.get(), probeIterator, state);
+        outerPartitions[i].reset();
+        buildTable->deleteAllTempTuples();
+    }
+}
+
+int64_t HashJoinExecutor::partitionBudget() const {
+    if (s_partitionBudgetForTest > 0) {
+        return s_partitionBudgetForTest;
+    }
+    return (m_limits != NULL && m_limits->getMemoryLimit() > 0) ?
+            m_limits->getMemoryLimit() / 2 : LargeTempTableBlock::BLOCK_SIZE_IN_BYTES;
+}
+
+void HashJoinExecutor::outputNullPaddedOuter(TableTuple& outerTuple, JoinState& state) {
+    const TableTuple& nullInnerTuple = m_null_inner_tuple.tuple();
+    if (state.m_postfilter.isUnderLimit() && state.m_postfilter.eval(&outerTuple, &nullInnerTuple)) {
+        state.m_joinTuple.setNValues(0, outerTuple, 0, state.m_outerCols);
+        state.m_joinTuple.setNValues(state.m_outerCols, nullInnerTuple, 0, state.m_innerCols);
+        outputTuple(state.m_postfilter, state.m_joinTuple, state.m_pmp);
+    }
+}
+
+void HashJoinExecutor::outputNullPaddedInner(TableTuple& innerTuple, JoinState& state) {
+    const TableTuple& nullOuterTuple = m_null_outer_tuple.tuple();
+    if (state.m_postfilter.isUnderLimit() && state.m_postfilter.eval(&nullOuterTuple, &innerTuple)) {
+        state.m_joinTuple.setNValues(0, nullOuterTuple, 0, state.m_outerCols);
+        state.m_joinTuple.setNValues(state.m_outerCols, innerTuple, 0, state.m_innerCols);
+        outputTuple(state.m_postfilter, state.m_joinTuple, state.m_pmp);
+    }
+}
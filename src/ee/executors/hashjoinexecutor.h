@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#pragma once
+
+#include <unordered_map>
+
+#include "common/common.h"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+namespace voltdb {
+
+class AbstractExpression;
+class HashJoinPlanNode;
+class TableIterator;
+class TempTableLimits;
+
+/**
+ * Joins its two input tables by building a hash table over the inner one and
+ * probing it with each outer tuple.  When the inner table does not fit in the
+ * fragment's temp table memory, or the query runs in large mode, both inputs are
+ * first partitioned by key hash into large temp tables and the partitions are
+ * joined one at a time.  A partition that is still too big is partitioned again,
+ * up to a fixed number of levels.  Inner tuples sharing a single key can not be
+ * split that way, so such a partition is joined in memory whatever its size and
+ * may hit the temp table limit.
+ */
+class HashJoinExecutor : public AbstractJoinExecutor {
+public:
+    HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+        AbstractJoinExecutor(engine, abstract_node) {}
+
+    /** Override the memory a partition may use, zero restores the default */
+    static void setPartitionBudgetForTest(int64_t bytes) {
+        s_partitionBudgetForTest = bytes;
+    }
+
+private:
+    struct JoinState;
+
+    // A build side tuple and whether it found a match, for FULL joins
+    struct BuildEntry {
+        char* m_address;
+        bool m_matched;
+    };
+    typedef std::unordered_multimap<std::size_t, BuildEntry> HashTable;
+
+    bool p_init(AbstractPlanNode*, const ExecutorVector& executorVector);
+    bool p_execute(const NValueArray &params);
+
+    bool shouldPartition(Table* innerTable) const;
+    void joinInMemory(Table* buildTable, TableIterator& probeIterator, JoinState& state);
+    void joinPartitioned(Table* outerTable, Table* innerTable, JoinState& state, int level, int usedBits);
+    int64_t partitionBudget() const;
+    void outputNullPaddedOuter(TableTuple& outerTuple, JoinState& state);
+    void outputNullPaddedInner(TableTuple& innerTuple, JoinState& state);
+
+    TempTableLimits const* m_limits = nullptr;
+    bool m_largeQuery = false;
+
+    static int64_t s_partitionBudgetForTest;
+};
+
+}
@@ -487,6 +487,19 @@ bool IndexScanExecutor::p_execute(const NValueArray &params) {
     //
     // We have different nextValue() methods for different lookup types
     //
+    //
+    // OPTIMIZATION: BATCH EVALUATION
+    //
+    // Without LIMIT/OFFSET every candidate is tested, so the post-predicate
+    // may be evaluated a batch of candidates at a time.  Most index scans
+    // find only a few rows, so it is compiled only once a full batch has
+    // been collected.
+    //
+    bool batching = post_expression != nullptr && m_insertExec == nullptr &&
+        limit == CountingPostfilter::NO_LIMIT && postfilterOffset == CountingPostfilter::NO_OFFSET &&
+        (m_aggExec == nullptr || dynamic_cast<AggregateHashExecutor*>(m_aggExec) != nullptr);
+    TupleBatch batch;
+
     while (postfilter.isUnderLimit() && getNextTuple(
                 localLookupType, &tuple, tableIndex, &indexCursor, activeNumOfSearchKeys)) {
         if (tuple.isPendingDelete()) {
@@ -513,6 +526,18 @@ bool IndexScanExecutor::p_execute(const NValueArray &params) {
             VOLT_TRACE("End Expression evaluated to false, stopping scan");
             break;
         }
+        if (batching) {
+            batch.add(tuple);
+            if (batch.isFull()) {
+                if ( ! m_vectorPredicate) {
+                    m_vectorPredicate = VectorizedExpression::compile(post_expression,
+                            tableIndex->getTupleSchema());
+                    batching = m_vectorPredicate != nullptr;
+                }
+                outputBatch(batch, postfilter, tuple, temp_tuple, pmp);
+            }
+            continue;
+        }
         //
         // Then apply our post-predicate and LIMIT/OFFSET to do further filtering
         //
@@ -527,6 +552,10 @@ bool IndexScanExecutor::p_execute(const NValueArray &params) {
             pmp.countdownProgress();
         }
     }
+    if ( ! batch.isEmpty()) {
+        outputBatch(batch, postfilter, tuple, temp_tuple, pmp);
+    }
+    m_vectorPredicate.reset();
 
     if (m_aggExec != nullptr) {
         m_aggExec->p_execute_finish();
@@ -553,6 +582,34 @@ void IndexScanExecutor::outputTuple(CountingPostfilter& postfilter, TableTuple&
     }
 }
 
+void IndexScanExecutor::outputBatch(TupleBatch& batch, CountingPostfilter& postfilter,
+        TableTuple& tuple, TableTuple& temp_tuple, ProgressMonitorProxy& pmp) {
+    bool recheck[TupleBatch::CAPACITY];
+    if (m_vectorPredicate) {
+        m_vectorPredicate->select(batch, recheck);
+    }
+    for (int row = 0; row < batch.size() && postfilter.isUnderLimit(); ++row) {
+        tuple.move(batch.address(row));
+        if (m_vectorPredicate) {
+            // There is no LIMIT/OFFSET for the postfilter to count here.
+            if (recheck[row] && ! m_vectorPredicate->passes(tuple)) {
+                continue;
+            }
+        } else if ( ! postfilter.eval(&tuple, nullptr)) {
+            continue;
+        }
+        if (m_projector.numSteps() > 0) {
+            m_projector.exec(temp_tuple, tuple);
+            outputTuple(postfilter, temp_tuple);
+        }
+        else {
+            outputTuple(postfilter, tuple);
+        }
+        pmp.countdownProgress();
+    }
+    batch.clear();
+}
+
 IndexScanExecutor::~IndexScanExecutor() {
     delete [] m_searchKeyBackingStore;
 }
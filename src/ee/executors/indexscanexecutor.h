@@ -48,6 +48,7 @@
 #include "common/tabletuple.h"
 #include "executors/abstractexecutor.h"
 #include "executors/OptimizedProjector.hpp"
+#include "expressions/vectorizedexpression.h"
 #include "indexes/tableindex.h"
 
 #include "boost/shared_array.hpp"
@@ -64,6 +65,7 @@ class ProjectionPlanNode;
 class AggregateExecutorBase;
 class InsertExecutor;
 class CountingPostfilter;
+class ProgressMonitorProxy;
 
 class IndexScanExecutor : public AbstractExecutor {
     // Data in this class is arranged roughly in the order it is read for
@@ -95,9 +97,21 @@ class IndexScanExecutor : public AbstractExecutor {
     AggregateExecutorBase* m_aggExec = nullptr;
     InsertExecutor *m_insertExec = nullptr;
 
+    // The post-predicate compiled for batch evaluation.  Only set during
+    // a large scan without LIMIT/OFFSET, see outputBatch.
+    std::unique_ptr<VectorizedExpression> m_vectorPredicate;
+
     bool p_init(AbstractPlanNode*, const ExecutorVector& executorVector);
     bool p_execute(const NValueArray &params);
     void outputTuple(CountingPostfilter& postfilter, TableTuple& tuple);
+
+    /**
+     * Output the candidates of a batch that satisfy the post-predicate, in
+     * scan order.  The batch is evaluated by m_vectorPredicate when it is
+     * set and row by row through the postfilter otherwise.
+     */
+    void outputBatch(TupleBatch& batch, CountingPostfilter& postfilter,
+            TableTuple& tuple, TableTuple& temp_tuple, ProgressMonitorProxy& pmp);
 public:
     IndexScanExecutor(VoltDBEngine* engine, AbstractPlanNode* abstractNode)
         : AbstractExecutor(engine, abstractNode) {}
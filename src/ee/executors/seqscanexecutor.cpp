@@ -51,6 +51,8 @@
 #include "plannodes/seqscannode.h"
 #include "plannodes/projectionnode.h"
 #include "plannodes/limitnode.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "executors/executorutil.h"
 #include "storage/temptable.h"
 #include "storage/tablefactory.h"
 
@@ -202,8 +204,25 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         if (limit_node) {
             std::tie(limit, offset) = limit_node->getLimitAndOffset(params);
         }
-        // Initialize the postfilter
-        CountingPostfilter postfilter(m_tmpOutputTable, predicate, limit, offset);
+
+        //
+        // OPTIMIZATION: BATCH EVALUATION
+        //
+        // Large scans of a persistent table, whose tuples stay put while
+        // we hold their addresses, evaluate their expressions a batch of
+        // rows at a time.  Small scans are not worth compiling for.
+        //
+        bool batched = false;
+        if (node->isPersistentTableScan() && m_insertExec == NULL &&
+            input_table->activeTupleCount() >= TupleBatch::CAPACITY) {
+            batched = compileBatchExpressions(input_table->schema(), predicate, projectionNode);
+        }
+
+        // Initialize the postfilter.  A batch predicate has already been
+        // applied by the time the postfilter sees a row.
+        CountingPostfilter postfilter(m_tmpOutputTable,
+                                      m_vectorPredicate ? NULL : predicate,
+                                      limit, offset);
 
         ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
         TableTuple temp_tuple;
@@ -251,6 +270,15 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             temp_tuple = m_tmpOutputTable->tempTuple();
         }
 
+        // After a batched scan, the row at a time loop below finds the
+        // iterator exhausted or the limit reached and does nothing.
+        if (batched) {
+            scanInBatches(iterator, tuple, projectionNode, postfilter, temp_tuple, pmp);
+            m_vectorPredicate.reset();
+            m_vectorProjection.clear();
+            m_batchAggExec = NULL;
+        }
+
         while (postfilter.isUnderLimit() && iterator.next(tuple))
         {
 #if   defined(VOLT_TRACE_ENABLED)
@@ -327,3 +355,89 @@ void SeqScanExecutor::outputTuple(TableTuple& tuple) {
     vassert(m_tmpOutputTable);
     m_tmpOutputTable->insertTempTuple(tuple);
 }
+
+bool SeqScanExecutor::compileBatchExpressions(const TupleSchema* schema,
+                                              AbstractExpression* predicate,
+                                              ProjectionPlanNode* projectionNode) {
+    m_vectorPredicate = VectorizedExpression::compile(predicate, schema);
+    bool anyCompiled = m_vectorPredicate != NULL;
+    m_vectorProjection.clear();
+    if (projectionNode != NULL) {
+        for (AbstractExpression* expr : projectionNode->getOutputColumnExpressions()) {
+            m_vectorProjection.push_back(VectorizedExpression::compile(expr, schema));
+            anyCompiled = anyCompiled || m_vectorProjection.back() != NULL;
+        }
+    }
+    // Without a projection in between, the scanned tuples themselves
+    // are the aggregate's input and can be passed on a batch at a time.
+    m_batchAggExec = NULL;
+    if (projectionNode == NULL) {
+        m_batchAggExec = dynamic_cast<AggregateHashExecutor*>(m_aggExec);
+    }
+    return anyCompiled || m_batchAggExec != NULL;
+}
+
+void SeqScanExecutor::scanInBatches(TableIterator& iterator,
+                                    TableTuple& tuple,
+                                    ProjectionPlanNode* projectionNode,
+                                    CountingPostfilter& postfilter,
+                                    TableTuple& temp_tuple,
+                                    ProgressMonitorProxy& pmp) {
+    TupleBatch batch;
+    TupleBatch aggBatch;
+    bool recheck[TupleBatch::CAPACITY];
+    while (postfilter.isUnderLimit()) {
+        batch.clear();
+        while ( ! batch.isFull() && iterator.next(tuple)) {
+            pmp.countdownProgress();
+            batch.add(tuple);
+        }
+        if (batch.isEmpty()) {
+            break;
+        }
+
+        if (m_vectorPredicate) {
+            m_vectorPredicate->select(batch, recheck);
+        }
+        for (auto& vectorExpr : m_vectorProjection) {
+            if (vectorExpr) {
+                vectorExpr->evaluate(batch);
+            }
+        }
+
+        // Rows are consumed in scan order so that LIMIT/OFFSET and any
+        // errors deferred to the scalar expressions behave as they do
+        // in the row at a time loop.
+        for (int row = 0; row < batch.size() && postfilter.isUnderLimit(); ++row) {
+            tuple.move(batch.address(row));
+            if (m_vectorPredicate && recheck[row] && ! m_vectorPredicate->passes(tuple)) {
+                continue;
+            }
+            if ( ! postfilter.eval(&tuple, NULL)) {
+                continue;
+            }
+            if (projectionNode != NULL) {
+                const std::vector<AbstractExpression*>& columnExpressions =
+                    projectionNode->getOutputColumnExpressions();
+                for (int ctr = 0; ctr < m_vectorProjection.size(); ctr++) {
+                    const VectorizedExpression* vectorExpr = m_vectorProjection[ctr].get();
+                    temp_tuple.setNValue(ctr, vectorExpr ? vectorExpr->value(row, tuple) :
+                                         columnExpressions[ctr]->eval(&tuple, NULL));
+                }
+                outputTuple(temp_tuple);
+            }
+            else if (m_batchAggExec != NULL) {
+                aggBatch.add(tuple);
+            }
+            else {
+                outputTuple(tuple);
+            }
+            pmp.countdownProgress();
+        }
+
+        if ( ! aggBatch.isEmpty()) {
+            m_batchAggExec->p_execute_batch(aggBatch);
+            aggBatch.clear();
+        }
+    }
+}
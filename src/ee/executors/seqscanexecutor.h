@@ -49,10 +49,15 @@
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
 #include "execution/VoltDBEngine.h"
+#include "expressions/vectorizedexpression.h"
 
 namespace voltdb {
     class AggregateExecutorBase;
+    class AggregateHashExecutor;
+    class CountingPostfilter;
     class InsertExecutor;
+    class ProgressMonitorProxy;
+    class ProjectionPlanNode;
 
     class SeqScanExecutor : public AbstractExecutor {
         // These are logically local variables to p_execute.
@@ -64,12 +69,41 @@ namespace voltdb {
         AggregateExecutorBase* m_aggExec = nullptr;
         InsertExecutor* m_insertExec = nullptr;
 
+        // Batch forms of the predicate and of the inline projection's
+        // column expressions, compiled per execution for large persistent
+        // table scans.  Null where the expression is evaluated per row.
+        std::unique_ptr<VectorizedExpression> m_vectorPredicate;
+        std::vector<std::unique_ptr<VectorizedExpression>> m_vectorProjection;
+        // An inline hash aggregate that is handed whole batches of
+        // scanned tuples.
+        AggregateHashExecutor* m_batchAggExec = nullptr;
+
         /**
          * Output a tuple.  This may send the tuple to an
          * inline insert or aggregate node, or it may send the
          * tuple to the output table.
          */
         void outputTuple(TableTuple& tuple);
+
+        /**
+         * Compile the batch forms of the scan's expressions.  Returns
+         * false if nothing would be evaluated a batch at a time.
+         */
+        bool compileBatchExpressions(const TupleSchema* schema,
+                                     AbstractExpression* predicate,
+                                     ProjectionPlanNode* projectionNode);
+
+        /**
+         * The scan loop for batch evaluation.  Rows are read from the
+         * iterator a TupleBatch at a time, filtered through the batch
+         * predicate into a selection and then consumed in scan order.
+         */
+        void scanInBatches(TableIterator& iterator,
+                           TableTuple& tuple,
+                           ProjectionPlanNode* projectionNode,
+                           CountingPostfilter& postfilter,
+                           TableTuple& temp_tuple,
+                           ProgressMonitorProxy& pmp);
     public:
         SeqScanExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
             : AbstractExecutor(engine, abstract_node) {}
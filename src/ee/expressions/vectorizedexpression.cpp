@@ -0,0 +1,616 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "expressions/vectorizedexpression.h"
+
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/value_defs.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+#include <algorithm>
+#include <cmath>
+#include <functional>
+#include <vector>
+
+namespace voltdb {
+
+namespace {
+
+// The evaluation state of one row of a VectorNode. The order matters:
+// for operators that evaluate both operands, the state of the result is
+// the larger of the operand states.
+enum RowState : uint8_t {
+    ROW_VALUE = 0,
+    ROW_NULL = 1,
+    // Left to the scalar expression, which may throw for this row
+    ROW_UNDECIDED = 2
+};
+
+bool isVectorizableNumber(ValueType type) {
+    switch (type) {
+    case ValueType::tTINYINT:
+    case ValueType::tSMALLINT:
+    case ValueType::tINTEGER:
+    case ValueType::tBIGINT:
+    case ValueType::tTIMESTAMP:
+    case ValueType::tDOUBLE:
+        return true;
+    default:
+        return false;
+    }
+}
+
+}
+
+/**
+ * One node of a compiled expression tree, holding its result for every row
+ * of the current batch. Integral, timestamp and boolean results are kept in
+ * m_ints and double results in m_doubles.
+ */
+class VectorNode {
+public:
+    explicit VectorNode(ValueType valueType)
+        : m_valueType(valueType), m_states(TupleBatch::CAPACITY, ROW_VALUE) {
+        if (isDouble()) {
+            m_doubles.resize(TupleBatch::CAPACITY);
+        } else {
+            m_ints.resize(TupleBatch::CAPACITY);
+        }
+    }
+
+    virtual ~VectorNode() {}
+
+    virtual void evaluate(const TupleBatch& batch) = 0;
+
+    bool isDouble() const {
+        return m_valueType == ValueType::tDOUBLE;
+    }
+
+    bool isBoolean() const {
+        return m_valueType == ValueType::tBOOLEAN;
+    }
+
+    /** The results widened to double, using scratch if a conversion is needed. */
+    const double* doubles(int count, std::vector<double>& scratch) const {
+        if (isDouble()) {
+            return m_doubles.data();
+        }
+        scratch.resize(TupleBatch::CAPACITY);
+        for (int i = 0; i < count; ++i) {
+            scratch[i] = static_cast<double>(m_ints[i]);
+        }
+        return scratch.data();
+    }
+
+    /** The value of a row whose state is ROW_VALUE or ROW_NULL. */
+    NValue value(int row) const {
+        vassert(m_states[row] != ROW_UNDECIDED);
+        if (m_states[row] == ROW_NULL) {
+            return NValue::getNullValue(m_valueType);
+        }
+        switch (m_valueType) {
+        case ValueType::tTINYINT:
+            return ValueFactory::getTinyIntValue(static_cast<int8_t>(m_ints[row]));
+        case ValueType::tSMALLINT:
+            return ValueFactory::getSmallIntValue(static_cast<int16_t>(m_ints[row]));
+        case ValueType::tINTEGER:
+            return ValueFactory::getIntegerValue(static_cast<int32_t>(m_ints[row]));
+        case ValueType::tBIGINT:
+            return ValueFactory::getBigIntValue(m_ints[row]);
+        case ValueType::tTIMESTAMP:
+            return ValueFactory::getTimestampValue(m_ints[row]);
+        case ValueType::tDOUBLE:
+            return ValueFactory::getDoubleValue(m_doubles[row]);
+        case ValueType::tBOOLEAN:
+            return m_ints[row] ? NValue::getTrue() : NValue::getFalse();
+        default:
+            vassert(false);
+            return NValue::getNullValue(m_valueType);
+        }
+    }
+
+    const ValueType m_valueType;
+    std::vector<int64_t> m_ints;
+    std::vector<double> m_doubles;
+    std::vector<uint8_t> m_states;
+};
+
+namespace {
+
+template <typename T>
+class IntegralColumnNode : public VectorNode {
+public:
+    IntegralColumnNode(ValueType valueType, uint32_t offset, T nullValue)
+        : VectorNode(valueType), m_offset(offset), m_nullValue(nullValue) {}
+
+    void evaluate(const TupleBatch& batch) {
+        const int count = batch.size();
+        for (int i = 0; i < count; ++i) {
+            const T v = *reinterpret_cast<const T*>(batch.address(i) + m_offset);
+            m_ints[i] = v;
+            m_states[i] = v == m_nullValue ? ROW_NULL : ROW_VALUE;
+        }
+    }
+
+private:
+    const uint32_t m_offset;
+    const T m_nullValue;
+};
+
+class DoubleColumnNode : public VectorNode {
+public:
+    explicit DoubleColumnNode(uint32_t offset)
+        : VectorNode(ValueType::tDOUBLE), m_offset(offset) {}
+
+    void evaluate(const TupleBatch& batch) {
+        const int count = batch.size();
+        for (int i = 0; i < count; ++i) {
+            const double v = *reinterpret_cast<const double*>(batch.address(i) + m_offset);
+            m_doubles[i] = v;
+            // NValue orders NaN below every other value, which machine
+            // comparison does not, so NaN rows are left to the scalar path.
+            m_states[i] = v <= DOUBLE_NULL ? ROW_NULL : (std::isnan(v) ? ROW_UNDECIDED : ROW_VALUE);
+        }
+    }
+
+private:
+    const uint32_t m_offset;
+};
+
+/** A constant or parameter, broadcast over the batch once at compile time. */
+class ConstantNode : public VectorNode {
+public:
+    explicit ConstantNode(const NValue& value) : VectorNode(ValuePeeker::peekValueType(value)) {
+        uint8_t state = ROW_VALUE;
+        if (value.isNull()) {
+            state = ROW_NULL;
+        } else if (isDouble()) {
+            const double v = ValuePeeker::peekDouble(value);
+            std::fill(m_doubles.begin(), m_doubles.end(), v);
+            if (std::isnan(v)) {
+                state = ROW_UNDECIDED;
+            }
+        } else {
+            std::fill(m_ints.begin(), m_ints.end(), ValuePeeker::peekAsBigInt(value));
+        }
+        std::fill(m_states.begin(), m_states.end(), state);
+    }
+
+    void evaluate(const TupleBatch&) {}
+};
+
+class BinaryNode : public VectorNode {
+public:
+    BinaryNode(ValueType valueType, VectorNode* left, VectorNode* right)
+        : VectorNode(valueType), m_left(left), m_right(right) {}
+
+protected:
+    std::unique_ptr<VectorNode> m_left;
+    std::unique_ptr<VectorNode> m_right;
+    std::vector<double> m_leftScratch;
+    std::vector<double> m_rightScratch;
+};
+
+template <typename OP>
+class ComparisonNode : public BinaryNode {
+public:
+    ComparisonNode(VectorNode* left, VectorNode* right)
+        : BinaryNode(ValueType::tBOOLEAN, left, right) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_left->evaluate(batch);
+        m_right->evaluate(batch);
+        const int count = batch.size();
+        OP op;
+        if (m_left->isDouble() || m_right->isDouble()) {
+            const double* l = m_left->doubles(count, m_leftScratch);
+            const double* r = m_right->doubles(count, m_rightScratch);
+            for (int i = 0; i < count; ++i) {
+                m_ints[i] = op(l[i], r[i]);
+            }
+        } else {
+            const int64_t* l = m_left->m_ints.data();
+            const int64_t* r = m_right->m_ints.data();
+            for (int i = 0; i < count; ++i) {
+                m_ints[i] = op(l[i], r[i]);
+            }
+        }
+        // A NULL left operand yields NULL without evaluating the right one.
+        const uint8_t* ls = m_left->m_states.data();
+        const uint8_t* rs = m_right->m_states.data();
+        for (int i = 0; i < count; ++i) {
+            m_states[i] = ls[i] != ROW_VALUE ? ls[i] : rs[i];
+        }
+    }
+};
+
+struct OpPlus {
+    static bool apply(int64_t l, int64_t r, int64_t* result) {
+        return ! __builtin_add_overflow(l, r, result);
+    }
+    static double apply(double l, double r) {
+        return l + r;
+    }
+};
+
+struct OpMinus {
+    static bool apply(int64_t l, int64_t r, int64_t* result) {
+        return ! __builtin_sub_overflow(l, r, result);
+    }
+    static double apply(double l, double r) {
+        return l - r;
+    }
+};
+
+struct OpMultiply {
+    static bool apply(int64_t l, int64_t r, int64_t* result) {
+        // NValue reports a product equal to the BIGINT null value as an overflow.
+        return ! __builtin_mul_overflow(l, r, result) && *result != INT64_NULL;
+    }
+    static double apply(double l, double r) {
+        return l * r;
+    }
+};
+
+struct OpDivide {
+    static bool apply(int64_t l, int64_t r, int64_t* result) {
+        if (r == 0) {
+            return false;
+        }
+        *result = l / r;
+        return true;
+    }
+    static double apply(double l, double r) {
+        return l / r;
+    }
+};
+
+/**
+ * BIGINT or DOUBLE arithmetic. Rows that overflow, divide by zero or produce
+ * a non-finite double are left undecided so that the scalar operator raises
+ * its usual error if the row is ever consumed.
+ */
+template <typename OP>
+class ArithmeticNode : public BinaryNode {
+public:
+    ArithmeticNode(VectorNode* left, VectorNode* right)
+        : BinaryNode(left->isDouble() || right->isDouble() ? ValueType::tDOUBLE : ValueType::tBIGINT,
+                     left, right) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_left->evaluate(batch);
+        m_right->evaluate(batch);
+        const int count = batch.size();
+        const uint8_t* ls = m_left->m_states.data();
+        const uint8_t* rs = m_right->m_states.data();
+        if (isDouble()) {
+            const double* l = m_left->doubles(count, m_leftScratch);
+            const double* r = m_right->doubles(count, m_rightScratch);
+            for (int i = 0; i < count; ++i) {
+                m_doubles[i] = OP::apply(l[i], r[i]);
+            }
+            for (int i = 0; i < count; ++i) {
+                uint8_t state = std::max(ls[i], rs[i]);
+                if (state == ROW_VALUE && ! std::isfinite(m_doubles[i])) {
+                    state = ROW_UNDECIDED;
+                }
+                m_states[i] = state;
+            }
+        } else {
+            const int64_t* l = m_left->m_ints.data();
+            const int64_t* r = m_right->m_ints.data();
+            for (int i = 0; i < count; ++i) {
+                uint8_t state = std::max(ls[i], rs[i]);
+                if (state == ROW_VALUE) {
+                    if (! OP::apply(l[i], r[i], &m_ints[i])) {
+                        state = ROW_UNDECIDED;
+                    } else if (m_ints[i] == INT64_NULL) {
+                        state = ROW_NULL;
+                    }
+                }
+                m_states[i] = state;
+            }
+        }
+    }
+};
+
+class AndNode : public BinaryNode {
+public:
+    AndNode(VectorNode* left, VectorNode* right) : BinaryNode(ValueType::tBOOLEAN, left, right) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_left->evaluate(batch);
+        m_right->evaluate(batch);
+        const int count = batch.size();
+        const uint8_t* ls = m_left->m_states.data();
+        const uint8_t* rs = m_right->m_states.data();
+        const int64_t* l = m_left->m_ints.data();
+        const int64_t* r = m_right->m_ints.data();
+        for (int i = 0; i < count; ++i) {
+            // Mirrors the short-circuit order of ConjunctionExpression<ConjunctionAnd>
+            if (ls[i] == ROW_UNDECIDED) {
+                m_states[i] = ROW_UNDECIDED;
+            } else if (ls[i] == ROW_VALUE && ! l[i]) {
+                m_states[i] = ROW_VALUE;
+                m_ints[i] = 0;
+            } else if (rs[i] != ROW_NULL && (rs[i] == ROW_UNDECIDED || ! r[i] || ls[i] == ROW_VALUE)) {
+                m_states[i] = rs[i];
+                m_ints[i] = r[i];
+            } else {
+                m_states[i] = ROW_NULL;
+            }
+        }
+    }
+};
+
+class OrNode : public BinaryNode {
+public:
+    OrNode(VectorNode* left, VectorNode* right) : BinaryNode(ValueType::tBOOLEAN, left, right) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_left->evaluate(batch);
+        m_right->evaluate(batch);
+        const int count = batch.size();
+        const uint8_t* ls = m_left->m_states.data();
+        const uint8_t* rs = m_right->m_states.data();
+        const int64_t* l = m_left->m_ints.data();
+        const int64_t* r = m_right->m_ints.data();
+        for (int i = 0; i < count; ++i) {
+            // Mirrors the short-circuit order of ConjunctionExpression<ConjunctionOr>
+            if (ls[i] == ROW_UNDECIDED) {
+                m_states[i] = ROW_UNDECIDED;
+            } else if (ls[i] == ROW_VALUE && l[i]) {
+                m_states[i] = ROW_VALUE;
+                m_ints[i] = 1;
+            } else if (rs[i] != ROW_NULL && (rs[i] == ROW_UNDECIDED || r[i] || ls[i] == ROW_VALUE)) {
+                m_states[i] = rs[i];
+                m_ints[i] = r[i];
+            } else {
+                m_states[i] = ROW_NULL;
+            }
+        }
+    }
+};
+
+class NotNode : public VectorNode {
+public:
+    explicit NotNode(VectorNode* child) : VectorNode(ValueType::tBOOLEAN), m_child(child) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_child->evaluate(batch);
+        const int count = batch.size();
+        for (int i = 0; i < count; ++i) {
+            m_ints[i] = ! m_child->m_ints[i];
+            m_states[i] = m_child->m_states[i];
+        }
+    }
+
+private:
+    std::unique_ptr<VectorNode> m_child;
+};
+
+class IsNullNode : public VectorNode {
+public:
+    explicit IsNullNode(VectorNode* child) : VectorNode(ValueType::tBOOLEAN), m_child(child) {}
+
+    void evaluate(const TupleBatch& batch) {
+        m_child->evaluate(batch);
+        const int count = batch.size();
+        for (int i = 0; i < count; ++i) {
+            m_ints[i] = m_child->m_states[i] == ROW_NULL;
+            m_states[i] = m_child->m_states[i] == ROW_UNDECIDED ? ROW_UNDECIDED : ROW_VALUE;
+        }
+    }
+
+private:
+    std::unique_ptr<VectorNode> m_child;
+};
+
+VectorNode* compileNode(const AbstractExpression* expr, const TupleSchema* schema);
+
+VectorNode* compileColumn(const AbstractExpression* expr, const TupleSchema* schema) {
+    const TupleValueExpression* tve = dynamic_cast<const TupleValueExpression*>(expr);
+    // Only the scanned tuple is available to a batch.
+    if (tve == NULL || tve->getTupleId() != 0 || tve->getColumnId() >= schema->columnCount()) {
+        return NULL;
+    }
+    const TupleSchema::ColumnInfo* columnInfo = schema->getColumnInfo(tve->getColumnId());
+    const uint32_t offset = TUPLE_HEADER_SIZE + columnInfo->offset;
+    const ValueType type = columnInfo->getVoltType();
+    switch (type) {
+    case ValueType::tTINYINT:
+        return new IntegralColumnNode<int8_t>(type, offset, INT8_NULL);
+    case ValueType::tSMALLINT:
+        return new IntegralColumnNode<int16_t>(type, offset, INT16_NULL);
+    case ValueType::tINTEGER:
+        return new IntegralColumnNode<int32_t>(type, offset, INT32_NULL);
+    case ValueType::tBIGINT:
+    case ValueType::tTIMESTAMP:
+        return new IntegralColumnNode<int64_t>(type, offset, INT64_NULL);
+    case ValueType::tDOUBLE:
+        return new DoubleColumnNode(offset);
+    default:
+        return NULL;
+    }
+}
+
+bool compileOperands(const AbstractExpression* expr, const TupleSchema* schema, bool allowTimestamp,
+        std::unique_ptr<VectorNode>& left, std::unique_ptr<VectorNode>& right) {
+    if (expr->getLeft() == NULL || expr->getRight() == NULL) {
+        return false;
+    }
+    left.reset(compileNode(expr->getLeft(), schema));
+    right.reset(compileNode(expr->getRight(), schema));
+    if (left == NULL || right == NULL ||
+            ! isVectorizableNumber(left->m_valueType) || ! isVectorizableNumber(right->m_valueType)) {
+        return false;
+    }
+    return allowTimestamp ||
+            (left->m_valueType != ValueType::tTIMESTAMP && right->m_valueType != ValueType::tTIMESTAMP);
+}
+
+VectorNode* compileNode(const AbstractExpression* expr, const TupleSchema* schema) {
+    std::unique_ptr<VectorNode> left;
+    std::unique_ptr<VectorNode> right;
+    const ExpressionType type = expr->getExpressionType();
+    switch (type) {
+    case EXPRESSION_TYPE_VALUE_TUPLE:
+        return compileColumn(expr, schema);
+
+    case EXPRESSION_TYPE_VALUE_CONSTANT:
+    case EXPRESSION_TYPE_VALUE_PARAMETER: {
+        const NValue value = expr->eval(NULL, NULL);
+        if (! isVectorizableNumber(ValuePeeker::peekValueType(value))) {
+            return NULL;
+        }
+        return new ConstantNode(value);
+    }
+
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        if (! compileOperands(expr, schema, true, left, right)) {
+            return NULL;
+        }
+        switch (type) {
+        case EXPRESSION_TYPE_COMPARE_EQUAL:
+            return new ComparisonNode<std::equal_to<> >(left.release(), right.release());
+        case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+            return new ComparisonNode<std::not_equal_to<> >(left.release(), right.release());
+        case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+            return new ComparisonNode<std::less<> >(left.release(), right.release());
+        case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+            return new ComparisonNode<std::greater<> >(left.release(), right.release());
+        case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+            return new ComparisonNode<std::less_equal<> >(left.release(), right.release());
+        default:
+            return new ComparisonNode<std::greater_equal<> >(left.release(), right.release());
+        }
+
+    case EXPRESSION_TYPE_OPERATOR_PLUS:
+    case EXPRESSION_TYPE_OPERATOR_MINUS:
+    case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+    case EXPRESSION_TYPE_OPERATOR_DIVIDE:
+        // Timestamp arithmetic keeps its own promotion rules.
+        if (! compileOperands(expr, schema, false, left, right)) {
+            return NULL;
+        }
+        switch (type) {
+        case EXPRESSION_TYPE_OPERATOR_PLUS:
+            return new ArithmeticNode<OpPlus>(left.release(), right.release());
+        case EXPRESSION_TYPE_OPERATOR_MINUS:
+            return new ArithmeticNode<OpMinus>(left.release(), right.release());
+        case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+            return new ArithmeticNode<OpMultiply>(left.release(), right.release());
+        default:
+            return new ArithmeticNode<OpDivide>(left.release(), right.release());
+        }
+
+    case EXPRESSION_TYPE_CONJUNCTION_AND:
+    case EXPRESSION_TYPE_CONJUNCTION_OR:
+        if (expr->getLeft() == NULL || expr->getRight() == NULL) {
+            return NULL;
+        }
+        left.reset(compileNode(expr->getLeft(), schema));
+        right.reset(compileNode(expr->getRight(), schema));
+        if (left == NULL || right == NULL || ! left->isBoolean() || ! right->isBoolean()) {
+            return NULL;
+        }
+        if (type == EXPRESSION_TYPE_CONJUNCTION_AND) {
+            return new AndNode(left.release(), right.release());
+        }
+        return new OrNode(left.release(), right.release());
+
+    case EXPRESSION_TYPE_OPERATOR_NOT:
+    case EXPRESSION_TYPE_OPERATOR_IS_NULL:
+        if (expr->getLeft() == NULL) {
+            return NULL;
+        }
+        left.reset(compileNode(expr->getLeft(), schema));
+        if (left == NULL) {
+            return NULL;
+        }
+        if (type == EXPRESSION_TYPE_OPERATOR_IS_NULL) {
+            return new IsNullNode(left.release());
+        }
+        return left->isBoolean() ? new NotNode(left.release()) : NULL;
+
+    default:
+        return NULL;
+    }
+}
+
+}
+
+std::unique_ptr<VectorizedExpression> VectorizedExpression::compile(const AbstractExpression* expr,
+        const TupleSchema* schema) {
+    std::unique_ptr<VectorizedExpression> compiled;
+    if (expr != NULL) {
+        VectorNode* root = compileNode(expr, schema);
+        if (root != NULL) {
+            compiled.reset(new VectorizedExpression(expr, root));
+        }
+    }
+    return compiled;
+}
+
+VectorizedExpression::VectorizedExpression(const AbstractExpression* expr, VectorNode* root)
+    : m_expr(expr), m_root(root) {}
+
+VectorizedExpression::~VectorizedExpression() {}
+
+void VectorizedExpression::evaluate(const TupleBatch& batch) {
+    m_root->evaluate(batch);
+}
+
+void VectorizedExpression::select(TupleBatch& batch, bool* recheck) {
+    vassert(m_root->isBoolean());
+    evaluate(batch);
+    const uint8_t* states = m_root->m_states.data();
+    const int64_t* values = m_root->m_ints.data();
+    int selected = 0;
+    for (int i = 0; i < batch.m_size; ++i) {
+        if (states[i] == ROW_UNDECIDED || (states[i] == ROW_VALUE && values[i])) {
+            batch.m_addresses[selected] = batch.m_addresses[i];
+            recheck[selected] = states[i] == ROW_UNDECIDED;
+            ++selected;
+        }
+    }
+    batch.m_size = selected;
+}
+
+bool VectorizedExpression::passes(const TableTuple& tuple) const {
+    return m_expr->eval(&tuple, NULL).isTrue();
+}
+
+NValue VectorizedExpression::value(int row, const TableTuple& tuple) const {
+    if (m_root->m_states[row] == ROW_UNDECIDED) {
+        return m_expr->eval(&tuple, NULL);
+    }
+    return m_root->value(row);
+}
+
+}
@@ -0,0 +1,131 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "common/tabletuple.h"
+#include "common/NValue.hpp"
+
+#include <memory>
+
+namespace voltdb {
+
+class AbstractExpression;
+class TupleSchema;
+class VectorNode;
+
+/**
+ * A run of rows of one table, referenced by address, that is evaluated
+ * together by VectorizedExpression. The rows must stay where they are
+ * until the batch has been consumed, so batches are only built over
+ * persistent table scans that do not modify the scanned table.
+ */
+class TupleBatch {
+public:
+    static const int CAPACITY = 1024;
+
+    TupleBatch() : m_size(0) {}
+
+    void clear() {
+        m_size = 0;
+    }
+
+    bool isEmpty() const {
+        return m_size == 0;
+    }
+
+    bool isFull() const {
+        return m_size == CAPACITY;
+    }
+
+    int size() const {
+        return m_size;
+    }
+
+    void add(const TableTuple& tuple) {
+        vassert(m_size < CAPACITY);
+        m_addresses[m_size++] = tuple.address();
+    }
+
+    char* address(int row) const {
+        vassert(row < m_size);
+        return m_addresses[row];
+    }
+
+private:
+    friend class VectorizedExpression;
+
+    char* m_addresses[CAPACITY];
+    int m_size;
+};
+
+/**
+ * Batch-at-a-time evaluation of an expression tree over a TupleBatch.
+ *
+ * Column references of integral, timestamp and double columns, constants,
+ * parameters, comparisons, AND/OR/NOT, IS NULL and the four arithmetic
+ * operators over BIGINT and DOUBLE are evaluated column-wise, so the
+ * per-row cost is a few tight loops instead of a virtual eval() call per
+ * node. compile() returns nullptr for any tree containing something else,
+ * and the caller then stays on the scalar eval() path.
+ *
+ * Rows on which the scalar path would throw (arithmetic overflow, division
+ * by zero, non-finite doubles) or whose comparison semantics differ from
+ * plain machine comparison (NaN) are left undecided by the batch kernels.
+ * They are handed back to the original expression's eval() only when the
+ * caller actually consumes that row, so errors are raised for exactly the
+ * rows the scalar path would have raised them for.
+ *
+ * Constants and parameters are captured by compile(), so an instance is
+ * only valid for the execution it was compiled in.
+ */
+class VectorizedExpression {
+public:
+    static std::unique_ptr<VectorizedExpression> compile(const AbstractExpression* expr,
+            const TupleSchema* schema);
+
+    ~VectorizedExpression();
+
+    /** Evaluate the expression for every row of the batch. */
+    void evaluate(const TupleBatch& batch);
+
+    /**
+     * Evaluate the expression as a predicate and compact the batch down to
+     * the rows for which it is true or undecided, preserving their order.
+     * recheck[i] is set for each remaining row i that still has to be
+     * tested through passes().
+     */
+    void select(TupleBatch& batch, bool* recheck);
+
+    /** The scalar predicate test of a row left undecided by select(). */
+    bool passes(const TableTuple& tuple) const;
+
+    /** The value of the expression for a row of the last evaluated batch. */
+    NValue value(int row, const TableTuple& tuple) const;
+
+private:
+    VectorizedExpression(const AbstractExpression* expr, VectorNode* root);
+
+    const AbstractExpression* m_expr;
+    std::unique_ptr<VectorNode> m_root;
+};
+
+}
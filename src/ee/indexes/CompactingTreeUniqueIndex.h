@@ -47,24 +47,28 @@
 #define COMPACTINGTREEUNIQUEINDEX_H_
 
 #include <iostream>
+#include <type_traits>
 #include <common/debuglog.h>
 
 #include "common/debuglog.h"
 #include "common/tabletuple.h"
 #include "indexes/tableindex.h"
 #include "structures/CompactingMap.h"
+#include "structures/CompactingBTreeMap.h"
 
 namespace voltdb {
 
 /**
- * Index implemented as a Binary Tree Unique Map.
+ * Index implemented as a Binary Tree Unique Map, or as a B+tree Unique Map with
+ * Map = CompactingBTreeMap.
  * @see TableIndex
  */
-template<typename KeyValuePair, bool hasRank>
+template<typename KeyValuePair, bool hasRank,
+         template<typename, typename, bool> class Map = CompactingMap>
 class CompactingTreeUniqueIndex : public TableIndex {
     typedef typename KeyValuePair::first_type KeyType;
     typedef typename KeyType::KeyComparator KeyComparator;
-    typedef CompactingMap<KeyValuePair, KeyComparator, hasRank> MapType;
+    typedef Map<KeyValuePair, KeyComparator, hasRank> MapType;
     typedef typename MapType::iterator MapIterator;
 
     ~CompactingTreeUniqueIndex() {};
@@ -389,11 +393,14 @@ class CompactingTreeUniqueIndex : public TableIndex {
     }
 
     std::string getTypeName() const {
+        if (std::is_same<MapType, CompactingBTreeMap<KeyValuePair, KeyComparator, hasRank> >::value) {
+            return "CompactingBTreeUniqueIndex";
+        }
         return "CompactingTreeUniqueIndex";
     };
 
     virtual TableIndex *cloneEmptyNonCountingTreeIndex() const {
-        return new CompactingTreeUniqueIndex<KeyValuePair, false >(TupleSchema::createTupleSchema(getKeySchema()), m_scheme);
+        return new CompactingTreeUniqueIndex<KeyValuePair, false, Map>(TupleSchema::createTupleSchema(getKeySchema()), m_scheme);
     }
 
 
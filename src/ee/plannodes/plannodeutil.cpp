@@ -46,6 +46,7 @@
 #include "plannodes/plannodeutil.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/deletenode.h"
+#include "plannodes/hashjoinnode.h"
 #include "plannodes/migratenode.h"
 #include "plannodes/indexscannode.h"
 #include "plannodes/indexcountnode.h"
@@ -135,6 +136,12 @@ voltdb::AbstractPlanNode* getEmptyPlanNode(voltdb::PlanNodeType type) {
             ret = new voltdb::MergeJoinPlanNode();
             break;
         // ------------------------------------------------------------------
+        // HashJoin
+        // ------------------------------------------------------------------
+        case (voltdb::PlanNodeType::HashJoin):
+            ret = new voltdb::HashJoinPlanNode();
+            break;
+        // ------------------------------------------------------------------
         // Update
         // ------------------------------------------------------------------
         case (voltdb::PlanNodeType::Update):
@@ -214,6 +214,9 @@ getIndexIdFromMap(TableIndexType type, bool countable, bool isUnique,
     case HASH_TABLE_INDEX:
         retval += "H";
         break;
+    case BTREE_INDEX:
+        retval += "P"; // packed tree
+        break;
     case COVERING_CELL_INDEX:
         retval += "G"; // C is taken
         break;
@@ -0,0 +1,1037 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef COMPACTINGBTREEMAP_H_
+#define COMPACTINGBTREEMAP_H_
+
+#include "CompactingMap.h"
+
+#include <algorithm>
+#include <cstdio>
+#include <new>
+
+namespace voltdb {
+
+/**
+ * B+tree with the same interface as CompactingMap, for indexes large enough
+ * that the per entry cost of a red-black node matters.
+ *
+ * The entries are packed side by side in fixed width arrays in the leaves,
+ * which are chained in key order. Inner nodes only hold separator keys and
+ * child pointers. An entry costs its key and value plus the free slots of its
+ * leaf, instead of three pointers, a colour and a count, and scans walk
+ * contiguous memory. With hasRank, each inner node also keeps the number of
+ * entries under each of its children, which is all it takes to find the rank
+ * of a key or the key of a rank on the way down.
+ *
+ * Leaves and inner nodes come from two ContiguousAllocators and, as in
+ * CompactingMap, a freed node is filled with the last allocated one so that
+ * the memory stays contiguous and shrinks as entries are removed.
+ *
+ * Issues to be aware of:
+ * 1. Separator keys are copies of keys that may have been erased since, so
+ *    the key type must own all of its bytes. Keys that point at memory which
+ *    goes away with their entry (TupleKey, GenericPersistentKey, GenericKey
+ *    with non-inlined columns) must use CompactingMap.
+ * 2. Entries move around within and between leaves on every insert and
+ *    delete. Iterators are invalidated by any mutation.
+ * 3. Iterators have no overloaded operators, same as CompactingMap.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank=false>
+class CompactingBTreeMap {
+    typedef typename KeyValuePair::first_type Key;
+    typedef typename KeyValuePair::second_type Data;
+
+    // Target size of a node. Nodes hold at least 8 entries whatever the key size.
+    static const size_t NODE_BYTES = 1024;
+    static const int MIN_SLOTS = 8;
+    static const int LEAF_SLOTS = NODE_BYTES / sizeof(KeyValuePair) > MIN_SLOTS ?
+            static_cast<int>(NODE_BYTES / sizeof(KeyValuePair)) : MIN_SLOTS;
+    static const size_t INNER_SLOT_BYTES = sizeof(Key) + sizeof(void*) + (hasRank ? sizeof(int64_t) : 0);
+    static const int INNER_SLOTS = NODE_BYTES / INNER_SLOT_BYTES > MIN_SLOTS ?
+            static_cast<int>(NODE_BYTES / INNER_SLOT_BYTES) : MIN_SLOTS;
+
+    struct Inner;
+
+    struct Node {
+        Inner *parent;
+        // entries in a leaf, children of an inner node
+        int count;
+        Node() : parent(NULL), count(0) {}
+    };
+
+    struct Leaf : public Node {
+        Leaf *prev;
+        Leaf *next;
+        KeyValuePair kv[LEAF_SLOTS];
+        Leaf() : prev(NULL), next(NULL) {}
+    };
+
+    struct Inner : public Node {
+        // 1 when the children are leaves
+        int level;
+        // keys[i] is not less than the keys under children[i]
+        // and not greater than the keys under children[i + 1]
+        Key keys[INNER_SLOTS - 1];
+        Node *children[INNER_SLOTS];
+        // number of entries under each child, only maintained with hasRank
+        int64_t subct[hasRank ? INNER_SLOTS : 1];
+        Inner(int lvl) : level(lvl) {}
+    };
+
+    // compares the keys as the index key without the tuple address
+    struct WithoutPointer {
+        const Compare &m_comper;
+        WithoutPointer(const Compare &comper) : m_comper(comper) {}
+        int operator()(const Key &lhs, const Key &rhs) const { return m_comper.compareWithoutPointer(lhs, rhs); }
+    };
+
+    int64_t m_count;
+    Node *m_root;
+    // number of inner levels above the leaves
+    int m_height;
+    Leaf *m_first;
+    Leaf *m_last;
+    ContiguousAllocator m_leafAllocator;
+    ContiguousAllocator m_innerAllocator;
+    bool m_unique;
+
+    // templated comparison function object
+    // follows STL conventions
+    Compare m_comper;
+
+public:
+    class iterator {
+        friend class CompactingBTreeMap<KeyValuePair, Compare, hasRank>;
+    protected:
+        Leaf *m_leaf;
+        int m_slot;
+        iterator(Leaf *leaf, int slot) : m_leaf(leaf), m_slot(slot)
+        {
+            // the position past the last entry of a leaf is the first entry of the next
+            if (m_leaf && m_slot == m_leaf->count) {
+                m_leaf = m_leaf->next;
+                m_slot = 0;
+            }
+        }
+        const KeyValuePair &pair() const
+        {
+            // the end reads as a default entry, like the NIL node of CompactingMap
+            static const KeyValuePair nil = KeyValuePair();
+            return m_leaf ? m_leaf->kv[m_slot] : nil;
+        }
+    public:
+        iterator() : m_leaf(NULL), m_slot(0) {}
+        iterator(const iterator &iter) : m_leaf(iter.m_leaf), m_slot(iter.m_slot) {}
+        iterator &operator=(const iterator &iter) = default;
+        const Key &key() const { return pair().getKey(); }
+        const Data &value() const { return pair().getValue(); }
+        void setValue(const Data &value) { m_leaf->kv[m_slot].setValue(value); }
+        void moveNext()
+        {
+            if (++m_slot == m_leaf->count) {
+                m_leaf = m_leaf->next;
+                m_slot = 0;
+            }
+        }
+        void movePrev()
+        {
+            if (m_slot-- == 0) {
+                m_leaf = m_leaf->prev;
+                m_slot = m_leaf ? m_leaf->count - 1 : 0;
+            }
+        }
+        bool isEnd() const { return m_leaf == NULL; }
+        bool equals(const iterator &iter) const { return m_leaf == iter.m_leaf && m_slot == iter.m_slot; }
+    };
+
+    // Index cursors keep their iterators in 16 bytes
+    static_assert(sizeof(iterator) <= 16, "CompactingBTreeMap iterator does not fit in an IndexCursor");
+
+    CompactingBTreeMap(bool unique, Compare comper);
+    ~CompactingBTreeMap();
+
+    bool insert(std::pair<Key, Data> value) { return (insert(value.first, value.second) == NULL); };
+    // Returns the data of the conflicting entry of a unique map, NULL if the entry was added
+    const Data *insert(const Key &key, const Data &data);
+    bool erase(const Key &key);
+    bool erase(iterator &iter);
+
+    iterator find(const Key &key) const;
+    iterator findRank(int64_t ith) const;
+    int64_t size() const { return m_count; }
+    iterator begin() const { return iterator(m_first, 0); }
+    iterator rbegin() const { return m_last ? iterator(m_last, m_last->count - 1) : iterator(); }
+
+    iterator lowerBound(const Key &key) const { return bound(key, false, m_comper, NULL); }
+    iterator upperBound(const Key &key) const;
+    // do upperBound(key) but treat null values in key as maximum
+    iterator upperBoundNullAsMax(const Key &key) const;
+
+    std::pair<iterator, iterator> equalRange(const Key &key) const
+    {
+        return std::pair<iterator, iterator>(lowerBound(key), upperBound(key));
+    }
+
+    size_t bytesAllocated() const { return m_leafAllocator.bytesAllocated() + m_innerAllocator.bytesAllocated(); }
+
+    // Must pass a key that already in map, or else return -1
+    int64_t rankLower(const Key& key) const;
+    int64_t rankUpper(const Key& key) const;
+
+    /**
+     * For debugging: verify the B+tree constraints are met. SLOW.
+     */
+    bool verify() const;
+    bool verifyRank() const;
+    /** Do we have a cached last buffer?  This is used in testing. */
+    bool hasCachedLastBuffer() const { return (m_leafAllocator.hasCachedLastBuffer()); }
+
+protected:
+    template<typename Cmp>
+    iterator bound(const Key &key, bool upper, const Cmp &cmp, int64_t *before) const;
+    template<typename Cmp>
+    static int innerSlot(const Inner *n, const Key &key, bool upper, const Cmp &cmp);
+    template<typename Cmp>
+    static int leafSlot(const Leaf *n, const Key &key, bool upper, const Cmp &cmp);
+
+    void eraseAt(Leaf *leaf, int slot);
+    void insertChild(Node *left, const Key &separator, Node *right, int64_t leftCount, int64_t rightCount);
+    void insertInInner(Inner *n, int i, const Key &separator, Node *right, int64_t leftCount, int64_t rightCount);
+    void removeChild(Inner *n, int i);
+    void rebalanceLeaf(Leaf *leaf);
+    void rebalanceInner(Inner *n);
+    void adjustCounts(Node *n, int64_t delta);
+    void adoptChildren(Inner *n, int from, int to);
+
+    Leaf *newLeaf() { return new (m_leafAllocator.alloc()) Leaf(); }
+    Inner *newInner(int level) { return new (m_innerAllocator.alloc()) Inner(level); }
+    void freeLeaf(Leaf *x);
+    Inner *freeInner(Inner *x);
+    void destroy(Node *n, int level);
+
+    static int childIndex(const Inner *parent, const Node *child);
+    static int64_t entryCount(const Inner *n);
+
+    int64_t verify(const Node *n, int level, const Key *low, const Key *high) const;
+};
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::CompactingBTreeMap(bool unique, Compare comper)
+    : m_count(0),
+      m_root(NULL),
+      m_height(0),
+      m_first(NULL),
+      m_last(NULL),
+      m_leafAllocator(static_cast<int>(sizeof(Leaf)), 128),
+      m_innerAllocator(static_cast<int>(sizeof(Inner)), 32),
+      m_unique(unique),
+      m_comper(comper)
+{ }
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::~CompactingBTreeMap()
+{
+    if (m_root != NULL) {
+        destroy(m_root, m_height);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::destroy(Node *n, int level)
+{
+    if (level == 0) {
+        static_cast<Leaf*>(n)->~Leaf();
+        return;
+    }
+    Inner *inner = static_cast<Inner*>(n);
+    for (int i = 0; i < inner->count; i++) {
+        destroy(inner->children[i], level - 1);
+    }
+    inner->~Inner();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+template<typename Cmp>
+int CompactingBTreeMap<KeyValuePair, Compare, hasRank>::innerSlot(const Inner *n, const Key &key, bool upper,
+        const Cmp &cmp)
+{
+    // first child whose separator is >= key (> key for upper), the last child has no separator
+    int low = 0;
+    int high = n->count - 1;
+    while (low < high) {
+        int mid = (low + high) / 2;
+        int c = cmp(n->keys[mid], key);
+        if (c > 0 || (c == 0 && !upper)) {
+            high = mid;
+        }
+        else {
+            low = mid + 1;
+        }
+    }
+    return low;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+template<typename Cmp>
+int CompactingBTreeMap<KeyValuePair, Compare, hasRank>::leafSlot(const Leaf *n, const Key &key, bool upper,
+        const Cmp &cmp)
+{
+    int low = 0;
+    int high = n->count;
+    while (low < high) {
+        int mid = (low + high) / 2;
+        int c = cmp(n->kv[mid].getKey(), key);
+        if (c > 0 || (c == 0 && !upper)) {
+            high = mid;
+        }
+        else {
+            low = mid + 1;
+        }
+    }
+    return low;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+template<typename Cmp>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::iterator
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::bound(const Key &key, bool upper, const Cmp &cmp,
+        int64_t *before) const
+{
+    if (m_root == NULL) {
+        if (before) {
+            *before = 0;
+        }
+        return iterator();
+    }
+    int64_t ct = 0;
+    Node *n = m_root;
+    for (int level = m_height; level > 0; level--) {
+        const Inner *inner = static_cast<const Inner*>(n);
+        int i = innerSlot(inner, key, upper, cmp);
+        if (hasRank && before) {
+            for (int j = 0; j < i; j++) {
+                ct += inner->subct[j];
+            }
+        }
+        n = inner->children[i];
+    }
+    Leaf *leaf = static_cast<Leaf*>(n);
+    int slot = leafSlot(leaf, key, upper, cmp);
+    if (before) {
+        *before = ct + slot;
+    }
+    return iterator(leaf, slot);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::iterator
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::upperBound(const Key &key) const
+{
+    Key tmpKey(key);
+    setPointerValue(tmpKey, MAXPOINTER);
+    return bound(tmpKey, true, m_comper, NULL);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::iterator
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::upperBoundNullAsMax(const Key &key) const
+{
+    Key tmpKey(key);
+    setPointerValue(tmpKey, MAXPOINTER);
+    return bound(tmpKey, true, m_comper.getNullAsMaxComparator(), NULL);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::iterator
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::find(const Key &key) const
+{
+    iterator iter = lowerBound(key);
+    if (!iter.isEnd() && m_comper(iter.key(), key) == 0) {
+        return iter;
+    }
+    return iterator();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::iterator
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::findRank(int64_t ith) const
+{
+    if ((!hasRank) || ith < 1 || ith > m_count) {
+        return iterator();
+    }
+    Node *n = m_root;
+    int64_t rk = ith;
+    for (int level = m_height; level > 0; level--) {
+        const Inner *inner = static_cast<const Inner*>(n);
+        int i = 0;
+        while (rk > inner->subct[i]) {
+            rk -= inner->subct[i];
+            i++;
+        }
+        n = inner->children[i];
+    }
+    return iterator(static_cast<Leaf*>(n), static_cast<int>(rk - 1));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+const typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::Data *
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::insert(const Key &key, const Data &data)
+{
+    if (m_root == NULL) {
+        Leaf *leaf = newLeaf();
+        leaf->kv[0].setKeyValuePair(key, data);
+        leaf->count = 1;
+        m_root = m_first = m_last = leaf;
+        m_count = 1;
+        return NULL;
+    }
+
+    // Like CompactingMap, duplicates go after the existing ones
+    Node *n = m_root;
+    for (int level = m_height; level > 0; level--) {
+        Inner *inner = static_cast<Inner*>(n);
+        n = inner->children[innerSlot(inner, key, true, m_comper)];
+    }
+    Leaf *leaf = static_cast<Leaf*>(n);
+    int slot = leafSlot(leaf, key, true, m_comper);
+
+    if (m_unique) {
+        // Inserting exact matches fails for unique indexes.
+        // The match, if any, is the entry right before the insertion point.
+        const KeyValuePair *prior = NULL;
+        if (slot > 0) {
+            prior = &leaf->kv[slot - 1];
+        }
+        else if (leaf->prev != NULL) {
+            prior = &leaf->prev->kv[leaf->prev->count - 1];
+        }
+        if (prior != NULL && m_comper(prior->getKey(), key) == 0) {
+            return &prior->getValue();
+        }
+    }
+
+    adjustCounts(leaf, 1);
+    m_count++;
+
+    if (leaf->count < LEAF_SLOTS) {
+        std::copy_backward(leaf->kv + slot, leaf->kv + leaf->count, leaf->kv + leaf->count + 1);
+        leaf->kv[slot].setKeyValuePair(key, data);
+        leaf->count++;
+        return NULL;
+    }
+
+    // Split the full leaf. When appending past the last entry of the map,
+    // keep the leaf full and start a new one so that sequential loads pack.
+    int splitAt = (slot == LEAF_SLOTS && leaf->next == NULL) ? LEAF_SLOTS : LEAF_SLOTS / 2;
+    Leaf *right = newLeaf();
+    std::copy(leaf->kv + splitAt, leaf->kv + LEAF_SLOTS, right->kv);
+    right->count = LEAF_SLOTS - splitAt;
+    leaf->count = splitAt;
+    right->prev = leaf;
+    right->next = leaf->next;
+    if (leaf->next != NULL) {
+        leaf->next->prev = right;
+    }
+    else {
+        m_last = right;
+    }
+    leaf->next = right;
+
+    Leaf *target = leaf;
+    if (slot > splitAt || (slot == splitAt && splitAt == LEAF_SLOTS)) {
+        target = right;
+        slot -= splitAt;
+    }
+    std::copy_backward(target->kv + slot, target->kv + target->count, target->kv + target->count + 1);
+    target->kv[slot].setKeyValuePair(key, data);
+    target->count++;
+
+    Key separator(leaf->kv[leaf->count - 1].getKey());
+    insertChild(leaf, separator, right, leaf->count, right->count);
+    return NULL;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::insertChild(Node *left, const Key &separator,
+        Node *right, int64_t leftCount, int64_t rightCount)
+{
+    Inner *parent = left->parent;
+    if (parent == NULL) {
+        // grow a new root
+        Inner *root = newInner(m_height + 1);
+        root->children[0] = left;
+        root->children[1] = right;
+        root->keys[0] = separator;
+        root->count = 2;
+        if (hasRank) {
+            root->subct[0] = leftCount;
+            root->subct[1] = rightCount;
+        }
+        left->parent = root;
+        right->parent = root;
+        m_root = root;
+        m_height++;
+        return;
+    }
+
+    int i = childIndex(parent, left);
+    if (parent->count < INNER_SLOTS) {
+        insertInInner(parent, i, separator, right, leftCount, rightCount);
+        return;
+    }
+
+    // Split the full parent, the separator between the halves moves up
+    Inner *sibling = newInner(parent->level);
+    int mid = INNER_SLOTS / 2;
+    Key up(parent->keys[mid - 1]);
+    std::copy(parent->children + mid, parent->children + INNER_SLOTS, sibling->children);
+    std::copy(parent->keys + mid, parent->keys + INNER_SLOTS - 1, sibling->keys);
+    if (hasRank) {
+        std::copy(parent->subct + mid, parent->subct + INNER_SLOTS, sibling->subct);
+    }
+    sibling->count = INNER_SLOTS - mid;
+    parent->count = mid;
+    adoptChildren(sibling, 0, sibling->count);
+
+    if (i < mid) {
+        insertInInner(parent, i, separator, right, leftCount, rightCount);
+    }
+    else {
+        insertInInner(sibling, i - mid, separator, right, leftCount, rightCount);
+    }
+    insertChild(parent, up, sibling, entryCount(parent), entryCount(sibling));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::insertInInner(Inner *n, int i, const Key &separator,
+        Node *right, int64_t leftCount, int64_t rightCount)
+{
+    // right goes after children[i], separator between them
+    std::copy_backward(n->children + i + 1, n->children + n->count, n->children + n->count + 1);
+    std::copy_backward(n->keys + i, n->keys + n->count - 1, n->keys + n->count);
+    n->children[i + 1] = right;
+    n->keys[i] = separator;
+    if (hasRank) {
+        std::copy_backward(n->subct + i + 1, n->subct + n->count, n->subct + n->count + 1);
+        n->subct[i] = leftCount;
+        n->subct[i + 1] = rightCount;
+    }
+    n->count++;
+    right->parent = n;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool CompactingBTreeMap<KeyValuePair, Compare, hasRank>::erase(const Key &key)
+{
+    iterator iter = find(key);
+    if (iter.isEnd()) {
+        return false;
+    }
+    eraseAt(iter.m_leaf, iter.m_slot);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool CompactingBTreeMap<KeyValuePair, Compare, hasRank>::erase(iterator &iter)
+{
+    vassert(!iter.isEnd());
+    eraseAt(iter.m_leaf, iter.m_slot);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::eraseAt(Leaf *leaf, int slot)
+{
+    adjustCounts(leaf, -1);
+    std::copy(leaf->kv + slot + 1, leaf->kv + leaf->count, leaf->kv + slot);
+    leaf->count--;
+    m_count--;
+
+    if (leaf == m_root) {
+        if (leaf->count == 0) {
+            freeLeaf(leaf);
+            m_root = m_first = m_last = NULL;
+        }
+        return;
+    }
+    if (leaf->count < LEAF_SLOTS / 2) {
+        rebalanceLeaf(leaf);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::rebalanceLeaf(Leaf *leaf)
+{
+    // Pair the leaf with its left sibling, or its right one for the first child
+    Inner *parent = leaf->parent;
+    int i = childIndex(parent, leaf);
+    int a = i > 0 ? i - 1 : i;
+    Leaf *left = static_cast<Leaf*>(parent->children[a]);
+    Leaf *right = static_cast<Leaf*>(parent->children[a + 1]);
+    int total = left->count + right->count;
+
+    if (total <= LEAF_SLOTS) {
+        std::copy(right->kv, right->kv + right->count, left->kv + left->count);
+        left->count = total;
+        left->next = right->next;
+        if (right->next != NULL) {
+            right->next->prev = left;
+        }
+        else {
+            m_last = left;
+        }
+        removeChild(parent, a);
+        freeLeaf(right);
+        rebalanceInner(parent);
+        return;
+    }
+
+    // Too many to merge, share them evenly instead
+    int keep = total / 2;
+    if (left->count > keep) {
+        int moved = left->count - keep;
+        std::copy_backward(right->kv, right->kv + right->count, right->kv + right->count + moved);
+        std::copy(left->kv + keep, left->kv + left->count, right->kv);
+    }
+    else {
+        int moved = keep - left->count;
+        std::copy(right->kv, right->kv + moved, left->kv + left->count);
+        std::copy(right->kv + moved, right->kv + right->count, right->kv);
+    }
+    left->count = keep;
+    right->count = total - keep;
+    parent->keys[a] = left->kv[keep - 1].getKey();
+    if (hasRank) {
+        parent->subct[a] = left->count;
+        parent->subct[a + 1] = right->count;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::rebalanceInner(Inner *n)
+{
+    if (n->parent == NULL) {
+        if (n->count == 1) {
+            // the root is down to one child, which becomes the root
+            m_root = n->children[0];
+            m_root->parent = NULL;
+            m_height--;
+            freeInner(n);
+        }
+        return;
+    }
+    if (n->count >= INNER_SLOTS / 2) {
+        return;
+    }
+
+    Inner *parent = n->parent;
+    int i = childIndex(parent, n);
+    int a = i > 0 ? i - 1 : i;
+    Inner *left = static_cast<Inner*>(parent->children[a]);
+    Inner *right = static_cast<Inner*>(parent->children[a + 1]);
+    int total = left->count + right->count;
+
+    if (total <= INNER_SLOTS) {
+        // the separator from the parent goes between the two sets of children
+        left->keys[left->count - 1] = parent->keys[a];
+        std::copy(right->keys, right->keys + right->count - 1, left->keys + left->count);
+        std::copy(right->children, right->children + right->count, left->children + left->count);
+        if (hasRank) {
+            std::copy(right->subct, right->subct + right->count, left->subct + left->count);
+        }
+        int from = left->count;
+        left->count = total;
+        adoptChildren(left, from, total);
+        removeChild(parent, a);
+        if (freeInner(right) == parent) {
+            // the parent was the last allocated node and took the place of the freed one
+            parent = right;
+        }
+        rebalanceInner(parent);
+        return;
+    }
+
+    // Too many to merge, rotate children through the parent separator
+    int keep = total / 2;
+    if (left->count > keep) {
+        int moved = left->count - keep;
+        std::copy_backward(right->children, right->children + right->count,
+                right->children + right->count + moved);
+        std::copy_backward(right->keys, right->keys + right->count - 1, right->keys + right->count - 1 + moved);
+        right->keys[moved - 1] = parent->keys[a];
+        std::copy(left->keys + keep, left->keys + left->count - 1, right->keys);
+        std::copy(left->children + keep, left->children + left->count, right->children);
+        if (hasRank) {
+            std::copy_backward(right->subct, right->subct + right->count, right->subct + right->count + moved);
+            std::copy(left->subct + keep, left->subct + left->count, right->subct);
+        }
+        parent->keys[a] = left->keys[keep - 1];
+        left->count = keep;
+        right->count = total - keep;
+        adoptChildren(right, 0, moved);
+    }
+    else {
+        int moved = keep - left->count;
+        int from = left->count;
+        left->keys[left->count - 1] = parent->keys[a];
+        std::copy(right->keys, right->keys + moved - 1, left->keys + left->count);
+        std::copy(right->children, right->children + moved, left->children + left->count);
+        if (hasRank) {
+            std::copy(right->subct, right->subct + moved, left->subct + left->count);
+            std::copy(right->subct + moved, right->subct + right->count, right->subct);
+        }
+        parent->keys[a] = right->keys[moved - 1];
+        std::copy(right->keys + moved, right->keys + right->count - 1, right->keys);
+        std::copy(right->children + moved, right->children + right->count, right->children);
+        left->count = keep;
+        right->count = total - keep;
+        adoptChildren(left, from, keep);
+    }
+    if (hasRank) {
+        parent->subct[a] = entryCount(left);
+        parent->subct[a + 1] = entryCount(right);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::removeChild(Inner *n, int i)
+{
+    // children[i + 1] has been merged into children[i]
+    std::copy(n->keys + i + 1, n->keys + n->count - 1, n->keys + i);
+    std::copy(n->children + i + 2, n->children + n->count, n->children + i + 1);
+    if (hasRank) {
+        n->subct[i] += n->subct[i + 1];
+        std::copy(n->subct + i + 2, n->subct + n->count, n->subct + i + 1);
+    }
+    n->count--;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::adjustCounts(Node *n, int64_t delta)
+{
+    if (!hasRank) {
+        return;
+    }
+    for (Inner *p = n->parent; p != NULL; n = p, p = p->parent) {
+        p->subct[childIndex(p, n)] += delta;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::adoptChildren(Inner *n, int from, int to)
+{
+    for (int i = from; i < to; i++) {
+        n->children[i]->parent = n;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int CompactingBTreeMap<KeyValuePair, Compare, hasRank>::childIndex(const Inner *parent, const Node *child)
+{
+    int i = 0;
+    while (parent->children[i] != child) {
+        i++;
+        vassert(i < parent->count);
+    }
+    return i;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t CompactingBTreeMap<KeyValuePair, Compare, hasRank>::entryCount(const Inner *n)
+{
+    int64_t ct = 0;
+    if (hasRank) {
+        for (int i = 0; i < n->count; i++) {
+            ct += n->subct[i];
+        }
+    }
+    return ct;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void CompactingBTreeMap<KeyValuePair, Compare, hasRank>::freeLeaf(Leaf *x)
+{
+    // Fix up the contiguous allocation --
+    // move the last leaf to fill the hole.
+    Leaf *last = static_cast<Leaf*>(m_leafAllocator.last());
+    if (last != x) {
+        x->parent = last->parent;
+        x->count = last->count;
+        x->prev = last->prev;
+        x->next = last->next;
+        std::copy(last->kv, last->kv + last->count, x->kv);
+        if (x->prev != NULL) {
+            x->prev->next = x;
+        }
+        else {
+            m_first = x;
+        }
+        if (x->next != NULL) {
+            x->next->prev = x;
+        }
+        else {
+            m_last = x;
+        }
+        if (x->parent != NULL) {
+            x->parent->children[childIndex(x->parent, last)] = x;
+        }
+        else {
+            m_root = x;
+        }
+    }
+    last->~Leaf();
+    m_leafAllocator.trim();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingBTreeMap<KeyValuePair, Compare, hasRank>::Inner *
+CompactingBTreeMap<KeyValuePair, Compare, hasRank>::freeInner(Inner *x)
+{
+    // Same as freeLeaf, returns the old address of the node that moved, if any
+    Inner *last = static_cast<Inner*>(m_innerAllocator.last());
+    Inner *moved = NULL;
+    if (last != x) {
+        x->parent = last->parent;
+        x->count = last->count;
+        x->level = last->level;
+        std::copy(last->keys, last->keys + last->count - 1, x->keys);
+        std::copy(last->children, last->children + last->count, x->children);
+        if (hasRank) {
+            std::copy(last->subct, last->subct + last->count, x->subct);
+        }
+        adoptChildren(x, 0, x->count);
+        if (x->parent != NULL) {
+            x->parent->children[childIndex(x->parent, last)] = x;
+        }
+        else {
+            m_root = x;
+        }
+        moved = last;
+    }
+    last->~Inner();
+    m_innerAllocator.trim();
+    return moved;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t CompactingBTreeMap<KeyValuePair, Compare, hasRank>::rankLower(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    // return -1 if the key passed in is not in the map
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    // rank of the first entry matching the "data" part of the key
+    int64_t before;
+    bound(key, false, WithoutPointer(m_comper), &before);
+    return before + 1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t CompactingBTreeMap<KeyValuePair, Compare, hasRank>::rankUpper(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    if (m_unique) {
+        return rankLower(key);
+    }
+    // return -1 if the key passed in is not in the map
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    // rank of the last entry matching the "data" part of the key
+    Key tmpKey(key);
+    setPointerValue(tmpKey, MAXPOINTER);
+    int64_t before;
+    bound(tmpKey, true, m_comper, &before);
+    return before;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool CompactingBTreeMap<KeyValuePair, Compare, hasRank>::verifyRank() const
+{
+    if (!hasRank) {
+        return true;
+    }
+
+    iterator it;
+    int64_t rkasc;
+    // iterate rank start from 1 to m_count
+    for (int64_t i = 1; i <= m_count; i++) {
+        it = findRank(i);
+        if (find(it.key()).isEnd()) {
+            printf("Can not find rank %ld node with key\n", (long)i);
+            return false;
+        }
+
+        if (m_unique) {
+            if ((rkasc = rankLower(it.key())) != i) {
+                printf("false: unique_rankLower expected %ld, but got %ld\n", (long)i, (long)rkasc);
+                return false;
+            }
+        }
+        else {
+            const Key k = it.key();
+            // test rankUpper
+            iterator up = upperBound(k);
+            int64_t rkUpper;
+            if (up.isEnd()) {
+                if (m_count == i) {
+                    rkUpper = rankUpper(k);
+                    if (rkUpper != m_count) {
+                        printf("false: multi_rankUpper expected %ld, but got %ld\n", (long)i, (long)rkUpper);
+                        return false;
+                    }
+                }
+            }
+            else {
+                up.movePrev();
+                if (it.equals(up)) {
+                    rkUpper = rankUpper(k);
+                    if (rkUpper != i) {
+                        printf("false: multi_rankUpper expected %ld, but got %ld\n", (long)i, (long)rkUpper);
+                        return false;
+                    }
+                }
+            }
+            // test rankLower
+            rkasc = rankLower(k);
+            int64_t nc = 0;
+            it.movePrev();
+            while (!it.isEnd() && k == it.key()) {
+                nc++;
+                it.movePrev();
+            }
+            if (rkasc + nc != i) {
+                printf("false: multi_rankLower %ld keys are the same", (long)nc);
+                printf("false: multi_rankLower expected %ld, but got %ld\n", (long)i, (long)rkasc);
+                return false;
+            }
+        }
+    }
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool CompactingBTreeMap<KeyValuePair, Compare, hasRank>::verify() const
+{
+    if (m_root == NULL) {
+        return m_count == 0 && m_height == 0 && m_first == NULL && m_last == NULL;
+    }
+    if (m_root->parent != NULL) {
+        printf("root has a parent\n");
+        return false;
+    }
+    if (verify(m_root, m_height, NULL, NULL) != m_count) {
+        return false;
+    }
+
+    // the leaf chain holds every entry in order
+    int64_t ct = 0;
+    int64_t leaves = 0;
+    const Leaf *prev = NULL;
+    for (const Leaf *leaf = m_first; leaf != NULL; prev = leaf, leaf = leaf->next, leaves++) {
+        if (leaf->prev != prev) {
+            printf("leaf chain is broken\n");
+            return false;
+        }
+        if (prev != NULL && m_comper(prev->kv[prev->count - 1].getKey(), leaf->kv[0].getKey()) > 0) {
+            printf("leaves are out of order\n");
+            return false;
+        }
+        ct += leaf->count;
+    }
+    if (prev != m_last || ct != m_count) {
+        printf("leaf chain holds %ld entries, expected %ld\n", (long)ct, (long)m_count);
+        return false;
+    }
+    // every allocated leaf is in use
+    if (leaves != m_leafAllocator.count()) {
+        printf("%ld leaves in the chain, %ld allocated\n", (long)leaves, (long)m_leafAllocator.count());
+        return false;
+    }
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t CompactingBTreeMap<KeyValuePair, Compare, hasRank>::verify(const Node *n, int level,
+        const Key *low, const Key *high) const
+{
+    if (n->count < 1) {
+        printf("empty node\n");
+        return -1;
+    }
+    if (level == 0) {
+        const Leaf *leaf = static_cast<const Leaf*>(n);
+        for (int i = 0; i < leaf->count; i++) {
+            const Key &key = leaf->kv[i].getKey();
+            if ((low != NULL && m_comper(*low, key) > 0) || (high != NULL && m_comper(key, *high) > 0)) {
+                printf("leaf entry outside of its separators\n");
+                return -1;
+            }
+            if (i > 0) {
+                int cmp = m_comper(leaf->kv[i - 1].getKey(), key);
+                if (cmp > 0 || (m_unique && cmp == 0)) {
+                    printf("leaf entries are out of order\n");
+                    return -1;
+                }
+            }
+        }
+        return leaf->count;
+    }
+
+    const Inner *inner = static_cast<const Inner*>(n);
+    if (inner->level != level) {
+        printf("inner node at level %d, expected %d\n", inner->level, level);
+        return -1;
+    }
+    if (inner->count < (inner->parent == NULL ? 2 : INNER_SLOTS / 2)) {
+        printf("inner node with %d children\n", inner->count);
+        return -1;
+    }
+    int64_t ct = 0;
+    for (int i = 0; i < inner->count; i++) {
+        if (inner->children[i]->parent != inner) {
+            printf("child %d has the wrong parent\n", i);
+            return -1;
+        }
+        if (i > 0 && i < inner->count - 1 && m_comper(inner->keys[i - 1], inner->keys[i]) > 0) {
+            printf("separators are out of order\n");
+            return -1;
+        }
+        const Key *childLow = i == 0 ? low : &inner->keys[i - 1];
+        const Key *childHigh = i == inner->count - 1 ? high : &inner->keys[i];
+        int64_t sub = verify(inner->children[i], level - 1, childLow, childHigh);
+        if (sub < 0) {
+            return -1;
+        }
+        if (hasRank && sub != inner->subct[i]) {
+            printf("node counter is not correct, expected %ld but get %ld\n", (long)sub, (long)inner->subct[i]);
+            return -1;
+        }
+        ct += sub;
+    }
+    return ct;
+}
+
+} // namespace voltdb
+
+#endif // COMPACTINGBTREEMAP_H_
@@ -128,6 +128,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
 
         private static final String ACCEPTOR = "acceptor";
         private static final String NETWORK_THREADS = "networkThreads";
+        private static final String NETWORK_THREADS_AUTO = "auto";
+        private static final String NETWORK_REBALANCE = "networkRebalance";
         private static final String BACKWARDS_TIME_FORGIVENESS_WINDOW = "backwardstimeforgivenesswindow";
         private static final String DEAD_HOST_TIMEOUT = "deadhosttimeout";
         private static final String INTERNAL_PORT = "internalport";
@@ -145,6 +147,12 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         public long backwardsTimeForgivenessWindow = 1000 * 60 * 60 * 24 * 7;
         public VoltMessageFactory factory = new VoltMessageFactory();
         public int networkThreads =  Math.max(2, CoreUtils.availableProcessors() / 4);
+        /**
+         * When true there is one network thread per core and busy connections are
+         * periodically moved from the most loaded network thread to the least loaded one.
+         * Enabled with -DnetworkThreads=auto
+         */
+        public boolean networkRebalance = false;
         public Queue<String> coreBindIds;
         public JoinAcceptor acceptor = null;
         public String group = AbstractTopology.PLACEMENT_GROUP_DEFAULT;
@@ -213,6 +221,13 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         private void initNetworkThreads() {
             try {
                 networkLog.info("Default network thread count: " + this.networkThreads);
+                if (NETWORK_THREADS_AUTO.equalsIgnoreCase(System.getProperty(NETWORK_THREADS))) {
+                    this.networkThreads = Math.max(2, CoreUtils.availableProcessors());
+                    this.networkRebalance = true;
+                    networkLog.info("Network thread count sized to available cores with connection rebalancing: "
+                            + this.networkThreads);
+                    return;
+                }
                 Integer networkThreadConfig = Integer.getInteger(NETWORK_THREADS);
                 if ( networkThreadConfig != null ) {
                     this.networkThreads = networkThreadConfig;
@@ -237,6 +252,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 js.keySymbolValuePair(DEAD_HOST_TIMEOUT, deadHostTimeout);
                 js.keySymbolValuePair(BACKWARDS_TIME_FORGIVENESS_WINDOW, backwardsTimeForgivenessWindow);
                 js.keySymbolValuePair(NETWORK_THREADS, networkThreads);
+                js.keySymbolValuePair(NETWORK_REBALANCE, networkRebalance);
                 js.key(ACCEPTOR).value(acceptor);
                 js.keySymbolValuePair(LOCAL_SITES_COUNT, localSitesCount);
                 js.endObject();
@@ -410,6 +426,9 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         m_config = config;
         m_hostWatcher = hostWatcher;
         m_network = new VoltNetworkPool(m_config.networkThreads, 0, m_config.coreBindIds, "Server");
+        if (m_config.networkRebalance) {
+            m_network.enableRebalancing();
+        }
         m_acceptor = config.acceptor;
         //This ref is updated after the mesh decision is made.
         m_paused.set(m_config.startPause);
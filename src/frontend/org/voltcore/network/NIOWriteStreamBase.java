@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
@@ -39,6 +40,22 @@ import org.voltcore.utils.RateLimitedLogger;
 public abstract class NIOWriteStreamBase {
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
+    /**
+     * Messages at least this large (e.g. multi-megabyte query results) are serialized
+     * straight into a dedicated direct buffer that is queued as is and discarded once it
+     * has been written to the socket, instead of being staged in a heap buffer and copied
+     * piecewise into the network buffers.
+     */
+    static final int DIRECT_SERIALIZATION_THRESHOLD =
+            Integer.getInteger("NETWORK_DIRECT_SERIALIZATION_THRESHOLD", 1024 * 32);
+
+    /**
+     * Dedicated buffers up to this size come from the shared DBBPool and go back to it.
+     * The pool never trims, so larger ones are allocated unpooled and freed on discard.
+     */
+    static final int MAX_POOLED_DIRECT_SERIALIZATION_SIZE =
+            Integer.getInteger("NETWORK_MAX_POOLED_DIRECT_SERIALIZATION_SIZE", 1024 * 1024);
+
     protected boolean m_isShutdown = false;
 
     protected BBContainer m_currentWriteBuffer = null;
@@ -60,6 +77,10 @@ public abstract class NIOWriteStreamBase {
     private long m_lastBytesWritten = 0;
     private long m_lastMessagesWritten = 0;
 
+    long getBytesWritten() {
+        return m_bytesWritten;
+    }
+
     long[] getBytesAndMessagesWritten(boolean interval) {
         if (interval) {
             final long bytesWrittenThisTime = m_bytesWritten - m_lastBytesWritten;
@@ -107,6 +128,27 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (serializedSize >= DIRECT_SERIALIZATION_THRESHOLD) {
+                // Large message, serialize once into a dedicated direct buffer.
+                // It is left unflipped like the network buffers and goes back to the
+                // pool, or is freed, when drainTo discards it.
+                final BBContainer largeCont = serializedSize <= MAX_POOLED_DIRECT_SERIALIZATION_SIZE ?
+                        DBBPool.allocateDirectAndPool(serializedSize) : DBBPool.allocateDirect(serializedSize);
+                final ByteBuffer largeBuf = largeCont.b();
+                final ByteBuffer slice = largeBuf.slice();
+                try {
+                    ds.serialize(slice);
+                } catch (IOException | RuntimeException e) {
+                    largeCont.discard();
+                    throw e;
+                }
+                checkSloppySerialization(slice, ds);
+                largeBuf.position(serializedSize);
+                bytesQueued += serializedSize;
+                m_queuedBuffers.offer(largeCont);
+                continue;
+            }
+
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
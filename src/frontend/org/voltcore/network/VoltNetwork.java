@@ -107,6 +107,30 @@ class VoltNetwork implements Runnable, IOStatsIntf
     final NetworkDBBPool m_pool = new NetworkDBBPool();
     private final String m_coreBindId;
     final String networkThreadName;
+    private final int m_networkId;
+
+    /*
+     * Selector loop statistics, only touched by the network thread. Loop latency is the time
+     * spent running callbacks and tasks after select() returns, readiness is the number
+     * of keys select() reported ready.
+     */
+    private long m_selectLoops = 0;
+    private long m_readyKeys = 0;
+    private long m_loopNanos = 0;
+    private long m_maxLoopNanos = 0;
+    private long m_lastSelectLoops = 0;
+    private long m_lastReadyKeys = 0;
+    private long m_lastLoopNanos = 0;
+
+    // Bytes moved by the ports of this network, only written by the network thread
+    private volatile long m_totalBytesRead = 0;
+    private volatile long m_totalBytesWritten = 0;
+
+    /**
+     * Row keys for per selector rows in the IO stats map. Connection ids are positive and
+     * the global row is -1, so selectors count down from -2.
+     */
+    static final long SELECTOR_STATS_KEY_BASE = -2L;
 
     private final NinjaKeySet m_ninjaSelectedKeys;
 
@@ -127,6 +151,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         networkThreadName = new String("Volt " + networkName + " Network - " + networkId);
         m_thread.setDaemon(true);
         m_coreBindId = coreBindId;
+        m_networkId = networkId;
         try {
             m_selector = Selector.open();
         } catch (IOException ex) {
@@ -140,6 +165,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         m_thread = null;
         m_selector = s;
         m_coreBindId = null;
+        m_networkId = 0;
         networkThreadName = new String("Test Selector Thread");
         m_ninjaSelectedKeys = NinjaKeySet.instrumentSelector(m_selector);
     }
@@ -314,6 +340,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         LatencyWatchdog.pet();
 
                         final int readyKeys = m_selector.select();
+                        final long loopStart = System.nanoTime();
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -340,6 +367,14 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         while ((task = m_tasks.poll()) != null) {
                             task.run();
                         }
+
+                        final long loopNanos = System.nanoTime() - loopStart;
+                        m_selectLoops++;
+                        m_readyKeys += readyKeys;
+                        m_loopNanos += loopNanos;
+                        if (loopNanos > m_maxLoopNanos) {
+                            m_maxLoopNanos = loopNanos;
+                        }
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -382,6 +417,10 @@ class VoltNetwork implements Runnable, IOStatsIntf
     }
 
     void installInterests(VoltPort port) {
+        if (port.m_network != this) {
+            // Stale request queued before the port migrated to another network
+            return;
+        }
         try {
             if (port.isRunning()) {
                 assert(false) : "Shouldn't be running since it is all single threaded now?";
@@ -415,10 +454,21 @@ class VoltNetwork implements Runnable, IOStatsIntf
     }
 
     private void callPort(final VoltPort port) {
+        if (port.m_network != this) {
+            // Stale request queued before the port migrated to another network
+            return;
+        }
         try {
             port.lockForHandlingWork();
             port.getKey().interestOps(0);
-            port.run();
+            final long readBefore = port.readStream().getBytesRead(false);
+            final long writtenBefore = port.writeStream().getBytesWritten();
+            try {
+                port.run();
+            } finally {
+                m_totalBytesRead += port.readStream().getBytesRead(false) - readBefore;
+                m_totalBytesWritten += port.writeStream().getBytesWritten() - writtenBefore;
+            }
         } catch (CancelledKeyException e) {
             port.m_running = false;
             // no need to do anything here until
@@ -498,6 +548,20 @@ class VoltNetwork implements Runnable, IOStatsIntf
         m_ninjaSelectedKeys.clear();
     }
 
+    /**
+     * May be called from any thread
+     */
+    long getTotalBytesRead() {
+        return m_totalBytesRead;
+    }
+
+    /**
+     * May be called from any thread
+     */
+    long getTotalBytesWritten() {
+        return m_totalBytesWritten;
+    }
+
     private Map<Long, Pair<String, long[]>> getIOStatsImpl(boolean interval) {
         final HashMap<Long, Pair<String, long[]>> retval =
                 new HashMap<Long, Pair<String, long[]>>();
@@ -532,9 +596,108 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                 totalMessagesRead,
                                 totalWritten,
                                 totalMessagesWritten }));
+
+        final long selectLoops = m_selectLoops - (interval ? m_lastSelectLoops : 0);
+        final long readyKeys = m_readyKeys - (interval ? m_lastReadyKeys : 0);
+        final long loopNanos = m_loopNanos - (interval ? m_lastLoopNanos : 0);
+        final long maxLoopNanos = m_maxLoopNanos;
+        if (interval) {
+            m_lastSelectLoops = m_selectLoops;
+            m_lastReadyKeys = m_readyKeys;
+            m_lastLoopNanos = m_loopNanos;
+            m_maxLoopNanos = 0;
+        }
+        retval.put(
+                SELECTOR_STATS_KEY_BASE - m_networkId,
+                Pair.of(
+                        networkThreadName,
+                        new long[] {
+                                totalRead,
+                                totalMessagesRead,
+                                totalWritten,
+                                totalMessagesWritten,
+                                selectLoops,
+                                readyKeys,
+                                selectLoops == 0 ? 0 : loopNanos / selectLoops,
+                                maxLoopNanos }));
         return retval;
     }
 
+    /**
+     * Sample the number of bytes each port has moved since the previous sample. This reads
+     * the same counters as the IO stats but keeps its own baseline so that interval
+     * statistics are not disturbed.
+     */
+    Future<Map<VoltPort, Long>> sampleLoad() {
+        FutureTask<Map<VoltPort, Long>> ft = new FutureTask<Map<VoltPort, Long>>(new Callable<Map<VoltPort, Long>>() {
+            @Override
+            public Map<VoltPort, Long> call() throws Exception {
+                final HashMap<VoltPort, Long> retval = new HashMap<VoltPort, Long>();
+                for (VoltPort p : m_ports) {
+                    retval.put(p, p.sampleLoad());
+                }
+                return retval;
+            }
+        });
+        queueTask(ft);
+        return ft;
+    }
+
+    /**
+     * Hand a port owned by this network over to {@code target}. The port is detached from
+     * this selector on this network's thread and registered with the target's selector on the
+     * target's thread. Ports that are running, dying or doing TLS are left where they are.
+     */
+    void migratePort(final VoltPort port, final VoltNetwork target) {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                if (!m_ports.contains(port) || port.isDead() || port instanceof TLSVoltPort) {
+                    return;
+                }
+                synchronized (port.m_lock) {
+                    final SelectionKey key = port.getKey();
+                    if (port.isRunning() || key == null || !key.isValid()) {
+                        return;
+                    }
+                    key.attach(null);
+                    key.cancel();
+                    m_ports.remove(port);
+                    m_numPorts.decrementAndGet();
+                    // Queue the adoption before the port points at the target, interest
+                    // changes made after the switch are then guaranteed to run after it
+                    target.adoptPort(port);
+                    port.m_network = target;
+                    port.m_pool = target.m_pool;
+                }
+            }
+        });
+    }
+
+    private void adoptPort(final VoltPort port) {
+        m_numPorts.incrementAndGet();
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                final SelectionKey key;
+                try {
+                    key = port.m_channel.register(m_selector, 0, port);
+                } catch (IOException e) {
+                    m_numPorts.decrementAndGet();
+                    networkLog.debug("Unable to move port " + port + " to " + networkThreadName, e);
+                    port.die();
+                    port.unregistered();
+                    return;
+                }
+                m_ports.add(port);
+                synchronized (port.m_lock) {
+                    port.m_selectionKey = key;
+                    key.interestOps(port.interestOps());
+                }
+            }
+        });
+    }
+
     @Override
     public Future<Map<Long, Pair<String, long[]>>> getIOStats(final boolean interval) {
         Callable<Map<Long, Pair<String, long[]>>> task = new Callable<Map<Long, Pair<String, long[]>>>() {
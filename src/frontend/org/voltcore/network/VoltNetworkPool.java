@@ -30,6 +30,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +38,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLEngine;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.Pair;
 
 public class VoltNetworkPool {
@@ -47,9 +49,17 @@ public class VoltNetworkPool {
 
     private static final VoltLogger m_logger = new VoltLogger(VoltNetworkPool.class.getName());
 
+    /** How often port load is sampled when rebalancing is enabled */
+    private static final long REBALANCE_INTERVAL_MS = Long.getLong("NETWORK_REBALANCE_INTERVAL_MS", 5000);
+    /** A network must move at least this many bytes in an interval before its ports are moved */
+    private static final long REBALANCE_MIN_BYTES = Long.getLong("NETWORK_REBALANCE_MIN_BYTES", 16 * 1024 * 1024);
+    /** The busiest network must move this many times the bytes of the idlest before a port is moved */
+    private static final double REBALANCE_LOAD_RATIO = 1.5;
+
     private final VoltNetwork m_networks[];
     private final AtomicLong m_nextNetwork = new AtomicLong();
     public final String m_poolName;
+    private ScheduledThreadPoolExecutor m_rebalancer = null;
 
     public VoltNetworkPool() {
         this(1, 1, null, "");
@@ -82,7 +92,103 @@ public class VoltNetworkPool {
         }
     }
 
+    /**
+     * Periodically move busy ports from the most loaded network to the least loaded one.
+     * Load is the number of bytes each port read and wrote since the previous sample.
+     * At most one port is moved per interval so that a burst does not reshuffle every
+     * connection.
+     */
+    public synchronized void enableRebalancing() {
+        if (m_networks.length < 2 || m_rebalancer != null) {
+            return;
+        }
+        m_rebalancer = CoreUtils.getScheduledThreadPoolExecutor(
+                m_poolName + " Network Rebalancer", 1, CoreUtils.SMALL_STACK_SIZE);
+        m_rebalancer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebalance(REBALANCE_MIN_BYTES);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    m_logger.warn("Unable to rebalance network ports, probably harmless", e);
+                }
+            }
+        }, REBALANCE_INTERVAL_MS, REBALANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void rebalance(long minBytes) throws ExecutionException, InterruptedException {
+        List<Future<Map<VoltPort, Long>>> sampleTasks = new ArrayList<>(m_networks.length);
+        for (VoltNetwork vn : m_networks) {
+            sampleTasks.add(vn.sampleLoad());
+        }
+
+        List<Map<VoltPort, Long>> samples = new ArrayList<>(m_networks.length);
+        long loads[] = new long[m_networks.length];
+        for (int ii = 0; ii < m_networks.length; ii++) {
+            Map<VoltPort, Long> sample;
+            try {
+                sample = sampleTasks.get(ii).get(500, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // A network thread that can't answer within the timeout is busy, try again next interval
+                return;
+            }
+            for (Long portLoad : sample.values()) {
+                loads[ii] += portLoad;
+            }
+            samples.add(sample);
+        }
+
+        int busiest = 0;
+        int idlest = 0;
+        for (int ii = 1; ii < m_networks.length; ii++) {
+            if (loads[ii] > loads[busiest]) {
+                busiest = ii;
+            }
+            if (loads[ii] < loads[idlest]) {
+                idlest = ii;
+            }
+        }
+        if (loads[busiest] < minBytes
+                || loads[busiest] < loads[idlest] * REBALANCE_LOAD_RATIO
+                || samples.get(busiest).size() < 2) {
+            return;
+        }
+
+        // Pick the port whose load is closest to half of the gap, skipping ports so busy
+        // that moving them would only move the hot spot to the other network
+        final long gap = loads[busiest] - loads[idlest];
+        VoltPort candidate = null;
+        long bestDistance = Long.MAX_VALUE;
+        for (Map.Entry<VoltPort, Long> e : samples.get(busiest).entrySet()) {
+            final long portLoad = e.getValue();
+            if (portLoad == 0 || portLoad >= gap) {
+                continue;
+            }
+            final long distance = Math.abs(portLoad - gap / 2);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                candidate = e.getKey();
+            }
+        }
+        if (candidate != null) {
+            if (m_logger.isDebugEnabled()) {
+                m_logger.debug("Moving " + candidate + " from " + m_networks[busiest].networkThreadName +
+                        " (" + loads[busiest] + " bytes) to " + m_networks[idlest].networkThreadName +
+                        " (" + loads[idlest] + " bytes)");
+            }
+            m_networks[busiest].migratePort(candidate, m_networks[idlest]);
+        }
+    }
+
     public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            if (m_rebalancer != null) {
+                m_rebalancer.shutdownNow();
+                m_rebalancer = null;
+            }
+        }
         for (VoltNetwork vn : m_networks) {
             vn.shutdown();
         }
@@ -115,6 +221,30 @@ public class VoltNetworkPool {
         return vn.registerChannel(channel, handler, interestOps, dns, cipherService, sslEngine);
     }
 
+    /**
+     * @return bytes read by the connections of this pool since it started, without
+     *         going through the network threads
+     */
+    public long getTotalBytesRead() {
+        long total = 0;
+        for (VoltNetwork vn : m_networks) {
+            total += vn.getTotalBytesRead();
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes written by the connections of this pool since it started, without
+     *         going through the network threads
+     */
+    public long getTotalBytesWritten() {
+        long total = 0;
+        for (VoltNetwork vn : m_networks) {
+            total += vn.getTotalBytesWritten();
+        }
+        return total;
+    }
+
     public List<Long> getThreadIds() {
         ArrayList<Long> ids = new ArrayList<Long>();
         for (VoltNetwork vn : m_networks) {
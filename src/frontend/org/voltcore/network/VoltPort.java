@@ -31,14 +31,14 @@ import org.voltcore.logging.VoltLogger;
 /** Encapsulates a socket registration for a VoltNetwork */
 public class VoltPort implements Connection
 {
-    /** The network this port participates in */
-    protected final VoltNetwork m_network;
+    /** The network this port participates in, changes if the port is rebalanced */
+    protected volatile VoltNetwork m_network;
 
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
     public static final int MAX_MESSAGE_LENGTH = 52428800;
 
-    protected final NetworkDBBPool m_pool;
+    protected volatile NetworkDBBPool m_pool;
 
     /** The currently selected operations on this port. */
     private int m_readyOps = 0;
@@ -75,6 +75,7 @@ public class VoltPort implements Connection
     protected VoltNIOWriteStream m_writeStream;
     protected long m_messagesRead = 0;
     private long m_lastMessagesRead = 0;
+    private long m_lastLoadSample = 0;
 
     /*
      * This variable will be changed to the actual hostname some time later. It
@@ -420,6 +421,16 @@ public class VoltPort implements Connection
         }
     }
 
+    /**
+     * @return bytes read and written since the previous call, used to rebalance ports
+     */
+    long sampleLoad() {
+        final long total = m_readStream.getBytesRead(false) + m_writeStream.getBytesAndMessagesWritten(false)[0];
+        final long load = total - m_lastLoadSample;
+        m_lastLoadSample = total;
+        return load;
+    }
+
     @Override
     public String getHostnameOrIP() {
         if (m_remoteHostname != null) {
@@ -763,8 +763,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             ClientInputHandler handler = new ClientInputHandler(username, m_isAdmin);
 
             byte buildString[] = VoltDB.instance().getBuildString().getBytes(Charsets.UTF_8);
-            responseBuffer = ByteBuffer.allocate(34 + buildString.length);
-            responseBuffer.putInt(30 + buildString.length);//message length
+            responseBuffer = ByteBuffer.allocate(35 + buildString.length);
+            responseBuffer.putInt(31 + buildString.length);//message length
             responseBuffer.put((byte)0);//version
 
             //Send positive response
@@ -774,7 +774,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             responseBuffer.putLong(VoltDB.instance().getHostMessenger().getInstanceId().getTimestamp());
             responseBuffer.putInt(VoltDB.instance().getHostMessenger().getInstanceId().getCoord());
             responseBuffer.putInt(buildString.length);
-            responseBuffer.put(buildString).flip();
+            responseBuffer.put(buildString);
+            responseBuffer.put(Constants.FEATURE_INVOCATION_BATCH).flip();
             messagingChannel.writeMessage(responseBuffer);
             return handler;
         }
@@ -821,6 +822,19 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             try {
+                if (message.hasRemaining() && message.get(message.position()) == Constants.INVOCATION_BATCH) {
+                    final List<ClientResponseImpl> errors = handleBatchRead(message, this, c);
+                    if (errors == null) {
+                        networkLog.warn("Closing connection to " + c +
+                                " because it sent a malformed batch of procedure invocations");
+                        c.unregister();
+                        return;
+                    }
+                    if (!errors.isEmpty()) {
+                        c.writeStream().enqueue(ClientResponseImpl.flattenToBuffer(errors));
+                    }
+                    return;
+                }
                 final ClientResponseImpl error = handleRead(message, this, c);
                 if (error != null) {
                     ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
@@ -1519,6 +1533,66 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * * return True if an error was generated and needs to be returned to the client
      */
     final ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) {
+        return handleRead(buf, handler, ccxn, m_catalogContext.get().authSystem.getUser(handler.getUserName()));
+    }
+
+    /**
+     * Dispatch each invocation of a message from a client coalescing its requests.
+     * The user is looked up once for all of them. The invocation lengths are checked
+     * before any of them is dispatched.
+     *
+     * @return the error responses to return to the client, null if the message is malformed
+     */
+    final List<ClientResponseImpl> handleBatchRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) {
+        buf.get(); // Constants.INVOCATION_BATCH
+        if (!isWellFormedBatch(buf)) {
+            return null;
+        }
+        final AuthUser user = m_catalogContext.get().authSystem.getUser(handler.getUserName());
+        final List<ClientResponseImpl> errors = new ArrayList<>();
+        final int count = buf.getInt();
+        for (int i = 0; i < count; ++i) {
+            final int length = buf.getInt();
+            final ByteBuffer invocation = buf.slice();
+            invocation.limit(length);
+            buf.position(buf.position() + length);
+            final ClientResponseImpl error = handleRead(invocation, handler, ccxn, user);
+            if (error != null) {
+                errors.add(error);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return true if the invocation count and lengths following the batch marker
+     * exactly cover the rest of the message
+     */
+    private static boolean isWellFormedBatch(ByteBuffer buf) {
+        if (buf.remaining() < 4) {
+            return false;
+        }
+        int position = buf.position();
+        final int count = buf.getInt(position);
+        position += 4;
+        if (count < 1) {
+            return false;
+        }
+        for (int i = 0; i < count; ++i) {
+            if (buf.limit() - position < 4) {
+                return false;
+            }
+            final int length = buf.getInt(position);
+            position += 4;
+            if (length < 1 || length > buf.limit() - position) {
+                return false;
+            }
+            position += length;
+        }
+        return position == buf.limit();
+    }
+
+    private ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn, AuthUser user) {
         StoredProcedureInvocation task = new StoredProcedureInvocation();
         try {
             task.initFromBuffer(buf);
@@ -1527,7 +1601,6 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     ClientResponseImpl.UNEXPECTED_FAILURE,
                     new VoltTable[0], ex.getMessage(), ccxn.connectionId());
         }
-        AuthUser user =  m_catalogContext.get().authSystem.getUser(handler.getUserName());
         if (user == null) {
             String errorMessage = "User " + handler.getUserName() + " has been removed from the system via a catalog update";
             authLog.info(errorMessage);
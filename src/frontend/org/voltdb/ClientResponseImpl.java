@@ -19,6 +19,7 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.json_voltpatches.JSONException;
@@ -290,6 +291,26 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return buf;
     }
 
+    /**
+     * Serialize responses back to back, each with its length prefix, so that they
+     * go out in one write and clients read them as separate messages.
+     */
+    public static ByteBuffer flattenToBuffer(List<ClientResponseImpl> responses) {
+        final int[] sizes = new int[responses.size()];
+        int size = 0;
+        for (int i = 0; i < sizes.length; ++i) {
+            sizes[i] = responses.get(i).getSerializedSize();
+            size += 4 + sizes[i];
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        for (int i = 0; i < sizes.length; ++i) {
+            buf.putInt(sizes[i]);
+            responses.get(i).flattenToBuffer(buf);
+        }
+        buf.flip();
+        return buf;
+    }
+
     @Override
     public int getClusterRoundtrip() {
         return clusterRoundTripTime;
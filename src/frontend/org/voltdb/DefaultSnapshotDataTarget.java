@@ -52,7 +52,6 @@ import org.voltdb.utils.PosixAdvise;
 import com.google_voltpatches.common.util.concurrent.Callables;
 import com.google_voltpatches.common.util.concurrent.Futures;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
-import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
 import com.google_voltpatches.common.util.concurrent.UnsynchronizedRateLimiter;
@@ -105,7 +104,10 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     private final Condition m_noMoreOutstandingWriteTasksCondition =
             m_outstandingWriteTasksLock.newCondition();
 
-    private static final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write service ");
+    private final SnapshotWriteScheduler.WriteQueue<Chunk> m_writeQueue;
+    private volatile long m_firstWriteTime = 0;
+    private volatile long m_lastWriteTime = 0;
+
     static final ListeningScheduledExecutorService m_syncService = MoreExecutors.listeningDecorator(
             Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Snapshot sync service")));
 
@@ -135,7 +137,10 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     public static void enforceSnapshotRateLimit(int permits) {
         if (USE_SNAPSHOT_RATELIMIT) {
-            SNAPSHOT_RATELIMITER.acquire(permits);
+            // The limiter is shared by all of the writer threads
+            synchronized (SNAPSHOT_RATELIMITER) {
+                SNAPSHOT_RATELIMITER.acquire(permits);
+            }
         }
     }
 
@@ -185,6 +190,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         m_tableName = tableName;
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
+        m_writeQueue = SnapshotWriteScheduler.newQueue(file, m_channel, new ChunkWriter());
         m_needsFinalClose = !isReplicated;
         final FastSerializer fs = new FastSerializer();
         fs.writeInt(0);//CRC
@@ -399,6 +405,123 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         return 0;
     }
 
+    /*
+     * A block of tuple data, or the header, on its way to the file
+     */
+    private static final class Chunk {
+        final BBContainer m_tupleData;
+        // Compressed payload with room for the length prefix, null if the data is written as is
+        final Future<BBContainer> m_compression;
+        BBContainer m_payload = null;
+        int m_permits = 0;
+
+        Chunk(BBContainer tupleData, Future<BBContainer> compression) {
+            m_tupleData = tupleData;
+            m_compression = compression;
+        }
+    }
+
+    private final class ChunkWriter implements SnapshotWriteScheduler.ChunkWriter<Chunk> {
+        @Override
+        public boolean isReady(Chunk chunk) {
+            return chunk.m_compression == null || chunk.m_compression.isDone();
+        }
+
+        @Override
+        public ByteBuffer prepare(Chunk chunk) throws Exception {
+            if (m_acceptOneWrite) {
+                m_acceptOneWrite = false;
+            } else {
+                if (m_simulateBlockedWrite != null) {
+                    m_simulateBlockedWrite.await();
+                }
+                if (m_simulateFullDiskWritingChunk) {
+                    throw new IOException("Disk full");
+                }
+            }
+            if (m_firstWriteTime == 0) {
+                m_firstWriteTime = System.currentTimeMillis();
+            }
+
+            final ByteBuffer tupleData = chunk.m_tupleData.b();
+            if (chunk.m_compression == null) {
+                chunk.m_permits = tupleData.remaining();
+                m_bytesAllowedBeforeSync.acquire(chunk.m_permits);
+                return tupleData;
+            }
+
+            chunk.m_payload = chunk.m_compression.get();
+            final ByteBuffer payloadBuffer = chunk.m_payload.b();
+            payloadBuffer.position(0);
+
+            ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
+            chunk.m_permits = payloadBuffer.remaining();
+            m_bytesAllowedBeforeSync.acquire(chunk.m_permits);
+            //Length prefix does not include 4 header items, just compressd payload
+            //that follows
+            lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
+            lengthPrefix.putInt(tupleData.getInt(0)); // partitionId
+
+            /*
+             * Checksum the header and put it in the payload buffer
+             */
+            PureJavaCrc32C crc = new PureJavaCrc32C();
+            crc.update(lengthPrefix.array(), 0, 8);
+            lengthPrefix.putInt((int)crc.getValue());
+            lengthPrefix.flip();
+            payloadBuffer.put(lengthPrefix);
+            payloadBuffer.position(0);
+
+            enforceSnapshotRateLimit(payloadBuffer.remaining());
+            return payloadBuffer;
+        }
+
+        @Override
+        public void completed(Chunk chunk, long bytesWritten, Throwable error) {
+            try {
+                if (error == null) {
+                    m_bytesWritten += bytesWritten;
+                    m_bytesWrittenSinceLastSync.addAndGet((int) bytesWritten);
+                    m_lastWriteTime = System.currentTimeMillis();
+                } else {
+                    if (chunk.m_permits > 0) {
+                        m_bytesAllowedBeforeSync.release(chunk.m_permits);
+                    }
+                    m_writeException = error instanceof IOException ? (IOException) error : new IOException(error);
+                    SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, error);
+                    m_writeFailed = true;
+                }
+            } finally {
+                try {
+                    discardPayload(chunk);
+                    chunk.m_tupleData.discard();
+                } finally {
+                    m_outstandingWriteTasksLock.lock();
+                    try {
+                        if (m_outstandingWriteTasks.decrementAndGet() == 0) {
+                            m_noMoreOutstandingWriteTasksCondition.signalAll();
+                        }
+                    } finally {
+                        m_outstandingWriteTasksLock.unlock();
+                    }
+                }
+            }
+        }
+
+        private void discardPayload(Chunk chunk) {
+            if (chunk.m_payload != null) {
+                chunk.m_payload.discard();
+            } else if (chunk.m_compression != null) {
+                //Make sure to consume the result of the compression
+                try {
+                    chunk.m_compression.get().discard();
+                } catch (Exception e) {
+                    SNAP_LOG.debug("Snapshot chunk compression failed", e);
+                }
+            }
+        }
+    }
+
     /*
      * Prepend length is basically synonymous with writing actual tuple data and not
      * the header.
@@ -447,98 +570,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             cont.b().position(12);
             compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
         }
-        final Future<BBContainer> compressionTaskFinal = compressionTask;
 
-        ListenableFuture<?> writeTask = m_es.submit(new Callable<Object>() {
-            @Override
-            public Object call() throws Exception {
-                int permitAcquired = 0;
-                try {
-                    if (m_acceptOneWrite) {
-                        m_acceptOneWrite = false;
-                    } else {
-                        if (m_simulateBlockedWrite != null) {
-                            m_simulateBlockedWrite.await();
-                        }
-                        if (m_simulateFullDiskWritingChunk) {
-                            //Make sure to consume the result of the compression
-                            compressionTaskFinal.get().discard();
-                            throw new IOException("Disk full");
-                        }
-                    }
-
-                    final ByteBuffer tupleData = tupleDataCont.b();
-                    int totalWritten = 0;
-                    if (prependLength) {
-                        BBContainer payloadContainer = compressionTaskFinal.get();
-                        try {
-                            final ByteBuffer payloadBuffer = payloadContainer.b();
-                            payloadBuffer.position(0);
-
-                            ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
-                            permitAcquired = payloadBuffer.remaining();
-                            m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                            //Length prefix does not include 4 header items, just compressd payload
-                            //that follows
-                            lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
-                            lengthPrefix.putInt(tupleData.getInt(0)); // partitionId
-
-                            /*
-                             * Checksum the header and put it in the payload buffer
-                             */
-                            PureJavaCrc32C crc = new PureJavaCrc32C();
-                            crc.update(lengthPrefix.array(), 0, 8);
-                            lengthPrefix.putInt((int)crc.getValue());
-                            lengthPrefix.flip();
-                            payloadBuffer.put(lengthPrefix);
-                            payloadBuffer.position(0);
-
-                            enforceSnapshotRateLimit(payloadBuffer.remaining());
-
-                            /*
-                             * Write payload to file
-                             */
-                            while (payloadBuffer.hasRemaining()) {
-                                totalWritten += m_channel.write(payloadBuffer);
-                            }
-                        } finally {
-                            payloadContainer.discard();
-                        }
-                    } else {
-                        permitAcquired = tupleData.remaining();
-                        m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                        while (tupleData.hasRemaining()) {
-                            totalWritten += m_channel.write(tupleData);
-                        }
-                    }
-                    m_bytesWritten += totalWritten;
-                    m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
-                } catch (IOException e) {
-                    if (permitAcquired > 0) {
-                        m_bytesAllowedBeforeSync.release(permitAcquired);
-                    }
-                    m_writeException = e;
-                    SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, e);
-                    m_writeFailed = true;
-                    throw e;
-                } finally {
-                    try {
-                        tupleDataCont.discard();
-                    } finally {
-                        m_outstandingWriteTasksLock.lock();
-                        try {
-                            if (m_outstandingWriteTasks.decrementAndGet() == 0) {
-                                m_noMoreOutstandingWriteTasksCondition.signalAll();
-                            }
-                        } finally {
-                            m_outstandingWriteTasksLock.unlock();
-                        }
-                    }
-                }
-                return null;
-            }
-        });
-        return writeTask;
+        return m_writeQueue.submit(new Chunk(tupleDataCont, compressionTask));
     }
 
     @Override
@@ -551,6 +584,16 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         return m_bytesWritten;
     }
 
+    @Override
+    public String getDeviceName() {
+        return m_writeQueue.device();
+    }
+
+    @Override
+    public long getWriteDurationMillis() {
+        return m_firstWriteTime == 0 ? 0 : Math.max(1, m_lastWriteTime - m_firstWriteTime);
+    }
+
     @Override
     public void setOnCloseHandler(Runnable onClose) {
         m_onCloseHandler = onClose;
@@ -582,15 +625,12 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     }
 
     public static void setRate(final Integer megabytesPerSecond) {
-        m_es.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (megabytesPerSecond == null) {
-                    SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
-                } else {
-                    SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
-                }
+        synchronized (SNAPSHOT_RATELIMITER) {
+            if (megabytesPerSecond == null) {
+                SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
+            } else {
+                SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
             }
-        });
+        }
     }
 }
@@ -18,6 +18,7 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.Timer;
@@ -41,6 +42,7 @@ import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
 import org.ietf.jgss.Oid;
+import org.json_voltpatches.JSONException;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.EstTime;
@@ -138,17 +140,21 @@ public class HTTPClientInterface {
                 return;
             }
             ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
-            String msg = null;
-            if (m_api_version == 1)
-                msg = rimpl.toJSONString();
-            else if (m_api_version == 2)
-                msg = ClientResponseToJsonApiV2.toJSONStringV2(rimpl);
+            if (m_api_version == 2) {
+                // api/v2 responses are written straight from the result tables by the resumed request
+                m_continuation.setAttribute("response", rimpl);
+                if (m_jsonp != null) {
+                    m_continuation.setAttribute(JSONP, m_jsonp);
+                }
+            } else {
+                String msg = rimpl.toJSONString();
 
-            // handle jsonp pattern
-            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
-            msg = asJsonp(m_jsonp, msg);
+                // handle jsonp pattern
+                // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
+                msg = asJsonp(m_jsonp, msg);
 
-            m_continuation.setAttribute("result", msg);
+                m_continuation.setAttribute("result", msg);
+            }
             try {
                 m_continuation.resume();
             } catch (IllegalStateException e) {
@@ -191,6 +197,23 @@ public class HTTPClientInterface {
         return sb.append(jsonp).append("( ").append(msg).append(" )").toString();
     }
 
+    /**
+     * Write an api/v2 response to the servlet writer while it is being generated, so
+     * that the heap holds no more of it than the output buffer of the response.
+     */
+    final static void writeJsonV2(String jsonp, ClientResponse clientResponse, Writer out)
+            throws IOException, JSONException {
+        if (jsonp != null) {
+            out.write(jsonp);
+            out.write("( ");
+        }
+        ClientResponseToJsonApiV2.writeJSONV2(clientResponse, out);
+        if (jsonp != null) {
+            out.write(" )");
+        }
+        out.flush();
+    }
+
     private final static void simpleJsonResponse(String jsonp, String message, HttpServletResponse rsp, int code) {
         ClientResponseImpl rimpl = new ClientResponseImpl(
                 ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0], message);
@@ -243,6 +266,19 @@ public class HTTPClientInterface {
         }
 
         final Continuation continuation = ContinuationSupport.getContinuation(request);
+        ClientResponse clientResponse = (ClientResponse)continuation.getAttribute("response");
+        if (clientResponse != null) {
+            try {
+                response.setStatus(HttpServletResponse.SC_OK);
+                writeJsonV2((String)continuation.getAttribute(JSONP), clientResponse, response.getWriter());
+                request.setHandled(true);
+            } catch (IllegalStateException | IOException | JSONException e){
+               // Thrown when we shut down the server via the JSON/HTTP (web studio) API
+               // or when the client goes away while the response is being written.
+                m_log.warn("JSON failed to send response: ", e);
+            }
+            return;
+        }
         String result = (String)continuation.getAttribute("result");
         if (result != null) {
             try {
@@ -69,7 +69,11 @@ public class IOStats extends StatsSource {
         columns.add(new ColumnInfo("MESSAGES_READ", VoltType.BIGINT));
         columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
-
+        // Only populated for the per network thread rows, null for connections
+        columns.add(new ColumnInfo("SELECT_LOOPS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("READY_KEYS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_LOOP_LATENCY", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_LOOP_LATENCY", VoltType.BIGINT));
     }
 
     @Override
@@ -83,6 +87,17 @@ public class IOStats extends StatsSource {
         rowValues[columnNameToIndex.get("MESSAGES_READ")] = counters[1];
         rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[2];
         rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[3];
+        if (counters.length > 4) {
+            rowValues[columnNameToIndex.get("SELECT_LOOPS")] = counters[4];
+            rowValues[columnNameToIndex.get("READY_KEYS")] = counters[5];
+            rowValues[columnNameToIndex.get("AVG_LOOP_LATENCY")] = counters[6];
+            rowValues[columnNameToIndex.get("MAX_LOOP_LATENCY")] = counters[7];
+        } else {
+            rowValues[columnNameToIndex.get("SELECT_LOOPS")] = null;
+            rowValues[columnNameToIndex.get("READY_KEYS")] = null;
+            rowValues[columnNameToIndex.get("AVG_LOOP_LATENCY")] = null;
+            rowValues[columnNameToIndex.get("MAX_LOOP_LATENCY")] = null;
+        }
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -665,7 +665,7 @@ public class ParameterConverter {
         }
         if (result instanceof Long) {
             VoltTable t = new VoltTable(new VoltTable.ColumnInfo("", VoltType.BIGINT));
-            t.addRow(result);
+            t.beginRow().putLong((Long) result).endRow();
             return new VoltTable[] { t };
         }
         throw new RuntimeException(String.format("Procedure %s unsupported procedure return type %s.",
@@ -96,10 +96,21 @@ public class PlannerStatsCollector extends StatsSource {
     long m_lastCacheMisses = 0;
 
     /**
-     * Time of last planning start
+     * Time of last planning start, for callers that plan on a single thread
      */
     Long m_currentStartTime = null;
 
+    /**
+     * Number of planning starts, used to pick which invocations are timed
+     */
+    long m_starts = 0;
+
+    /**
+     * Number of timed planning invocations
+     */
+    long m_timedInvocations = 0;
+    long m_lastTimedInvocations = 0;
+
     /**
      * Total amount of planning time
      */
@@ -131,6 +142,25 @@ public class PlannerStatsCollector extends StatsSource {
     long m_invocations = 0;
     long m_lastInvocations = 0;
 
+    /**
+     * Number of statements currently waiting for a free planner
+     */
+    long m_queueDepth = 0;
+
+    /**
+     * Count and total time of waits for a free planner
+     */
+    long m_queueWaits = 0;
+    long m_lastQueueWaits = 0;
+    long m_totalQueueWaitTime = 0;
+    long m_lastTotalQueueWaitTime = 0;
+
+    /**
+     * Longest wait for a free planner
+     */
+    long m_maxQueueWaitTime = 0;
+    long m_lastMaxQueueWaitTime = 0;
+
     /**
      * Calculate the invocation count based on the cache hit/miss counts.
      * @return  invocation count
@@ -148,11 +178,11 @@ public class PlannerStatsCollector extends StatsSource {
     }
 
     /**
-     * Calculate the sample count based on the invocation count and the collection frequency.
+     * Get the number of invocations whose planning time was recorded.
      * @return  sample count
      */
     long getSampleCount() {
-        return getInvocations() / m_collectionFrequency;
+        return m_timedInvocations;
     }
 
     /**
@@ -181,9 +211,40 @@ public class PlannerStatsCollector extends StatsSource {
      * Called before doing planning. Starts timer.
      */
     public void startStatsCollection() {
-        if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
+        m_currentStartTime = sampleStartTime();
+    }
+
+    /**
+     * Called before doing planning by callers that may plan concurrently.
+     * The result must be passed back to {@link #endStatsCollection(Long, long, long, CacheUse, long)}.
+     *
+     * @return  start time if this invocation is timed, otherwise null
+     */
+    public synchronized Long sampleStartTime() {
+        if (m_starts++ % m_collectionFrequency == 0) {
+            return System.nanoTime();
         }
+        return null;
+    }
+
+    /**
+     * Called when a statement starts waiting for a free planner.
+     */
+    public synchronized void plannerQueued() {
+        m_queueDepth++;
+    }
+
+    /**
+     * Called when a statement that was waiting gets a planner.
+     *
+     * @param waitNanos  time spent waiting
+     */
+    public synchronized void plannerDequeued(long waitNanos) {
+        m_queueDepth--;
+        m_queueWaits++;
+        m_totalQueueWaitTime += waitNanos;
+        m_maxQueueWaitTime = Math.max(waitNanos, m_maxQueueWaitTime);
+        m_lastMaxQueueWaitTime = Math.max(waitNanos, m_lastMaxQueueWaitTime);
     }
 
     /**
@@ -195,8 +256,24 @@ public class PlannerStatsCollector extends StatsSource {
      * @param partitionId  partition id
      */
     public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
+        Long startTime = m_currentStartTime;
+        m_currentStartTime = null;
+        endStatsCollection(startTime, cache1Size, cache2Size, cacheUse, partitionId);
+    }
+
+    /**
+     * Called after planning or failing to plan. Records timer and cache stats.
+     *
+     * @param startTime    value returned by {@link #sampleStartTime()}
+     * @param cache1Size   number of entries in level 1 cache
+     * @param cache2Size   number of entries in level 2 cache
+     * @param cacheUse     where the planned statement came from
+     * @param partitionId  partition id
+     */
+    public synchronized void endStatsCollection(Long startTime, long cache1Size, long cache2Size,
+                                                CacheUse cacheUse, long partitionId) {
+        if (startTime != null) {
+            long delta = System.nanoTime() - startTime;
             if (delta < 0) {
                 if (Math.abs(delta) > 1000000000) {
                     log.info("Planner statistics recorded a negative planning time larger than one second: " +
@@ -209,8 +286,8 @@ public class PlannerStatsCollector extends StatsSource {
                 m_maxPlanningTime = Math.max(delta, m_maxPlanningTime);
                 m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
                 m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
+                m_timedInvocations++;
             }
-            m_currentStartTime = null;
         }
 
         m_cache1Level = cache1Size;
@@ -242,7 +319,7 @@ public class PlannerStatsCollector extends StatsSource {
      * @param values Values of each column of the row of stats. Used as output.
      */
     @Override
-    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+    protected synchronized void updateStatsRow(Object rowKey, Object rowValues[]) {
         super.updateStatsRow(rowKey, rowValues);
 
         rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
@@ -255,6 +332,10 @@ public class PlannerStatsCollector extends StatsSource {
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
         long failureCount = m_failures;
+        long timedInvocations = m_timedInvocations;
+        long queueWaits = m_queueWaits;
+        long totalQueueWaitTime = m_totalQueueWaitTime;
+        long maxQueueWaitTime = m_maxQueueWaitTime;
 
         if (m_interval) {
             totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
@@ -284,6 +365,18 @@ public class PlannerStatsCollector extends StatsSource {
             m_lastFailures = m_failures;
 
             m_lastInvocations = m_invocations;
+
+            timedInvocations = m_timedInvocations - m_lastTimedInvocations;
+            m_lastTimedInvocations = m_timedInvocations;
+
+            queueWaits = m_queueWaits - m_lastQueueWaits;
+            m_lastQueueWaits = m_queueWaits;
+
+            totalQueueWaitTime = m_totalQueueWaitTime - m_lastTotalQueueWaitTime;
+            m_lastTotalQueueWaitTime = m_totalQueueWaitTime;
+
+            maxQueueWaitTime = m_lastMaxQueueWaitTime;
+            m_lastMaxQueueWaitTime = 0;
         }
 
         rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_SITE_ID)] = m_siteId;
@@ -295,13 +388,16 @@ public class PlannerStatsCollector extends StatsSource {
         rowValues[columnNameToIndex.get("CACHE_MISSES")] = cacheMisses;
         rowValues[columnNameToIndex.get("PLAN_TIME_MIN")] = minExecutionTime;
         rowValues[columnNameToIndex.get("PLAN_TIME_MAX")] = maxExecutionTime;
-        if (getSampleCount() != 0) {
+        if (timedInvocations != 0) {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] =
-                 (totalTimedExecutionTime / getSampleCount());
+                 (totalTimedExecutionTime / timedInvocations);
         } else {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("QUEUE_DEPTH")] = m_queueDepth;
+        rowValues[columnNameToIndex.get("QUEUE_WAIT_AVG")] = queueWaits != 0 ? totalQueueWaitTime / queueWaits : 0L;
+        rowValues[columnNameToIndex.get("QUEUE_WAIT_MAX")] = maxQueueWaitTime;
     }
 
     /**
@@ -322,6 +418,9 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_DEPTH",   VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUEUE_WAIT_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_WAIT_MAX", VoltType.BIGINT));
     }
 
     @Override
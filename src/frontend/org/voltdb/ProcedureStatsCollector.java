@@ -28,6 +28,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltdb.StatementStats.SingleCallStatsToken;
 import org.voltdb.StatementStats.StatsData;
 import org.voltdb.catalog.Procedure;
+import org.voltdb.metrics.MetricsRegistry;
 import org.voltdb.sysprocs.UpdateCore;
 
 /**
@@ -66,6 +67,11 @@ public class ProcedureStatsCollector extends SiteStatsSource {
     private final StatsData m_procStatsData;
     private final boolean m_isTransactional;
     private final boolean m_isUAC;
+    // Shared by all the sites of the host, null if the procedure has no name
+    private final MetricsRegistry.Counter m_invocationsMetric;
+    private final MetricsRegistry.Counter m_abortsMetric;
+    private final MetricsRegistry.Counter m_failuresMetric;
+    private final MetricsRegistry.Histogram m_executionTimeMetric;
 
     public ProcedureStatsCollector(long siteId,
                                    int partitionId,
@@ -107,6 +113,23 @@ public class ProcedureStatsCollector extends SiteStatsSource {
 
         // check if this proc is UpdateCore for 100% sampling rate
         m_isUAC = (m_procName != null) && (m_procName.startsWith(UpdateCore.class.getName()));
+
+        if (m_procName != null) {
+            MetricsRegistry metrics = MetricsRegistry.instance();
+            m_invocationsMetric = metrics.counter("voltdb_procedure_invocations",
+                    "Procedure invocations", "procedure", m_procName);
+            m_abortsMetric = metrics.counter("voltdb_procedure_aborts",
+                    "Procedure invocations which aborted", "procedure", m_procName);
+            m_failuresMetric = metrics.counter("voltdb_procedure_failures",
+                    "Procedure invocations which failed", "procedure", m_procName);
+            m_executionTimeMetric = metrics.histogram("voltdb_procedure_execution_seconds",
+                    "Execution time of sampled procedure invocations", "procedure", m_procName);
+        } else {
+            m_invocationsMetric = null;
+            m_abortsMetric = null;
+            m_failuresMetric = null;
+            m_executionTimeMetric = null;
+        }
     }
 
     // This is not the *real* invocation count, but a fuzzy one we keep to sample 5% of
@@ -143,6 +166,15 @@ public class ProcedureStatsCollector extends SiteStatsSource {
             m_procStatsData.m_failureCount++;
         }
         m_procStatsData.m_invocations++;
+        if (m_invocationsMetric != null) {
+            m_invocationsMetric.increment();
+            if (aborted) {
+                m_abortsMetric.increment();
+            }
+            if (failed) {
+                m_failuresMetric.increment();
+            }
+        }
 
         // this means additional stats were not recorded
         if (!statsToken.samplingProcedure()) {
@@ -162,6 +194,9 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         }
 
         m_procStatsData.m_timedInvocations++;
+        if (m_executionTimeMetric != null) {
+            m_executionTimeMetric.recordNanos(duration);
+        }
         // sampled timings
         m_procStatsData.m_totalTimedExecutionTime += duration;
         m_procStatsData.m_minExecutionTime = Math.min(duration, m_procStatsData.m_minExecutionTime);
@@ -83,6 +83,7 @@ import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
 import org.aeonbits.owner.ConfigFactory;
 import org.apache.cassandra_voltpatches.GCInspector;
 import org.apache.commons.lang3.StringUtils;
@@ -111,6 +112,7 @@ import org.voltcore.messaging.SiteFailureForwardMessage;
 import org.voltcore.messaging.SiteMailbox;
 import org.voltcore.messaging.SocketJoiner;
 import org.voltcore.network.CipherExecutor;
+import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.OnDemandBinaryLogger;
 import org.voltcore.utils.Pair;
@@ -174,6 +176,7 @@ import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.largequery.LargeBlockManager;
 import org.voltdb.licensetool.LicenseApi;
 import org.voltdb.messaging.MigratePartitionLeaderMessage;
+import org.voltdb.metrics.MetricsRegistry;
 import org.voltdb.messaging.VoltDbMessageFactory;
 import org.voltdb.modular.ModuleManager;
 import org.voltdb.planner.ActivePlanRepository;
@@ -1462,6 +1465,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_latencyHistogramStats = new LatencyUncompressedHistogramStats(m_myHostId);
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY_HISTOGRAM,
                     0, m_latencyHistogramStats);
+            registerMetrics();
 
 
             BalancePartitionsStatistics rebalanceStats = new BalancePartitionsStatistics();
@@ -1689,8 +1693,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
+            boolean usingCommandLog = (m_catalogContext.cluster.getLogconfig() != null)
                     && (m_catalogContext.cluster.getLogconfig().get("log") != null)
                     && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
             if (!usingCommandLog) {
@@ -2938,6 +2941,28 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         }
     }
 
+    /**
+     * Expose the host wide metrics which are maintained outside of the metrics registry
+     */
+    private void registerMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.instance();
+        metrics.histogram("voltdb_latency_seconds", "Latency of transactions measured by the client interface", () -> {
+            AbstractHistogram totals = LatencyHistogramStats.constructHistogram(false);
+            ClientInterface ci = getClientInterface();
+            if (ci != null) {
+                for (AbstractHistogram histogram : ci.getLatencyStats()) {
+                    totals.add(histogram);
+                }
+            }
+            return totals;
+        });
+        VoltNetworkPool network = m_messenger.getNetwork();
+        metrics.counter("voltdb_network_read_bytes", "Bytes read from client and cluster connections",
+                network::getTotalBytesRead);
+        metrics.counter("voltdb_network_written_bytes", "Bytes written to client and cluster connections",
+                network::getTotalBytesWritten);
+    }
+
     void collectLocalNetworkMetadata() {
         boolean threw = false;
         JSONStringer stringer = new JSONStringer();
@@ -4353,7 +4378,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
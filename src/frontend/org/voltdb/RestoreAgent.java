@@ -51,6 +51,7 @@ import org.voltcore.utils.InstanceId;
 import org.voltcore.utils.Pair;
 import org.voltdb.InvocationDispatcher.OverrideCheck;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.commandlog.FileCommandLogReinitiator;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.deploymentfile.DrRoleType;
 import org.voltdb.dtxn.TransactionCreator;
@@ -488,7 +489,7 @@ SnapshotCompletionInterest, Promotable
         m_action = action;
         m_hostMessenger = hostMessenger;
         m_zk = hostMessenger.getZK();
-        m_clEnabled = VoltDB.instance().getConfig().m_isEnterprise ? clEnabled : false;
+        m_clEnabled = clEnabled;
         m_clPath = clPath;
         m_clSnapshotPath = clSnapshotPath;
         m_snapshotPath = snapshotPath;
@@ -506,6 +507,9 @@ SnapshotCompletionInterest, Promotable
                 m_liveHosts);
         if (replayAgent != null) {
             m_replayAgent = replayAgent;
+        } else if (m_clEnabled) {
+            m_replayAgent = new FileCommandLogReinitiator(m_hostId, startAction, m_hostMessenger, m_clPath,
+                    m_liveHosts);
         }
         m_replayAgent.setCallback(this);
     }
@@ -1384,7 +1388,7 @@ SnapshotCompletionInterest, Promotable
          * they can be set individually
          */
         Map<String, SnapshotPathType> paths = new HashMap<String, SnapshotPathType>();
-        if (VoltDB.instance().getConfig().m_isEnterprise) {
+        if (m_clEnabled) {
             if (m_clSnapshotPath != null) {
                 paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
             }
@@ -22,18 +22,17 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
-import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool.BBContainer;
 
-import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
-import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 
 public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
     private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
@@ -42,7 +41,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
     private final File m_file;
     private final FileChannel m_fc;
     private final RandomAccessFile m_ras;
-    private long m_bytesWritten = 0;
+    private volatile long m_bytesWritten = 0;
     private Runnable m_onCloseTask;
     private boolean m_needsFinalClose;
 
@@ -83,7 +82,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
         m_fc = m_ras.getChannel();
         m_needsFinalClose = needsFinalClose;
 
-        m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write thread for " + m_file);
+        m_writeQueue = SnapshotWriteScheduler.newQueue(m_file, m_fc, new ChunkWriter());
         ScheduledFuture<?> syncTask = null;
         syncTask = DefaultSnapshotDataTarget.m_syncService.scheduleAtFixedRate(new Runnable() {
             private long syncedBytes = 0;
@@ -111,58 +110,93 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
         m_syncTask = syncTask;
     }
 
-    private final ListeningExecutorService m_es;
+    private final SnapshotWriteScheduler.WriteQueue<Chunk> m_writeQueue;
+    // Writes complete in submission order, so waiting for the last one waits for all of them
+    private ListenableFuture<?> m_lastWrite = Futures.immediateFuture(null);
+    private volatile long m_firstWriteTime = 0;
+    private volatile long m_lastWriteTime = 0;
 
-    @Override
-    public int getHeaderSize() {
-        return 0;
+    private static final class Chunk {
+        final ListenableFuture<BBContainer> m_computedData;
+        BBContainer m_data = null;
+
+        Chunk(ListenableFuture<BBContainer> computedData) {
+            m_computedData = computedData;
+        }
     }
 
-    @Override
-    public ListenableFuture<?> write(final Callable<BBContainer> tupleData, int tableId) {
-        final ListenableFuture<BBContainer> computedData = VoltDB.instance().getComputationService().submit(tupleData);
+    private final class ChunkWriter implements SnapshotWriteScheduler.ChunkWriter<Chunk> {
+        private final ByteBuffer m_empty = ByteBuffer.allocate(0);
 
-        return m_es.submit(new Callable<Object>() {
-            @Override
-            public Object call() throws Exception {
-                try {
-                    final BBContainer data = computedData.get();
-                    /*
-                     * If a filter nulled out the buffer do nothing.
-                     */
-                    if (data == null) return null;
-                    if (m_writeFailed) {
-                        data.discard();
-                        return null;
-                    }
-                    try {
-                        int totalWritten = 0;
+        @Override
+        public boolean isReady(Chunk chunk) {
+            return chunk.m_computedData.isDone();
+        }
 
-                        final ByteBuffer dataBuf = data.b();
-                        DefaultSnapshotDataTarget.enforceSnapshotRateLimit(dataBuf.remaining());
+        @Override
+        public ByteBuffer prepare(Chunk chunk) throws Exception {
+            chunk.m_data = chunk.m_computedData.get();
+            /*
+             * If a filter nulled out the buffer do nothing.
+             */
+            if (chunk.m_data == null || m_writeFailed) {
+                return m_empty;
+            }
+            if (m_firstWriteTime == 0) {
+                m_firstWriteTime = System.currentTimeMillis();
+            }
+            final ByteBuffer dataBuf = chunk.m_data.b();
+            DefaultSnapshotDataTarget.enforceSnapshotRateLimit(dataBuf.remaining());
+            return dataBuf;
+        }
 
-                        while (dataBuf.hasRemaining()) {
-                            int written = m_fc.write(dataBuf);
-                            if (written > 0) {
-                                m_bytesWritten += written;
-                                totalWritten += written;
-                            }
-                        }
-                        if (m_bytesSinceLastSync.addAndGet(totalWritten) > m_bytesAllowedBeforeSync) {
+        @Override
+        public void completed(Chunk chunk, long bytesWritten, Throwable error) {
+            try {
+                if (error != null) {
+                    m_writeException = error;
+                    m_writeFailed = true;
+                } else if (bytesWritten > 0) {
+                    m_bytesWritten += bytesWritten;
+                    m_lastWriteTime = System.currentTimeMillis();
+                    if (m_bytesSinceLastSync.addAndGet((int) bytesWritten) > m_bytesAllowedBeforeSync) {
+                        try {
                             m_fc.force(false);
-                            m_bytesSinceLastSync.set(0);
+                        } catch (IOException e) {
+                            m_writeException = e;
+                            m_writeFailed = true;
                         }
-                    } finally {
-                        data.discard();
+                        m_bytesSinceLastSync.set(0);
                     }
-                } catch (Throwable t) {
-                    m_writeException = t;
-                    m_writeFailed = true;
-                    throw Throwables.propagate(t);
                 }
-                return null;
+            } finally {
+                if (chunk.m_data != null) {
+                    chunk.m_data.discard();
+                } else if (error != null) {
+                    try {
+                        BBContainer data = chunk.m_computedData.get();
+                        if (data != null) {
+                            data.discard();
+                        }
+                    } catch (Exception ignore) {}
+                }
             }
-        });
+        }
+    }
+
+    @Override
+    public int getHeaderSize() {
+        return 0;
+    }
+
+    @Override
+    public ListenableFuture<?> write(final Callable<BBContainer> tupleData, int tableId) {
+        final ListenableFuture<BBContainer> computedData = VoltDB.instance().getComputationService().submit(tupleData);
+
+        synchronized (this) {
+            m_lastWrite = m_writeQueue.submit(new Chunk(computedData));
+            return m_lastWrite;
+        }
     }
 
     @Override
@@ -179,8 +213,15 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
     @Override
     public void close() throws IOException, InterruptedException {
         try {
-            m_es.shutdown();
-            m_es.awaitTermination(356, TimeUnit.DAYS);
+            final ListenableFuture<?> lastWrite;
+            synchronized (this) {
+                lastWrite = m_lastWrite;
+            }
+            try {
+                lastWrite.get();
+            } catch (ExecutionException e) {
+                // Already recorded as the last write exception
+            }
             m_syncTask.cancel(false);
             m_fc.force(false);
             m_fc.close();
@@ -199,6 +240,16 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
         return m_bytesWritten;
     }
 
+    @Override
+    public String getDeviceName() {
+        return m_writeQueue.device();
+    }
+
+    @Override
+    public long getWriteDurationMillis() {
+        return m_firstWriteTime == 0 ? 0 : Math.max(1, m_lastWriteTime - m_firstWriteTime);
+    }
+
     @Override
     public void setOnCloseHandler(Runnable onClose) {
         m_onCloseTask = onClose;
@@ -60,6 +60,22 @@ public interface SnapshotDataTarget {
 
     public long getBytesWritten();
 
+    /**
+     * Get the name of the device this target writes to
+     * @return the device name or null if the target is not written to a local device
+     */
+    public default String getDeviceName() {
+        return null;
+    }
+
+    /**
+     * Get the wall clock time between the start of the first write and the end of the last one
+     * @return duration in milliseconds, 0 if nothing was written or it is not tracked
+     */
+    public default long getWriteDurationMillis() {
+        return 0;
+    }
+
     public void setOnCloseHandler(Runnable onClose);
 
     /**
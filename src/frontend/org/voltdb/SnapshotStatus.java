@@ -116,6 +116,29 @@ public class SnapshotStatus extends StatsSource {
         columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));
         columns.add(new ColumnInfo("RESULT", VoltType.STRING));
         columns.add(new ColumnInfo("TYPE", VoltType.STRING));
+        columns.add(new ColumnInfo("DEVICE", VoltType.STRING));
+        columns.add(new ColumnInfo("TARGET_THROUGHPUT", VoltType.FLOAT));
+        columns.add(new ColumnInfo("DEVICE_THROUGHPUT", VoltType.FLOAT));
+    }
+
+    /**
+     * Megabytes per second the snapshot wrote to the given device, summed over all
+     * of the snapshot's targets on that device
+     */
+    private static double deviceThroughput(Snapshot s, final String device, double duration) {
+        if (device == null || duration <= 0) {
+            return 0;
+        }
+        final long bytes[] = new long[1];
+        s.iterateTables(new Snapshot.TableIterator() {
+            @Override
+            public void next(Table t) {
+                if (device.equals(t.device)) {
+                    bytes[0] += t.size;
+                }
+            }
+        });
+        return (bytes[0] / (1024.0 * 1024.0)) / duration;
     }
 
     @SuppressWarnings("unchecked")
@@ -145,6 +168,10 @@ public class SnapshotStatus extends StatsSource {
         rowValues[columnNameToIndex.get("THROUGHPUT")] = throughput;
         rowValues[columnNameToIndex.get("RESULT")] = t.error == null ? "SUCCESS" : "FAILURE";
         rowValues[columnNameToIndex.get("TYPE")] = getSnapshotType(s.path);
+        rowValues[columnNameToIndex.get("DEVICE")] = t.device;
+        rowValues[columnNameToIndex.get("TARGET_THROUGHPUT")] =
+                t.writeDuration > 0 ? (t.size / (1024.0 * 1024.0)) / (t.writeDuration / 1000.0) : 0.0;
+        rowValues[columnNameToIndex.get("DEVICE_THROUGHPUT")] = deviceThroughput(s, t.device, duration);
         super.updateStatsRow(rowKey, rowValues);
     }
 
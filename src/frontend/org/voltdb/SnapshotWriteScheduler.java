@@ -0,0 +1,255 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Schedules the file writes of snapshot targets.
+ *
+ * Every device (file store) snapshot files are written to gets its own pool of
+ * writer threads, so a slow or busy device does not hold up targets on the others,
+ * and several targets on a fast device are written concurrently. Writes to a single
+ * target stay strictly ordered: each target has a {@link WriteQueue} that is drained
+ * by at most one writer thread at a time. The drain waits for the chunk at the head
+ * of the queue to be ready and then gathers any chunks behind it that are also ready
+ * into a single vectored write.
+ */
+final class SnapshotWriteScheduler {
+    private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
+
+    /** Number of writer threads for each device */
+    static final int WRITER_THREADS_PER_DEVICE = Math.max(1, Integer.getInteger("SNAPSHOT_WRITER_THREADS_PER_DEVICE", 4));
+    /** Maximum number of chunks gathered into one write */
+    static final int MAX_BATCH_CHUNKS = Math.max(1, Integer.getInteger("SNAPSHOT_WRITE_BATCH_CHUNKS", 16));
+    /** Maximum number of bytes gathered into one write */
+    static final int MAX_BATCH_BYTES = Math.max(1, Integer.getInteger("SNAPSHOT_WRITE_BATCH_BYTES", 1024 * 1024 * 8));
+
+    private static final String UNKNOWN_DEVICE = "unknown";
+
+    private static final ConcurrentHashMap<String, ExecutorService> m_devices = new ConcurrentHashMap<>();
+
+    private SnapshotWriteScheduler() {}
+
+    /**
+     * The hooks a target provides to its write queue. All of them are invoked on
+     * a writer thread, never concurrently for the same queue.
+     */
+    interface ChunkWriter<T> {
+        /**
+         * @return true if {@link #prepare} can return without blocking
+         */
+        boolean isReady(T chunk);
+
+        /**
+         * Wait for the chunk to be ready and return the bytes to write for it,
+         * positioned at the start of the data.
+         */
+        ByteBuffer prepare(T chunk) throws Exception;
+
+        /**
+         * Called once for every submitted chunk after it has been written or abandoned.
+         * @param bytesWritten bytes written for this chunk
+         * @param error why the chunk was not written, null if it was
+         */
+        void completed(T chunk, long bytesWritten, Throwable error);
+    }
+
+    /**
+     * @return the name of the device the file is stored on
+     */
+    static String deviceName(File file) {
+        File dir = file.getAbsoluteFile();
+        while (dir != null && !dir.exists()) {
+            dir = dir.getParentFile();
+        }
+        if (dir == null) {
+            return UNKNOWN_DEVICE;
+        }
+        try {
+            FileStore store = Files.getFileStore(dir.toPath());
+            return store.name();
+        } catch (IOException e) {
+            SNAP_LOG.debug("Unable to determine the device of " + file, e);
+            return UNKNOWN_DEVICE;
+        }
+    }
+
+    private static ExecutorService executorForDevice(final String device) {
+        ExecutorService es = m_devices.get(device);
+        if (es == null) {
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(
+                    WRITER_THREADS_PER_DEVICE, WRITER_THREADS_PER_DEVICE,
+                    1, TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<Runnable>(),
+                    CoreUtils.getThreadFactory(null, "Snapshot write service - " + device,
+                            CoreUtils.SMALL_STACK_SIZE, WRITER_THREADS_PER_DEVICE > 1, null));
+            tpe.allowCoreThreadTimeOut(true);
+            es = m_devices.putIfAbsent(device, tpe);
+            if (es == null) {
+                es = tpe;
+            } else {
+                tpe.shutdown();
+            }
+        }
+        return es;
+    }
+
+    /**
+     * Create the write queue of a target that writes the file through the given channel.
+     */
+    static <T> WriteQueue<T> newQueue(File file, FileChannel channel, ChunkWriter<T> writer) {
+        String device = deviceName(file);
+        return new WriteQueue<T>(device, executorForDevice(device), channel, writer);
+    }
+
+    private static final class Pending<T> {
+        final T m_chunk;
+        final SettableFuture<Object> m_future = SettableFuture.create();
+
+        Pending(T chunk) {
+            m_chunk = chunk;
+        }
+    }
+
+    /**
+     * Ordered chunk writes for one target file
+     */
+    static final class WriteQueue<T> implements Runnable {
+        private final String m_device;
+        private final ExecutorService m_es;
+        private final FileChannel m_channel;
+        private final ChunkWriter<T> m_writer;
+        private final ConcurrentLinkedQueue<Pending<T>> m_pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean m_scheduled = new AtomicBoolean(false);
+
+        private WriteQueue(String device, ExecutorService es, FileChannel channel, ChunkWriter<T> writer) {
+            m_device = device;
+            m_es = es;
+            m_channel = channel;
+            m_writer = writer;
+        }
+
+        String device() {
+            return m_device;
+        }
+
+        /**
+         * Queue a chunk to be written after all of the previously submitted ones.
+         * @return future that completes once the chunk is on its way to the file
+         */
+        ListenableFuture<?> submit(T chunk) {
+            Pending<T> pending = new Pending<>(chunk);
+            m_pending.offer(pending);
+            schedule();
+            return pending.m_future;
+        }
+
+        private void schedule() {
+            if (!m_pending.isEmpty() && m_scheduled.compareAndSet(false, true)) {
+                m_es.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Pending<T> head;
+                while ((head = m_pending.poll()) != null) {
+                    writeBatch(head);
+                }
+            } finally {
+                m_scheduled.set(false);
+                // Chunks may have arrived after the last poll but before the flag was cleared
+                schedule();
+            }
+        }
+
+        private void writeBatch(Pending<T> head) {
+            final List<Pending<T>> batch = new ArrayList<>(MAX_BATCH_CHUNKS);
+            final List<ByteBuffer> buffers = new ArrayList<>(MAX_BATCH_CHUNKS);
+            final List<Integer> sizes = new ArrayList<>(MAX_BATCH_CHUNKS);
+            Throwable error = null;
+            try {
+                batch.add(head);
+                ByteBuffer buf = m_writer.prepare(head.m_chunk);
+                buffers.add(buf);
+                sizes.add(buf.remaining());
+                long batchBytes = buf.remaining();
+
+                Pending<T> next;
+                while (batch.size() < MAX_BATCH_CHUNKS && batchBytes < MAX_BATCH_BYTES &&
+                        (next = m_pending.peek()) != null && m_writer.isReady(next.m_chunk)) {
+                    m_pending.poll();
+                    batch.add(next);
+                    buf = m_writer.prepare(next.m_chunk);
+                    buffers.add(buf);
+                    sizes.add(buf.remaining());
+                    batchBytes += buf.remaining();
+                }
+
+                final ByteBuffer[] srcs = buffers.toArray(new ByteBuffer[buffers.size()]);
+                long written = 0;
+                while (written < batchBytes) {
+                    written += m_channel.write(srcs);
+                }
+            } catch (Throwable t) {
+                error = t;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                Pending<T> pending = batch.get(i);
+                try {
+                    if (error == null) {
+                        m_writer.completed(pending.m_chunk, sizes.get(i), null);
+                    } else {
+                        m_writer.completed(pending.m_chunk, 0, error);
+                    }
+                } catch (Throwable t) {
+                    SNAP_LOG.error("Error completing snapshot write", t);
+                } finally {
+                    if (error == null) {
+                        pending.m_future.set(null);
+                    } else {
+                        pending.m_future.setException(error);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -52,6 +52,11 @@ public class StarvationTracker extends SiteStatsSource {
 
     private long m_starvationStartTime;
 
+    // Readable from other threads: all completed starvation time, and the start of
+    // the current starvation or 0 when not starved
+    private volatile long m_starvedNanos = 0;
+    private volatile long m_starvedSince = 0;
+
     private boolean m_interval;
 
     /**
@@ -64,6 +69,7 @@ public class StarvationTracker extends SiteStatsSource {
         }
         m_starved = true;
         m_starvationStartTime = System.nanoTime();
+        m_starvedSince = m_starvationStartTime;
     }
 
     public void endStarvation() {
@@ -74,6 +80,8 @@ public class StarvationTracker extends SiteStatsSource {
         m_count++;
         long delta = System.nanoTime() - m_starvationStartTime;
         m_totalTime += delta;
+        m_starvedNanos = m_totalTime;
+        m_starvedSince = 0;
         m_sumOfSquares += delta * delta / 1000000;
         m_max = Math.max(m_max, delta);
         m_lastMax = Math.max(m_lastMax, delta);
@@ -81,6 +89,17 @@ public class StarvationTracker extends SiteStatsSource {
         m_lastMin = Math.min(m_lastMin, delta);
     }
 
+    /**
+     * May be called from any thread
+     *
+     * @return total time the site has been starved for, including the current starvation
+     */
+    public long getStarvedNanos() {
+        final long since = m_starvedSince;
+        final long total = m_starvedNanos;
+        return since == 0 ? total : total + Math.max(0, System.nanoTime() - since);
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
@@ -17,6 +17,7 @@
 package org.voltdb;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.cliffc_voltpatches.high_scale_lib.NonBlockingHashMap;
@@ -493,6 +494,22 @@ public class StatsAgent extends OpsAgent
         }
     }
 
+    /**
+     * @return all the stats sources registered on this node for the given selector
+     */
+    public List<StatsSource> getStatsSources(StatsSelector selector) {
+        assert selector != null;
+        List<StatsSource> sources = new ArrayList<>();
+        final NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>> siteIdToStatsSources =
+                m_registeredStatsSources.get(selector);
+        if (siteIdToStatsSources != null) {
+            for (NonBlockingHashSet<StatsSource> statsSources : siteIdToStatsSources.values()) {
+                sources.addAll(statsSources);
+            }
+        }
+        return sources;
+    }
+
     /**
      * Get aggregate statistics on this node for the given selector.
      * If you need both site-wise and node-wise stats, register the appropriate StatsSources for that
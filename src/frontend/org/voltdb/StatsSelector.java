@@ -25,6 +25,7 @@ public enum StatsSelector {
     PROCEDURE,
     STARVATION,
     QUEUE,
+    MPREADPOOL,     // occupancy of the multi-partition read-only site pool and read wait times
     IDLETIME(STARVATION),
     INITIATOR,
     LATENCY(false),
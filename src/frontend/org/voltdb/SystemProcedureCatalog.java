@@ -418,6 +418,11 @@ public class SystemProcedureCatalog {
                         false, false, false, 0, VoltType.INVALID,
                         false, false, true, Durability.NOT_APPLICABLE,
                         false, false, Restartability.NOT_APPLICABLE));
+        builder.put("@Analyze",
+                new Config("org.voltdb.sysprocs.Analyze",
+                        false, false, false, 0, VoltType.INVALID,
+                        false, false, true, Durability.NOT_APPLICABLE,
+                        false, false, Restartability.NOT_APPLICABLE));
         builder.put("@LoadMultipartitionTable",
                 new Config("org.voltdb.sysprocs.LoadMultipartitionTable",
                         false, false, false, 0, VoltType.INVALID,
@@ -58,6 +58,12 @@ public class TTLManager extends StatsSource{
     static final int TIMEOUT = Integer.getInteger("TIME_TO_LIVE_TIMEOUT", 2000);
     public static final int NT_PROC_TIMEOUT = Integer.getInteger("NT_PROC_TIMEOUT", 1000 * 120);
     static final int LOG_SUPPRESSION_INTERVAL_SECONDS = 60;
+    // The chunk size of a TTL table adapts within [BATCH_SIZE / CHUNK_SCALE, BATCH_SIZE * CHUNK_SCALE]
+    static final int CHUNK_SCALE = Math.max(1, Integer.getInteger("TIME_TO_LIVE_CHUNK_SCALE", 4));
+    // Grow the chunk size while sites are idle more than this fraction of the time and shrink it
+    // while they are idle less than IDLE_LOW of the time
+    static final double IDLE_HIGH = 0.5;
+    static final double IDLE_LOW = 0.1;
     public static class TTLStats {
         final String tableName;
         long rowsLeft = 0L;
@@ -67,11 +73,18 @@ public class TTLManager extends StatsSource{
         //TTL control
         long rowsDeleted = 0L;
         long rowsLastDeleted = 0L;
+        // rows deleted per second, smoothed over the last rounds
+        double purgeRate = 0.0;
+        int chunkSize = 0;
         Timestamp ts;
         public TTLStats(String tableName) {
             this.tableName = tableName;
         }
         public void update(long rowDeleted, long rowsLeft, long lastExecutionTimestamp) {
+            if (ts != null && lastExecutionTimestamp > ts.getTime()) {
+                double rate = rowDeleted * 1000.0 / (lastExecutionTimestamp - ts.getTime());
+                purgeRate = purgeRate == 0.0 ? rate : 0.75 * purgeRate + 0.25 * rate;
+            }
             this.rowsLastDeleted = rowDeleted;
             this.rowsLeft = rowsLeft;
             this.rowsDeleted += rowDeleted;
@@ -79,7 +92,8 @@ public class TTLManager extends StatsSource{
         }
         @Override
         public String toString() {
-            return String.format("TTL stats on table %s: tuples deleted %d, tuples remaining %d", tableName, rowsDeleted, rowsLeft);
+            return String.format("TTL stats on table %s: tuples deleted %d, tuples remaining %d, %.1f tuples deleted per second",
+                    tableName, rowsDeleted, rowsLeft, purgeRate);
         }
     }
 
@@ -90,11 +104,17 @@ public class TTLManager extends StatsSource{
         AtomicReference<TimeToLive> ttlRef;
         AtomicReference<Table> tableRef;
         AtomicBoolean canceled = new AtomicBoolean(false);
+        // Only used from the TTL thread, and from the procedure callbacks it waits for
+        int chunkSize;
+        int maxChunkSize;
+        long lastStarvedNanos = -1;
+        long lastSampleNanos;
         public TTLTask(String tableName, TimeToLive timeToLive, Table table, TTLStats ttlStats) {
             this.tableName = tableName;
             ttlRef = new AtomicReference<>(timeToLive);
             tableRef = new AtomicReference<>(table);
             stats = ttlStats;
+            resetChunkSize();
         }
 
         @Override
@@ -126,8 +146,50 @@ public class TTLManager extends StatsSource{
         }
 
         public void updateTask(TimeToLive updatedTTL, Table updatedTable) {
+            final boolean batchSizeChanged = updatedTTL.getBatchsize() != getBatchSize();
             ttlRef.compareAndSet(ttlRef.get(), updatedTTL);
             tableRef.compareAndSet(tableRef.get(), updatedTable);
+            if (batchSizeChanged) {
+                m_timeToLiveExecutor.execute(this::resetChunkSize);
+            }
+        }
+
+        private void resetChunkSize() {
+            chunkSize = getBatchSize();
+            maxChunkSize = getBatchSize() * CHUNK_SCALE;
+        }
+
+        /**
+         * Pick the number of rows to delete in the next round from how idle the
+         * local sites were since the previous one, while there is a backlog.
+         */
+        int nextChunkSize() {
+            final long now = System.nanoTime();
+            final long starved = getSitesStarvedNanos();
+            if (lastStarvedNanos >= 0 && now > lastSampleNanos && stats != null && stats.rowsLeft > 0) {
+                final double idle = (double) (starved - lastStarvedNanos) / (now - lastSampleNanos);
+                chunkSize = adaptChunkSize(chunkSize, idle, Math.max(1, getBatchSize() / CHUNK_SCALE), maxChunkSize);
+            }
+            lastStarvedNanos = starved;
+            lastSampleNanos = now;
+            if (stats != null) {
+                stats.chunkSize = chunkSize;
+            }
+            return chunkSize;
+        }
+
+        /**
+         * The chunk size is too large for the DR buffer. Never go above the
+         * configured batch size again.
+         *
+         * @return false if the chunk size already was the configured batch size
+         */
+        boolean limitChunkSize() {
+            if (chunkSize <= getBatchSize()) {
+                return false;
+            }
+            chunkSize = maxChunkSize = getBatchSize();
+            return true;
         }
 
         long getValue() {
@@ -169,6 +231,36 @@ public class TTLManager extends StatsSource{
         }
     }
 
+    /**
+     * @param idle fraction of the time the sites were idle
+     * @return the chunk size doubled if the sites are mostly idle, halved if they are mostly busy
+     */
+    static int adaptChunkSize(int chunkSize, double idle, int minChunkSize, int maxChunkSize) {
+        if (idle >= IDLE_HIGH) {
+            chunkSize = (int) Math.min((long) chunkSize * 2, maxChunkSize);
+        } else if (idle < IDLE_LOW) {
+            chunkSize = chunkSize / 2;
+        }
+        return Math.max(minChunkSize, Math.min(chunkSize, maxChunkSize));
+    }
+
+    /**
+     * @return the average time the sites of this host have been starved for
+     */
+    static long getSitesStarvedNanos() {
+        StatsAgent agent = VoltDB.instance().getStatsAgent();
+        if (agent == null) {
+            return 0;
+        }
+        long starved = 0;
+        int sites = 0;
+        for (StatsSource source : agent.getStatsSources(StatsSelector.STARVATION)) {
+            starved += ((StarvationTracker) source).getStarvedNanos();
+            sites++;
+        }
+        return sites == 0 ? 0 : starved / sites;
+    }
+
     private static class DummyIterator implements Iterator<Object> {
         private final Iterator<String> i;
 
@@ -305,6 +397,8 @@ public class TTLManager extends StatsSource{
         columns.add(new ColumnInfo("ROWS_DELETED_LAST_ROUND", VoltType.BIGINT));
         columns.add(new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT));
         columns.add(new ColumnInfo("LAST_DELETE_TIMESTAMP", VoltType.TIMESTAMP));
+        columns.add(new ColumnInfo("PURGE_RATE", VoltType.FLOAT));
+        columns.add(new ColumnInfo("CHUNK_SIZE", VoltType.INTEGER));
     }
 
     @Override
@@ -324,6 +418,8 @@ public class TTLManager extends StatsSource{
             rowValues[columnNameToIndex.get("ROWS_DELETED_LAST_ROUND")] = stats.rowsLastDeleted;
             rowValues[columnNameToIndex.get("ROWS_REMAINING")] = stats.rowsLeft;
             rowValues[columnNameToIndex.get("LAST_DELETE_TIMESTAMP")] = stats.ts;
+            rowValues[columnNameToIndex.get("PURGE_RATE")] = stats.purgeRate;
+            rowValues[columnNameToIndex.get("CHUNK_SIZE")] = stats.chunkSize;
         }
     }
 
@@ -340,7 +436,7 @@ public class TTLManager extends StatsSource{
             }
         };
         cl.getDispatcher().getInternelAdapterNT().callProcedure(cl.getInternalUser(), true, NT_PROC_TIMEOUT, cb,
-                "@MigrateRowsNT", new Object[] {task.tableName, task.getColumnName(), task.getValue(), "<=", task.getBatchSize(),
+                "@MigrateRowsNT", new Object[] {task.tableName, task.getColumnName(), task.getValue(), "<=", task.nextChunkSize(),
                         TIMEOUT, task.getMaxFrequency(), INTERVAL});
         try {
             latch.await(NT_PROC_TIMEOUT, TimeUnit.SECONDS);
@@ -364,7 +460,10 @@ public class TTLManager extends StatsSource{
                     String error = t.getString("MESSAGE");
                     if (!error.isEmpty()) {
                         String drLimitError = "";
-                        if (error.indexOf(TTLManager.DR_LIMIT_MSG) > -1) {
+                        if (error.indexOf(TTLManager.DR_LIMIT_MSG) > -1 && task.limitChunkSize()) {
+                            // grown past BATCH_SIZE, retry with it
+                            drLimitError = "Chunk size is reduced to BATCH_SIZE " + task.getBatchSize() + ".";
+                        } else if (error.indexOf(TTLManager.DR_LIMIT_MSG) > -1) {
                             // The buffer limit for a DR transaction is 50M. If over the limit,
                             // the transaction will be aborted. The same is true for nibble delete transaction.
                             // If hit this error, no more data can be deleted in this TTL table.
@@ -388,7 +487,7 @@ public class TTLManager extends StatsSource{
             }
         };
         cl.getDispatcher().getInternelAdapterNT().callProcedure(cl.getInternalUser(), true, NT_PROC_TIMEOUT, cb,
-                "@LowImpactDeleteNT", new Object[] {task.tableName, task.getColumnName(), task.getValue(), "<=", task.getBatchSize(),
+                "@LowImpactDeleteNT", new Object[] {task.tableName, task.getColumnName(), task.getValue(), "<=", task.nextChunkSize(),
                         TIMEOUT, task.getMaxFrequency(), INTERVAL});
         try {
             latch.await(NT_PROC_TIMEOUT, TimeUnit.SECONDS);
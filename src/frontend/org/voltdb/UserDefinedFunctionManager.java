@@ -17,9 +17,12 @@
 
 package org.voltdb;
 
+import java.util.concurrent.locks.Lock;
+
 import org.hsqldb_voltpatches.FunctionForVoltDB;
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Function;
+import org.voltdb.planner.QueryPlanner;
 import org.voltdb.utils.JavaBuiltInFunctions;
 import org.voltdb.UserDefinedAggregateFunctionRunner;
 import org.voltdb.UserDefinedScalarFunctionRunner;
@@ -52,64 +55,71 @@ public class UserDefinedFunctionManager {
 
     // Load all the UDFs recorded in the catalog. Instantiate and register them in the system.
     public void loadFunctions(CatalogContext catalogContext) {
-        final CatalogMap<Function> catalogFunctions = catalogContext.database.getFunctions();
-        // Remove obsolete tokens (scalar)
-        for (UserDefinedScalarFunctionRunner runner : m_udfs.values()) {
-            // The function that the current UserDefinedScalarFunctionRunner is referring to
-            // does not exist in the catalog anymore, we need to remove its token.
-            if (catalogFunctions.get(runner.m_functionName) == null) {
-                FunctionForVoltDB.deregisterUserDefinedFunction(runner.m_functionName);
-            }
-        }
-        // Remove obsolete tokens (aggregate)
-        for (UserDefinedAggregateFunctionRunner runner : m_udafs.values()) {
-            // The function that the current UserDefinedAggregateFunctionRunner is referring to
-            // does not exist in the catalog anymore, we need to remove its token.
-            if (catalogFunctions.get(runner.m_functionName) == null) {
-                FunctionForVoltDB.deregisterUserDefinedFunction(runner.m_functionName);
+        // Planners must not see the function tokens while they are being replaced
+        final Lock functionRegistryLock = QueryPlanner.getFunctionRegistryLock();
+        functionRegistryLock.lock();
+        try {
+            final CatalogMap<Function> catalogFunctions = catalogContext.database.getFunctions();
+            // Remove obsolete tokens (scalar)
+            for (UserDefinedScalarFunctionRunner runner : m_udfs.values()) {
+                // The function that the current UserDefinedScalarFunctionRunner is referring to
+                // does not exist in the catalog anymore, we need to remove its token.
+                if (catalogFunctions.get(runner.m_functionName) == null) {
+                    FunctionForVoltDB.deregisterUserDefinedFunction(runner.m_functionName);
+                }
             }
-        }
-        // Build new UDF runners
-        ImmutableMap.Builder<Integer, UserDefinedScalarFunctionRunner> builder =
-                            ImmutableMap.<Integer, UserDefinedScalarFunctionRunner>builder();
-        ImmutableMap.Builder<Integer, UserDefinedAggregateFunctionRunner> builderAgg =
-                            ImmutableMap.<Integer, UserDefinedAggregateFunctionRunner>builder();
-        for (final Function catalogFunction : catalogFunctions) {
-            final String className = catalogFunction.getClassname();
-            Class<?> funcClass = null;
-            try {
-                funcClass = catalogContext.classForProcedureOrUDF(className);
+            // Remove obsolete tokens (aggregate)
+            for (UserDefinedAggregateFunctionRunner runner : m_udafs.values()) {
+                // The function that the current UserDefinedAggregateFunctionRunner is referring to
+                // does not exist in the catalog anymore, we need to remove its token.
+                if (catalogFunctions.get(runner.m_functionName) == null) {
+                    FunctionForVoltDB.deregisterUserDefinedFunction(runner.m_functionName);
+                }
             }
-            catch (final ClassNotFoundException e) {
-                if (className.startsWith("org.voltdb.")) {
-                    String msg = String.format(ORGVOLTDB_FUNCCNAME_ERROR_FMT, className);
-                    VoltDB.crashLocalVoltDB(msg, false, null);
+            // Build new UDF runners
+            ImmutableMap.Builder<Integer, UserDefinedScalarFunctionRunner> builder =
+                                ImmutableMap.<Integer, UserDefinedScalarFunctionRunner>builder();
+            ImmutableMap.Builder<Integer, UserDefinedAggregateFunctionRunner> builderAgg =
+                                ImmutableMap.<Integer, UserDefinedAggregateFunctionRunner>builder();
+            for (final Function catalogFunction : catalogFunctions) {
+                final String className = catalogFunction.getClassname();
+                Class<?> funcClass = null;
+                try {
+                    funcClass = catalogContext.classForProcedureOrUDF(className);
                 }
-                else {
-                    String msg = String.format(UNABLETOLOAD_ERROR_FMT, className);
-                    VoltDB.crashLocalVoltDB(msg, false, null);
+                catch (final ClassNotFoundException e) {
+                    if (className.startsWith("org.voltdb.")) {
+                        String msg = String.format(ORGVOLTDB_FUNCCNAME_ERROR_FMT, className);
+                        VoltDB.crashLocalVoltDB(msg, false, null);
+                    }
+                    else {
+                        String msg = String.format(UNABLETOLOAD_ERROR_FMT, className);
+                        VoltDB.crashLocalVoltDB(msg, false, null);
+                    }
+                }
+                Object funcInstance = null;
+                try {
+                    funcInstance = funcClass.newInstance();
+                }
+                catch (InstantiationException | IllegalAccessException e) {
+                    throw new RuntimeException(String.format("Error instantiating function \"%s\"", className), e);
+                }
+                assert(funcInstance != null);
+                if (catalogFunction.getMethodname() == null) {
+                    // no_method_here -> aggregate function
+                    builderAgg.put(catalogFunction.getFunctionid(), new UserDefinedAggregateFunctionRunner(catalogFunction, funcClass));
+                } else {
+                    // There is a methodName -> scalar function
+                    builder.put(catalogFunction.getFunctionid(), new UserDefinedScalarFunctionRunner(catalogFunction, funcInstance));
                 }
             }
-            Object funcInstance = null;
-            try {
-                funcInstance = funcClass.newInstance();
-            }
-            catch (InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(String.format("Error instantiating function \"%s\"", className), e);
-            }
-            assert(funcInstance != null);
-            if (catalogFunction.getMethodname() == null) {
-                // no_method_here -> aggregate function
-                builderAgg.put(catalogFunction.getFunctionid(), new UserDefinedAggregateFunctionRunner(catalogFunction, funcClass));
-            } else {
-                // There is a methodName -> scalar function
-                builder.put(catalogFunction.getFunctionid(), new UserDefinedScalarFunctionRunner(catalogFunction, funcInstance));
-            }
-        }
 
-        loadBuiltInJavaFunctions(builder);
-        m_udfs = builder.build();
-        m_udafs = builderAgg.build();
+            loadBuiltInJavaFunctions(builder);
+            m_udfs = builder.build();
+            m_udafs = builderAgg.build();
+        } finally {
+            functionRegistryLock.unlock();
+        }
     }
 
     private void loadBuiltInJavaFunctions(ImmutableMap.Builder<Integer, UserDefinedScalarFunctionRunner> builder) {
@@ -33,6 +33,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
 import org.voltdb.types.GeographyPointValue;
@@ -149,6 +150,12 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     // cache column indexes for column names used for lookup
     private HashMap<String,Integer> m_columnNameIndexMap;
 
+    // handed out by beginRow() and reused for every row
+    private RowBuilder m_rowBuilder;
+
+    // guess of the size of a variable length value when sizing for a number of rows
+    private static final int VARIABLE_LENGTH_SIZE_GUESS = 32;
+
     // JSON KEYS FOR SERIALIZATION
     static final String JSON_NAME_KEY = "name";
     static final String JSON_TYPE_KEY = "type";
@@ -522,6 +529,9 @@ public final class VoltTable extends VoltTableRow implements JSONString {
      */
     public final void clearRowData() {
         assert(verifyTableInvariants());
+        if (m_rowBuilder != null && m_rowBuilder.m_active) {
+            m_rowBuilder.discard();
+        }
         m_buffer.position(m_rowStart);
         m_buffer.putInt(0);
         m_rowCount = 0;
@@ -1027,6 +1037,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         if (row.getColumnCount() != m_colCount) {
             throw new IllegalArgumentException(row.getColumnCount() + " arguments but table has " + m_colCount + " columns");
         }
+        checkNoRowBeingBuilt("add a row");
 
         // memoize the start of this row in case we roll back
         final int pos = m_buffer.position();
@@ -1140,6 +1151,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         if (values.length != m_colCount) {
             throw new IllegalArgumentException(values.length + " arguments but table has " + m_colCount + " columns");
         }
+        checkNoRowBeingBuilt("add a row");
 
         // memoize the start of this row in case we roll back
         final int pos = m_buffer.position();
@@ -1244,6 +1256,399 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         m_buffer = buf2;
     }
 
+    /**
+     * Grow the backing buffer once so that the given number of rows can be appended
+     * without further copies. The row size is the average of the rows already in the
+     * table, or a guess from the schema when it is empty.
+     *
+     * @param rowCount The number of rows expected to be appended.
+     */
+    public final void ensureRowCapacity(int rowCount) {
+        assert(verifyTableInvariants());
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        checkNoRowBeingBuilt("resize the table");
+        long rowSize;
+        if (m_rowCount > 0) {
+            rowSize = (m_buffer.position() - m_rowStart - 4) / m_rowCount + 1;
+        }
+        else {
+            rowSize = 4;
+            for (int col = 0; col < m_colCount; col++) {
+                VoltType type = getColumnType(col);
+                rowSize += type.isVariableLength() ? VARIABLE_LENGTH_SIZE_GUESS : type.getLengthInBytesForFixedTypes();
+            }
+        }
+        final long needed = Math.min(m_buffer.position() + rowSize * rowCount, MAX_SERIALIZED_TABLE_LENGTH);
+        if (needed > m_buffer.capacity()) {
+            expandBufferTo((int) needed);
+            m_buffer.limit(m_buffer.position());
+        }
+        assert(verifyTableInvariants());
+    }
+
+    /**
+     * Start appending a row whose values are then written one column at a time, in
+     * column order, straight into the table without boxing:
+     * <pre>
+     * table.beginRow().putLong(id).putString(name).putNull().endRow();
+     * </pre>
+     * The same builder is returned for every row of a table. Until {@link RowBuilder#endRow()},
+     * methods adding rows to or serializing the table throw {@link IllegalStateException}.
+     * A row that is not ended is dropped by the next call to this method or to
+     * {@link #clearRowData()}.
+     *
+     * @return The builder of the new row.
+     */
+    public final RowBuilder beginRow() {
+        assert(verifyTableInvariants());
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        if (m_colCount == 0) {
+            throw new IllegalStateException("Table has no columns defined");
+        }
+        if (m_rowBuilder == null) {
+            m_rowBuilder = new RowBuilder();
+        }
+        else if (m_rowBuilder.m_active) {
+            m_rowBuilder.discard();
+        }
+        m_rowBuilder.begin();
+        return m_rowBuilder;
+    }
+
+    /**
+     * The buffer limit of a table is at the end of its rows except while a row is
+     * being built, so methods appending to or reading the whole buffer refuse to run.
+     */
+    private void checkNoRowBeingBuilt(String action) {
+        if (m_rowBuilder != null && m_rowBuilder.m_active) {
+            throw new IllegalStateException("Cannot " + action + " while a row is being built");
+        }
+    }
+
+    /**
+     * Writes the values of one row of a {@link VoltTable}, see {@link VoltTable#beginRow()}.
+     * Each value goes to the next column and must suit its type; integers are range
+     * checked as {@link VoltTable#addRow(Object...)} does. A value that can not be
+     * written drops the whole row.
+     */
+    public final class RowBuilder {
+        private int m_rowPos;
+        private int m_col;
+        private boolean m_active = false;
+
+        private RowBuilder() {}
+
+        private void begin() {
+            m_rowPos = m_buffer.position();
+            m_col = 0;
+            m_active = true;
+            m_buffer.limit(m_buffer.capacity());
+            ensureRemaining(4);
+            // advance past the row size value
+            m_buffer.position(m_rowPos + 4);
+        }
+
+        private void discard() {
+            m_active = false;
+            m_buffer.position(m_rowPos);
+            m_buffer.limit(m_rowPos);
+        }
+
+        private RuntimeException fail(RuntimeException e) {
+            discard();
+            return e;
+        }
+
+        private void ensureRemaining(int size) {
+            if (m_buffer.capacity() - m_buffer.position() < size) {
+                expandBuffer(m_buffer.position() + size);
+                m_buffer.limit(m_buffer.capacity());
+            }
+        }
+
+        /**
+         * Check there is a column left for the value and room for its bytes.
+         * @return The type of the column.
+         */
+        private VoltType nextColumn(int size) {
+            if (!m_active) {
+                throw new IllegalStateException("No row is being built, call beginRow() first");
+            }
+            if (m_col >= m_colCount) {
+                throw fail(new IllegalArgumentException("Too many values for a table of " + m_colCount + " columns"));
+            }
+            ensureRemaining(size);
+            return VoltType.get(m_buffer.get(POS_COL_TYPES + m_col));
+        }
+
+        private RuntimeException mismatch(VoltType columnType, String valueType) {
+            return fail(new VoltTypeException("Value for column " + m_col + " (" +
+                    getColumnName(m_col) + ") is type " + valueType + " when type " + columnType +
+                    " was expected."));
+        }
+
+        private void checkSize(int length) {
+            int maxColSize = VoltType.MAX_VALUE_LENGTH;
+            if (m_extraMetadata != null) {
+                maxColSize = m_extraMetadata.originalColumnInfos[m_col].size;
+            }
+            if (length > maxColSize) {
+                throw fail(new VoltOverflowException(
+                        "Value in VoltTable.addRow(...) larger than allowed max " +
+                                VoltType.humanReadableSize(maxColSize)));
+            }
+        }
+
+        /**
+         * Write an integer to a TINYINT, SMALLINT, INTEGER, BIGINT, TIMESTAMP
+         * (microseconds) or FLOAT column.
+         */
+        public RowBuilder putLong(long value) {
+            final VoltType columnType = nextColumn(8);
+            switch (columnType) {
+            case TINYINT:
+                if (value <= Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                    throw fail(new VoltTypeException("Cast of " + value + " to " + columnType + " would overflow"));
+                }
+                m_buffer.put((byte) value);
+                break;
+            case SMALLINT:
+                if (value <= Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                    throw fail(new VoltTypeException("Cast to " + columnType + " would overflow"));
+                }
+                m_buffer.putShort((short) value);
+                break;
+            case INTEGER:
+                if (value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw fail(new VoltTypeException("Cast to " + columnType + " would overflow"));
+                }
+                m_buffer.putInt((int) value);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                m_buffer.putLong(value);
+                break;
+            case FLOAT:
+                m_buffer.putDouble(value);
+                break;
+            default:
+                throw mismatch(columnType, "long");
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a number to a FLOAT column.
+         */
+        public RowBuilder putDouble(double value) {
+            final VoltType columnType = nextColumn(8);
+            if (columnType != VoltType.FLOAT) {
+                throw mismatch(columnType, "double");
+            }
+            m_buffer.putDouble(value);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a string to a STRING column, or a hex encoded string to a VARBINARY column.
+         */
+        public RowBuilder putString(String value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType columnType = nextColumn(4);
+            final byte[] bytes;
+            if (columnType == VoltType.STRING) {
+                checkSize(value.length());
+                bytes = value.getBytes(ROWDATA_ENCODING);
+            }
+            else if (columnType == VoltType.VARBINARY) {
+                bytes = Encoder.hexDecode(value);
+                checkSize(bytes.length);
+            }
+            else {
+                throw mismatch(columnType, "String");
+            }
+            ensureRemaining(4 + bytes.length);
+            writeStringOrVarbinaryToBuffer(bytes, m_buffer);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write bytes to a VARBINARY column, or UTF-8 encoded bytes to a STRING column.
+         */
+        public RowBuilder putBytes(byte[] value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType columnType = nextColumn(4 + value.length);
+            if (columnType != VoltType.VARBINARY && columnType != VoltType.STRING) {
+                throw mismatch(columnType, "byte[]");
+            }
+            checkSize(value.length);
+            // bytes of a string MUST be UTF-8 encoded
+            assert(columnType == VoltType.VARBINARY || testForUTF8Encoding(value));
+            writeStringOrVarbinaryToBuffer(value, m_buffer);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a decimal to a DECIMAL column.
+         */
+        public RowBuilder putDecimal(BigDecimal value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType columnType = nextColumn(16);
+            if (columnType != VoltType.DECIMAL) {
+                throw mismatch(columnType, "BigDecimal");
+            }
+            try {
+                VoltDecimalHelper.serializeBigDecimal(value, m_buffer);
+            }
+            catch (RuntimeException e) {
+                throw fail(e);
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a timestamp to a TIMESTAMP column.
+         */
+        public RowBuilder putTimestamp(TimestampType value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType columnType = nextColumn(8);
+            if (columnType != VoltType.TIMESTAMP) {
+                throw mismatch(columnType, "TimestampType");
+            }
+            m_buffer.putLong(value.getTime());
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a point to a GEOGRAPHY_POINT column.
+         */
+        public RowBuilder putGeographyPoint(GeographyPointValue value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType columnType = nextColumn(GeographyPointValue.getLengthInBytes());
+            if (columnType != VoltType.GEOGRAPHY_POINT) {
+                throw mismatch(columnType, "GeographyPointValue");
+            }
+            value.flattenToBuffer(m_buffer);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write a polygon to a GEOGRAPHY column.
+         */
+        public RowBuilder putGeography(GeographyValue value) {
+            if (value == null) {
+                return putNull();
+            }
+            final int length = value.getLengthInBytes();
+            final VoltType columnType = nextColumn(4 + length);
+            if (columnType != VoltType.GEOGRAPHY) {
+                throw mismatch(columnType, "GeographyValue");
+            }
+            m_buffer.putInt(length);
+            value.flattenToBuffer(m_buffer);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Write the null value of the column's type.
+         */
+        public RowBuilder putNull() {
+            final VoltType columnType = nextColumn(16);
+            // schema checking code that is used for some tests
+            if (m_extraMetadata != null && !m_extraMetadata.originalColumnInfos[m_col].nullable) {
+                throw fail(new IllegalArgumentException(
+                        String.format("Column %s at index %d doesn't allow NULL values.",
+                        getColumnName(m_col), m_col)));
+            }
+            switch (columnType) {
+            case TINYINT:
+                m_buffer.put(VoltType.NULL_TINYINT);
+                break;
+            case SMALLINT:
+                m_buffer.putShort(VoltType.NULL_SMALLINT);
+                break;
+            case INTEGER:
+                m_buffer.putInt(VoltType.NULL_INTEGER);
+                break;
+            case TIMESTAMP:
+            case BIGINT:
+                m_buffer.putLong(VoltType.NULL_BIGINT);
+                break;
+            case FLOAT:
+                m_buffer.putDouble(VoltType.NULL_FLOAT);
+                break;
+            case STRING:
+            case GEOGRAPHY:
+            case VARBINARY:
+                m_buffer.putInt(NULL_STRING_INDICATOR);
+                break;
+            case GEOGRAPHY_POINT:
+                GeographyPointValue.serializeNull(m_buffer);
+                break;
+            case DECIMAL:
+                VoltDecimalHelper.serializeNull(m_buffer);
+                break;
+            default:
+                throw fail(new VoltTypeException("Unsupported type: " + columnType));
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Finish the row and add it to the table.
+         * @throws IllegalArgumentException when a value is missing
+         * @throws VoltOverflowException when the row is too large
+         */
+        public void endRow() {
+            if (!m_active) {
+                throw new IllegalStateException("No row is being built, call beginRow() first");
+            }
+            if (m_col != m_colCount) {
+                throw fail(new IllegalArgumentException(m_col + " values but table has " + m_colCount + " columns"));
+            }
+            final int rowsize = m_buffer.position() - m_rowPos - 4;
+            assert(rowsize >= 0);
+
+            // check for too big rows
+            if (rowsize > VoltTableRow.MAX_TUPLE_LENGTH) {
+                throw fail(new VoltOverflowException(
+                        "Table row total length larger than allowed max " + VoltTableRow.MAX_TUPLE_LENGTH_STR));
+            }
+            m_buffer.putInt(m_rowPos, rowsize);
+
+            m_rowCount++;
+            m_buffer.putInt(m_rowStart, m_rowCount);
+
+            // constrain buffer limit back to the new position
+            m_buffer.limit(m_buffer.position());
+            m_active = false;
+            assert(verifyTableInvariants());
+        }
+    }
+
     /**
      * Tables containing a single row and a single integer column can be read using this convenience
      * method.
@@ -1299,6 +1704,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         }
 
         checkHasExactSchema(other);
+        checkNoRowBeingBuilt("add rows");
 
         // Allow the buffer to grow to max capacity
         m_buffer.limit(m_buffer.capacity());
@@ -1328,6 +1734,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         if (m_readOnly) {
             throw new IllegalStateException("Table is read-only. Make a copy before changing.");
         }
+        checkNoRowBeingBuilt("add rows");
 
         try {
             // Allow the buffer to grow to max capacity
@@ -1771,6 +2178,18 @@ public final class VoltTable extends VoltTableRow implements JSONString {
      * @throws JSONException If there was an error generating the JSON
      */
     public JSONStringer toJSONStringerV2(JSONStringer js) throws JSONException {
+        toJSONWriterV2(js);
+        return js;
+    }
+
+    /**
+     * Write a JSON /api/2.0/ representation of this table one row at a time.
+     *
+     * @param js {@link JSONWriter} instance to write this table to
+     * @return The JSONWriter given
+     * @throws JSONException If there was an error generating or writing the JSON
+     */
+    public JSONWriter toJSONWriterV2(JSONWriter js) throws JSONException {
         // array of row data
         VoltTableRow row = cloneRow();
         row.resetRowPosition();
@@ -2123,6 +2542,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
      * @return The size in bytes.
      */
     public int getSerializedSize() {
+        checkNoRowBeingBuilt("serialize the table");
         return m_buffer.limit() + 4;
     }
 
@@ -2133,6 +2553,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
      * @param buf Buffer to serialize table to.
      */
     public void flattenToBuffer(ByteBuffer buf) {
+        checkNoRowBeingBuilt("serialize the table");
         ByteBuffer dup = m_buffer.duplicate();
         buf.putInt(dup.limit());
         dup.position(0);
@@ -2140,6 +2561,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     }
 
     public byte[] buildReusableDependenyResult() {
+        checkNoRowBeingBuilt("serialize the table");
         ByteBuffer dup = m_buffer.duplicate();
         ByteBuffer responseBuf = ByteBuffer.allocate(dup.limit());
         dup.position(0);
@@ -2203,6 +2625,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
      * @return The underlying {@link ByteBuffer} instance.
      */
     public ByteBuffer getBuffer() {
+        checkNoRowBeingBuilt("access the buffer");
         ByteBuffer buf = m_buffer.asReadOnlyBuffer();
         buf.position(0);
         return buf;
@@ -17,6 +17,8 @@
 
 package org.voltdb.client;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Collect the client's opinion of the operation of client affinity.  For the
  * given partition ID, affinityWrites tracks write transactions that the client
@@ -24,23 +26,26 @@ package org.voltdb.client;
  * the the client believes it found a replica for.  Round-robin stats reflect
  * the client's lack of information when client affinity is on and indicate
  * transactions that were routed using the default round-robin algorithm.
+ *
+ * The counters are striped so that concurrent invocations routed to the same
+ * partition do not contend with each other.
  */
 public class ClientAffinityStats {
 
-    private int m_partitionId;
-    private long m_affinityWrites;
-    private long m_rrWrites;
-    private long m_affinityReads;
-    private long m_rrReads;
+    private final int m_partitionId;
+    private final LongAdder m_affinityWrites = new LongAdder();
+    private final LongAdder m_rrWrites = new LongAdder();
+    private final LongAdder m_affinityReads = new LongAdder();
+    private final LongAdder m_rrReads = new LongAdder();
 
     ClientAffinityStats(int partitionId, long affinityWrites, long rrWrites,
             long affinityReads, long rrReads)
     {
         m_partitionId = partitionId;
-        m_affinityWrites = affinityWrites;
-        m_rrWrites = rrWrites;
-        m_affinityReads = affinityReads;
-        m_rrReads = rrReads;
+        m_affinityWrites.add(affinityWrites);
+        m_rrWrites.add(rrWrites);
+        m_affinityReads.add(affinityReads);
+        m_rrReads.add(rrReads);
     }
 
     /**
@@ -56,10 +61,10 @@ public class ClientAffinityStats {
         }
 
         ClientAffinityStats retval = new ClientAffinityStats(older.m_partitionId,
-                newer.m_affinityWrites - older.m_affinityWrites,
-                newer.m_rrWrites - older.m_rrWrites,
-                newer.m_affinityReads - older.m_affinityReads,
-                newer.m_rrReads - older.m_rrReads);
+                newer.getAffinityWrites() - older.getAffinityWrites(),
+                newer.getRrWrites() - older.getRrWrites(),
+                newer.getAffinityReads() - older.getAffinityReads(),
+                newer.getRrReads() - older.getRrReads());
         return retval;
     }
 
@@ -68,13 +73,13 @@ public class ClientAffinityStats {
      */
     @Override
     protected Object clone() {
-        return new ClientAffinityStats(m_partitionId, m_affinityWrites, m_rrWrites, m_affinityReads,
-               m_rrReads);
+        return new ClientAffinityStats(m_partitionId, getAffinityWrites(), getRrWrites(), getAffinityReads(),
+               getRrReads());
     }
 
     void addAffinityWrite()
     {
-        m_affinityWrites++;
+        m_affinityWrites.increment();
     }
 
     /**
@@ -84,12 +89,12 @@ public class ClientAffinityStats {
      */
     public long getAffinityWrites()
     {
-        return m_affinityWrites;
+        return m_affinityWrites.sum();
     }
 
     void addRrWrite()
     {
-        m_rrWrites++;
+        m_rrWrites.increment();
     }
 
     /**
@@ -100,12 +105,12 @@ public class ClientAffinityStats {
      */
     public long getRrWrites()
     {
-        return m_rrWrites;
+        return m_rrWrites.sum();
     }
 
     void addAffinityRead()
     {
-        m_affinityReads++;
+        m_affinityReads.increment();
     }
 
     /**
@@ -115,12 +120,12 @@ public class ClientAffinityStats {
      */
     public long getAffinityReads()
     {
-        return m_affinityReads;
+        return m_affinityReads.sum();
     }
 
     void addRrRead()
     {
-        m_rrReads++;
+        m_rrReads.increment();
     }
 
     /**
@@ -131,7 +136,7 @@ public class ClientAffinityStats {
      */
     public long getRrReads()
     {
-        return m_rrReads;
+        return m_rrReads.sum();
     }
 
     @Override
@@ -139,7 +144,7 @@ public class ClientAffinityStats {
     {
         String afdisplay = "Partition ID %d:  %d affinity writes, %d affinity reads, " +
             "%d round-robin writes, %d round-robin reads";
-        return String.format(afdisplay, m_partitionId, m_affinityWrites, m_affinityReads,
-                m_rrWrites, m_rrReads);
+        return String.format(afdisplay, m_partitionId, getAffinityWrites(), getAffinityReads(),
+                getRrWrites(), getRrReads());
     }
 }
@@ -68,6 +68,7 @@ public class ClientConfig {
     boolean m_sendReadsToReplicasBytDefaultIfCAEnabled = false;
     SslConfig m_sslConfig;
     boolean m_topologyChangeAware = false;
+    boolean m_requestCoalescing = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
 
@@ -364,6 +365,18 @@ public class ClientConfig {
         m_topologyChangeAware = enabled;
     }
 
+    /**
+     * <p>Packs the procedure invocations queued for a server connection while the
+     * network thread was busy into a single message, which lowers the per message
+     * cost for small, high rate procedures. Invocations are still sent right away
+     * when the connection is idle.</p>
+     * <p>Only used with servers that support it. Defaults to false.</p>
+     * @param enabled Enable or disable request coalescing.
+     */
+    public void setRequestCoalescing(boolean enabled) {
+        m_requestCoalescing = enabled;
+    }
+
     /**
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
@@ -298,7 +298,7 @@ public class ConnectionUtil {
             byte[] hashedPassword, final Subject subject, ClientAuthScheme scheme, SSLEngine sslEngine,
             long timeoutMillis)
     throws IOException {
-        Object returnArray[] = new Object[3];
+        Object returnArray[] = new Object[4];
         boolean success = false;
         if (addr.isUnresolved()) {
             throw new java.net.UnknownHostException(addr.getHostName());
@@ -445,6 +445,8 @@ public class ConnectionUtil {
             byte buildStringBytes[] = new byte[buildStringLength];
             loginResponse.get(buildStringBytes);
             returnArray[2] = new String(buildStringBytes, Constants.UTF8ENCODING);
+            // older servers do not list their protocol features
+            returnArray[3] = loginResponse.hasRemaining() ? loginResponse.get() : (byte) 0;
 
             synchronized(aChannel.blockingLock()) {
                 aChannel.configureBlocking(false);
@@ -105,7 +105,7 @@ class Distributer {
     private final CopyOnWriteArrayList<NodeConnection> m_connections =
             new CopyOnWriteArrayList<>();
 
-    private final ArrayList<ClientStatusListenerExt> m_listeners = new ArrayList<>();
+    private final CopyOnWriteArrayList<ClientStatusListenerExt> m_listeners = new CopyOnWriteArrayList<>();
 
     //Selector and connection handling, does all work in blocking selection thread
     private final VoltNetworkPool m_network;
@@ -113,7 +113,7 @@ class Distributer {
     private final SslContext m_sslContext;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -136,8 +136,77 @@ class Distributer {
         }
     }
 
-    private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
-    private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
+    /**
+     * Immutable snapshot of everything {@link Distributer#queue} needs to route an invocation.
+     * Readers never lock; writers build a new snapshot while holding the distributer monitor
+     * and publish it with a single volatile store, so routing never observes a half-applied
+     * topology update.
+     */
+    private static final class RoutingTable {
+        static final RoutingTable EMPTY = new RoutingTable(ImmutableList.<NodeConnection>of(), null,
+                ImmutableMap.<Integer, NodeConnection>of(), ImmutableMap.<Integer, NodeConnection[]>of());
+
+        final ImmutableList<NodeConnection> connections;
+        //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
+        final HashinatorLite hashinator;
+        final ImmutableMap<Integer, NodeConnection> partitionMasters;
+        final ImmutableMap<Integer, NodeConnection[]> partitionReplicas;
+
+        private RoutingTable(ImmutableList<NodeConnection> connections,
+                HashinatorLite hashinator,
+                ImmutableMap<Integer, NodeConnection> partitionMasters,
+                ImmutableMap<Integer, NodeConnection[]> partitionReplicas) {
+            this.connections = connections;
+            this.hashinator = hashinator;
+            this.partitionMasters = partitionMasters;
+            this.partitionReplicas = partitionReplicas;
+        }
+
+        RoutingTable withConnections(List<NodeConnection> newConnections) {
+            return new RoutingTable(ImmutableList.copyOf(newConnections), hashinator,
+                    partitionMasters, partitionReplicas);
+        }
+
+        RoutingTable withTopology(HashinatorLite newHashinator,
+                Map<Integer, NodeConnection> newMasters,
+                Map<Integer, NodeConnection[]> newReplicas) {
+            return new RoutingTable(connections, newHashinator,
+                    ImmutableMap.copyOf(newMasters), ImmutableMap.copyOf(newReplicas));
+        }
+
+        /**
+         * @return a copy of this table with every reference to the given connection removed
+         */
+        RoutingTable without(NodeConnection gone) {
+            ImmutableList.Builder<NodeConnection> survivingConnections = ImmutableList.builder();
+            for (NodeConnection nc : connections) {
+                if (nc != gone) {
+                    survivingConnections.add(nc);
+                }
+            }
+            ImmutableMap.Builder<Integer, NodeConnection> masters = ImmutableMap.builder();
+            for (Map.Entry<Integer, NodeConnection> entry : partitionMasters.entrySet()) {
+                if (entry.getValue() != gone) {
+                    masters.put(entry);
+                }
+            }
+            ImmutableMap.Builder<Integer, NodeConnection[]> replicas = ImmutableMap.builder();
+            for (Map.Entry<Integer, NodeConnection[]> entry : partitionReplicas.entrySet()) {
+                ArrayList<NodeConnection> survivors = new ArrayList<>(entry.getValue().length);
+                for (NodeConnection nc : entry.getValue()) {
+                    if (nc != gone) {
+                        survivors.add(nc);
+                    }
+                }
+                if (!survivors.isEmpty()) {
+                    replicas.put(entry.getKey(), survivors.toArray(new NodeConnection[0]));
+                }
+            }
+            return new RoutingTable(survivingConnections.build(), hashinator, masters.build(), replicas.build());
+        }
+    }
+
+    private volatile RoutingTable m_routingTable = RoutingTable.EMPTY;
     private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
@@ -146,19 +215,22 @@ class Distributer {
     private final AtomicLong m_lastPartitionKeyFetched = new AtomicLong(0);
     private final AtomicReference<ClientResponse> m_partitionUpdateStatus = new AtomicReference<ClientResponse>();
 
-    //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
-    private HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats = new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats = new ConcurrentHashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
     private final AtomicReference<ImmutableSet<Integer>> m_unconnectedHosts = new AtomicReference<ImmutableSet<Integer>>();
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
     private boolean m_topologyChangeAware;
+    private boolean m_requestCoalescing;
+
+    // Limits on the invocations packed in one message when coalescing requests
+    private static final int MAX_COALESCED_INVOCATIONS = 1000;
+    private static final int MAX_COALESCED_BYTES = 64 * 1024;
 
     private final ScheduledExecutorService m_ex =
         Executors.newSingleThreadScheduledExecutor(
@@ -425,6 +497,29 @@ class Distributer {
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
+        /*
+         * Invocations waiting to be sent in one message when the server accepts them batched.
+         * The first invocation queues a task on the network thread which sends all those
+         * that arrived by the time it runs.
+         */
+        private boolean m_coalesceInvocations = false;
+        private final ArrayList<ByteBuffer> m_pendingInvocations = new ArrayList<>();
+        private int m_pendingBytes = 0;
+        // Set when the pending invocations were counted toward backpressure that was reported
+        private boolean m_pendingBackpressure = false;
+        private final Runnable m_flushInvocations = new Runnable() {
+            @Override
+            public void run() {
+                final boolean backpressureEnded;
+                synchronized (m_pendingInvocations) {
+                    backpressureEnded = flushInvocations();
+                }
+                if (backpressureEnded) {
+                    offBackPressure().run();
+                }
+            }
+        };
+
         public NodeConnection(long ids[]) {}
 
         /*
@@ -508,11 +603,68 @@ class Distributer {
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
                 return;
+            } else if (m_coalesceInvocations) {
+                coalesceInvocation(c);
             } else {
                 m_connection.writeStream().enqueue(c);
             }
         }
 
+        private void coalesceInvocation(ByteBuffer c) {
+            boolean scheduleFlush;
+            boolean backpressureEnded = false;
+            synchronized (m_pendingInvocations) {
+                scheduleFlush = m_pendingInvocations.isEmpty();
+                m_pendingInvocations.add(c);
+                m_pendingBytes += c.remaining();
+                if (m_pendingInvocations.size() >= MAX_COALESCED_INVOCATIONS || m_pendingBytes >= MAX_COALESCED_BYTES) {
+                    backpressureEnded = flushInvocations();
+                    scheduleFlush = false;
+                }
+            }
+            if (backpressureEnded) {
+                offBackPressure().run();
+            }
+            if (scheduleFlush) {
+                m_connection.queueTask(m_flushInvocations);
+            }
+        }
+
+        /*
+         * Must hold the lock on m_pendingInvocations, which keeps the invocations in order
+         * on the write stream
+         *
+         * @return true if backpressure was reported because of the pending invocations
+         * and the write stream does not report any
+         */
+        private boolean flushInvocations() {
+            final int count = m_pendingInvocations.size();
+            if (count == 0) {
+                return false;
+            }
+            if (count == 1) {
+                m_connection.writeStream().enqueue(m_pendingInvocations.get(0));
+            }
+            else {
+                // each invocation keeps its length prefix
+                ByteBuffer buf = ByteBuffer.allocate(4 + 1 + 4 + m_pendingBytes);
+                buf.putInt(buf.capacity() - 4);
+                buf.put(Constants.INVOCATION_BATCH);
+                buf.putInt(count);
+                for (ByteBuffer invocation : m_pendingInvocations) {
+                    buf.put(invocation);
+                }
+                buf.flip();
+                m_connection.writeStream().enqueue(buf);
+            }
+            m_pendingInvocations.clear();
+            m_pendingBytes = 0;
+            final boolean backpressureEnded =
+                    m_pendingBackpressure && !m_connection.writeStream().hadBackPressure();
+            m_pendingBackpressure = false;
+            return backpressureEnded;
+        }
+
         /*
          * For high precision timeouts, submit a discrete task to a scheduled
          * executor service to time out the transaction. The timeout task
@@ -739,7 +891,20 @@ class Distributer {
         }
 
         public boolean hadBackPressure() {
-            return m_connection.writeStream().hadBackPressure();
+            if (m_connection.writeStream().hadBackPressure()) {
+                return true;
+            }
+            if (!m_coalesceInvocations) {
+                return false;
+            }
+            // Invocations waiting to be coalesced are not on the write stream yet. A flush
+            // is scheduled while there are any, and it reports the end of this backpressure.
+            synchronized (m_pendingInvocations) {
+                if (m_pendingBytes > 0 && m_queuedBytes + m_pendingBytes > m_maxQueuedBytes) {
+                    m_pendingBackpressure = true;
+                }
+                return m_pendingBackpressure;
+            }
         }
 
         public void setConnection(Connection c) {
@@ -760,15 +925,9 @@ class Distributer {
                 /*
                  * Repair all cluster topology data with the node connection removed
                  */
-                Iterator<Map.Entry<Integer, NodeConnection>> i = m_partitionMasters.entrySet().iterator();
-                while (i.hasNext()) {
-                    Map.Entry<Integer, NodeConnection> entry = i.next();
-                    if (entry.getValue() == this) {
-                        i.remove();
-                    }
-                }
+                m_routingTable = m_routingTable.without(this);
 
-                i = m_hostIdToConnection.entrySet().iterator();
+                Iterator<Map.Entry<Integer, NodeConnection>> i = m_hostIdToConnection.entrySet().iterator();
                 while (i.hasNext()) {
                     Map.Entry<Integer, NodeConnection> entry = i.next();
                     if (entry.getValue() == this) {
@@ -776,32 +935,6 @@ class Distributer {
                     }
                 }
 
-                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = m_partitionReplicas.entrySet().iterator();
-                List<Pair<Integer, NodeConnection[]>> entriesToRewrite = new ArrayList<>();
-                while (i2.hasNext()) {
-                    Map.Entry<Integer, NodeConnection[]> entry = i2.next();
-                    for (NodeConnection nc : entry.getValue()) {
-                        if (nc == this) {
-                            entriesToRewrite.add(Pair.of(entry.getKey(), entry.getValue()));
-                        }
-                    }
-                }
-
-                for (Pair<Integer, NodeConnection[]> entry : entriesToRewrite) {
-                    m_partitionReplicas.remove(entry.getFirst());
-                    NodeConnection survivors[] = new NodeConnection[entry.getSecond().length - 1];
-                    if (survivors.length == 0) {
-                        break;
-                    }
-                    int zz = 0;
-                    for (int ii = 0; ii < entry.getSecond().length; ii++) {
-                        if (entry.getSecond()[ii] != this) {
-                            survivors[zz++] = entry.getSecond()[ii];
-                        }
-                    }
-                    m_partitionReplicas.put(entry.getFirst(), survivors);
-                }
-
                 m_connections.remove(this);
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
@@ -895,7 +1028,8 @@ class Distributer {
             return this;
         }
 
-        private int m_queuedBytes = 0;
+        // Updated by the network thread, read by hadBackPressure()
+        private volatile int m_queuedBytes = 0;
         private final int m_maxQueuedBytes = 262144;
 
         @Override
@@ -1009,8 +1143,11 @@ class Distributer {
         final SocketChannel aChannel = (SocketChannel)socketChannelAndInstanceIdAndBuildString[0];
         final long instanceIdWhichIsTimestampAndLeaderIp[] = (long[])socketChannelAndInstanceIdAndBuildString[1];
         final int hostId = (int)instanceIdWhichIsTimestampAndLeaderIp[0];
+        final byte serverFeatures = (Byte)socketChannelAndInstanceIdAndBuildString[3];
 
         NodeConnection cxn = new NodeConnection(instanceIdWhichIsTimestampAndLeaderIp);
+        cxn.m_coalesceInvocations =
+                m_requestCoalescing && (serverFeatures & Constants.FEATURE_INVOCATION_BATCH) != 0;
         Connection c = null;
         try {
             if (aChannel != null) {
@@ -1054,6 +1191,7 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            m_routingTable = m_routingTable.withConnections(m_connections);
         }
 
         if (m_useClientAffinity) {
@@ -1163,126 +1301,129 @@ class Distributer {
         boolean backpressure = true;
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Routing reads a single immutable snapshot of the connections and the affinity topology,
+         * so no lock is taken here. Topology and connection changes publish a new snapshot
+         * which will be picked up by the next invocation.
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
+        final RoutingTable routing = m_routingTable;
+        final int totalConnections = routing.connections.size();
 
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
-            }
+        if (totalConnections == 0) {
+            throw new NoConnectionsException("No connections.");
+        }
 
-            /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
-             */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
-                Procedure procedureInfo = null;
-                if (procedures != null) {
-                    procedureInfo = procedures.get(invocation.getProcName());
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
+         */
+        if (m_useClientAffinity && (routing.hashinator != null)) {
+            final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
+            Procedure procedureInfo = null;
+            if (procedures != null) {
+                procedureInfo = procedures.get(invocation.getProcName());
+            }
+            Integer hashedPartition = invocation.getPartitionDestination();
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (invocation.hasPartitionDestination()) {
+                    hashedPartition = invocation.getPartitionDestination();
+                } else if (!procedureInfo.multiPart && procedureInfo.partitionParameter != Procedure.PARAMETER_NONE
+                        // User may have passed too few parameters to allow dispatching.
+                        // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        && procedureInfo.partitionParameter < invocation.getPassedParamCount()) {
+                    hashedPartition = routing.hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
                 }
-                Integer hashedPartition = invocation.getPartitionDestination();
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (invocation.hasPartitionDestination()) {
-                        hashedPartition = invocation.getPartitionDestination();
-                    } else if (!procedureInfo.multiPart && procedureInfo.partitionParameter != Procedure.PARAMETER_NONE
-                            // User may have passed too few parameters to allow dispatching.
-                            // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            && procedureInfo.partitionParameter < invocation.getPassedParamCount()) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
-                    }
-                    /*
-                     * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+                /*
+                 * If the procedure is read only and single part and the user wants it, load balance across replicas
+                 * This is probably slower for SAFE consistency.
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    NodeConnection partitionReplicas[] = routing.partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
                         }
-                    } else {
-                        /*
-                         * For writes or SAFE reads, this is the best way to go
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-
                     }
-                } else if (invocation.hasPartitionDestination()) {
-                    cxn = m_partitionMasters.get(hashedPartition);
+                } else {
+                    /*
+                     * For writes or SAFE reads, this is the best way to go
+                     */
+                    cxn = routing.partitionMasters.get(hashedPartition);
+
                 }
+            } else if (invocation.hasPartitionDestination()) {
+                cxn = routing.partitionMasters.get(hashedPartition);
+            }
 
-                if (cxn != null) {
-                    if (!cxn.m_isConnected) {
-                        // Would be nice to log something here
-                        // Client affinity picked a connection that was actually disconnected. Reset to null
-                        // and let the round-robin choice pick a connection
-                        cxn = null;
-                    } else if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        backpressure = false;
-                    }
+            if (cxn != null) {
+                if (!cxn.m_isConnected) {
+                    // Would be nice to log something here
+                    // Client affinity picked a connection that was actually disconnected. Reset to null
+                    // and let the round-robin choice pick a connection
+                    cxn = null;
+                } else if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    backpressure = false;
                 }
+            }
 
-                ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
-                if (stats == null) {
-                    stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+            ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
+            if (stats == null) {
+                stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
+                ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                if (existing != null) {
+                    stats = existing;
                 }
-                if (cxn != null) {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addAffinityRead();
-                    }
-                    else {
-                        stats.addAffinityWrite();
-                    }
+            }
+            if (cxn != null) {
+                if (procedureInfo != null && procedureInfo.readOnly) {
+                    stats.addAffinityRead();
                 }
-                // account these here because we lose the partition ID and procedure info once we
-                // bust out of this scope.
                 else {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addRrRead();
-                    }
-                    else {
-                        stats.addRrWrite();
-                    }
+                    stats.addAffinityWrite();
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
+            // account these here because we lose the partition ID and procedure info once we
+            // bust out of this scope.
+            else {
+                if (procedureInfo != null && procedureInfo.readOnly) {
+                    stats.addRrRead();
+                }
+                else {
+                    stats.addRrWrite();
                 }
             }
-
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = routing.connections.get(Math.abs(m_nextConnection.incrementAndGet() % totalConnections));
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    // serialize and queue the invocation
+                    backpressure = false;
+                    break;
                 }
             }
         }
 
+        if (backpressure) {
+            cxn = null;
+            for (ClientStatusListenerExt s : m_listeners) {
+                s.backpressure(true);
+            }
+        }
+
         /*
-         * Do the heavy weight serialization outside the synchronized block.
+         * Do the heavy weight serialization after routing.
          * createWork synchronizes on an individual connection which allows for more concurrency
          */
         if (cxn != null) {
@@ -1402,11 +1543,9 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        // the counters are updated concurrently by queue(), each clone is a point-in-time read
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1452,11 +1591,12 @@ class Distributer {
 
         //In future let TOPO return cooked bytes when cooked and we use correct recipe
         boolean cooked = false;
+        final HashinatorLite hashinator;
         if (tables.length == 1) {
             //Just in case the new client connects to the old version of Volt that only returns 1 topology table
             // We're going to get the MPI back in this table, so subtract it out from the number of partitions.
             int numPartitions = vt.getRowCount() - 1;
-            m_hashinator = new HashinatorLite(numPartitions); // legacy only
+            hashinator = new HashinatorLite(numPartitions); // legacy only
         } else {
             //Second table contains the hash function
             boolean advanced = tables[1].advanceRow();
@@ -1465,12 +1605,12 @@ class Distributer {
                                    "performance will be lower because transactions can't be routed at this client");
                 return;
             }
-            m_hashinator = new HashinatorLite(
+            hashinator = new HashinatorLite(
                     tables[1].getVarbinary("HASHCONFIG"),
                     cooked);
         }
-        m_partitionMasters.clear();
-        m_partitionReplicas.clear();
+        Map<Integer, NodeConnection> partitionMasters = new HashMap<>();
+        Map<Integer, NodeConnection[]> partitionReplicas = new HashMap<>();
         // The MPI's partition ID is 16383 (MpInitiator.MP_INIT_PID), so we shouldn't inadvertently
         // hash to it.  Go ahead and include it in the maps, we can use it at some point to
         // route MP transactions directly to the MPI node.
@@ -1494,14 +1634,15 @@ class Distributer {
                     unconnected.add(hostId);
                }
             }
-            m_partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
+            partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
 
 
             Integer leaderHostId = Integer.valueOf(leader.split(":")[0]);
             if (m_hostIdToConnection.containsKey(leaderHostId)) {
-                m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
+                partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        m_routingTable = m_routingTable.withTopology(hashinator, partitionMasters, partitionReplicas);
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
@@ -1557,7 +1698,7 @@ class Distributer {
      * @return
      */
     public boolean isHashinatorInitialized() {
-        return (m_hashinator != null);
+        return (m_routingTable.hashinator != null);
     }
 
     /**
@@ -1568,10 +1709,11 @@ class Distributer {
      * @return
      */
     public long getPartitionForParameter(byte typeValue, Object value) {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_routingTable.hashinator;
+        if (hashinator == null) {
             return -1;
         }
-        return m_hashinator.getHashedPartitionForParameter(typeValue, value);
+        return hashinator.getHashedPartitionForParameter(typeValue, value);
     }
 
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
@@ -1639,6 +1781,10 @@ class Distributer {
         m_topologyChangeAware = topoAware;
     }
 
+    void setRequestCoalescing(boolean coalesce) {
+        m_requestCoalescing = coalesce;
+    }
+
     void createConnectionsUponTopologyChange() {
 
         if(!m_topologyChangeAware || m_createConnectionUponTopoChangeInProgress.get()) {
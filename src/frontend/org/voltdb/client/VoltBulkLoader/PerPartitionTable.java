@@ -168,6 +168,19 @@ public class PerPartitionTable {
      * drain the queue. The task will drain the queue until it doesn't contain a single batch.
      */
     synchronized void insertRowInTable(final VoltBulkLoaderRow nextRow) throws InterruptedException {
+        queueRow(nextRow);
+    }
+
+    /**
+     * Queue rows bucketed for this partition, taking the lock once for all of them.
+     */
+    synchronized void insertRowsInTable(final List<VoltBulkLoaderRow> rows) throws InterruptedException {
+        for (VoltBulkLoaderRow row : rows) {
+            queueRow(row);
+        }
+    }
+
+    private void queueRow(final VoltBulkLoaderRow nextRow) throws InterruptedException {
         m_partitionRowQueue.put(nextRow);
         if (m_partitionRowQueue.size() == m_minBatchTriggerSize) {
             m_es.execute(new Runnable() {
@@ -263,6 +276,7 @@ public class PerPartitionTable {
     private PartitionProcedureCallback buildTable() {
         ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
         m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
+        m_table.ensureRowCapacity(buf.size());
 
         Map<VoltBulkLoader, Long> batchSizes = new HashMap<>();
         ListIterator<VoltBulkLoaderRow> it = buf.listIterator();
@@ -308,8 +308,74 @@ public class VoltBulkLoader {
      * @throws java.lang.InterruptedException
      */
     public void insertRow(Object rowHandle, Object... fieldList)  throws InterruptedException {
-        int partitionId = 0;
+        VoltBulkLoaderRow newRow = newRow(rowHandle, fieldList);
+        if (newRow == null) {
+            return;
+        }
         //Find partition to send this row to and put on correct PerPartitionTable.
+        if (m_isMP) {
+            m_partitionTable[m_firstPartitionTable].insertRowInTable(newRow);
+        }
+        else {
+            try {
+                int partitionId = (int)m_clientImpl.getPartitionForParameter(
+                        m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
+                m_partitionTable[partitionId].insertRowInTable(newRow);
+            } catch (VoltTypeException e) {
+                generateError(rowHandle, fieldList, e.getMessage());
+                return;
+            }
+        }
+        m_outstandingRowCount.incrementAndGet();
+    }
+
+    /**
+     *  <p>Add a chunk of rows to VoltBulkLoader table. The rows are bucketed by partition
+     *  first, and each bucket is handed to its partition in one go, rather than contending
+     *  for the partition row by row. The rows of a partition keep their order in the chunk.</p>
+     *
+     * @param rowHandles User supplied objects used to distinguish failed insert attempts
+     * @param fieldLists Lists of fields associated with each row insertion
+     * @throws java.lang.InterruptedException
+     */
+    public void insertRows(List<?> rowHandles, List<Object[]> fieldLists) throws InterruptedException {
+        assert(rowHandles.size() == fieldLists.size());
+        @SuppressWarnings("unchecked")
+        final List<VoltBulkLoaderRow>[] buckets = new List[m_partitionTable.length];
+        for (int i = 0; i < fieldLists.size(); i++) {
+            final Object rowHandle = rowHandles.get(i);
+            final Object[] fieldList = fieldLists.get(i);
+            VoltBulkLoaderRow newRow = newRow(rowHandle, fieldList);
+            if (newRow == null) {
+                continue;
+            }
+            int partitionId = m_firstPartitionTable;
+            if (!m_isMP) {
+                try {
+                    partitionId = (int)m_clientImpl.getPartitionForParameter(
+                            m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
+                } catch (VoltTypeException e) {
+                    generateError(rowHandle, fieldList, e.getMessage());
+                    continue;
+                }
+            }
+            if (buckets[partitionId] == null) {
+                buckets[partitionId] = new ArrayList<VoltBulkLoaderRow>();
+            }
+            buckets[partitionId].add(newRow);
+        }
+        for (int partitionId = m_firstPartitionTable; partitionId <= m_lastPartitionTable; partitionId++) {
+            if (buckets[partitionId] != null) {
+                m_outstandingRowCount.addAndGet(buckets[partitionId].size());
+                m_partitionTable[partitionId].insertRowsInTable(buckets[partitionId]);
+            }
+        }
+    }
+
+    /**
+     * @return the row to queue, null if it is malformed and has been failed
+     */
+    private VoltBulkLoaderRow newRow(Object rowHandle, Object[] fieldList) {
         if (fieldList == null || fieldList.length <= 0) {
             String errMsg;
             if (rowHandle == null)
@@ -317,7 +383,7 @@ public class VoltBulkLoader {
             else
                 errMsg = "Error: insertRow received empty fieldList for row: " + rowHandle.toString();
             generateError(rowHandle, fieldList, errMsg);
-            return;
+            return null;
         }
         if (fieldList.length != m_columnCnt) {
             String errMsg;
@@ -328,23 +394,9 @@ public class VoltBulkLoader {
                 errMsg = "Error: insertRow received incorrect number of columns; " + fieldList.length +
                         " found, " + m_columnCnt + " expected for row: " + rowHandle.toString();
             generateError(rowHandle, fieldList, errMsg);
-            return;
+            return null;
         }
-        VoltBulkLoaderRow newRow = new VoltBulkLoaderRow(this, rowHandle, fieldList);
-        if (m_isMP) {
-            m_partitionTable[m_firstPartitionTable].insertRowInTable(newRow);
-        }
-        else {
-            try {
-                partitionId = (int)m_clientImpl.getPartitionForParameter(
-                        m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
-                m_partitionTable[partitionId].insertRowInTable(newRow);
-            } catch (VoltTypeException e) {
-                generateError(rowHandle, fieldList, e.getMessage());
-                return;
-            }
-        }
-        m_outstandingRowCount.incrementAndGet();
+        return new VoltBulkLoaderRow(this, rowHandle, fieldList);
     }
 
     /**
@@ -0,0 +1,566 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.voltcore.messaging.VoltMessage;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.VoltUnsafe;
+import org.voltdb.LogEntryType;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+/**
+ * A single preallocated, memory-mapped command log segment.
+ *
+ * Segments are zero filled when they are created so that appending a block
+ * never has to extend the file, and the zeroed tail doubles as the end of log
+ * marker. Every group commit appends one block of entries protected by its
+ * own CRC. A segment that was being written when the process died simply ends
+ * at the first block whose magic or CRC does not match; a sealed segment
+ * records where its data ends and any bad block before that point is treated
+ * as corruption.
+ */
+public class CommandLogSegment {
+    static final String SEGMENT_PREFIX = "clseg_";
+    static final String SEGMENT_SUFFIX = ".vclog";
+
+    public static final int VERSION = 1;
+
+    // Segment header layout:
+    //  - magic (4 bytes)
+    //  - version of the segment format (4 bytes)
+    //  - crc of the rest of the header (4 bytes)
+    //  - segment id (8 bytes)
+    //  - creation time in millis (8 bytes)
+    //  - instance id coordinator (4 bytes)
+    //  - instance id timestamp (8 bytes)
+    //  - sealed flag (4 bytes)
+    //  - offset of the end of the last block, only valid when sealed (4 bytes)
+    static final int SEGMENT_MAGIC = 0x56434C47;
+    static final int HEADER_MAGIC_OFFSET = 0;
+    static final int HEADER_VERSION_OFFSET = HEADER_MAGIC_OFFSET + 4;
+    static final int HEADER_CRC_OFFSET = HEADER_VERSION_OFFSET + 4;
+    static final int HEADER_SEGMENT_ID_OFFSET = HEADER_CRC_OFFSET + 4;
+    static final int HEADER_CREATED_OFFSET = HEADER_SEGMENT_ID_OFFSET + 8;
+    static final int HEADER_INSTANCE_COORD_OFFSET = HEADER_CREATED_OFFSET + 8;
+    static final int HEADER_INSTANCE_TIMESTAMP_OFFSET = HEADER_INSTANCE_COORD_OFFSET + 4;
+    static final int HEADER_SEALED_OFFSET = HEADER_INSTANCE_TIMESTAMP_OFFSET + 8;
+    static final int HEADER_DATA_END_OFFSET = HEADER_SEALED_OFFSET + 4;
+    static final int HEADER_BYTES = 64;
+
+    // Block header layout (one block per group commit):
+    //  - magic (4 bytes)
+    //  - payload length (4 bytes)
+    //  - number of entries in the payload (4 bytes)
+    //  - crc of the payload (4 bytes)
+    static final int BLOCK_MAGIC = 0x434C424B;
+    static final int BLOCK_MAGIC_OFFSET = 0;
+    static final int BLOCK_LENGTH_OFFSET = BLOCK_MAGIC_OFFSET + 4;
+    static final int BLOCK_COUNT_OFFSET = BLOCK_LENGTH_OFFSET + 4;
+    static final int BLOCK_CRC_OFFSET = BLOCK_COUNT_OFFSET + 4;
+    public static final int BLOCK_HEADER_BYTES = BLOCK_CRC_OFFSET + 4;
+
+    // Entry layout (each block has multiple entries):
+    //  - length of the entry excluding this field (4 bytes)
+    //  - entry type, see LogEntryType (1 byte)
+    //  - partition id of the site that logged the entry (4 bytes)
+    //  - sp handle (8 bytes)
+    //  - type specific body
+    // INITIATION body:
+    //  - txn id (8 bytes), unique id (8 bytes)
+    //  - number of involved partitions, -1 for none (4 bytes), followed by the partition ids
+    //  - serialized Iv2InitiateTaskMessage
+    // IV2FAULT and MASTERMODE body:
+    //  - writer HSId (8 bytes)
+    //  - number of survivors (4 bytes), followed by the survivor HSIds
+    static final int ENTRY_LENGTH_OFFSET = 0;
+    static final int ENTRY_TYPE_OFFSET = ENTRY_LENGTH_OFFSET + 4;
+    static final int ENTRY_PARTITION_OFFSET = ENTRY_TYPE_OFFSET + 1;
+    static final int ENTRY_SP_HANDLE_OFFSET = ENTRY_PARTITION_OFFSET + 4;
+    static final int ENTRY_HEADER_BYTES = ENTRY_SP_HANDLE_OFFSET + 8;
+    static final int ENTRY_TXN_ID_OFFSET = ENTRY_HEADER_BYTES;
+    static final int ENTRY_UNIQUE_ID_OFFSET = ENTRY_TXN_ID_OFFSET + 8;
+    static final int ENTRY_INVOLVED_COUNT_OFFSET = ENTRY_UNIQUE_ID_OFFSET + 8;
+
+    private static final int PREALLOCATE_CHUNK = 1024 * 1024;
+
+    static final FileFilter SEGMENT_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File pathname) {
+            return pathname.isFile() && parseSegmentId(pathname.getName()) != null;
+        }
+    };
+
+    private final File m_file;
+    private final long m_id;
+    private final FileChannel m_channel;
+    private final MappedByteBuffer m_buf;
+    private final CRC32 m_crc = new CRC32();
+    private int m_writePosition = HEADER_BYTES;
+    private int m_entryCount = 0;
+    private boolean m_sealed = false;
+
+    private CommandLogSegment(File file, long id, FileChannel channel, MappedByteBuffer buf) {
+        m_file = file;
+        m_id = id;
+        m_channel = channel;
+        m_buf = buf;
+    }
+
+    static String segmentFileName(long id) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    static Long parseSegmentId(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return all segment files in the directory ordered by segment id
+     */
+    public static List<File> listSegments(File dir) {
+        File[] files = dir.listFiles(SEGMENT_FILTER);
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort((a, b) -> Long.compare(parseSegmentId(a.getName()), parseSegmentId(b.getName())));
+        return segments;
+    }
+
+    /**
+     * Create a new segment of the given size, zero filling the whole file before
+     * mapping it so that group commits only ever touch allocated blocks.
+     */
+    public static CommandLogSegment create(File dir, long id, int size, InstanceId instanceId) throws IOException {
+        if (size <= HEADER_BYTES + BLOCK_HEADER_BYTES) {
+            throw new IllegalArgumentException("Command log segment size " + size + " is too small");
+        }
+        File file = new File(dir, segmentFileName(id));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel();
+        try {
+            channel.truncate(0);
+            ByteBuffer zeros = ByteBuffer.allocateDirect(Math.min(PREALLOCATE_CHUNK, size));
+            long written = 0;
+            while (written < size) {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), size - written));
+                written += channel.write(zeros, written);
+            }
+            channel.force(true);
+            VoltUnsafe.cleanDirectBuffer(zeros);
+
+            MappedByteBuffer buf = channel.map(MapMode.READ_WRITE, 0, size);
+            CommandLogSegment segment = new CommandLogSegment(file, id, channel, buf);
+            buf.putInt(HEADER_MAGIC_OFFSET, SEGMENT_MAGIC);
+            buf.putInt(HEADER_VERSION_OFFSET, VERSION);
+            buf.putLong(HEADER_SEGMENT_ID_OFFSET, id);
+            buf.putLong(HEADER_CREATED_OFFSET, System.currentTimeMillis());
+            buf.putInt(HEADER_INSTANCE_COORD_OFFSET, instanceId == null ? 0 : instanceId.getCoord());
+            buf.putLong(HEADER_INSTANCE_TIMESTAMP_OFFSET, instanceId == null ? 0 : instanceId.getTimestamp());
+            buf.putInt(HEADER_SEALED_OFFSET, 0);
+            buf.putInt(HEADER_DATA_END_OFFSET, 0);
+            segment.writeHeaderCrc();
+            buf.force();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            file.delete();
+            throw e;
+        }
+    }
+
+    public long id() {
+        return m_id;
+    }
+
+    public File file() {
+        return m_file;
+    }
+
+    public int capacity() {
+        return m_buf.capacity();
+    }
+
+    public int size() {
+        return m_writePosition;
+    }
+
+    public int entryCount() {
+        return m_entryCount;
+    }
+
+    /**
+     * @return the number of payload bytes the next block can hold
+     */
+    public int remaining() {
+        return Math.max(0, m_buf.capacity() - m_writePosition - BLOCK_HEADER_BYTES);
+    }
+
+    /**
+     * Append one block made of the entries in <code>entries[from, to)</code>.
+     * The caller must make sure they fit, see {@link #remaining()}.
+     */
+    public void appendBlock(List<ByteBuffer> entries, int from, int to) {
+        assert !m_sealed;
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            length += entries.get(i).remaining();
+        }
+        if (length > remaining()) {
+            throw new IllegalArgumentException("Block of " + length + " bytes does not fit in segment " + m_id);
+        }
+
+        final int payloadStart = m_writePosition + BLOCK_HEADER_BYTES;
+        ByteBuffer payload = m_buf.duplicate();
+        payload.position(payloadStart);
+        for (int i = from; i < to; i++) {
+            payload.put(entries.get(i).duplicate());
+        }
+        payload.limit(payloadStart + length);
+        payload.position(payloadStart);
+        m_crc.reset();
+        m_crc.update(payload);
+
+        m_buf.putInt(m_writePosition + BLOCK_LENGTH_OFFSET, length);
+        m_buf.putInt(m_writePosition + BLOCK_COUNT_OFFSET, to - from);
+        m_buf.putInt(m_writePosition + BLOCK_CRC_OFFSET, (int) m_crc.getValue());
+        m_buf.putInt(m_writePosition + BLOCK_MAGIC_OFFSET, BLOCK_MAGIC);
+        m_writePosition = payloadStart + length;
+        m_entryCount += to - from;
+    }
+
+    /**
+     * Flush all appended blocks to the device.
+     */
+    public void force() {
+        m_buf.force();
+    }
+
+    /**
+     * Record the end of the data in the header and close the segment. No more
+     * blocks can be appended after this.
+     */
+    public void seal() throws IOException {
+        if (m_sealed) {
+            return;
+        }
+        m_buf.putInt(HEADER_SEALED_OFFSET, 1);
+        m_buf.putInt(HEADER_DATA_END_OFFSET, m_writePosition);
+        writeHeaderCrc();
+        m_buf.force();
+        m_sealed = true;
+        close();
+    }
+
+    public void close() throws IOException {
+        VoltUnsafe.cleanDirectBuffer(m_buf);
+        m_channel.close();
+    }
+
+    public void closeAndDelete() throws IOException {
+        close();
+        m_file.delete();
+    }
+
+    private void writeHeaderCrc() {
+        m_buf.putInt(HEADER_CRC_OFFSET, headerCrc(m_buf));
+    }
+
+    private static int headerCrc(ByteBuffer buf) {
+        ByteBuffer header = buf.duplicate();
+        header.position(HEADER_SEGMENT_ID_OFFSET);
+        header.limit(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(header);
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Entry serialization
+     */
+
+    /**
+     * Serialize an initiation into an entry ready to be appended. The message is
+     * flattened on the calling thread so that the log writer only copies bytes.
+     */
+    public static ByteBuffer initiationEntry(int partitionId, long spHandle, int[] involvedPartitions,
+            Iv2InitiateTaskMessage message) throws IOException {
+        ByteBuffer serialized = VoltMessage.toBuffer(message);
+        int involvedBytes = involvedPartitions == null ? 0 : involvedPartitions.length * 4;
+        int length = ENTRY_INVOLVED_COUNT_OFFSET + 4 + involvedBytes + serialized.remaining();
+        ByteBuffer entry = ByteBuffer.allocate(length);
+        putEntryHeader(entry, length, LogEntryType.INITIATION, partitionId, spHandle);
+        entry.putLong(message.getTxnId());
+        entry.putLong(message.getUniqueId());
+        if (involvedPartitions == null) {
+            entry.putInt(-1);
+        } else {
+            entry.putInt(involvedPartitions.length);
+            for (int partition : involvedPartitions) {
+                entry.putInt(partition);
+            }
+        }
+        entry.put(serialized);
+        entry.flip();
+        return entry;
+    }
+
+    public static ByteBuffer faultEntry(LogEntryType type, int partitionId, long spHandle, long writerHSId,
+            Set<Long> survivors) {
+        int length = ENTRY_HEADER_BYTES + 8 + 4 + survivors.size() * 8;
+        ByteBuffer entry = ByteBuffer.allocate(length);
+        putEntryHeader(entry, length, type, partitionId, spHandle);
+        entry.putLong(writerHSId);
+        entry.putInt(survivors.size());
+        for (long hsId : survivors) {
+            entry.putLong(hsId);
+        }
+        entry.flip();
+        return entry;
+    }
+
+    private static void putEntryHeader(ByteBuffer entry, int length, LogEntryType type, int partitionId,
+            long spHandle) {
+        entry.putInt(length - 4);
+        entry.put(type.asByte());
+        entry.putInt(partitionId);
+        entry.putLong(spHandle);
+    }
+
+    public static LogEntryType entryType(ByteBuffer entry) {
+        return LogEntryType.valueOf(entry.get(entry.position() + ENTRY_TYPE_OFFSET));
+    }
+
+    public static int entryPartitionId(ByteBuffer entry) {
+        return entry.getInt(entry.position() + ENTRY_PARTITION_OFFSET);
+    }
+
+    public static long entrySpHandle(ByteBuffer entry) {
+        return entry.getLong(entry.position() + ENTRY_SP_HANDLE_OFFSET);
+    }
+
+    public static long entryTxnId(ByteBuffer entry) {
+        assert entryType(entry) == LogEntryType.INITIATION;
+        return entry.getLong(entry.position() + ENTRY_TXN_ID_OFFSET);
+    }
+
+    public static long entryUniqueId(ByteBuffer entry) {
+        assert entryType(entry) == LogEntryType.INITIATION;
+        return entry.getLong(entry.position() + ENTRY_UNIQUE_ID_OFFSET);
+    }
+
+    /**
+     * @return the involved partitions of an initiation entry, or null if none were logged
+     */
+    public static int[] entryInvolvedPartitions(ByteBuffer entry) {
+        assert entryType(entry) == LogEntryType.INITIATION;
+        int count = entry.getInt(entry.position() + ENTRY_INVOLVED_COUNT_OFFSET);
+        if (count < 0) {
+            return null;
+        }
+        int[] partitions = new int[count];
+        int offset = entry.position() + ENTRY_INVOLVED_COUNT_OFFSET + 4;
+        for (int i = 0; i < count; i++) {
+            partitions[i] = entry.getInt(offset + i * 4);
+        }
+        return partitions;
+    }
+
+    public static Iv2InitiateTaskMessage entryMessage(ByteBuffer entry, VoltDbMessageFactory factory)
+            throws IOException {
+        assert entryType(entry) == LogEntryType.INITIATION;
+        int count = entry.getInt(entry.position() + ENTRY_INVOLVED_COUNT_OFFSET);
+        ByteBuffer message = entry.duplicate();
+        message.position(entry.position() + ENTRY_INVOLVED_COUNT_OFFSET + 4 + Math.max(0, count) * 4);
+        return (Iv2InitiateTaskMessage) factory.createMessageFromBuffer(message, -1);
+    }
+
+    /**
+     * Sequential reader over the entries of one segment file.
+     */
+    public static class Reader implements AutoCloseable {
+        private final File m_file;
+        private final long m_id;
+        private final FileChannel m_channel;
+        private final MappedByteBuffer m_buf;
+        private final InstanceId m_instanceId;
+        private final boolean m_sealed;
+        private final int m_dataEnd;
+        private final CRC32 m_crc = new CRC32();
+
+        private int m_blockPosition = HEADER_BYTES;
+        private int m_entryPosition = -1;
+        private int m_blockEnd = -1;
+        private int m_lastEntryOffset = -1;
+        private boolean m_tornTail = false;
+
+        public Reader(File file) throws IOException {
+            m_file = file;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            m_channel = raf.getChannel();
+            try {
+                if (m_channel.size() < HEADER_BYTES) {
+                    throw new IOException("Command log segment " + file + " is truncated");
+                }
+                m_buf = m_channel.map(MapMode.READ_ONLY, 0, m_channel.size());
+                if (m_buf.getInt(HEADER_MAGIC_OFFSET) != SEGMENT_MAGIC) {
+                    throw new IOException("Command log segment " + file + " has a bad magic number");
+                }
+                int version = m_buf.getInt(HEADER_VERSION_OFFSET);
+                if (version != VERSION) {
+                    throw new IOException("Command log segment " + file + " has unsupported version " + version);
+                }
+                if (m_buf.getInt(HEADER_CRC_OFFSET) != headerCrc(m_buf)) {
+                    throw new IOException("Command log segment " + file + " has a corrupt header");
+                }
+                m_id = m_buf.getLong(HEADER_SEGMENT_ID_OFFSET);
+                m_instanceId = new InstanceId(m_buf.getInt(HEADER_INSTANCE_COORD_OFFSET),
+                        m_buf.getLong(HEADER_INSTANCE_TIMESTAMP_OFFSET));
+                m_sealed = m_buf.getInt(HEADER_SEALED_OFFSET) != 0;
+                m_dataEnd = m_sealed ? m_buf.getInt(HEADER_DATA_END_OFFSET) : m_buf.capacity();
+                if (m_dataEnd < HEADER_BYTES || m_dataEnd > m_buf.capacity()) {
+                    throw new IOException("Command log segment " + file + " has a bad data length " + m_dataEnd);
+                }
+            } catch (IOException e) {
+                m_channel.close();
+                throw e;
+            }
+        }
+
+        public File file() {
+            return m_file;
+        }
+
+        public long id() {
+            return m_id;
+        }
+
+        public InstanceId instanceId() {
+            return m_instanceId;
+        }
+
+        public boolean isSealed() {
+            return m_sealed;
+        }
+
+        /**
+         * @return true if reading stopped at a partially written block instead of the end of the data
+         */
+        public boolean hasTornTail() {
+            return m_tornTail;
+        }
+
+        /**
+         * @return the next entry as a buffer positioned at the start of the entry, or null
+         *         at the end of the segment
+         */
+        public ByteBuffer nextEntry() throws IOException {
+            if (m_entryPosition >= m_blockEnd && !nextBlock()) {
+                return null;
+            }
+            m_lastEntryOffset = m_entryPosition;
+            ByteBuffer entry = entryAt(m_entryPosition);
+            if (m_entryPosition + entry.remaining() > m_blockEnd) {
+                throw new IOException("Command log entry at " + m_entryPosition + " in " + m_file +
+                        " runs past the end of its block");
+            }
+            m_entryPosition += entry.remaining();
+            return entry;
+        }
+
+        /**
+         * @return the offset in the file of the entry last returned by {@link #nextEntry()}
+         */
+        public int lastEntryOffset() {
+            return m_lastEntryOffset;
+        }
+
+        /**
+         * @return the entry at an offset previously returned by {@link #lastEntryOffset()}
+         */
+        public ByteBuffer entryAt(int offset) {
+            int length = m_buf.getInt(offset + ENTRY_LENGTH_OFFSET) + 4;
+            ByteBuffer entry = m_buf.duplicate();
+            entry.position(offset);
+            entry.limit(offset + length);
+            return entry.slice();
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (m_blockEnd >= 0) {
+                m_blockPosition = m_blockEnd;
+            }
+            if (m_blockPosition + BLOCK_HEADER_BYTES > m_dataEnd) {
+                return false;
+            }
+            int magic = m_buf.getInt(m_blockPosition + BLOCK_MAGIC_OFFSET);
+            int length = m_buf.getInt(m_blockPosition + BLOCK_LENGTH_OFFSET);
+            int payloadStart = m_blockPosition + BLOCK_HEADER_BYTES;
+            boolean valid = magic == BLOCK_MAGIC && length >= 0 && length <= m_dataEnd - payloadStart;
+            if (valid) {
+                ByteBuffer payload = m_buf.duplicate();
+                payload.position(payloadStart);
+                payload.limit(payloadStart + length);
+                m_crc.reset();
+                m_crc.update(payload);
+                valid = (int) m_crc.getValue() == m_buf.getInt(m_blockPosition + BLOCK_CRC_OFFSET);
+            }
+            if (!valid) {
+                if (m_sealed) {
+                    throw new IOException("Command log segment " + m_file + " is corrupt at offset " + m_blockPosition);
+                }
+                // A block that was never completely written, or the zeroed end of the segment
+                m_tornTail = magic != 0;
+                return false;
+            }
+            m_entryPosition = payloadStart;
+            m_blockEnd = payloadStart + length;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            VoltUnsafe.cleanDirectBuffer(m_buf);
+            m_channel.close();
+        }
+    }
+}
@@ -0,0 +1,643 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.CommandLog;
+import org.voltdb.CommandLogStats;
+import org.voltdb.LogEntryType;
+import org.voltdb.SnapshotCompletionInterest;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltZK;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Command log that group commits the initiations of every site on this host
+ * into preallocated, memory-mapped segment files.
+ *
+ * Sites serialize their own entries and hand them over under a per-site lock,
+ * so logging never contends with other sites. A single writer thread swaps out
+ * the pending entries of all sites together with their durability checks,
+ * appends them as one CRC protected block and forces the segment before the
+ * checks are handed back to the sites. In synchronous mode the writer commits
+ * as soon as there is work, so every fsync covers everything that arrived while
+ * the previous one was in flight. In asynchronous mode it commits every fsync
+ * interval, or earlier once max txns are outstanding, at which point logging
+ * sites get an incomplete backpressure future.
+ *
+ * Until the log is initialized at the end of replay, or for rejoin, entries are
+ * acknowledged without being written since the replayed transactions are
+ * still in the previous log.
+ */
+public class FileCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Upper bound on the size of each segment, it is also capped to a quarter of the configured log size
+    static final int MAX_SEGMENT_SIZE = Integer.getInteger("COMMANDLOG_SEGMENT_SIZE", 64 * 1024 * 1024);
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final ListenableFuture<Object> DURABLE = Futures.immediateFuture(null);
+
+    private final boolean m_synchronous;
+    private final int m_fsyncIntervalMs;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    private final Map<DurabilityListener, SiteLog> m_siteLogs = new ConcurrentHashMap<>();
+    private final List<PendingFault> m_pendingFaults = new ArrayList<>();
+    private final AtomicInteger m_outstandingTxns = new AtomicInteger();
+    private final AtomicLong m_outstandingBytes = new AtomicLong();
+
+    private final Object m_signal = new Object();
+    private boolean m_hasWork = false;
+    private volatile boolean m_shutdown = false;
+    private final Thread m_writer;
+    private final ExecutorService m_preallocator;
+
+    private volatile boolean m_initialized = false;
+    private volatile ImmutableSet<Integer> m_decommissionedPartitions = ImmutableSet.of();
+
+    // State below is only touched by the writer thread once the log is initialized
+    private InstanceId m_instanceId;
+    private long m_logSizeBytes;
+    private int m_segmentSize;
+    private long m_nextSegmentId;
+    private CommandLogSegment m_current;
+    private Map<Integer, Long> m_currentMaxSpHandles = new HashMap<>();
+    private Future<CommandLogSegment> m_nextSegment;
+    private final ArrayDeque<SealedSegment> m_sealed = new ArrayDeque<>();
+    private long m_sealedBytes = 0;
+    private final List<SnapshotCompletionEvent> m_truncations = new ArrayList<>();
+    private volatile boolean m_truncationPending = false;
+
+    // Stats
+    private volatile int m_inUseSegments = 0;
+    private volatile int m_preallocatedSegments = 0;
+    private final AtomicLong m_syncCount = new AtomicLong();
+    private final AtomicLong m_syncIntervalNanos = new AtomicLong();
+
+    /**
+     * Entries and durability bookkeeping of one site, guarded by its own monitor.
+     */
+    private static class SiteLog {
+        final DurabilityListener m_listener;
+        ArrayList<ByteBuffer> m_entries = new ArrayList<>();
+        List<SettableFuture<Object>> m_backpressure = new ArrayList<>();
+        int m_pendingTxns = 0;
+        long m_pendingBytes = 0;
+        boolean m_dirty = false;
+
+        SiteLog(DurabilityListener listener) {
+            m_listener = listener;
+        }
+    }
+
+    private static class PendingFault {
+        final ByteBuffer m_entry;
+        final SettableFuture<Boolean> m_written = SettableFuture.create();
+
+        PendingFault(ByteBuffer entry) {
+            m_entry = entry;
+        }
+    }
+
+    private static class SealedSegment {
+        final File m_file;
+        final long m_bytes;
+        final Map<Integer, Long> m_maxSpHandles;
+
+        SealedSegment(File file, long bytes, Map<Integer, Long> maxSpHandles) {
+            m_file = file;
+            m_bytes = bytes;
+            m_maxSpHandles = maxSpHandles;
+        }
+    }
+
+    /**
+     * Group commit of everything drained from the sites in one pass.
+     */
+    private static class Commit {
+        final List<ByteBuffer> m_entries = new ArrayList<>();
+        final List<DurabilityListener> m_listeners = new ArrayList<>();
+        final List<CompletionChecks> m_checks = new ArrayList<>();
+        final List<SettableFuture<Object>> m_backpressure = new ArrayList<>();
+        final List<PendingFault> m_faults = new ArrayList<>();
+        int m_txns = 0;
+        long m_bytes = 0;
+
+        boolean isEmpty() {
+            return m_checks.isEmpty() && m_faults.isEmpty();
+        }
+    }
+
+    public FileCommandLog(boolean synchronous, int fsyncIntervalMs, int maxTxns, String logPath,
+            String snapshotPath) {
+        m_synchronous = synchronous;
+        m_fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        m_maxTxns = Math.max(1, maxTxns);
+        m_logDir = new File(logPath);
+        if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+            VoltDB.crashLocalVoltDB("Unable to create command log directory " + m_logDir, false, null);
+        }
+        if (snapshotPath != null) {
+            File snapshotDir = new File(snapshotPath);
+            if (!snapshotDir.exists() && !snapshotDir.mkdirs()) {
+                VoltDB.crashLocalVoltDB("Unable to create command log snapshot directory " + snapshotDir, false, null);
+            }
+        }
+        m_preallocator = CoreUtils.getSingleThreadExecutor("Command Log Preallocator");
+        m_writer = new Thread(this::runWriter, "Command Log Writer");
+        m_writer.setDaemon(true);
+        m_writer.start();
+    }
+
+    @Override
+    public void init(int logSize, long txnId, String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        initialize(logSize, txnId, perPartitionTxnId, VoltDB.instance().getHostMessenger().getInstanceId());
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, boolean isRejoin, String coreBinding,
+            Map<Integer, Long> perPartitionTxnId) {
+        initialize(logSize, txnId, perPartitionTxnId, VoltDB.instance().getHostMessenger().getInstanceId());
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+    }
+
+    synchronized void initialize(int logSizeMb, long txnId, Map<Integer, Long> perPartitionTxnId,
+            InstanceId instanceId) {
+        if (m_initialized) {
+            return;
+        }
+        m_logSizeBytes = logSizeMb * 1024L * 1024L;
+        m_segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, m_logSizeBytes / 4));
+        m_instanceId = instanceId;
+        try {
+            // Anything left in the directory belongs to an earlier incarnation that
+            // has either been replayed and covered by a truncation snapshot, or discarded by create
+            m_nextSegmentId = 0;
+            for (File stale : CommandLogSegment.listSegments(m_logDir)) {
+                LOG.info("Removing stale command log segment " + stale);
+                m_nextSegmentId = Math.max(m_nextSegmentId,
+                        CommandLogSegment.parseSegmentId(stale.getName()) + 1);
+                stale.delete();
+            }
+            new TruncationPoint(m_instanceId, txnId, perPartitionTxnId).write(m_logDir);
+            m_current = CommandLogSegment.create(m_logDir, m_nextSegmentId++, m_segmentSize, m_instanceId);
+            m_inUseSegments = 1;
+            preallocateNextSegment();
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to initialize the command log in " + m_logDir, true, e);
+        }
+        LOG.info("Command log initialized in " + m_logDir + " with " + (m_synchronous ? "synchronous" :
+                "asynchronous") + " group commit, segment size " + m_segmentSize + " bytes");
+        m_initialized = true;
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public ListenableFuture<Object> log(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions,
+            DurabilityListener listener, TransactionTask durabilityHandle) {
+        // Flatten the message on the site thread so that the writer only copies bytes
+        ByteBuffer entry = null;
+        if (message != null && m_initialized) {
+            try {
+                entry = CommandLogSegment.initiationEntry(TxnEgo.getPartitionId(spHandle), spHandle,
+                        involvedPartitions, message);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to serialize a command log entry", true, e);
+            }
+        }
+
+        final SiteLog site = siteLog(listener);
+        SettableFuture<Object> backpressure = null;
+        final int outstanding;
+        synchronized (site) {
+            if (entry != null) {
+                site.m_entries.add(entry);
+                site.m_pendingBytes += entry.remaining();
+                m_outstandingBytes.addAndGet(entry.remaining());
+            }
+            site.m_pendingTxns++;
+            listener.addTransaction(durabilityHandle);
+            outstanding = m_outstandingTxns.incrementAndGet();
+            if (!m_synchronous && outstanding >= m_maxTxns) {
+                backpressure = SettableFuture.create();
+                site.m_backpressure.add(backpressure);
+            }
+        }
+
+        if (m_synchronous || outstanding >= m_maxTxns) {
+            signalWriter();
+        }
+        if (m_synchronous) {
+            return null;
+        }
+        return backpressure == null ? DURABLE : backpressure;
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+            long spHandle) {
+        return logIv2Fault(writerHSId, survivorHSId, partitionId, spHandle, LogEntryType.IV2FAULT);
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+            long spHandle, LogEntryType entryType) {
+        PendingFault fault = new PendingFault(
+                CommandLogSegment.faultEntry(entryType, partitionId, spHandle, writerHSId, survivorHSId));
+        synchronized (m_pendingFaults) {
+            m_pendingFaults.add(fault);
+        }
+        signalWriter();
+        return fault.m_written;
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        SiteLog site = siteLog(listener);
+        synchronized (site) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+            site.m_dirty = true;
+        }
+        signalWriter();
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+        siteLog(durabilityListener);
+    }
+
+    private SiteLog siteLog(DurabilityListener listener) {
+        SiteLog site = m_siteLogs.get(listener);
+        if (site == null) {
+            site = m_siteLogs.computeIfAbsent(listener, SiteLog::new);
+        }
+        return site;
+    }
+
+    private void signalWriter() {
+        synchronized (m_signal) {
+            if (!m_hasWork) {
+                m_hasWork = true;
+                m_signal.notify();
+            }
+        }
+    }
+
+    /*
+     * Writer thread
+     */
+
+    private void runWriter() {
+        long lastSync = System.nanoTime();
+        try {
+            while (!m_shutdown) {
+                awaitWork();
+                Commit commit = drain();
+                if (!commit.isEmpty()) {
+                    long now = System.nanoTime();
+                    m_syncIntervalNanos.addAndGet(now - lastSync);
+                    m_syncCount.incrementAndGet();
+                    lastSync = now;
+                    commit(commit);
+                }
+                processTruncations();
+            }
+            // Make everything that was handed to the log before shutdown durable
+            commit(drain());
+        } catch (Throwable t) {
+            VoltDB.crashLocalVoltDB("Command log writer failed", true, t);
+        }
+    }
+
+    private void awaitWork() throws InterruptedException {
+        synchronized (m_signal) {
+            if (m_synchronous) {
+                while (!m_hasWork && !m_shutdown) {
+                    m_signal.wait();
+                }
+            } else if (!m_hasWork && !m_shutdown) {
+                m_signal.wait(m_fsyncIntervalMs);
+            }
+            m_hasWork = false;
+        }
+    }
+
+    private Commit drain() {
+        Commit commit = new Commit();
+        for (SiteLog site : m_siteLogs.values()) {
+            synchronized (site) {
+                if (site.m_pendingTxns == 0 && !site.m_dirty) {
+                    continue;
+                }
+                if (!site.m_entries.isEmpty()) {
+                    commit.m_entries.addAll(site.m_entries);
+                    site.m_entries = new ArrayList<>(site.m_entries.size());
+                }
+                if (!site.m_backpressure.isEmpty()) {
+                    commit.m_backpressure.addAll(site.m_backpressure);
+                    site.m_backpressure = new ArrayList<>();
+                }
+                commit.m_txns += site.m_pendingTxns;
+                commit.m_bytes += site.m_pendingBytes;
+                site.m_pendingTxns = 0;
+                site.m_pendingBytes = 0;
+                site.m_dirty = false;
+                DurabilityListener listener = site.m_listener;
+                commit.m_listeners.add(listener);
+                commit.m_checks.add(listener.startNewTaskList(listener.getNumberOfTasks()));
+            }
+        }
+        synchronized (m_pendingFaults) {
+            commit.m_faults.addAll(m_pendingFaults);
+            m_pendingFaults.clear();
+        }
+        return commit;
+    }
+
+    private void commit(Commit commit) throws IOException {
+        if (m_initialized) {
+            if (!commit.m_faults.isEmpty()) {
+                for (PendingFault fault : commit.m_faults) {
+                    commit.m_entries.add(fault.m_entry);
+                }
+            }
+            if (!commit.m_entries.isEmpty()) {
+                write(commit.m_entries);
+                m_current.force();
+            }
+        }
+
+        for (int i = 0; i < commit.m_checks.size(); i++) {
+            commit.m_listeners.get(i).processDurabilityChecks(commit.m_checks.get(i));
+        }
+        m_outstandingTxns.addAndGet(-commit.m_txns);
+        m_outstandingBytes.addAndGet(-commit.m_bytes);
+        for (SettableFuture<Object> backpressure : commit.m_backpressure) {
+            backpressure.set(null);
+        }
+        for (PendingFault fault : commit.m_faults) {
+            fault.m_written.set(true);
+        }
+
+        if (m_initialized && m_sealedBytes + m_current.size() > m_logSizeBytes) {
+            requestTruncationSnapshot(false);
+        }
+    }
+
+    /**
+     * Append the entries to the current segment, splitting them into one block
+     * per segment when they don't fit.
+     */
+    private void write(List<ByteBuffer> entries) throws IOException {
+        int from = 0;
+        while (from < entries.size()) {
+            final int room = m_current.remaining();
+            int bytes = 0;
+            int to = from;
+            while (to < entries.size() && bytes + entries.get(to).remaining() <= room) {
+                ByteBuffer entry = entries.get(to);
+                bytes += entry.remaining();
+                m_currentMaxSpHandles.merge(CommandLogSegment.entryPartitionId(entry),
+                        CommandLogSegment.entrySpHandle(entry), Math::max);
+                to++;
+            }
+            if (to == from) {
+                rollSegment(entries.get(from).remaining());
+                continue;
+            }
+            m_current.appendBlock(entries, from, to);
+            from = to;
+        }
+    }
+
+    private void rollSegment(int minimumPayload) throws IOException {
+        m_current.seal();
+        m_sealed.add(new SealedSegment(m_current.file(), m_current.size(), m_currentMaxSpHandles));
+        m_sealedBytes += m_current.size();
+        m_currentMaxSpHandles = new HashMap<>();
+
+        CommandLogSegment next = null;
+        try {
+            next = m_nextSegment.get();
+        } catch (Exception e) {
+            LOG.warn("Unable to preallocate a command log segment, creating one inline", e);
+        }
+        m_preallocatedSegments = 0;
+        final int required = minimumPayload + CommandLogSegment.HEADER_BYTES + CommandLogSegment.BLOCK_HEADER_BYTES;
+        if (next != null && next.capacity() < required) {
+            // An entry larger than a regular segment gets a segment of its own
+            next.closeAndDelete();
+            next = null;
+        }
+        if (next == null) {
+            next = CommandLogSegment.create(m_logDir, m_nextSegmentId++, Math.max(m_segmentSize, required),
+                    m_instanceId);
+        }
+        m_current = next;
+        m_inUseSegments = m_sealed.size() + 1;
+        preallocateNextSegment();
+    }
+
+    private void preallocateNextSegment() {
+        final long id = m_nextSegmentId++;
+        m_nextSegment = m_preallocator.submit(() -> {
+            CommandLogSegment segment = CommandLogSegment.create(m_logDir, id, m_segmentSize, m_instanceId);
+            m_preallocatedSegments = 1;
+            return segment;
+        });
+    }
+
+    /*
+     * Truncation
+     */
+
+    @Override
+    public void requestTruncationSnapshot(boolean queueIfPending) {
+        if (m_truncationPending && !queueIfPending) {
+            return;
+        }
+        m_truncationPending = true;
+        try {
+            VoltDB.instance().getHostMessenger().getZK().create(VoltZK.request_truncation_snapshot_node, null,
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+            LOG.info("Requested a truncation snapshot, the command log holds " +
+                    (m_sealedBytes + (m_current == null ? 0 : m_current.size())) + " bytes");
+        } catch (Exception e) {
+            m_truncationPending = false;
+            LOG.warn("Unable to request a command log truncation snapshot", e);
+        }
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_truncations) {
+                m_truncations.add(event);
+            }
+            signalWriter();
+        }
+        return new CountDownLatch(0);
+    }
+
+    /**
+     * Delete every sealed segment whose entries are all covered by a completed
+     * truncation snapshot and move the truncation point forward.
+     */
+    private void processTruncations() throws IOException {
+        final List<SnapshotCompletionEvent> events;
+        synchronized (m_truncations) {
+            if (m_truncations.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<>(m_truncations);
+            m_truncations.clear();
+        }
+        for (SnapshotCompletionEvent event : events) {
+            Iterator<SealedSegment> iter = m_sealed.iterator();
+            while (iter.hasNext()) {
+                SealedSegment segment = iter.next();
+                if (!isCovered(segment.m_maxSpHandles, event.partitionTxnIds)) {
+                    // Segments are truncated in order
+                    break;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Truncating command log segment " + segment.m_file);
+                }
+                segment.m_file.delete();
+                m_sealedBytes -= segment.m_bytes;
+                iter.remove();
+            }
+            new TruncationPoint(m_instanceId, event.multipartTxnId, event.partitionTxnIds).write(m_logDir);
+        }
+        m_inUseSegments = m_sealed.size() + 1;
+        m_truncationPending = false;
+    }
+
+    private static boolean isCovered(Map<Integer, Long> maxSpHandles, Map<Integer, Long> snapshotTxnIds) {
+        for (Map.Entry<Integer, Long> e : maxSpHandles.entrySet()) {
+            Long snapshotTxnId = snapshotTxnIds.get(e.getKey());
+            if (snapshotTxnId == null || snapshotTxnId < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        m_shutdown = true;
+        synchronized (m_signal) {
+            m_signal.notify();
+        }
+        m_writer.join();
+        m_preallocator.shutdown();
+        m_preallocator.awaitTermination(1, TimeUnit.MINUTES);
+        if (m_initialized) {
+            if (VoltDB.instance().getSnapshotCompletionMonitor() != null) {
+                VoltDB.instance().getSnapshotCompletionMonitor().removeInterest(this);
+            }
+            try {
+                m_current.close();
+                if (m_nextSegment.isDone()) {
+                    m_nextSegment.get().close();
+                }
+            } catch (Exception e) {
+                LOG.warn("Error closing command log segments", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        // Synchronous logging hands the tasks back through the durability checks once they are durable
+        return !m_synchronous;
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long syncs = m_syncCount.getAndSet(0);
+        final long syncNanos = m_syncIntervalNanos.getAndSet(0);
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] =
+                m_outstandingBytes.get();
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] =
+                (long) m_outstandingTxns.get();
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] =
+                m_inUseSegments;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] =
+                m_inUseSegments + m_preallocatedSegments;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] =
+                syncs == 0 ? 0 : (int) TimeUnit.NANOSECONDS.toMillis(syncNanos / syncs);
+    }
+
+    @Override
+    public void notifyDecommissionPartitions(List<Integer> partitions) {
+        m_decommissionedPartitions = ImmutableSet.<Integer>builder()
+                .addAll(m_decommissionedPartitions).addAll(partitions).build();
+    }
+
+    @Override
+    public ImmutableSet<Integer> getDecommissionedPartitions() {
+        return m_decommissionedPartitions;
+    }
+}
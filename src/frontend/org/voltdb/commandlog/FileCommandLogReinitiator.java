@@ -0,0 +1,398 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json_voltpatches.JSONObject;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltdb.ClientInterface;
+import org.voltdb.CommandLogReinitiator;
+import org.voltdb.LogEntryType;
+import org.voltdb.RestoreAgent;
+import org.voltdb.StartAction;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltZK;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Replays the segments written by {@link FileCommandLog}.
+ *
+ * Segments are indexed in parallel, one task per segment, producing for every
+ * partition the offsets of its entries. Each partition whose leader is on this
+ * host is then replayed by its own task, in segment order: single partition
+ * initiations are resubmitted with their original transaction ids and
+ * multi-partition initiations become sentinels that hold the partition's place
+ * until the MPI delivers the transaction. The node hosting the MPI resubmits
+ * the multi-partition transactions it finds in its log in transaction id order.
+ * Once every host has finished, the MPI is sent the end of log.
+ */
+public class FileCommandLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final int REPLAY_THREADS = Integer.getInteger("COMMANDLOG_REPLAY_THREADS",
+            Math.max(1, Math.min(CoreUtils.availableProcessors(), 8)));
+
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final Set<Integer> m_liveHosts;
+    private final List<File> m_segments;
+    private final TruncationPoint m_truncationPoint;
+
+    private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private volatile boolean m_isMPINode = false;
+    private long m_snapshotTxnId = Long.MIN_VALUE;
+    private Map<Integer, Long> m_snapshotPartitionTxnIds = Collections.emptyMap();
+
+    private final AtomicLong m_replayedTxns = new AtomicLong();
+
+    /**
+     * Location of one entry, the segment index in replay order and the offset in the file.
+     */
+    private static class EntryLocation {
+        final int m_segment;
+        final int m_offset;
+
+        EntryLocation(int segment, int offset) {
+            m_segment = segment;
+            m_offset = offset;
+        }
+    }
+
+    /**
+     * Entry offsets of one segment, by partition.
+     */
+    private static class SegmentIndex {
+        final CommandLogSegment.Reader m_reader;
+        final Map<Integer, int[]> m_offsets = new HashMap<>();
+        final Map<Integer, Integer> m_counts = new HashMap<>();
+
+        SegmentIndex(CommandLogSegment.Reader reader) {
+            m_reader = reader;
+        }
+
+        void add(int partitionId, int offset) {
+            int[] offsets = m_offsets.get(partitionId);
+            int count = m_counts.getOrDefault(partitionId, 0);
+            if (offsets == null) {
+                offsets = new int[64];
+            } else if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count] = offset;
+            m_offsets.put(partitionId, offsets);
+            m_counts.put(partitionId, count + 1);
+        }
+    }
+
+    public FileCommandLogReinitiator(int hostId, StartAction action, HostMessenger messenger, String clPath,
+            Set<Integer> liveHosts) {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_liveHosts = liveHosts;
+        final File logDir = clPath == null ? null : new File(clPath);
+
+        List<File> segments = Collections.emptyList();
+        TruncationPoint truncationPoint = null;
+        if (logDir != null && action.doesRecover()) {
+            segments = CommandLogSegment.listSegments(logDir);
+            try {
+                truncationPoint = TruncationPoint.read(logDir);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read the command log truncation point", true, e);
+            }
+            if (!segments.isEmpty()) {
+                LOG.info("Found " + segments.size() + " command log segments to replay in " + logDir);
+            }
+        }
+        m_segments = segments;
+        m_truncationPoint = truncationPoint;
+    }
+
+    @Override
+    public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        if (info == null) {
+            m_snapshotTxnId = Long.MIN_VALUE;
+            m_snapshotPartitionTxnIds = Collections.emptyMap();
+        } else {
+            m_snapshotTxnId = info.txnId;
+            m_snapshotPartitionTxnIds = new HashMap<>(info.partitionToTxnId);
+        }
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
+    }
+
+    @Override
+    public void initPartitionTracking() {}
+
+    @Override
+    public void generateReplayPlan(long snapshotTimeStamp, long snapshotTxnId, int newPartitionCount,
+            boolean isMPINode, JSONObject elasticOperationMetadata) {
+        // The plan is made from the live topology when replay starts, a plan is not
+        // generated at all when there is no snapshot to restore
+    }
+
+    @Override
+    public void replay() {
+        Thread replayThread = new Thread(() -> {
+            try {
+                replaySegments(VoltDB.instance().getCartographer());
+                ZKCountdownLatch latch = new ZKCountdownLatch(m_messenger.getZK(),
+                        VoltZK.commandlog_replay_barrier, m_liveHosts.size());
+                latch.countDown(true);
+                latch.await();
+                if (m_isMPINode) {
+                    m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+                }
+            } catch (Exception e) {
+                VoltDB.crashGlobalVoltDB("Command log replay failed", true, e);
+            }
+            LOG.info("Command log replay submitted " + m_replayedTxns.get() + " transactions");
+            if (m_callback != null) {
+                m_callback.onReplayCompletion();
+            }
+        }, "Command Log Replay");
+        replayThread.start();
+    }
+
+    /**
+     * Submit the transactions of every partition led by this host, and the
+     * multi-partition transactions if this host runs the MPI.
+     */
+    void replaySegments(Cartographer cartographer) throws Exception {
+        Long mpi = cartographer.getHSIdForMultiPartitionInitiator();
+        m_isMPINode = mpi != null && CoreUtils.getHostIdFromHSId(mpi) == m_hostId;
+        if (m_segments.isEmpty()) {
+            return;
+        }
+        ListeningExecutorService es = CoreUtils.getListeningExecutorService("Command Log Replay Worker",
+                Math.min(REPLAY_THREADS, Math.max(1, m_segments.size())));
+        final ConcurrentSkipListMap<Long, EntryLocation> mpTxns = new ConcurrentSkipListMap<>();
+        final List<SegmentIndex> indexes = new ArrayList<>();
+        try {
+            // Index all segments in parallel
+            List<ListenableFuture<SegmentIndex>> indexFutures = new ArrayList<>();
+            for (int i = 0; i < m_segments.size(); i++) {
+                final int segment = i;
+                final File file = m_segments.get(i);
+                indexFutures.add(es.submit(() -> index(segment, file, mpTxns)));
+            }
+            for (ListenableFuture<SegmentIndex> future : indexFutures) {
+                indexes.add(future.get());
+            }
+
+            // Replay each locally led partition in parallel
+            final Set<Integer> partitions = new TreeSet<>();
+            for (SegmentIndex index : indexes) {
+                partitions.addAll(index.m_offsets.keySet());
+            }
+            List<ListenableFuture<?>> replayFutures = new ArrayList<>();
+            for (final int partitionId : partitions) {
+                Long leader = cartographer.getHSIdForMaster(partitionId);
+                if (leader == null) {
+                    LOG.warn("Skipping command log entries for partition " + partitionId +
+                            " which no longer exists");
+                    continue;
+                }
+                if (CoreUtils.getHostIdFromHSId(leader) != m_hostId) {
+                    continue;
+                }
+                replayFutures.add(es.submit(() -> {
+                    replayPartition(partitionId, indexes);
+                    return null;
+                }));
+            }
+            for (ListenableFuture<?> future : replayFutures) {
+                future.get();
+            }
+
+            if (m_isMPINode) {
+                replayMultiPartition(mpTxns, indexes);
+            }
+        } finally {
+            es.shutdown();
+            for (SegmentIndex index : indexes) {
+                index.m_reader.close();
+            }
+        }
+    }
+
+    private SegmentIndex index(int segment, File file, Map<Long, EntryLocation> mpTxns) throws IOException {
+        CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file);
+        SegmentIndex index = new SegmentIndex(reader);
+        ByteBuffer entry;
+        while ((entry = reader.nextEntry()) != null) {
+            if (CommandLogSegment.entryType(entry) != LogEntryType.INITIATION) {
+                continue;
+            }
+            index.add(CommandLogSegment.entryPartitionId(entry), reader.lastEntryOffset());
+            if (m_isMPINode && CommandLogSegment.entryInvolvedPartitions(entry) != null) {
+                // Every participating site logs the first fragment, keep one copy per transaction
+                mpTxns.putIfAbsent(CommandLogSegment.entryTxnId(entry),
+                        new EntryLocation(segment, reader.lastEntryOffset()));
+            }
+        }
+        if (reader.hasTornTail()) {
+            LOG.info("Command log segment " + file + " ends with a partially written block");
+        }
+        return index;
+    }
+
+    private void replayPartition(int partitionId, List<SegmentIndex> indexes) throws IOException {
+        final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        final Long snapshotSpHandle = m_snapshotPartitionTxnIds.get(partitionId);
+        final long lastSnapshotted = snapshotSpHandle == null ? Long.MIN_VALUE : snapshotSpHandle;
+        long replayed = 0;
+        for (SegmentIndex index : indexes) {
+            int[] offsets = index.m_offsets.get(partitionId);
+            if (offsets == null) {
+                continue;
+            }
+            int count = index.m_counts.get(partitionId);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer entry = index.m_reader.entryAt(offsets[i]);
+                if (CommandLogSegment.entryInvolvedPartitions(entry) == null) {
+                    if (CommandLogSegment.entrySpHandle(entry) <= lastSnapshotted) {
+                        continue;
+                    }
+                    Iv2InitiateTaskMessage message = CommandLogSegment.entryMessage(entry, factory);
+                    submit(message, true, partitionId);
+                    replayed++;
+                } else {
+                    if (CommandLogSegment.entryTxnId(entry) <= m_snapshotTxnId) {
+                        continue;
+                    }
+                    m_initiator.sendSentinel(CommandLogSegment.entryUniqueId(entry), partitionId);
+                }
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Replayed " + replayed + " single partition transactions for partition " + partitionId);
+        }
+    }
+
+    private void replayMultiPartition(Map<Long, EntryLocation> mpTxns, List<SegmentIndex> indexes)
+            throws IOException {
+        final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        for (Map.Entry<Long, EntryLocation> e : new TreeMap<>(mpTxns).entrySet()) {
+            if (e.getKey() <= m_snapshotTxnId) {
+                continue;
+            }
+            EntryLocation location = e.getValue();
+            ByteBuffer entry = indexes.get(location.m_segment).m_reader.entryAt(location.m_offset);
+            submit(CommandLogSegment.entryMessage(entry, factory), false, MpInitiator.MP_INIT_PID);
+        }
+    }
+
+    private void submit(Iv2InitiateTaskMessage message, boolean isSinglePartition, int partitionId) {
+        StoredProcedureInvocation invocation = message.getStoredProcedureInvocation();
+        // Responses go to the restore agent's adapter, which ignores handles it didn't register
+        invocation.setClientHandle(-1);
+        m_initiator.createTransaction(ClientInterface.RESTORE_AGENT_CID,
+                message.getTxnId(),
+                message.getUniqueId(),
+                invocation,
+                message.isReadOnly(),
+                isSinglePartition,
+                false,
+                partitionId,
+                invocation.getSerializedSize(),
+                System.nanoTime());
+        m_replayedTxns.incrementAndGet();
+    }
+
+    @Override
+    public boolean hasReplayedSegments() {
+        return !m_segments.isEmpty();
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return m_replayedTxns.get() > 0;
+    }
+
+    @Override
+    public Long getMaxLastSeenTxn() {
+        if (m_segments.isEmpty()) {
+            return null;
+        }
+        return m_truncationPoint == null ? Long.MIN_VALUE : m_truncationPoint.m_txnId;
+    }
+
+    @Override
+    public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
+        if (m_segments.isEmpty() || m_truncationPoint == null) {
+            return null;
+        }
+        return m_truncationPoint.m_partitionTxnIds;
+    }
+
+    @Override
+    public InstanceId getInstanceId() {
+        if (m_segments.isEmpty() || m_truncationPoint == null) {
+            return null;
+        }
+        return m_truncationPoint.m_instanceId;
+    }
+
+    @Override
+    public void returnAllSegments() {
+        for (File segment : m_segments) {
+            if (segment.exists() && !segment.delete()) {
+                LOG.warn("Unable to delete replayed command log segment " + segment);
+            }
+        }
+    }
+
+    @Override
+    public void resumeElasticOperationIfNecessary() {}
+}
@@ -0,0 +1,106 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltcore.utils.InstanceId;
+
+/**
+ * The transaction ids of the snapshot the retained command log starts from.
+ * Every entry still in the log is newer than this point, so a snapshot can
+ * only be used for recovery if it is at least as new as the truncation point
+ * for every partition. It is rewritten atomically whenever the log is
+ * initialized or truncated.
+ */
+class TruncationPoint {
+    static final String FILE_NAME = "truncation_point.json";
+
+    final InstanceId m_instanceId;
+    final long m_txnId;
+    final Map<Integer, Long> m_partitionTxnIds;
+
+    TruncationPoint(InstanceId instanceId, long txnId, Map<Integer, Long> partitionTxnIds) {
+        m_instanceId = instanceId;
+        m_txnId = txnId;
+        m_partitionTxnIds = partitionTxnIds == null ?
+                Collections.<Integer, Long>emptyMap() : Collections.unmodifiableMap(new HashMap<>(partitionTxnIds));
+    }
+
+    void write(File dir) throws IOException {
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        try {
+            JSONStringer stringer = new JSONStringer();
+            stringer.object();
+            if (m_instanceId != null) {
+                stringer.key("instanceId").value(m_instanceId.serializeToJSONObject());
+            }
+            stringer.keySymbolValuePair("txnId", m_txnId);
+            stringer.key("partitionTxnIds").object();
+            for (Map.Entry<Integer, Long> e : m_partitionTxnIds.entrySet()) {
+                stringer.keySymbolValuePair(e.getKey().toString(), e.getValue());
+            }
+            stringer.endObject();
+            stringer.endObject();
+            Files.write(tmp.toPath(), stringer.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException("Unable to serialize the command log truncation point", e);
+        }
+        Files.move(tmp.toPath(), new File(dir, FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the truncation point stored in the directory, or null if there is none
+     */
+    static TruncationPoint read(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            InstanceId instanceId = json.has("instanceId") ? new InstanceId(json.getJSONObject("instanceId")) : null;
+            Map<Integer, Long> partitionTxnIds = new HashMap<>();
+            JSONObject partitions = json.getJSONObject("partitionTxnIds");
+            Iterator<String> keys = partitions.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                partitionTxnIds.put(Integer.valueOf(key), partitions.getLong(key));
+            }
+            return new TruncationPoint(instanceId, json.getLong("txnId"), partitionTxnIds);
+        } catch (JSONException e) {
+            throw new IOException("Unable to parse the command log truncation point in " + file, e);
+        }
+    }
+
+    static void delete(File dir) {
+        new File(dir, FILE_NAME).delete();
+    }
+}
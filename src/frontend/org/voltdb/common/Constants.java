@@ -37,6 +37,14 @@ public class Constants
     public static final byte AUTH_SERVICE_NAME = 4;
     public static final byte AUTH_HANDSHAKE = 5;
 
+    // protocol features a server lists in the last byte of a successful login response
+    public static final byte FEATURE_INVOCATION_BATCH = 1;
+
+    // first byte of a message carrying several procedure invocations, followed by
+    // their count and each invocation with its own length prefix. It is distinct
+    // from the version byte that starts a single invocation.
+    public static final byte INVOCATION_BATCH = 64;
+
     public static final String KERBEROS = "kerberos";
 
     public static final String DEFAULT_KEYSTORE_RESOURCE = "keystore";
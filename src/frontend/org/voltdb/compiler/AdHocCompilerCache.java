@@ -18,12 +18,11 @@
 package org.voltdb.compiler;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +30,7 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.RemovalNotification;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -83,22 +83,22 @@ public class AdHocCompilerCache implements Serializable {
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
 
-    /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    /** cache of literals to full plans, bounded by the on-heap size of the plans */
+    final Cache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
      *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
+    final Cache<String, List<BoundPlan> > m_coreCache;
 
     // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
+    final LongAdder m_literalHits = new LongAdder();
+    final LongAdder m_literalQueries = new LongAdder();
+    final LongAdder m_literalInsertions = new LongAdder();
+    final LongAdder m_literalEvictions = new LongAdder();
+    final LongAdder m_planHits = new LongAdder();
+    final LongAdder m_planQueries = new LongAdder();
+    final LongAdder m_planInsertions = new LongAdder();
+    final LongAdder m_planEvictions = new LongAdder();
 
     /** {@see this#startPeriodicStatsPrinting() } */
     Timer m_statsTimer = null;
@@ -113,128 +113,70 @@ public class AdHocCompilerCache implements Serializable {
     /**
      * Constructor with specific cache sizes is only called directly for testing.
      *
+     * Both caches are safe for concurrent planners. Lookups never block; the
+     * caches evict in approximately least-recently-used order.
+     *
      * @param maxLiteralEntries cache size for literals
-     * @param maxLiteralMem cache memory for literals
+     * @param maxCoreEntries cache size for parameterized plans
      */
     AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries) {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
+        // Literal plans are bounded by memory. Every entry weighs at least its
+        // share of the memory budget, which also bounds the number of entries.
+        final long minEntryWeight = Math.max(1, MAX_LITERAL_MEM / MAX_LITERAL_ENTRIES);
+        m_literalCache = CacheBuilder.newBuilder()
+                .maximumWeight(MAX_LITERAL_MEM)
+                .weigher((String sql, AdHocPlannedStatement plan) ->
+                        (int) Math.min(Integer.MAX_VALUE, Math.max(minEntryWeight, plan.getSerializedSize())))
+                .removalListener((RemovalNotification<String, AdHocPlannedStatement> n) -> {
+                    if (n.wasEvicted()) {
+                        m_literalEvictions.increment();
+                    }
+                })
+                .build();
+
+        m_coreCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CORE_ENTRIES)
+                .removalListener((RemovalNotification<String, List<BoundPlan> > n) -> {
+                    if (n.wasEvicted()) {
+                        m_planEvictions.increment();
+                    }
+                })
+                .build();
     }
 
     /**
      * Stats printing method used during development.
      * Probably shouldn't live past real stats integration.
      */
-    synchronized void printStats() {
+    void printStats() {
+        // reset the counters as they are read
+        long literalHits = m_literalHits.sumThenReset();
+        long literalQueries = m_literalQueries.sumThenReset();
+        long planHits = m_planHits.sumThenReset();
+        long planQueries = m_planQueries.sumThenReset();
         String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
+                literalHits, literalQueries, (literalHits * 100.0) / literalQueries,
+                m_literalInsertions.sumThenReset(), m_literalEvictions.sumThenReset());
         String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
+                planHits, planQueries, (planHits * 100.0) / planQueries,
+                m_planInsertions.sumThenReset(), m_planEvictions.sumThenReset());
 
         System.out.print(line1 + line2);
         System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        m_literalQueries.increment();
+        AdHocPlannedStatement retval = m_literalCache.getIfPresent(sql);
         if (retval != null) {
-            ++m_literalHits;
+            m_literalHits.increment();
         }
         return retval;
     }
@@ -244,11 +186,11 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        m_planQueries.increment();
+        List<BoundPlan> retval = m_coreCache.getIfPresent(parsedToken);
         if (retval != null) {
-            ++m_planHits;
+            m_planHits.increment();
         }
         return retval;
     }
@@ -270,6 +212,9 @@ public class AdHocCompilerCache implements Serializable {
      * @param extractedLiterals the basis values for any "bound parameter" restrictions to plan re-use
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
+     *
+     * Writers are serialized so that concurrent planners of the same statement
+     * converge on a single core plan; readers are never blocked by this.
      */
     public synchronized void put(String sql,
                                  String parsedToken,
@@ -296,9 +241,10 @@ public class AdHocCompilerCache implements Serializable {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
             // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            List<BoundPlan> boundVariants = m_coreCache.getIfPresent(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
+                // copy-on-write, since planners iterate the variants without holding the lock
+                boundVariants = new CopyOnWriteArrayList<BoundPlan>();
                 m_coreCache.put(parsedToken, boundVariants);
                 // Note that there is an edge case in which more than one plan is getting counted as one
                 // "plan insertion". This only happens when two different plans arose from the same parameterized
@@ -306,7 +252,7 @@ public class AdHocCompilerCache implements Serializable {
                 // another invocation did not.  These are not counted separately (which would have to happen below
                 // after each call to boundVariants.add) because they are not evicted separately.
                 // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
+                m_planInsertions.increment();
             } else {
                 for (BoundPlan boundPlan : boundVariants) {
                     if (boundPlan.equals(unmatched)) {
@@ -332,11 +278,11 @@ public class AdHocCompilerCache implements Serializable {
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+            AdHocPlannedStatement cachedPlan = m_literalCache.getIfPresent(sql);
             if (cachedPlan == null) {
                 //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
                 m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
+                m_literalInsertions.increment();
             }
             else {
                 assert(cachedPlan.equals(plan));
@@ -365,7 +311,7 @@ public class AdHocCompilerCache implements Serializable {
      * @return  literal cache size as a count
      */
     public int getLiteralCacheSize() {
-        return m_literalCache.size();
+        return (int) m_literalCache.size();
     }
 
     /**
@@ -373,6 +319,6 @@ public class AdHocCompilerCache implements Serializable {
      * @return  core cache size as a count
      */
     public int getCoreCacheSize() {
-        return m_coreCache.size();
+        return (int) m_coreCache.size();
     }
 }
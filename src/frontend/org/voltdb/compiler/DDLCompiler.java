@@ -1893,8 +1893,12 @@ public class DDLCompiler {
         // - Covering cell index (geo index for CONTAINS predicates)
         // - HASH index (set in HSQL because "hash" is in the name of the
         //   constraint or the index
+        // - packed B+tree index (set in HSQL because the name of the constraint
+        //   or the index ends with "_btree"). The EE builds a TREE index instead
+        //   when the key refers to non-inlined data.
         // - TREE index, which is the default
         boolean isHashIndex = node.attributes.get("ishashindex").equals("true");
+        boolean isBTreeIndex = "true".equals(node.attributes.get("isbtreeindex"));
         if (has_geo_col) {
             index.setType(IndexType.COVERING_CELL_INDEX.getValue());
         } else if (isHashIndex) {
@@ -1909,6 +1913,9 @@ public class DDLCompiler {
                 throw compiler.new VoltCompilerException(emsg);
             }
             index.setType(IndexType.HASH_TABLE.getValue());
+        } else if (isBTreeIndex) {
+            index.setType(IndexType.BTREE.getValue());
+            index.setCountable(true);
         } else {
             index.setType(IndexType.BALANCED_TREE.getValue());
             index.setCountable(true);
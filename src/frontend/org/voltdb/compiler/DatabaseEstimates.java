@@ -19,21 +19,305 @@ package org.voltdb.compiler;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Table;
+
+/**
+ * Row counts and column statistics the planner costs its plans with. Tables that
+ * have not been analyzed get the same fixed guesses. Tables analyzed by @Analyze
+ * carry their row count, the number of distinct values of their fixed width columns
+ * and an equi-depth histogram of the columns leading a countable index, which are
+ * kept in the catalog so that every planner sees the same figures.
+ */
 public class DatabaseEstimates {
 
+    /**
+     * An analyzed row count or number of distinct values that moved by more than this
+     * factor makes the plans that read the table out of date.
+     */
+    public static final double DRIFT_RATIO = 2.0;
+
+    /**
+     * Analyzed tables are costed as if they had at least this many rows, so that a table
+     * which was nearly empty when analyzed does not make every plan a sequential scan.
+     */
+    public static final long MIN_ANALYZED_TUPLES = 100;
+
+    public static class ColumnEstimates {
+        // 0 if unknown
+        public long distinctValues = 0;
+        // bounds of buckets holding the same number of rows, lowest first, null if unknown
+        public double[] histogram = null;
+
+        /**
+         * @return the fraction of the non null values of the column below the given value,
+         * interpolated within the histogram bucket holding it
+         */
+        public double fractionBelow(double value) {
+            assert(histogram != null && histogram.length > 1);
+            final int buckets = histogram.length - 1;
+            if (value <= histogram[0]) {
+                return 0.0;
+            }
+            if (value >= histogram[buckets]) {
+                return 1.0;
+            }
+            int bucket = 0;
+            while (value >= histogram[bucket + 1]) {
+                ++bucket;
+            }
+            final double width = histogram[bucket + 1] - histogram[bucket];
+            final double within = width > 0 ? (value - histogram[bucket]) / width : 0.0;
+            return (bucket + within) / buckets;
+        }
+
+        /**
+         * Build equi-depth bucket bounds from the number of rows found below a series
+         * of increasing probe values, interpolating linearly between the probes.
+         *
+         * @param min the lowest value of the column
+         * @param max the highest value of the column
+         * @param probes increasing values strictly between min and max
+         * @param below the number of rows below each probe
+         * @param total the number of non null values
+         * @param buckets the number of buckets to build
+         * @return buckets + 1 bounds, from min to max
+         */
+        public static double[] equiDepthHistogram(double min, double max, double[] probes, long[] below,
+                long total, int buckets) {
+            assert(probes.length == below.length);
+            // the cumulative distribution, with the column bounds as its end points
+            final double[] values = new double[probes.length + 2];
+            final long[] counts = new long[probes.length + 2];
+            values[0] = min;
+            counts[0] = 0;
+            for (int i = 0; i < probes.length; ++i) {
+                values[i + 1] = probes[i];
+                counts[i + 1] = below[i];
+            }
+            values[values.length - 1] = max;
+            counts[counts.length - 1] = total;
+
+            final double[] bounds = new double[buckets + 1];
+            bounds[0] = min;
+            bounds[buckets] = max;
+            int point = 0;
+            for (int bucket = 1; bucket < buckets; ++bucket) {
+                final double target = (double) total * bucket / buckets;
+                while (point < counts.length - 2 && counts[point + 1] < target) {
+                    ++point;
+                }
+                final long rows = counts[point + 1] - counts[point];
+                final double within = rows > 0 ? (target - counts[point]) / rows : 0.0;
+                bounds[bucket] = Math.max(bounds[bucket - 1],
+                        values[point] + (values[point + 1] - values[point]) * Math.min(1.0, within));
+            }
+            return bounds;
+        }
+    }
+
     public static class TableEstimates {
         public long maxTuples = 1000000;
         public long minTuples = 100000;
         public ArrayList<ScalarValueHints> valueHints = new ArrayList<ScalarValueHints>();
+        // the row count found by @Analyze, 0 if the table has not been analyzed
+        public long analyzedTuples = 0;
+        // analyzed statistics by column name
+        public HashMap<String, ColumnEstimates> columns = new HashMap<String, ColumnEstimates>();
+
+        public boolean isAnalyzed() {
+            return analyzedTuples > 0;
+        }
+
+        public void setAnalyzedTuples(long tuples) {
+            analyzedTuples = tuples;
+            maxTuples = Math.max(tuples, MIN_ANALYZED_TUPLES);
+            minTuples = maxTuples;
+        }
+
+        /**
+         * Store the analyzed statistics in the catalog table and its columns
+         */
+        public void writeToCatalog(Table table) throws JSONException {
+            table.setEstimatedtuplecount((int) Math.min(Integer.MAX_VALUE, analyzedTuples));
+            for (Column column : table.getColumns()) {
+                ColumnEstimates estimates = columns.get(column.getTypeName());
+                if (estimates == null) {
+                    column.setEstimatedndv(0);
+                    column.setHistogram("");
+                }
+                else {
+                    column.setEstimatedndv((int) Math.min(Integer.MAX_VALUE, estimates.distinctValues));
+                    column.setHistogram(estimates.histogram == null ? "" : toJSONString(estimates.histogram));
+                }
+            }
+        }
+
+        static TableEstimates fromCatalog(Table table) throws JSONException {
+            TableEstimates estimates = new TableEstimates();
+            estimates.setAnalyzedTuples(table.getEstimatedtuplecount());
+            for (Column column : table.getColumns()) {
+                final String histogram = column.getHistogram();
+                if (column.getEstimatedndv() == 0 && (histogram == null || histogram.isEmpty())) {
+                    continue;
+                }
+                ColumnEstimates columnEstimates = new ColumnEstimates();
+                columnEstimates.distinctValues = column.getEstimatedndv();
+                if (histogram != null && ! histogram.isEmpty()) {
+                    columnEstimates.histogram = toDoubles(new JSONArray(histogram));
+                }
+                estimates.columns.put(column.getTypeName(), columnEstimates);
+            }
+            return estimates;
+        }
     }
 
     HashMap<String, TableEstimates> tables = new HashMap<String, TableEstimates>();
 
+    private static final TableEstimates DEFAULT_ESTIMATES = new TableEstimates();
+
+    /**
+     * @return the estimates of the table, the shared default guesses if it has not been analyzed
+     */
     public TableEstimates getEstimatesForTable(String tableName) {
-        if (tables.containsKey(tableName) == false)
-            tables.put(tableName, new TableEstimates());
+        TableEstimates estimates = tables.get(tableName);
+        return estimates == null ? DEFAULT_ESTIMATES : estimates;
+    }
 
+    /**
+     * @return the analyzed estimates of the table, null if it has not been analyzed
+     */
+    public TableEstimates getAnalyzedEstimatesForTable(String tableName) {
         return tables.get(tableName);
     }
+
+    public void putEstimatesForTable(String tableName, TableEstimates estimates) {
+        tables.put(tableName, estimates);
+    }
+
+    public boolean isEmpty() {
+        return tables.isEmpty();
+    }
+
+    /**
+     * @return the estimates of the tables the catalog holds analyzed statistics for
+     */
+    public static DatabaseEstimates fromCatalog(Database db) {
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        estimates.loadFromCatalog(db);
+        return estimates;
+    }
+
+    void loadFromCatalog(Database db) {
+        tables.clear();
+        for (Table table : db.getTables()) {
+            if (table.getEstimatedtuplecount() > 0) {
+                try {
+                    tables.put(table.getTypeName(), TableEstimates.fromCatalog(table));
+                }
+                catch (JSONException e) {
+                    // A damaged histogram is not worth failing the plans over, use the guesses
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the row count or the number of distinct values of any column moved by
+     * more than {@link #DRIFT_RATIO} between the two sets of statistics of a table
+     */
+    public static boolean hasDrifted(TableEstimates previous, TableEstimates current) {
+        if (previous.isAnalyzed() != current.isAnalyzed()) {
+            return true;
+        }
+        if (ratio(previous.analyzedTuples, current.analyzedTuples) > DRIFT_RATIO) {
+            return true;
+        }
+        for (Map.Entry<String, ColumnEstimates> e : current.columns.entrySet()) {
+            ColumnEstimates before = previous.columns.get(e.getKey());
+            long distinctBefore = before == null ? 0 : before.distinctValues;
+            if (ratio(distinctBefore, e.getValue().distinctValues) > DRIFT_RATIO) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double ratio(long a, long b) {
+        return (double) Math.max(a, b) / Math.max(1, Math.min(a, b));
+    }
+
+    private static double[] toDoubles(JSONArray array) throws JSONException {
+        double[] values = new double[array.length()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = array.getDouble(i);
+        }
+        return values;
+    }
+
+    private static String toJSONString(double[] values) throws JSONException {
+        JSONStringer stringer = new JSONStringer();
+        stringer.array();
+        for (double value : values) {
+            stringer.value(value);
+        }
+        return stringer.endArray().toString();
+    }
+
+    public String toJSONString() throws JSONException {
+        JSONStringer stringer = new JSONStringer();
+        stringer.object().key("TABLES").array();
+        for (Map.Entry<String, TableEstimates> t : tables.entrySet()) {
+            stringer.object();
+            stringer.keySymbolValuePair("NAME", t.getKey());
+            stringer.keySymbolValuePair("TUPLES", t.getValue().analyzedTuples);
+            stringer.key("COLUMNS").array();
+            for (Map.Entry<String, ColumnEstimates> c : t.getValue().columns.entrySet()) {
+                stringer.object();
+                stringer.keySymbolValuePair("NAME", c.getKey());
+                stringer.keySymbolValuePair("NDV", c.getValue().distinctValues);
+                if (c.getValue().histogram != null) {
+                    stringer.key("HISTOGRAM").array();
+                    for (double bound : c.getValue().histogram) {
+                        stringer.value(bound);
+                    }
+                    stringer.endArray();
+                }
+                stringer.endObject();
+            }
+            stringer.endArray();
+            stringer.endObject();
+        }
+        stringer.endArray().endObject();
+        return stringer.toString();
+    }
+
+    public static DatabaseEstimates fromJSONString(String json) throws JSONException {
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        JSONArray tables = new JSONObject(json).getJSONArray("TABLES");
+        for (int i = 0; i < tables.length(); ++i) {
+            JSONObject t = tables.getJSONObject(i);
+            TableEstimates tableEstimates = new TableEstimates();
+            tableEstimates.setAnalyzedTuples(t.getLong("TUPLES"));
+            JSONArray columns = t.getJSONArray("COLUMNS");
+            for (int j = 0; j < columns.length(); ++j) {
+                JSONObject c = columns.getJSONObject(j);
+                ColumnEstimates columnEstimates = new ColumnEstimates();
+                columnEstimates.distinctValues = c.getLong("NDV");
+                if (c.has("HISTOGRAM")) {
+                    columnEstimates.histogram = toDoubles(c.getJSONArray("HISTOGRAM"));
+                }
+                tableEstimates.columns.put(c.getString("NAME"), columnEstimates);
+            }
+            estimates.tables.put(t.getString("NAME"), tableEstimates);
+        }
+        return estimates;
+    }
 }
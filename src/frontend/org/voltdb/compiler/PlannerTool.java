@@ -20,7 +20,11 @@ package org.voltdb.compiler;
 import static org.voltdb.planner.QueryPlanner.fragmentizePlan;
 import static org.voltdb.plannerv2.utils.VoltRelUtil.calciteToVoltDBPlan;
 
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.RelTraitSet;
@@ -37,6 +41,7 @@ import org.apache.calcite.tools.ValidationException;
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
 import org.voltdb.StatsAgent;
@@ -67,21 +72,38 @@ import org.voltdb.utils.Encoder;
  * interactively accept SQL and outputs plans on standard out.
  *
  * Used only for AdHoc queries.
+ *
+ * Statements are planned concurrently. Each statement being planned borrows
+ * an HSQL parser from a pool that grows on demand, up to {@link #PLANNER_POOL_SIZE}
+ * parsers loaded with the same schema. Statements found in the plan cache do not
+ * need a parser at all. When every parser is busy, statements wait for one;
+ * the queue depth and wait time are reported in the PLANNER statistics.
  */
 public class PlannerTool {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static final VoltLogger compileLog = new VoltLogger("COMPILE");
 
-    private Database m_database;
-    private byte[] m_catalogHash;
-    private AdHocCompilerCache m_cache;
-    private SchemaPlus m_schemaPlus;
-    private long m_adHocLargeFallbackCount = 0;
-    private long m_adHocLargeModeCount = 0;
-
+    /**
+     * Maximum number of statements planned concurrently by one planner tool.
+     */
+    static final int PLANNER_POOL_SIZE = Math.max(1,
+            Integer.getInteger("ADHOC_PLANNER_POOL_SIZE", Math.min(CoreUtils.availableProcessors(), 8)));
+
+    private volatile Database m_database;
+    // the analyzed statistics of m_database
+    private volatile DatabaseEstimates m_estimates;
+    private volatile byte[] m_catalogHash;
+    private volatile AdHocCompilerCache m_cache;
+    private volatile SchemaPlus m_schemaPlus;
+    private final AtomicLong m_adHocLargeFallbackCount = new AtomicLong();
+    private final AtomicLong m_adHocLargeModeCount = new AtomicLong();
+
+    // The first parser, loaded when the tool is created. It is also pooled.
     private final HSQLInterface m_hsql;
+    private final BlockingQueue<HSQLInterface> m_idleParsers = new LinkedBlockingQueue<>();
+    private final AtomicInteger m_parserCount = new AtomicInteger(1);
 
-    private static PlannerStatsCollector m_plannerStats;
+    private static volatile PlannerStatsCollector m_plannerStats;
 
     // If -Dlarge_mode_ratio=xx is specified via ant, the value will show up in the environment variables and
     // take higher priority. Otherwise, the value specified via VOLTDB_OPTS will take effect.
@@ -96,12 +118,34 @@ public class PlannerTool {
         assert(database != null);
 
         m_database = database;
+        m_estimates = DatabaseEstimates.fromCatalog(database);
         m_catalogHash = catalogHash;
         m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
 
-        // LOAD HSQL
-        m_hsql = HSQLInterface.loadHsqldb(ParameterizationInfo.getParamStateManager());
-        String binDDL = m_database.getSchema();
+        m_hsql = loadHsqldb(m_database);
+        m_idleParsers.add(m_hsql);
+
+        // Create and register a singleton planner stats collector, if this is the first time.
+        if (m_plannerStats == null) {
+            synchronized (this.getClass()) {
+                if (m_plannerStats == null) {
+                    final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
+                    // In mock test environments there may be no stats agent.
+                    if (statsAgent != null) {
+                        m_plannerStats = new PlannerStatsCollector(-1);
+                        statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Load an HSQL parser with the schema of the given database.
+     */
+    private static HSQLInterface loadHsqldb(Database database) {
+        HSQLInterface hsql = HSQLInterface.loadHsqldb(ParameterizationInfo.getParamStateManager());
+        String binDDL = database.getSchema();
         String ddl = CompressionService.decodeBase64AndDecompress(binDDL);
         String[] commands = ddl.split("\n");
         for (String command : commands) {
@@ -111,27 +155,55 @@ public class PlannerTool {
                 continue;
             }
             try {
-                m_hsql.runDDLCommand(decoded_cmd);
+                hsql.runDDLCommand(decoded_cmd);
             } catch (HSQLParseException e) {
                 // need a good error message here
                 throw new RuntimeException("Error creating hsql: " + e.getMessage() + " in DDL statement: " + decoded_cmd);
             }
         }
         hostLog.debug("hsql loaded");
+        return hsql;
+    }
 
-        // Create and register a singleton planner stats collector, if this is the first time.
-        if (m_plannerStats == null) {
-            synchronized (this.getClass()) {
-                if (m_plannerStats == null) {
-                    final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
-                    // In mock test environments there may be no stats agent.
-                    if (statsAgent != null) {
-                        m_plannerStats = new PlannerStatsCollector(-1);
-                        statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
-                    }
+    /**
+     * Borrow a parser for planning one statement. Loads another parser if the
+     * pool has not reached its size yet, otherwise waits for one to be returned.
+     */
+    private HSQLInterface acquireParser() {
+        HSQLInterface hsql = m_idleParsers.poll();
+        if (hsql != null) {
+            return hsql;
+        }
+        int count;
+        while ((count = m_parserCount.get()) < PLANNER_POOL_SIZE) {
+            if (m_parserCount.compareAndSet(count, count + 1)) {
+                try {
+                    return loadHsqldb(m_database);
+                } catch (RuntimeException e) {
+                    m_parserCount.decrementAndGet();
+                    throw e;
                 }
             }
         }
+        final PlannerStatsCollector plannerStats = m_plannerStats;
+        if (plannerStats != null) {
+            plannerStats.plannerQueued();
+        }
+        final long start = System.nanoTime();
+        try {
+            return m_idleParsers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an ad hoc planner", e);
+        } finally {
+            if (plannerStats != null) {
+                plannerStats.plannerDequeued(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void releaseParser(HSQLInterface hsql) {
+        m_idleParsers.add(hsql);
     }
 
     public PlannerTool(final Database database, byte[] catalogHash, SchemaPlus schemaPlus) {
@@ -139,8 +211,13 @@ public class PlannerTool {
         m_schemaPlus = schemaPlus;
     }
 
+    /**
+     * Rebind this tool to a catalog with the same schema. The pooled parsers stay valid
+     * because they only depend on the schema.
+     */
     public PlannerTool updateWhenNoSchemaChange(Database database, byte[] catalogHash) {
         m_database = database;
+        m_estimates = DatabaseEstimates.fromCatalog(database);
         m_catalogHash = catalogHash;
         m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
         if (AdHocNTBase.USING_CALCITE) {
@@ -156,11 +233,11 @@ public class PlannerTool {
     }
 
     public long getAdHocLargeFallbackCount() {
-        return m_adHocLargeFallbackCount;
+        return m_adHocLargeFallbackCount.get();
     }
 
     public long getAdHocLargeModeCount() {
-        return m_adHocLargeModeCount;
+        return m_adHocLargeModeCount.get();
     }
 
     public AdHocPlannedStatement planSqlForTest(String sqlIn) {
@@ -175,16 +252,15 @@ public class PlannerTool {
     /**
      * Stripped down compile that is ONLY used to plan default procedures.
      */
-    public synchronized CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
+    public CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
         TrivialCostModel costModel = new TrivialCostModel();
-        DatabaseEstimates estimates = new DatabaseEstimates();
+        DatabaseEstimates estimates = m_estimates;
 
         CompiledPlan plan = null;
-        // This try-with-resources block acquires a global lock on all planning
-        // This is required until we figure out how to do parallel planning.
+        final HSQLInterface hsql = acquireParser();
         try (QueryPlanner planner = new QueryPlanner(
                 sql, "PlannerTool", "PlannerToolProc", m_database,
-                partitioning, m_hsql, estimates, !VoltCompiler.DEBUG_MODE,
+                partitioning, hsql, estimates, !VoltCompiler.DEBUG_MODE,
                 costModel, null, null, DeterminismMode.FASTER, false)) {
 
             // do the expensive full planning.
@@ -205,6 +281,8 @@ public class PlannerTool {
                 throw new RuntimeException("SQL error while compiling query: " + e.getMessage() + loggedMsg, e);
             }
             throw new RuntimeException("SQL error while compiling query: " + e.toString() + loggedMsg, e);
+        } finally {
+            releaseParser(hsql);
         }
 
         if (plan == null) {
@@ -214,7 +292,7 @@ public class PlannerTool {
         return plan;
     }
 
-    public static synchronized CompiledPlan getCompiledPlanCalcite(SchemaPlus schemaPlus, SqlNode sqlNode)
+    public static CompiledPlan getCompiledPlanCalcite(SchemaPlus schemaPlus, SqlNode sqlNode)
             throws ValidationException, RelConversionException, PlannerFallbackException{
         // TRAIL [Calcite-AdHoc-DQL/DML:4] PlannerTool.planSqlCalcite()
         VoltPlanner planner = new VoltPlanner(schemaPlus);
@@ -300,7 +378,7 @@ public class PlannerTool {
      * @param task the query to plan.
      * @return a planned statement.
      */
-    public synchronized AdHocPlannedStatement planSqlCalcite(SqlTask task)
+    public AdHocPlannedStatement planSqlCalcite(SqlTask task)
             throws ValidationException, RelConversionException, PlannerFallbackException {
         CompiledPlan plan = getCompiledPlanCalcite(
                 // TODO: we need a reliable way to sync Calcite's SchemaPlus from VoltDB's Catalog,
@@ -317,21 +395,25 @@ public class PlannerTool {
         // return new AdHocPlannedStatement(plan, core);
     }
 
-    public synchronized AdHocPlannedStatement planSql(
+    public AdHocPlannedStatement planSql(
             String sql, StatementPartitioning partitioning, boolean isExplainMode, final Object[] userParams,
             boolean isSwapTables, boolean isLargeQuery) {
+        // Read the catalog binding once, in case the catalog is updated while planning.
+        final Database database = m_database;
+        final DatabaseEstimates estimates = m_estimates;
+        final byte[] catalogHash = m_catalogHash;
+        final AdHocCompilerCache cache = m_cache;
         // large_mode_ratio will force execution of SQL queries to use the "large" path (for read-only queries)
         // a certain percentage of the time
         if (m_largeModeRatio > 0 && !isLargeQuery) {
             if (m_largeModeRatio >= 1 || m_largeModeRatio > ThreadLocalRandom.current().nextDouble()) {
                 isLargeQuery = true;
-                m_adHocLargeModeCount++;
+                m_adHocLargeModeCount.incrementAndGet();
             }
         }
         CacheUse cacheUse = CacheUse.FAIL;
-        if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
-        }
+        final PlannerStatsCollector plannerStats = m_plannerStats;
+        final Long startTime = plannerStats != null ? plannerStats.sampleStartTime() : null;
         try {
             if ((sql == null) || (sql = sql.trim()).isEmpty()) {    // remove any spaces or newlines
                 throw new RuntimeException("Can't plan empty or null SQL.");
@@ -350,7 +432,7 @@ public class PlannerTool {
             // point it seems worthwhile to cache such plans, we can explore it.
             if (partitioning.isInferred() && !isLargeQuery) {
                 // Check the literal cache for a match.
-                AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sql);
+                AdHocPlannedStatement cachedPlan = cache.getWithSQL(sql);
                 if (cachedPlan != null) {
                     cacheUse = CacheUse.HIT1;
                     return cachedPlan;
@@ -363,13 +445,19 @@ public class PlannerTool {
             // PLAN THE STMT
             //////////////////////
 
-            final SqlPlanner planner = new SqlPlanner(m_database, partitioning, m_hsql, sql,
-                    isLargeQuery, isSwapTables, isExplainMode, m_adHocLargeFallbackCount, userParams, m_cache, compileLog);
+            final SqlPlanner planner;
+            final HSQLInterface hsql = acquireParser();
+            try {
+                planner = new SqlPlanner(database, estimates, partitioning, hsql, sql,
+                        isLargeQuery, isSwapTables, isExplainMode, 0, userParams, cache, compileLog);
+            } finally {
+                releaseParser(hsql);
+            }
             final CompiledPlan plan = planner.getCompiledPlan();
             final AdHocPlannedStatement adhocPlan = planner.getAdhocPlan();
             assert (plan == null) != (adhocPlan == null) : "It should be either planned or cached";
             partitioning = planner.getPartitioning();
-            m_adHocLargeFallbackCount = planner.getAdHocLargeFallBackCount();
+            m_adHocLargeFallbackCount.addAndGet(planner.getAdHocLargeFallBackCount());
             if (adhocPlan != null) {
                 cacheUse = CacheUse.HIT2;   // IMPORTANT
                 return adhocPlan;
@@ -378,7 +466,7 @@ public class PlannerTool {
                 //////////////////////
                 // OUTPUT THE RESULT
                 //////////////////////
-                final CorePlan core = new CorePlan(plan, m_catalogHash);
+                final CorePlan core = new CorePlan(plan, catalogHash);
                 final AdHocPlannedStatement ahps = new AdHocPlannedStatement(plan, core);
 
                 // Do not put wrong parameter explain query into cache.
@@ -392,14 +480,15 @@ public class PlannerTool {
                     core.setPartitioningParamValue(partitioning.getInferredPartitioningValue());
                     assert (parsedToken != null);
                     // Again, plans with inferred partitioning are the only ones supported in the cache.
-                    m_cache.put(sql, parsedToken, ahps, planner.getExtractedLiterals(), planner.hasQuestionMark(),
+                    cache.put(sql, parsedToken, ahps, planner.getExtractedLiterals(), planner.hasQuestionMark(),
                             planner.hasExceptionWhenParameterized());
                 }
                 return ahps;
             }
         } finally {
-            if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+            if (plannerStats != null) {
+                plannerStats.endStatsCollection(startTime, cache.getLiteralCacheSize(), cache.getCoreCacheSize(),
+                        cacheUse, -1);
             }
         }
     }
@@ -38,6 +38,7 @@ import java.util.List;
  */
 final class SqlPlanner {
     private final Database m_database;
+    private final DatabaseEstimates m_estimates;
     private final HSQLInterface m_hsql;
     private final String m_sql;
     private final boolean m_isLargeQuery, m_isSwapTables, m_isExplainMode;
@@ -55,10 +56,11 @@ final class SqlPlanner {
     private String m_parsedToken;
     private String[] m_extractedLiterals;
 
-    SqlPlanner(Database database, StatementPartitioning partitioning, HSQLInterface hsql, String sql,
-            boolean isLargeQuery, boolean isSwapTables, boolean isExplainMode, long adHocLargeFallbackCount,
-            Object[] userParams, AdHocCompilerCache cache, VoltLogger logger) {
+    SqlPlanner(Database database, DatabaseEstimates estimates, StatementPartitioning partitioning,
+            HSQLInterface hsql, String sql, boolean isLargeQuery, boolean isSwapTables, boolean isExplainMode,
+            long adHocLargeFallbackCount, Object[] userParams, AdHocCompilerCache cache, VoltLogger logger) {
         m_database = database;
+        m_estimates = estimates;
         m_partitioning = partitioning;
         m_hsql = hsql;
         m_sql = sql;
@@ -147,11 +149,10 @@ final class SqlPlanner {
     }
 
     private CompiledPlan cacheOrPlan() {
-        // This try-with-resources block acquires a global lock on all planning
-        // This is required until we figure out how to do parallel planning.
+        // The HSQL parser is borrowed from the PlannerTool's pool and is only used by this thread.
         try (QueryPlanner planner = new QueryPlanner(
                 m_sql, "PlannerTool", "PlannerToolProc", m_database,
-                m_partitioning, m_hsql, new DatabaseEstimates(), !VoltCompiler.DEBUG_MODE, new TrivialCostModel(),
+                m_partitioning, m_hsql, m_estimates, !VoltCompiler.DEBUG_MODE, new TrivialCostModel(),
                 null, null, DeterminismMode.FASTER, m_isLargeQuery)) {
             if (m_isSwapTables) {
                 planner.planSwapTables();
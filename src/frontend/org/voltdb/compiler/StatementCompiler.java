@@ -200,8 +200,7 @@ public abstract class StatementCompiler {
         CompiledPlan plan = null;
 
         try {
-            // This try-with-resources block acquires a global lock on all planning
-            // This is required until we figure out how to do parallel planning.
+            // The planner is confined to this thread and to the compiler's own HSQL instance.
             try (QueryPlanner planner = new QueryPlanner(
                     sql, stmtName, procName,  db,
                     partitioning, hsql, estimates, false,
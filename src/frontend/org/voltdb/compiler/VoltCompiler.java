@@ -38,6 +38,7 @@ import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -51,6 +52,7 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.VoltXMLElement;
+import org.json_voltpatches.JSONException;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Pair;
@@ -79,6 +81,7 @@ import org.voltdb.compilereport.ReportMaker;
 import org.voltdb.export.ExportDataProcessor;
 import org.voltdb.parser.SQLParser;
 import org.voltdb.planner.ParameterizationInfo;
+import org.voltdb.planner.QueryPlanner;
 import org.voltdb.planner.StatementPartitioning;
 import org.voltdb.plannerv2.utils.CreateTableUtils;
 import org.voltdb.settings.ClusterSettings;
@@ -255,6 +258,8 @@ public class VoltCompiler {
     Catalog m_catalog = null;
 
     DatabaseEstimates m_estimates = new DatabaseEstimates();
+    // statistics found by @Analyze, to replace those of the previous catalog
+    private DatabaseEstimates m_analyzedEstimates = null;
 
     private List<String> m_capturedDiagnosticDetail = null;
 
@@ -1085,97 +1090,105 @@ public class VoltCompiler {
         // Ugly, ugly hack.
         // If the procedure compilations do not succeed, and we have
         // dropped some UDFs, then we need to restore them.
+        // Ad hoc planners must not see the functions while they are saved away.
+        final Lock functionRegistryLock = QueryPlanner.getFunctionRegistryLock();
+        functionRegistryLock.lock();
         try {
-            //
-            // Save the old user defined functions, if there are any,
-            // in case we encounter a compilation error.
-            //
-            ddlcompiler.saveDefinedFunctions();
-            if (cannonicalDDLIfAny != null) {
-                // add the file object's path to the list of files for the jar
-                m_ddlFilePaths.put(cannonicalDDLIfAny.getName(), cannonicalDDLIfAny.getPath());
-                ddlcompiler.loadSchema(cannonicalDDLIfAny, db, previousDBIfAny, whichProcs, false);
-            }
+            try {
+                //
+                // Save the old user defined functions, if there are any,
+                // in case we encounter a compilation error.
+                //
+                ddlcompiler.saveDefinedFunctions();
+                if (cannonicalDDLIfAny != null) {
+                    // add the file object's path to the list of files for the jar
+                    m_ddlFilePaths.put(cannonicalDDLIfAny.getName(), cannonicalDDLIfAny.getPath());
+                    ddlcompiler.loadSchema(cannonicalDDLIfAny, db, previousDBIfAny, whichProcs, false);
+                }
 
-            m_dirtyTables.clear();
+                m_dirtyTables.clear();
 
-            for (final VoltCompilerReader schemaReader : schemaReaders) {
-                String origFilename = m_currentFilename;
-                try {
-                    if (m_currentFilename.equals(NO_FILENAME)) {
-                        m_currentFilename = schemaReader.getName();
-                    }
+                for (final VoltCompilerReader schemaReader : schemaReaders) {
+                    String origFilename = m_currentFilename;
+                    try {
+                        if (m_currentFilename.equals(NO_FILENAME)) {
+                            m_currentFilename = schemaReader.getName();
+                        }
 
-                    // add the file object's path to the list of files for the jar
-                    m_ddlFilePaths.put(schemaReader.getName(), schemaReader.getPath());
+                        // add the file object's path to the list of files for the jar
+                        m_ddlFilePaths.put(schemaReader.getName(), schemaReader.getPath());
 
-                    if (m_filterWithSQLCommand) {
-                        SQLParser.FileInfo fi = new SQLParser.FileInfo(schemaReader.getPath());
-                        ddlcompiler.loadSchemaWithFiltering(schemaReader, db, whichProcs, fi);
-                    } else {
-                        ddlcompiler.loadSchema(schemaReader, db, previousDBIfAny, whichProcs, true);
+                        if (m_filterWithSQLCommand) {
+                            SQLParser.FileInfo fi = new SQLParser.FileInfo(schemaReader.getPath());
+                            ddlcompiler.loadSchemaWithFiltering(schemaReader, db, whichProcs, fi);
+                        } else {
+                            ddlcompiler.loadSchema(schemaReader, db, previousDBIfAny, whichProcs, true);
+                        }
+                    } finally {
+                        m_currentFilename = origFilename;
                     }
-                } finally {
-                    m_currentFilename = origFilename;
                 }
-            }
 
-            // When A/A is enabled, create an export table for every DR table to log possible conflicts
-            ddlcompiler.loadAutogenExportTableSchema(db, previousDBIfAny, whichProcs, m_isXDCR);
-            sqlNodes.forEach(node -> {
-                final Pair<SchemaPlus, Pair<Statement, VoltXMLElement>> r = CreateTableUtils.addTable(node, hsql, db);
-                if (r.getSecond() != null) {
-                    final Statement stmt = r.getSecond().getFirst();
-                    final VoltXMLElement elm = r.getSecond().getSecond();
-                    ddlcompiler.getLimitDeleteStmtToXmlEntries().put(stmt, elm);
-//                } else {      // TODO: explicitly left CREATE INDEX switch off till we resolve all CatalogDiff errors
-//                  // First, need to make tests/testprocs/org/voltdb_testprocs/regressionsuites/matviewprocs/matviewsuite-ddl.sql work.
-//                    final SchemaPlus sc = CreateIndexUtils.run(node, previousDBIfAny, db);
+                // When A/A is enabled, create an export table for every DR table to log possible conflicts
+                ddlcompiler.loadAutogenExportTableSchema(db, previousDBIfAny, whichProcs, m_isXDCR);
+                sqlNodes.forEach(node -> {
+                    final Pair<SchemaPlus, Pair<Statement, VoltXMLElement>> r = CreateTableUtils.addTable(node, hsql, db);
+                    if (r.getSecond() != null) {
+                        final Statement stmt = r.getSecond().getFirst();
+                        final VoltXMLElement elm = r.getSecond().getSecond();
+                        ddlcompiler.getLimitDeleteStmtToXmlEntries().put(stmt, elm);
+    //                } else {      // TODO: explicitly left CREATE INDEX switch off till we resolve all CatalogDiff errors
+    //                  // First, need to make tests/testprocs/org/voltdb_testprocs/regressionsuites/matviewprocs/matviewsuite-ddl.sql work.
+    //                    final SchemaPlus sc = CreateIndexUtils.run(node, previousDBIfAny, db);
+                    }
+                });
+                ddlcompiler.compileToCatalog(db, m_isXDCR); // NOTE: this is the place catalog gets added for create table.
+
+                // add database estimates info
+                applyTableStatistics(db, previousDBIfAny);
+                addDatabaseEstimatesInfo(m_estimates, db);
+
+                // Process DDL exported tables
+                NavigableMap<String, NavigableSet<String>> exportTables = voltDdlTracker.getExportedTables();
+                for (Entry<String, NavigableSet<String>> e : exportTables.entrySet()) {
+                    String targetName = e.getKey();
+                    for (String tableName : e.getValue()) {
+                        addExportTableToConnector(targetName, tableName, db);
+                    }
                 }
-            });
-            ddlcompiler.compileToCatalog(db, m_isXDCR); // NOTE: this is the place catalog gets added for create table.
-
-            // add database estimates info
-            addDatabaseEstimatesInfo(m_estimates, db);
-
-            // Process DDL exported tables
-            NavigableMap<String, NavigableSet<String>> exportTables = voltDdlTracker.getExportedTables();
-            for (Entry<String, NavigableSet<String>> e : exportTables.entrySet()) {
-                String targetName = e.getKey();
-                for (String tableName : e.getValue()) {
-                    addExportTableToConnector(targetName, tableName, db);
+                Map<String, String> persistentExportTables = voltDdlTracker.getPersistentTableTargetMap();
+                for (Entry<String, String> e : persistentExportTables.entrySet()) {
+                    addExportTableToConnector(e.getValue(), e.getKey(), db);
                 }
-            }
-            Map<String, String> persistentExportTables = voltDdlTracker.getPersistentTableTargetMap();
-            for (Entry<String, String> e : persistentExportTables.entrySet()) {
-                addExportTableToConnector(e.getValue(), e.getKey(), db);
-            }
-            ddlcompiler.processMaterializedViewWarnings(db);
+                ddlcompiler.processMaterializedViewWarnings(db);
 
-            // process DRed tables
-            for (Entry<String, String> drNode: voltDdlTracker.getDRedTables().entrySet()) {
-                compileDRTable(drNode, db);
-            }
+                // process DRed tables
+                for (Entry<String, String> drNode: voltDdlTracker.getDRedTables().entrySet()) {
+                    compileDRTable(drNode, db);
+                }
 
-            if (whichProcs != DdlProceduresToLoad.NO_DDL_PROCEDURES) {
-                Collection<ProcedureDescriptor> allProcs = voltDdlTracker.getProcedureDescriptors();
-                CatalogMap<Procedure> previousProcsIfAny = null;
-                if (previousDBIfAny != null) {
-                    previousProcsIfAny = previousDBIfAny.getProcedures();
+                if (whichProcs != DdlProceduresToLoad.NO_DDL_PROCEDURES) {
+                    Collection<ProcedureDescriptor> allProcs = voltDdlTracker.getProcedureDescriptors();
+                    CatalogMap<Procedure> previousProcsIfAny = null;
+                    if (previousDBIfAny != null) {
+                        previousProcsIfAny = previousDBIfAny.getProcedures();
+                    }
+                    compileProcedures(db, hsql, allProcs, classDependencies, whichProcs, previousProcsIfAny, jarOutput);
                 }
-                compileProcedures(db, hsql, allProcs, classDependencies, whichProcs, previousProcsIfAny, jarOutput);
-            }
 
-            // add extra classes from the DDL
-            m_addedClasses = voltDdlTracker.m_extraClassses.toArray(new String[0]);
-            addExtraClasses(jarOutput);
+                // add extra classes from the DDL
+                m_addedClasses = voltDdlTracker.m_extraClassses.toArray(new String[0]);
+                addExtraClasses(jarOutput);
 
-            compileRowLimitDeleteStmts(db, hsql, ddlcompiler.getLimitDeleteStmtToXmlEntries());
-        } catch (Throwable ex) {
-            ddlcompiler.restoreSavedFunctions();
-            throw ex;
+                compileRowLimitDeleteStmts(db, hsql, ddlcompiler.getLimitDeleteStmtToXmlEntries());
+            } catch (Throwable ex) {
+                ddlcompiler.restoreSavedFunctions();
+                throw ex;
+            }
+            ddlcompiler.clearSavedFunctions();
+        } finally {
+            functionRegistryLock.unlock();
         }
-        ddlcompiler.clearSavedFunctions();
     }
 
     private void compileRowLimitDeleteStmts(
@@ -1310,14 +1323,43 @@ public class VoltCompiler {
     }
 
     static void addDatabaseEstimatesInfo(final DatabaseEstimates estimates, final Database db) {
-        // Not implemented yet. Don't panic.
-
-        /*for (Table table : db.getTables()) {
-            DatabaseEstimates.TableEstimates tableEst = new DatabaseEstimates.TableEstimates();
-            tableEst.maxTuples = 1000000;
-            tableEst.minTuples = 100000;
-            estimates.tables.put(table, tableEst);
-        }*/
+        estimates.loadFromCatalog(db);
+    }
+
+    /**
+     * Set the statistics found by @Analyze for the next compile. The tables whose
+     * statistics drifted from those of the previous catalog get their statements replanned.
+     */
+    public void setAnalyzedEstimates(DatabaseEstimates analyzed) {
+        m_analyzedEstimates = analyzed;
+    }
+
+    /**
+     * Keep the analyzed statistics of the previous catalog, unless @Analyze found that
+     * they drifted, in which case the new ones are stored and the table is marked dirty
+     * so that the cached plans of the statements reading it are not reused.
+     */
+    private void applyTableStatistics(final Database db, final Database previousDBIfAny)
+            throws VoltCompilerException {
+        final DatabaseEstimates previous = previousDBIfAny == null ?
+                new DatabaseEstimates() : DatabaseEstimates.fromCatalog(previousDBIfAny);
+        for (Table table : db.getTables()) {
+            final String tableName = table.getTypeName();
+            final DatabaseEstimates.TableEstimates prior = previous.getAnalyzedEstimatesForTable(tableName);
+            final DatabaseEstimates.TableEstimates analyzed = m_analyzedEstimates == null ?
+                    null : m_analyzedEstimates.getAnalyzedEstimatesForTable(tableName);
+            try {
+                if (analyzed != null && (prior == null || DatabaseEstimates.hasDrifted(prior, analyzed))) {
+                    analyzed.writeToCatalog(table);
+                    markTableAsDirty(tableName);
+                } else if (prior != null) {
+                    prior.writeToCatalog(table);
+                }
+            } catch (JSONException e) {
+                throw new VoltCompilerException("Unable to store the statistics of table " + tableName + ": " +
+                        e.getMessage());
+            }
+        }
     }
 
     void addExportTableToConnector(final String targetName, final String tableName, final Database catdb)
@@ -79,6 +79,8 @@ public class StreamBlockQueue {
 
     public static final String EXPORT_DISABLE_COMPRESSION_OPTION = "EXPORT_DISABLE_COMPRESSION";
     private static final boolean DISABLE_COMPRESSION = Boolean.getBoolean(EXPORT_DISABLE_COMPRESSION_OPTION);
+    // Read sealed export segments through a memory mapping, prefetching this many entries ahead, -1 to disable
+    private static final int READ_AHEAD_ENTRIES = Integer.getInteger("EXPORT_PBD_READ_AHEAD_ENTRIES", 16);
 
     /**
      * Deque containing reference to stream blocks that are in memory. Some of these
@@ -432,6 +434,7 @@ public class StreamBlockQueue {
         m_persistentDeque = PersistentBinaryDeque.builder(m_nonce, new VoltFile(m_path), exportLog)
                 .initialExtraHeader(schema, serializer)
                 .compression(!DISABLE_COMPRESSION)
+                .mappedReads(READ_AHEAD_ENTRIES >= 0, READ_AHEAD_ENTRIES)
                 .deleteExisting(deleteExisting)
                 .build();
 
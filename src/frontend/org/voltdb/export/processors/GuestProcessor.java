@@ -47,6 +47,7 @@ import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 import org.voltdb.exportclient.ExportRow;
 import org.voltdb.exportclient.ExportRowSchema;
+import org.voltdb.exportclient.ExportRowView;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
@@ -199,6 +200,17 @@ public class GuestProcessor implements ExportDataProcessor {
         }
 
         private void detectDecoder(ExportClientBase client, ExportDecoderBase edb) {
+            try {
+                Method m = edb.getClass().getMethod("processRow", ExportRowView.class);
+                if (m.getDeclaringClass() != ExportDecoderBase.class) {
+                    if (EXPORTLOG.isDebugEnabled()) {
+                        EXPORTLOG.debug("Found row view ExportClient: " + client.getClass().getCanonicalName());
+                    }
+                    edb.setRowView(true);
+                }
+            } catch (Exception ex) {
+                // processRow(ExportRowView) is public on the base class
+            }
             try {
                 Method m = edb.getClass().getDeclaredMethod("processRow", int.class, byte[].class);
                 if (m != null) {
@@ -381,12 +393,17 @@ public class GuestProcessor implements ExportDataProcessor {
                                 buf.position(startPosition);
                                 buf.order(ByteOrder.LITTLE_ENDIAN);
                                 ExportRow row = null;
+                                // View based connectors read rows in place; remember where the last
+                                // one is so it can be materialized for the block completion
+                                final ExportRowView view = edb.isRowView() ? new ExportRowView() : null;
+                                int lastRowOffset = -1;
+                                int lastRowLength = 0;
                                 boolean firstRowOfBlock = true;
                                 while (buf.hasRemaining() && !m_shutdown) {
                                     int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
                                     if (edb.isLegacy()) {
+                                        byte[] rowdata = new byte[length];
+                                        buf.get(rowdata, 0, length);
                                         cont.updateStartTime(System.currentTimeMillis());
                                         if (firstRowOfBlock) {
                                             edb.onBlockStart();
@@ -394,7 +411,8 @@ public class GuestProcessor implements ExportDataProcessor {
                                         }
                                         edb.processRow(length, rowdata);
                                     } else {
-                                        //New style connector.
+                                        //New style connector, decoding straight out of the block.
+                                        final int rowOffset = buf.position();
                                         try {
                                             cont.updateStartTime(System.currentTimeMillis());
                                             ExportRow schema = edb.getExportRowSchema();
@@ -406,13 +424,36 @@ public class GuestProcessor implements ExportDataProcessor {
                                                 }
                                                 edb.setExportRowSchema(newSchema);
                                             }
-                                            row = ExportRow.decodeRow(edb.getExportRowSchema(), source.getPartitionId(), m_startTS, rowdata);
+                                            if (view != null) {
+                                                view.bind(edb.getExportRowSchema(), source.getPartitionId());
+                                                view.reset(buf, rowOffset, length);
+                                            } else {
+                                                row = ExportRow.decodeRow(edb.getExportRowSchema(), source.getPartitionId(), m_startTS, buf);
+                                            }
+                                            buf.position(rowOffset + length);
                                         } catch (IOException ioe) {
                                             EXPORTLOG.warn("Failed decoding row for partition " + source.getPartitionId() + ". " + ioe.getMessage());
+                                            if (view != null) {
+                                                row = materializeRow(view, buf, lastRowOffset, lastRowLength);
+                                            }
                                             cont.discard();
                                             cont = null;
                                             break;
                                         }
+                                        if (view != null) {
+                                            if (firstRowOfBlock) {
+                                                edb.onBlockStart(view.toExportRow());
+                                                firstRowOfBlock = false;
+                                            }
+                                            edb.processRow(view);
+                                            lastRowOffset = rowOffset;
+                                            lastRowLength = length;
+                                            if (committedSpHandle == 0) {
+                                                committedSpHandle = extractCommittedSpHandle(view,
+                                                        cont.getCommittedSeqNo());
+                                            }
+                                            continue;
+                                        }
                                         if (firstRowOfBlock) {
                                             edb.onBlockStart(row);
                                             firstRowOfBlock = false;
@@ -424,6 +465,9 @@ public class GuestProcessor implements ExportDataProcessor {
                                         }
                                     }
                                 }
+                                if (view != null && cont != null) {
+                                    row = materializeRow(view, buf, lastRowOffset, lastRowLength);
+                                }
                                 if (edb.isLegacy()) {
                                     edb.onBlockCompletion();
                                 }
@@ -525,6 +569,38 @@ public class GuestProcessor implements ExportDataProcessor {
         return ret;
     }
 
+    /**
+     * Same as {@link #extractCommittedSpHandle(ExportRow, long)} for a row decoded in place
+     */
+    private long extractCommittedSpHandle(ExportRowView row, long committedSeqNo) {
+        if (committedSeqNo == ExportDataSource.NULL_COMMITTED_SEQNO) {
+            return 0;
+        }
+        // Same as above, read in place: sequence number is the 3rd column, sp handle the 1rst
+        if (row.getLong(2) != committedSeqNo) {
+            return 0;
+        }
+        return row.getLong(0);
+    }
+
+    /**
+     * Copy out the last row a view based decoder processed, so it can be handed to
+     * {@code onBlockCompletion}. The row was decoded once already, so failing now is
+     * not expected.
+     */
+    private ExportRow materializeRow(ExportRowView view, ByteBuffer buf, int offset, int length) {
+        if (offset < 0) {
+            return null;
+        }
+        try {
+            view.reset(buf, offset, length);
+            return view.toExportRow();
+        } catch (IOException ioe) {
+            EXPORTLOG.warn("Failed decoding last row of block: " + ioe.getMessage());
+            return null;
+        }
+    }
+
     @Override
     public void shutdown() {
         synchronized (this) {
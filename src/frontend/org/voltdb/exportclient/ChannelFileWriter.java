@@ -0,0 +1,181 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link Writer} that UTF-8 encodes into a set of large direct buffers and
+ * writes them to a file with one gathering write per flush, optionally gzip
+ * compressing them on the way out. It is meant to be owned by a single
+ * thread, in this case the export decoder of one partition.
+ */
+class ChannelFileWriter extends Writer {
+
+    static final int BUFFER_SIZE = Integer.getInteger("EXPORT_FILE_BUFFER_SIZE", 256 * 1024);
+    static final int BUFFER_COUNT = Integer.getInteger("EXPORT_FILE_BUFFER_COUNT", 8);
+
+    private final FileChannel m_channel;
+    // null unless the file is compressed
+    private final GZIPOutputStream m_gzip;
+    private final byte[] m_compressScratch;
+    private final CharsetEncoder m_encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer[] m_buffers = new ByteBuffer[BUFFER_COUNT];
+    private int m_current = 0;
+    // high surrogate of a pair split across two writes
+    private char m_pendingHighSurrogate = 0;
+    private final CharBuffer m_surrogatePair = CharBuffer.allocate(2);
+    private boolean m_closed = false;
+
+    ChannelFileWriter(File file, boolean compress) throws IOException {
+        m_channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (compress) {
+            m_gzip = new GZIPOutputStream(Channels.newOutputStream(m_channel), BUFFER_SIZE, true);
+            m_compressScratch = new byte[BUFFER_SIZE];
+        } else {
+            m_gzip = null;
+            m_compressScratch = null;
+        }
+        m_buffers[0] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (m_closed) {
+            throw new IOException("Writer is closed");
+        }
+        if (len == 0) {
+            return;
+        }
+        if (m_pendingHighSurrogate != 0) {
+            m_surrogatePair.clear();
+            m_surrogatePair.put(m_pendingHighSurrogate).put(cbuf[off]).flip();
+            m_pendingHighSurrogate = 0;
+            encode(m_surrogatePair);
+            ++off;
+            --len;
+        }
+        CharBuffer in = CharBuffer.wrap(cbuf, off, len);
+        encode(in);
+        if (in.hasRemaining()) {
+            // the encoder leaves a trailing high surrogate for the next write
+            m_pendingHighSurrogate = in.get();
+        }
+    }
+
+    private void encode(CharBuffer in) throws IOException {
+        while (true) {
+            CoderResult result = m_encoder.encode(in, m_buffers[m_current], false);
+            if (result.isOverflow()) {
+                nextBuffer();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void nextBuffer() throws IOException {
+        if (m_current == m_buffers.length - 1) {
+            drain();
+            return;
+        }
+        ++m_current;
+        if (m_buffers[m_current] == null) {
+            m_buffers[m_current] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Write out all the filled buffers and make them available again
+     */
+    private void drain() throws IOException {
+        for (int i = 0; i <= m_current; ++i) {
+            m_buffers[i].flip();
+        }
+        if (m_gzip != null) {
+            for (int i = 0; i <= m_current; ++i) {
+                ByteBuffer buf = m_buffers[i];
+                while (buf.hasRemaining()) {
+                    int length = Math.min(buf.remaining(), m_compressScratch.length);
+                    buf.get(m_compressScratch, 0, length);
+                    m_gzip.write(m_compressScratch, 0, length);
+                }
+            }
+        } else {
+            long remaining = 0;
+            for (int i = 0; i <= m_current; ++i) {
+                remaining += m_buffers[i].remaining();
+            }
+            while (remaining > 0) {
+                remaining -= m_channel.write(m_buffers, 0, m_current + 1);
+            }
+        }
+        for (int i = 0; i <= m_current; ++i) {
+            m_buffers[i].clear();
+        }
+        m_current = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        drain();
+        if (m_gzip != null) {
+            m_gzip.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        try {
+            flush();
+            if (m_gzip != null) {
+                m_gzip.finish();
+            }
+        } finally {
+            m_closed = true;
+            if (m_gzip != null) {
+                m_gzip.close();
+            } else {
+                m_channel.close();
+            }
+        }
+    }
+}
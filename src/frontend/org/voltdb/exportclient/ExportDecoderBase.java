@@ -79,6 +79,8 @@ public abstract class ExportDecoderBase {
     protected final long m_startTS;
     //If true we have detected an old style connector.
     private boolean m_legacy = false;
+    //If true the connector consumes rows through a reusable ExportRowView.
+    private boolean m_rowView = false;
     //Only used for legacy connector which picks up schema from ADS
     protected final ArrayList<VoltType> m_tableSchema = new ArrayList<>();
     //Only used for legacy connector which picks up schema from ADS
@@ -244,6 +246,21 @@ public abstract class ExportDecoderBase {
         throw new UnsupportedOperationException("processRow must be implemented.");
     }
 
+    /**
+     * Process a row read in place from the Export stream. Connectors that
+     * override this method are handed a single reusable view per block
+     * instead of a materialized {@link ExportRow} per row, and should not
+     * retain the view past the call. By default the row is materialized and
+     * handed to {@link #processRow(ExportRow)}.
+     *
+     * @param row view over the current row of the block
+     * @return whether or not the row processing was successful
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public boolean processRow(ExportRowView row) throws RestartBlockException {
+        return processRow(row.toExportRow());
+    }
+
     public boolean processRow(int rowSize, byte[] rowData) throws RestartBlockException {
         throw new UnsupportedOperationException("processRow must be implemented.");
     }
@@ -300,6 +317,14 @@ public abstract class ExportDecoderBase {
         return m_legacy;
     }
 
+    public void setRowView(boolean rowView) {
+        m_rowView = rowView;
+    }
+
+    public boolean isRowView() {
+        return m_rowView;
+    }
+
     public void setExportRowSchema(ExportRowSchema row) {
         m_rowSchema = row;
     }
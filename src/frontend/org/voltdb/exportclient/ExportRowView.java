@@ -0,0 +1,357 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRow.ROW_OPERATION;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+import com.google_voltpatches.common.base.Charsets;
+
+/**
+ * A reusable, schema bound view over one encoded export row. Unlike
+ * {@link ExportRow#decodeRow(ExportRow, int, long, ByteBuffer)} it does not
+ * materialize the row: {@link #reset(ByteBuffer, int, int)} only records where
+ * each column starts, and the typed getters read the values straight out of
+ * the export block. Primitive columns are therefore read without allocation
+ * or boxing.
+ *
+ * A view is only valid until it is reset to the next row, or until the
+ * underlying block is discarded. Decoders that need to hold on to a row must
+ * copy it out with {@link #toExportRow()}.
+ */
+public class ExportRowView {
+
+    private static final int[] NO_OFFSETS = new int[0];
+    private static final ROW_OPERATION[] OPERATIONS = ROW_OPERATION.values();
+
+    private ExportRow m_schema;
+    private VoltType[] m_types = new VoltType[0];
+    private int m_partition;
+
+    private ByteBuffer m_buffer;
+    private int m_partitionColIndex;
+    // absolute buffer offset of each column value, -1 for null columns
+    private int[] m_offsets = NO_OFFSETS;
+    private byte[] m_scratch = new byte[64];
+
+    /**
+     * Bind this view to the schema of the rows it is going to be reset to
+     *
+     * @param schema row schema, usually an {@link ExportRowSchema}
+     * @param partition partition of the exported rows
+     */
+    public void bind(ExportRow schema, int partition) {
+        m_partition = partition;
+        if (schema == m_schema) {
+            return;
+        }
+        m_schema = schema;
+        List<VoltType> types = schema.types;
+        if (m_types.length != types.size()) {
+            m_types = new VoltType[types.size()];
+            m_offsets = new int[types.size()];
+        }
+        types.toArray(m_types);
+    }
+
+    public ExportRow getSchema() {
+        return m_schema;
+    }
+
+    /**
+     * Point this view at the row encoded at the given buffer offset. The
+     * buffer position is left untouched.
+     *
+     * @param bb export block, in little endian order
+     * @param offset absolute offset of the row data, past its length prefix
+     * @param length encoded row length
+     * @throws IOException when the row does not match the bound schema
+     */
+    public void reset(ByteBuffer bb, int offset, int length) throws IOException {
+        if (m_schema == null) {
+            throw new IOException("Export block with no schema found without prior block with schema.");
+        }
+        assert(bb.order() == ByteOrder.LITTLE_ENDIAN);
+        m_buffer = bb;
+        m_partitionColIndex = bb.getInt(offset);
+        final int columnCount = bb.getInt(offset + 4);
+        if (columnCount != m_types.length) {
+            throw new IOException(
+                    String.format("Read %d columns from row but expected %d columns: %s", columnCount,
+                            m_types.length, m_schema));
+        }
+        final int nullFlagsOffset = offset + 8;
+        int pos = nullFlagsOffset + (((columnCount + 7) & -8) >> 3);
+        for (int i = 0; i < columnCount; ++i) {
+            if ((bb.get(nullFlagsOffset + (i >> 3)) & (0x80 >>> (i % 8))) != 0) {
+                m_offsets[i] = -1;
+                continue;
+            }
+            m_offsets[i] = pos;
+            switch (m_types[i]) {
+            case TINYINT:
+                pos += Byte.BYTES;
+                break;
+            case SMALLINT:
+                pos += Short.BYTES;
+                break;
+            case INTEGER:
+                pos += Integer.BYTES;
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                pos += Long.BYTES;
+                break;
+            case FLOAT:
+                pos += Double.BYTES;
+                break;
+            case STRING:
+            case VARBINARY:
+            case GEOGRAPHY:
+                pos += Integer.BYTES + bb.getInt(pos);
+                break;
+            case DECIMAL:
+                pos += 2 + bb.get(pos + 1);
+                break;
+            case GEOGRAPHY_POINT:
+                pos += GeographyPointValue.getLengthInBytes();
+                break;
+            default:
+                throw new IOException("Invalid column type: " + m_types[i]);
+            }
+        }
+        if (pos - offset > length) {
+            throw new IOException(String.format("Decoded %d bytes past the %d bytes long row: %s",
+                    pos - offset, length, m_schema));
+        }
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public VoltType getType(int column) {
+        return m_types[column];
+    }
+
+    public boolean isNull(int column) {
+        return m_offsets[column] < 0;
+    }
+
+    public int getPartitionColIndex() {
+        return m_partitionColIndex;
+    }
+
+    public int getPartitionId() {
+        return m_partition;
+    }
+
+    public ROW_OPERATION getOperation() {
+        return OPERATIONS[getByte(ExportRow.INTERNAL_OPERATION_COLUMN)];
+    }
+
+    public byte getByte(int column) {
+        return m_buffer.get(m_offsets[column]);
+    }
+
+    public short getShort(int column) {
+        return m_buffer.getShort(m_offsets[column]);
+    }
+
+    public int getInt(int column) {
+        return m_buffer.getInt(m_offsets[column]);
+    }
+
+    /**
+     * @return the value of a TINYINT, SMALLINT, INTEGER, BIGINT or TIMESTAMP
+     * column widened to a long
+     */
+    public long getLong(int column) {
+        switch (m_types[column]) {
+        case TINYINT:
+            return getByte(column);
+        case SMALLINT:
+            return getShort(column);
+        case INTEGER:
+            return getInt(column);
+        default:
+            return m_buffer.getLong(m_offsets[column]);
+        }
+    }
+
+    public double getDouble(int column) {
+        return m_buffer.getDouble(m_offsets[column]);
+    }
+
+    /**
+     * @return a TIMESTAMP column value as microseconds since the epoch
+     */
+    public long getTimestampMicros(int column) {
+        return m_buffer.getLong(m_offsets[column]);
+    }
+
+    /**
+     * @return a TIMESTAMP column value as milliseconds since the epoch, rounded
+     * the same way as {@link TimestampType#asApproximateJavaDate()}
+     */
+    public long getTimestampMillis(int column) {
+        final long micros = getTimestampMicros(column);
+        return (micros - micros % 1000) / 1000;
+    }
+
+    public TimestampType getTimestamp(int column) {
+        return isNull(column) ? null : new TimestampType(getTimestampMicros(column));
+    }
+
+    public String getString(int column) {
+        final int offset = m_offsets[column];
+        if (offset < 0) {
+            return null;
+        }
+        final int length = m_buffer.getInt(offset);
+        if (m_buffer.hasArray()) {
+            return new String(m_buffer.array(), m_buffer.arrayOffset() + offset + 4, length, Charsets.UTF_8);
+        }
+        return new String(copyToScratch(offset + 4, length), 0, length, Charsets.UTF_8);
+    }
+
+    /**
+     * @return the encoded length of a STRING or VARBINARY column
+     */
+    public int getLength(int column) {
+        return m_buffer.getInt(m_offsets[column]);
+    }
+
+    public byte[] getVarbinary(int column) {
+        final int offset = m_offsets[column];
+        if (offset < 0) {
+            return null;
+        }
+        final byte[] data = new byte[m_buffer.getInt(offset)];
+        copy(offset + 4, data, data.length);
+        return data;
+    }
+
+    public BigDecimal getDecimal(int column) {
+        final int offset = m_offsets[column];
+        if (offset < 0) {
+            return null;
+        }
+        final int scale = m_buffer.get(offset);
+        final byte[] bytes = new byte[m_buffer.get(offset + 1)];
+        copy(offset + 2, bytes, bytes.length);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    public GeographyPointValue getGeographyPoint(int column) {
+        final int offset = m_offsets[column];
+        return offset < 0 ? null : GeographyPointValue.unflattenFromBuffer(m_buffer, offset);
+    }
+
+    public GeographyValue getGeography(int column) {
+        final int offset = m_offsets[column];
+        return offset < 0 ? null : GeographyValue.unflattenFromBuffer(m_buffer, offset + 4);
+    }
+
+    /**
+     * @return the column value boxed the same way {@link ExportRow#values} are
+     */
+    public Object getObject(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        switch (m_types[column]) {
+        case TINYINT:
+            return getByte(column);
+        case SMALLINT:
+            return getShort(column);
+        case INTEGER:
+            return getInt(column);
+        case BIGINT:
+            return m_buffer.getLong(m_offsets[column]);
+        case FLOAT:
+            return getDouble(column);
+        case TIMESTAMP:
+            return getTimestamp(column);
+        case STRING:
+            return getString(column);
+        case VARBINARY:
+            return getVarbinary(column);
+        case DECIMAL:
+            return getDecimal(column);
+        case GEOGRAPHY_POINT:
+            return getGeographyPoint(column);
+        case GEOGRAPHY:
+            return getGeography(column);
+        default:
+            throw new IllegalStateException("Invalid column type: " + m_types[column]);
+        }
+    }
+
+    public Object[] getValues() {
+        Object[] values = new Object[m_types.length];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = getObject(i);
+        }
+        return values;
+    }
+
+    /**
+     * Copy the current row out of the export block
+     *
+     * @return a materialized {@link ExportRow} equivalent to what
+     * {@link ExportRow#decodeRow(ExportRow, int, long, ByteBuffer)} returns
+     */
+    public ExportRow toExportRow() {
+        Object[] values = getValues();
+        Object pval = m_partitionColIndex >= 0 && m_partitionColIndex < values.length
+                ? values[m_partitionColIndex] : null;
+        return new ExportRow(m_schema.tableName, m_schema.names, m_schema.types, m_schema.lengths,
+                values, (pval == null ? m_partition : pval), m_partitionColIndex, m_partition,
+                m_schema.generation);
+    }
+
+    private void copy(int offset, byte[] to, int length) {
+        if (m_buffer.hasArray()) {
+            System.arraycopy(m_buffer.array(), m_buffer.arrayOffset() + offset, to, 0, length);
+        } else {
+            final int position = m_buffer.position();
+            m_buffer.position(offset);
+            m_buffer.get(to, 0, length);
+            m_buffer.position(position);
+        }
+    }
+
+    private byte[] copyToScratch(int offset, int length) {
+        if (m_scratch.length < length) {
+            m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+        }
+        copy(offset, m_scratch, length);
+        return m_scratch;
+    }
+}
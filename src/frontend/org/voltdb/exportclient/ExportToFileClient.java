@@ -21,7 +21,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -39,10 +41,17 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.json_voltpatches.JSONObject;
@@ -99,11 +108,18 @@ public class ExportToFileClient extends ExportClientBase {
 
     protected final Set<String> m_globalSchemasWritten = new HashSet<>();
 
-    protected PeriodicExportContext m_current = null;
+    protected volatile PeriodicExportContext m_current = null;
 
     protected boolean m_batched;
     protected boolean m_withSchema;
     protected boolean m_uniquenames;
+    // write one file per stream, partition and period, each from its partition's thread
+    protected boolean m_perPartition;
+    protected boolean m_compress;
+    // per partition mode: decoders of the same partition share a thread, keyed by partition id
+    protected final Map<Integer, ListeningExecutorService> m_partitionExecutors = new ConcurrentHashMap<>();
+    // per partition mode: open files of every period, closed by their partition threads on shutdown
+    protected final Set<PeriodicExportContext.PartitionWriter> m_openPartitionWriters = ConcurrentHashMap.newKeySet();
 
     protected final ReentrantReadWriteLock m_batchLock = new ReentrantReadWriteLock();
 
@@ -121,11 +137,12 @@ public class ExportToFileClient extends ExportClientBase {
     public static String TEST_VOLTDB_ROOT = null;
 
     /**
-     * This export client requires decoding all table partitions in same thread.
+     * This export client requires decoding all table partitions in same thread,
+     * unless each partition writes its own files.
      */
     @Override
     public DecodingPolicy getDecodingPolicy() {
-        return DecodingPolicy.BY_TABLE;
+        return m_perPartition ? DecodingPolicy.BY_PARTITION_TABLE : DecodingPolicy.BY_TABLE;
     }
 
     class DecoderMetaData {
@@ -174,18 +191,31 @@ public class ExportToFileClient extends ExportClientBase {
     class PeriodicExportContext {
         File m_dirContainingFiles;
         final Map<FileHandle, CSVWriter> m_writers = Collections.synchronizedMap(new TreeMap<FileHandle, CSVWriter>());
-        boolean m_hasClosed = false;
+        volatile boolean m_hasClosed = false;
         protected Date start;
         protected final Set<String> m_batchSchemasWritten = new HashSet<>();
 
+        // Per partition mode: open partition writers each hold a reference to this context,
+        // plus one held while it is the current context. The last one released finishes it.
+        final Set<PartitionWriter> m_partitionWriters = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger m_references = new AtomicInteger(1);
+        private final AtomicBoolean m_retired = new AtomicBoolean(false);
+
         class FileHandle implements Comparable<FileHandle> {
             final String tableName;
             final long generation;
+            // -1 when all partitions share the file
+            final int partition;
             final long creationTime;
 
             FileHandle(String tableName, long generation) {
+                this(tableName, generation, -1);
+            }
+
+            FileHandle(String tableName, long generation, int partition) {
                 this.tableName = tableName;
                 this.generation = generation;
+                this.partition = partition;
                 this.creationTime = System.currentTimeMillis();
             }
 
@@ -198,6 +228,7 @@ public class ExportToFileClient extends ExportClientBase {
             private String getPathUtility(String extension, String hostId, String prefix, int revision) {
                 String res = "";
                 String rev = revision == 0 ? "" : ("-" + revision);
+                String tableName = partition < 0 ? this.tableName : this.tableName + "-" + partition;
                 if(m_batched) {
                     res = m_dirContainingFiles.getPath() +
                           File.separator +
@@ -240,7 +271,7 @@ public class ExportToFileClient extends ExportClientBase {
                 if(m_uniquenames) {
                     hostId = "-("+VoltDB.instance().getHostMessenger().getHostId()+")";
                 }
-                return getPathUtility(m_extension, hostId, prefix, revision);
+                return getPathUtility(m_compress ? m_extension + ".gz" : m_extension, hostId, prefix, revision);
             }
 
             String getPathForSchema() {
@@ -248,7 +279,8 @@ public class ExportToFileClient extends ExportClientBase {
                 if(m_uniquenames) {
                     hostId = "-("+VoltDB.instance().getHostMessenger().getHostId()+")";
                 }
-                return getPathUtility("-schema.json", hostId, "");
+                // partitions of a stream share the schema file
+                return new FileHandle(tableName, generation).getPathUtility("-schema.json", hostId, "");
             }
 
             @Override
@@ -258,13 +290,79 @@ public class ExportToFileClient extends ExportClientBase {
                 long second = generation - obj.generation;
                 if (second > 0) return 1;
                 if (second < 0) return -1;
-                return 0;
+                return Integer.compare(partition, obj.partition);
             }
 
             @Override
             public String toString() {
-                return "FileHandle for " + tableName + " Generation " + generation
-                        + " Creation time: " + creationTime;
+                return "FileHandle for " + tableName + (partition < 0 ? "" : " Partition " + partition)
+                        + " Generation " + generation + " Creation time: " + creationTime;
+            }
+        }
+
+        /**
+         * The file of one stream partition for this period. It is only written by
+         * the thread of its partition, which is also where it gets closed when the
+         * period rolls over.
+         */
+        class PartitionWriter {
+            final FileHandle m_handle;
+            final CSVWriter m_writer;
+            final Executor m_owner;
+            private boolean m_closed = false;
+
+            PartitionWriter(FileHandle handle, CSVWriter writer, Executor owner) {
+                m_handle = handle;
+                m_writer = writer;
+                m_owner = owner;
+            }
+
+            PeriodicExportContext getContext() {
+                return PeriodicExportContext.this;
+            }
+
+            synchronized boolean isClosed() {
+                return m_closed;
+            }
+
+            /**
+             * Ask the owning partition thread to close this file, after the block it
+             * may be writing
+             */
+            void handOff() {
+                try {
+                    m_owner.execute(this::close);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+
+            synchronized void close() {
+                if (m_closed) return;
+                m_closed = true;
+                try {
+                    m_writer.flush();
+                    m_writer.close();
+                } catch (IOException e) {
+                    m_logger.error("Failed to flush or close file '" + m_handle.getActivePath() +
+                                   "'. Export file may be unavailable/unwritable, or not enough space.", e);
+                } finally {
+                    if (m_writer.checkError()) {
+                        m_logger.error("Failed to flush or close file '" + m_handle.getActivePath() +
+                                "'. Export file may be unavailable/unwritable, or not enough space.");
+                    }
+                    if (!m_batched) {
+                        String oldPath = m_handle.getActivePath();
+                        File newFile = getNonConflictingFinalFile(m_handle);
+                        if (newFile == null || !new VoltFile(oldPath).renameTo(newFile)) {
+                            m_logger.error("Failed to rename export file from " + oldPath
+                                    + " to any revisions of " + m_handle.getPath(""));
+                        }
+                    }
+                    m_partitionWriters.remove(this);
+                    m_openPartitionWriters.remove(this);
+                    release();
+                }
             }
         }
 
@@ -311,6 +409,70 @@ public class ExportToFileClient extends ExportClientBase {
            return new FileHandle(tableName, generation);
         }
 
+        private boolean acquire() {
+            int references;
+            do {
+                references = m_references.get();
+                if (references == 0) {
+                    return false;
+                }
+            } while (!m_references.compareAndSet(references, references + 1));
+            return true;
+        }
+
+        private void release() {
+            if (m_references.decrementAndGet() == 0) {
+                if (m_batched) {
+                    closeBatch();
+                }
+                m_hasClosed = true;
+            }
+        }
+
+        /**
+         * Drop the reference held while this was the current context. It finishes
+         * once all its partition writers are closed too.
+         */
+        void retire() {
+            if (m_retired.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        /**
+         * Open the file of a stream partition for this period.
+         *
+         * @return the writer, or null if this context is already finished and a
+         *         newer one should be used instead
+         */
+        PartitionWriter openPartitionWriter(String tableName, long generation, int partition, Executor owner)
+                throws IOException {
+            if (!acquire()) {
+                return null;
+            }
+            FileHandle handle = new FileHandle(tableName, generation, partition);
+            String path = handle.getActivePath();
+            File newFile = new VoltFile(path);
+            if (newFile.exists()) {
+                release();
+                m_logger.error("Error: Output file for next period already exists at path: " + newFile.getPath()
+                        + " Consider using a more specific timestamp in your filename or cleaning up your export data directory."
+                        + " ExportToFileClient will stop to prevent data loss.");
+                throw new RuntimeException();
+            }
+            try {
+                PartitionWriter writer = new PartitionWriter(handle,
+                        newCSVWriter(new ChannelFileWriter(newFile, m_compress)), owner);
+                m_partitionWriters.add(writer);
+                m_openPartitionWriters.add(writer);
+                return writer;
+            } catch (IOException e) {
+                release();
+                rateLimitedLogError(m_logger, "Failed to create output file: " + path + " , file may be unavailable/unwritable, or not enough space.");
+                throw e;
+            }
+        }
+
         String getPathOfBatchDir(String prefix) {
             assert(m_batched);
             return m_outDir.getPath() + File.separator + prefix + m_nonce + "-" + m_dateformat.get().format(start);
@@ -328,6 +490,14 @@ public class ExportToFileClient extends ExportClientBase {
             // only need to run this once per batch
             if (m_hasClosed) return;
 
+            if (m_perPartition) {
+                for (PartitionWriter writer : m_partitionWriters) {
+                    writer.close();
+                }
+                retire();
+                return;
+            }
+
             // flush and close any files that are open
             for (Entry<FileHandle, CSVWriter> entry : m_writers.entrySet()) {
                 CSVWriter writer = entry.getValue();
@@ -451,19 +621,12 @@ public class ExportToFileClient extends ExportClientBase {
                 throw new RuntimeException();
             }
             try {
-                OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(newFile, false), StandardCharsets.UTF_8);
-                if (m_fullDelimiters != null) {
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4),
-                            m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
-                }
-                else if (m_delimiter == ',') {
-                    // CSV
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4), m_delimiter);
-                }
-                else {
-                    // TSV
-                    writer = CSVWriter.getTSVWriter(new BufferedWriter(osw, 4096 * 4));
+                OutputStream os = new FileOutputStream(newFile, false);
+                if (m_compress) {
+                    os = new GZIPOutputStream(os, 4096 * 4, true);
                 }
+                OutputStreamWriter osw = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+                writer = newCSVWriter(new BufferedWriter(osw, 4096 * 4));
             }
             catch (Exception e) {
                 if (e instanceof IOException) {
@@ -480,6 +643,21 @@ public class ExportToFileClient extends ExportClientBase {
         }
 
 
+        CSVWriter newCSVWriter(Writer out) {
+            if (m_fullDelimiters != null) {
+                return new CSVWriter(out,
+                        m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
+            }
+            else if (m_delimiter == ',') {
+                // CSV
+                return new CSVWriter(out, m_delimiter);
+            }
+            else {
+                // TSV
+                return CSVWriter.getTSVWriter(out);
+            }
+        }
+
         void writeSchema(String tableName, long generation, String schema) throws IOException {
             // if no schema's enabled pretend like this worked
             if (!m_withSchema) return;
@@ -549,6 +727,8 @@ public class ExportToFileClient extends ExportClientBase {
         private CSVWriter m_writer;
         private final CSVWriterDecoder m_csvWriterDecoder;
         private ListeningExecutorService m_es;
+        // per partition mode only
+        private PeriodicExportContext.PartitionWriter m_partitionWriter;
 
         public ExportToFileDecoder(AdvertisedDataSource source) {
             super(source);
@@ -569,6 +749,14 @@ public class ExportToFileClient extends ExportClientBase {
                 .skipInternalFields(m_skipinternal)
                 ;
             m_csvWriterDecoder = builder.build();
+
+            // in per partition mode each partition writes its own files, so decoders of
+            // a partition share a thread from the start and never wait on each other
+            if (m_perPartition) {
+                m_es = m_partitionExecutors.computeIfAbsent(source.partitionId,
+                        p -> CoreUtils.getListeningSingleThreadExecutor(
+                                "File Export decoder for partition " + p, CoreUtils.MEDIUM_STACK_SIZE));
+            }
         }
 
         private void resetWriter() {
@@ -675,8 +863,53 @@ public class ExportToFileClient extends ExportClientBase {
             }
         }
 
+        /**
+         * Open this partition's file in the current period, if it is not already
+         * open. Runs on the partition thread and takes no locks: a roll only
+         * swaps {@link #m_current} and asks this thread to close the old file.
+         */
+        private void ensurePartitionWriter(final ExportRow row) throws RestartBlockException {
+            if (m_metaData.generation != row.generation) {
+                m_metaData = new DecoderMetaData(row.tableName, row.generation, row.partitionId);
+                setSchemaForSource(row.names, row.types);
+                if (m_partitionWriter != null) {
+                    m_partitionWriter.close();
+                    m_partitionWriter = null;
+                }
+            }
+            if (m_partitionWriter != null) {
+                if (!m_partitionWriter.isClosed() && m_partitionWriter.getContext() == m_current) {
+                    return;
+                }
+                // a roll swapping m_current while this writer was being opened on the old
+                // period does not hand it off, so it has to be closed here
+                m_partitionWriter.close();
+                m_partitionWriter = null;
+            }
+            try {
+                PeriodicExportContext current;
+                PeriodicExportContext.PartitionWriter writer;
+                do {
+                    current = m_current;
+                    writer = current.openPartitionWriter(m_metaData.tableName, m_metaData.generation,
+                            row.partitionId, m_es);
+                } while (writer == null);
+                m_partitionWriter = writer;
+                current.writeSchema(m_metaData.tableName, m_metaData.generation, m_schemaString);
+            } catch (IOException e) {
+                m_logger.error("Failed to get writer for file '" + m_current.getFileHandle(m_metaData.tableName, m_metaData.generation) +
+                        "'. Export file may be unavailable/unwritable, or not enough space.", e);
+                throw new RestartBlockException("Fail to start the block", e, true);
+            }
+            m_writer = m_partitionWriter.m_writer;
+        }
+
         @Override
         public void onBlockStart(ExportRow row) throws RestartBlockException {
+            if (m_perPartition) {
+                ensurePartitionWriter(row);
+                return;
+            }
             setSchemaSourceNWriter(row);
             m_batchLock.readLock().lock();
 
@@ -719,13 +952,27 @@ public class ExportToFileClient extends ExportClientBase {
             return true;
         }
 
+        @Override
+        public boolean processRow(ExportRowView row) throws RestartBlockException {
+            try {
+                m_csvWriterDecoder.decode(m_writer, row);
+            }
+            catch (IOException io) {
+                rateLimitedLogError(m_logger, "failed to to process export row %s", Throwables.getStackTraceAsString(io));
+                return false;
+            }
+            return true;
+        }
+
         /**
          * Release the current batch folder.
          * @throws RestartBlockException
          */
         @Override
         public void onBlockCompletion(ExportRow row) throws RestartBlockException {
-            m_batchLock.readLock().unlock();
+            if (!m_perPartition) {
+                m_batchLock.readLock().unlock();
+            }
             // checkError on PrintWriter inside m_writer also does the flush, so no need to call flush explicitly
             if (m_writer.checkError()) {
                 rateLimitedLogWarn(m_logger, "Failed to flush file '" + m_current.getFileHandle(m_metaData.tableName, m_metaData.generation) +
@@ -737,6 +984,27 @@ public class ExportToFileClient extends ExportClientBase {
 
         @Override
         public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+            if (m_perPartition) {
+                // the partition thread is shared with the other streams of the partition,
+                // only close this stream's file on it
+                try {
+                    m_es.submit(() -> {
+                        if (m_partitionWriter != null) {
+                            m_partitionWriter.close();
+                            m_partitionWriter = null;
+                        }
+                    }).get();
+                }
+                catch (RejectedExecutionException e) {
+                    if (m_partitionWriter != null) {
+                        m_partitionWriter.close();
+                    }
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+                return;
+            }
             m_batchLock.writeLock().lock();
             try {
                 ExportToFileDecoder decoder = m_tableDecoders.get(m_metaData);
@@ -775,6 +1043,40 @@ public class ExportToFileClient extends ExportClientBase {
         catch( InterruptedException iex) {
             throw new RuntimeException(iex);
         }
+        if (m_perPartition) {
+            // the writers are only used by their partition threads, close them there
+            // after the blocks already queued
+            for (ListeningExecutorService es : m_partitionExecutors.values()) {
+                try {
+                    es.execute(() -> {
+                        for (PeriodicExportContext.PartitionWriter writer : m_openPartitionWriters) {
+                            if (writer.m_owner == es) {
+                                writer.close();
+                            }
+                        }
+                    });
+                }
+                catch (RejectedExecutionException e) {
+                    // already shut down, its writers are closed below
+                }
+                es.shutdown();
+            }
+            try {
+                for (ListeningExecutorService es : m_partitionExecutors.values()) {
+                    es.awaitTermination(365, TimeUnit.DAYS);
+                }
+            }
+            catch (InterruptedException iex) {
+                throw new RuntimeException(iex);
+            }
+            m_partitionExecutors.clear();
+            // no partition thread is left, close what remains and finish the period
+            for (PeriodicExportContext.PartitionWriter writer : m_openPartitionWriters) {
+                writer.close();
+            }
+            m_current.closeAllWriters();
+            return;
+        }
         m_batchLock.writeLock().lock();
         try {
             m_current.closeAllWriters();
@@ -790,6 +1092,18 @@ public class ExportToFileClient extends ExportClientBase {
      * to it.
      */
     void roll() {
+        if (m_perPartition) {
+            // Writers keep appending to the previous period until their partition thread
+            // picks up the close request queued behind the block it is working on, and
+            // the new period's files get opened by the next block of each partition.
+            final PeriodicExportContext previous = m_current;
+            m_current = new PeriodicExportContext();
+            for (PeriodicExportContext.PartitionWriter writer : previous.m_partitionWriters) {
+                writer.handOff();
+            }
+            previous.retire();
+            return;
+        }
         m_batchLock.writeLock().lock();
         final PeriodicExportContext previous = m_current;
         try {
@@ -882,6 +1196,11 @@ public class ExportToFileClient extends ExportClientBase {
         BinaryEncoding encoding = BinaryEncoding.valueOf(
                 conf.getProperty("binaryencoding", "HEX").trim().toUpperCase());
         boolean uniquenames = Boolean.parseBoolean(conf.getProperty("uniquenames"));
+        boolean perPartition = Boolean.parseBoolean(conf.getProperty("perpartition", "false"));
+        String compression = conf.getProperty("compression", "none").trim();
+        if (!compression.equalsIgnoreCase("none") && !compression.equalsIgnoreCase("gzip")) {
+            throw new IllegalArgumentException("Error: --compression must be one of NONE or GZIP");
+        }
 
         //Dont do actual config in check mode.
         boolean configcheck = Boolean.parseBoolean(conf.getProperty(ExportManager.CONFIG_CHECK_ONLY, "false"));
@@ -901,7 +1220,9 @@ public class ExportToFileClient extends ExportClientBase {
                 withSchema,
                 tz,
                 encoding,
-                uniquenames);
+                uniquenames,
+                perPartition,
+                compression.equalsIgnoreCase("gzip"));
     }
 
     private void configureInternal(
@@ -916,7 +1237,9 @@ public class ExportToFileClient extends ExportClientBase {
                               final boolean withSchema,
                               final TimeZone tz,
                               final BinaryEncoding be,
-                              final boolean uniquenames) {
+                              final boolean uniquenames,
+                              final boolean perPartition,
+                              final boolean compress) {
         m_delimiter = delimiter;
         m_extension = (delimiter == ',') ? ".csv" : ".tsv";
         m_nonce = nonce;
@@ -939,6 +1262,8 @@ public class ExportToFileClient extends ExportClientBase {
         m_batched = batched;
         m_withSchema = withSchema;
         m_uniquenames = uniquenames;
+        m_perPartition = perPartition;
+        m_compress = compress;
 
         if (fullDelimiters != null) {
             fullDelimiters = StringEscapeUtils.unescapeHtml4(fullDelimiters);
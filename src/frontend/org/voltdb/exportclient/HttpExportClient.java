@@ -926,6 +926,21 @@ public class HttpExportClient extends ExportClientBase {
 
         @Override
         public boolean processRow(ExportRow row) throws RestartBlockException
+        {
+            return processRow(row, null);
+        }
+
+        @Override
+        public boolean processRow(ExportRowView view) throws RestartBlockException
+        {
+            return processRow(view.getSchema(), view);
+        }
+
+        /**
+         * @param row the exported row, or only its schema when a view is given
+         * @param view the exported row read in place from the block, may be null
+         */
+        private boolean processRow(ExportRow row, ExportRowView view) throws RestartBlockException
         {
             URI exportPath = m_exportPath;
             if (m_client == null || !m_client.isRunning()) {
@@ -954,7 +969,9 @@ public class HttpExportClient extends ExportClientBase {
 
             if (m_decodeType == DecodeType.FORM) {
                 try {
-                    rqst = makeRequest(exportPath, m_nvpairDecoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values));
+                    rqst = makeRequest(exportPath, view != null
+                            ? m_nvpairDecoder.decode(null, view)
+                            : m_nvpairDecoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values));
                 } catch (RuntimeException e) {
                     // non restartable structural failure
                     rateLimitedLogError(m_logger, "unable to build an HTTP request from an exported row %s", Throwables.getStackTraceAsString(e));
@@ -962,7 +979,11 @@ public class HttpExportClient extends ExportClientBase {
                 }
             } else if (m_batchMode) {
                 try {
-                    m_entityDecoder.add(row.generation, row.tableName, row.types, row.names, row.values);
+                    if (view != null) {
+                        m_entityDecoder.add(view);
+                    } else {
+                        m_entityDecoder.add(row.generation, row.tableName, row.types, row.names, row.values);
+                    }
                     return true;
                 } catch (RuntimeException e) {
                     // non restartable structural failure
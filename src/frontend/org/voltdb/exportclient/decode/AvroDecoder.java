@@ -39,6 +39,8 @@ import org.apache.avro.generic.GenericData.Record;
 import org.apache.avro.generic.GenericRecord;
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowView;
 import org.voltdb.exportclient.decode.DecodeType.SimpleVisitor;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
@@ -132,6 +134,24 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
         return to;
     }
 
+    @Override
+    public GenericRecord decode(GenericRecord ignored, ExportRowView row) throws RuntimeException {
+        ExportRow rowSchema = row.getSchema();
+        Schema schema = getSchema(rowSchema.generation, rowSchema.tableName, rowSchema.types, rowSchema.names);
+        FieldNameDecoder [] fieldDecoders = m_fieldDecoders.get(rowSchema.generation);
+        GenericData.Record to = new GenericData.Record(schema);
+        for (
+                int i = m_firstFieldOffset, j = 0;
+                i < row.getColumnCount() && j < fieldDecoders.length;
+                ++i, ++j
+        ) {
+            if (!row.isNull(i)) {
+                fieldDecoders[j].decode(to, row, i);
+            }
+        }
+        return to;
+    }
+
     final static SimpleVisitor<FieldAssembler<Schema>,FieldTypeBuilder<Schema>> typeBuilderVisitor =
             new SimpleVisitor<FieldAssembler<Schema>,FieldTypeBuilder<Schema>>() {
 
@@ -224,6 +244,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, Byte.valueOf((byte)field).intValue());
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, (int)row.getByte(column));
+                }
             };
         }
 
@@ -236,6 +261,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, Short.valueOf((short)field).intValue());
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, (int)row.getShort(column));
+                }
             };
         }
 
@@ -248,6 +278,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, (int)field);
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, row.getInt(column));
+                }
             };
         }
 
@@ -260,6 +295,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, (long)field);
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, row.getLong(column));
+                }
             };
         }
 
@@ -272,6 +312,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, (double)field);
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, row.getDouble(column));
+                }
             };
         }
 
@@ -286,6 +331,13 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     Date timestamp = ((TimestampType)field).asApproximateJavaDate();
                     to.put(m_fieldPos, m_df.format(timestamp));
                 }
+
+                final Date m_date = new Date();
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    m_date.setTime(row.getTimestampMillis(column));
+                    to.put(m_fieldPos, m_df.format(m_date));
+                }
             };
         }
 
@@ -298,6 +350,11 @@ public class AvroDecoder extends RowDecoder<GenericRecord,RuntimeException> {
                     if (field == null) return;
                     to.put(m_fieldPos, field);
                 }
+
+                @Override
+                final public void decode(Record to, ExportRowView row, int column) throws RuntimeException {
+                    to.put(m_fieldPos, row.getString(column));
+                }
             };
         }
 
@@ -36,6 +36,7 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.voltcore.utils.ByteBufferOutputStream;
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowView;
 
 import com.google_voltpatches.common.base.Charsets;
 
@@ -146,6 +147,11 @@ public class AvroEntityDecoder extends EntityDecoder {
         m_records.add(record);
     }
 
+    @Override
+    public void add(ExportRowView row) throws RuntimeException {
+        m_records.add(m_avroDecoder.decode(null, row));
+    }
+
     @Override
     public void discard(long generation) {
         DecoderHelper decoder = m_decoders.get(generation);
@@ -19,12 +19,23 @@ package org.voltdb.exportclient.decode;
 
 import java.util.List;
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowView;
 
 
 public interface BatchDecoder<T,E extends Exception>  {
 
     public void add(long generation, String tableName, List<VoltType> types, List<String> names, Object [] fields) throws E;
 
+    /**
+     * Adds a row read in place from an export block. The view is only valid for
+     * the duration of the call.
+     */
+    default public void add(ExportRowView row) throws E {
+        ExportRow schema = row.getSchema();
+        add(schema.generation, schema.tableName, schema.types, schema.names, row.getValues());
+    }
+
     public T harvest(long generation);
 
     public void discard(long generation);
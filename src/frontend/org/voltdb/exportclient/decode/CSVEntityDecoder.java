@@ -31,6 +31,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowView;
 
 /**
  * A {@link BatchDecoder} that produces HttpRequest entities that are not suitable for
@@ -53,21 +54,32 @@ public class CSVEntityDecoder extends EntityDecoder {
     @Override
     public void add(long generation, String tableName, List<VoltType> types, List<String> names, Object[] fields) throws RuntimeException {
         try {
-            CSVWriter writer;
-            if (!m_bbos.containsKey(generation)) {
-                ByteBufferOutputStream bbos = new ByteBufferOutputStream();
-                m_bbos.put(generation, bbos);
-                writer = new CSVWriter(new OutputStreamWriter(bbos, Charsets.UTF_8));
-                m_writers.put(generation, writer);
-            } else {
-                writer = m_writers.get(generation);
-            }
-            m_csvDecoder.decode(generation, tableName, types, names, writer, fields);
+            m_csvDecoder.decode(generation, tableName, types, names, getWriter(generation), fields);
         } catch (IOException e) {
             throw new BulkException("unable to convert a row into CSV string", e);
         }
     }
 
+    @Override
+    public void add(ExportRowView row) throws RuntimeException {
+        try {
+            m_csvDecoder.decode(getWriter(row.getSchema().generation), row);
+        } catch (IOException e) {
+            throw new BulkException("unable to convert a row into CSV string", e);
+        }
+    }
+
+    private CSVWriter getWriter(long generation) {
+        CSVWriter writer = m_writers.get(generation);
+        if (writer == null) {
+            ByteBufferOutputStream bbos = new ByteBufferOutputStream();
+            m_bbos.put(generation, bbos);
+            writer = new CSVWriter(new OutputStreamWriter(bbos, Charsets.UTF_8));
+            m_writers.put(generation, writer);
+        }
+        return writer;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.util.List;
 
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowView;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
 
     protected final StringArrayDecoder m_stringArrayDecoder;
+    // reused across rows decoded from an export row view
+    private String[] m_fields;
 
     protected CSVWriterDecoder(StringArrayDecoder stringArrayDecoder) {
         super(stringArrayDecoder);
@@ -39,6 +42,13 @@ public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
         return to;
     }
 
+    @Override
+    public CSVWriter decode(CSVWriter to, ExportRowView row) throws IOException {
+        m_fields = m_stringArrayDecoder.decode(m_fields, row);
+        to.writeNext(m_fields);
+        return to;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -17,6 +17,16 @@
 
 package org.voltdb.exportclient.decode;
 
+import org.voltdb.exportclient.ExportRowView;
+
 public interface FieldDecoder<T,E extends Exception> {
     public void decode(T to, Object field) throws E;
+
+    /**
+     * Decodes a field read in place from an export row view. Field decoders
+     * override it to read primitive columns without boxing them first.
+     */
+    default public void decode(T to, ExportRowView row, int column) throws E {
+        decode(to, row.getObject(column));
+    }
 }
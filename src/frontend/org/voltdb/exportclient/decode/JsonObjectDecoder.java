@@ -20,6 +20,7 @@ package org.voltdb.exportclient.decode;
 import static org.voltdb.exportclient.decode.RowDecoder.Builder.camelCaseNameLowerFirst;
 
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowView;
 import org.voltdb.exportclient.decode.DecodeType.SimpleVisitor;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
@@ -59,8 +62,38 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
             to = new JSONObject();
         }
 
-        JsonFieldDecoder [] fieldDecoders;
-        if (!m_fieldDecoders.containsKey(generation)) {
+        JsonFieldDecoder [] fieldDecoders = getFieldDecoders(generation, types, names);
+        for (
+                int i = m_firstFieldOffset, j = 0;
+                i < fields.length && j < fieldDecoders.length;
+                ++i, ++j
+        ) {
+            fieldDecoders[j].decode(to, fields[i]);
+        }
+        return to;
+    }
+
+    @Override
+    public JSONObject decode(JSONObject to, ExportRowView row) throws JSONException {
+        if (to == null) {
+            to = new JSONObject();
+        }
+
+        ExportRow schema = row.getSchema();
+        JsonFieldDecoder [] fieldDecoders = getFieldDecoders(schema.generation, schema.types, schema.names);
+        for (
+                int i = m_firstFieldOffset, j = 0;
+                i < row.getColumnCount() && j < fieldDecoders.length;
+                ++i, ++j
+        ) {
+            fieldDecoders[j].decode(to, row, i);
+        }
+        return to;
+    }
+
+    private JsonFieldDecoder [] getFieldDecoders(long generation, List<VoltType> types, List<String> names) {
+        JsonFieldDecoder [] fieldDecoders = m_fieldDecoders.get(generation);
+        if (fieldDecoders == null) {
             List<String> columnNames = names;
             if (m_camelCaseFieldNames) {
                 columnNames = FluentIterable.from(names)
@@ -77,17 +110,8 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
                         ;
             }
             m_fieldDecoders.put(generation, fieldDecoders);
-        } else {
-            fieldDecoders = m_fieldDecoders.get(generation);
-        }
-        for (
-                int i = m_firstFieldOffset, j = 0;
-                i < fields.length && j < fieldDecoders.length;
-                ++i, ++j
-        ) {
-            fieldDecoders[j].decode(to, fields[i]);
         }
-        return to;
+        return fieldDecoders;
     }
 
     static abstract class JsonFieldDecoder implements FieldDecoder<JSONObject, JSONException> {
@@ -110,6 +134,24 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
             };
         }
 
+        JsonFieldDecoder integralDecoder(String p) {
+            return new JsonFieldDecoder(p) {
+                @Override
+                public final void decode(JSONObject to, Object v) throws JSONException {
+                    to.put(m_fieldName, v);
+                }
+
+                @Override
+                public final void decode(JSONObject to, ExportRowView row, int column) throws JSONException {
+                    if (row.isNull(column)) {
+                        to.put(m_fieldName, (Object)null);
+                    } else {
+                        to.put(m_fieldName, row.getLong(column));
+                    }
+                }
+            };
+        }
+
         @Override
         public JsonFieldDecoder visitTinyInt(String p, Object v) {
             return new JsonFieldDecoder(p) {
@@ -119,6 +161,15 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
                     Integer v = o != null ? Byte.valueOf((byte)o).intValue() : null;
                     to.put(m_fieldName, v);
                 }
+
+                @Override
+                public final void decode(JSONObject to, ExportRowView row, int column) throws JSONException {
+                    if (row.isNull(column)) {
+                        to.put(m_fieldName, (Object)null);
+                    } else {
+                        to.put(m_fieldName, (int)row.getByte(column));
+                    }
+                }
             };
         }
 
@@ -130,22 +181,45 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
                     Integer v = o != null ? Short.valueOf((short)o).intValue() : null;
                     to.put(m_fieldName, v);
                 }
+
+                @Override
+                public final void decode(JSONObject to, ExportRowView row, int column) throws JSONException {
+                    if (row.isNull(column)) {
+                        to.put(m_fieldName, (Object)null);
+                    } else {
+                        to.put(m_fieldName, (int)row.getShort(column));
+                    }
+                }
             };
         }
 
         @Override
         public JsonFieldDecoder visitInteger(String p, Object v) {
-            return defaultDecoder(p);
+            return integralDecoder(p);
         }
 
         @Override
         public JsonFieldDecoder visitBigInt(String p, Object v) {
-            return defaultDecoder(p);
+            return integralDecoder(p);
         }
 
         @Override
         public JsonFieldDecoder visitFloat(String p, Object v) {
-            return defaultDecoder(p);
+            return new JsonFieldDecoder(p) {
+                @Override
+                public final void decode(JSONObject to, Object v) throws JSONException {
+                    to.put(m_fieldName, v);
+                }
+
+                @Override
+                public final void decode(JSONObject to, ExportRowView row, int column) throws JSONException {
+                    if (row.isNull(column)) {
+                        to.put(m_fieldName, (Object)null);
+                    } else {
+                        to.put(m_fieldName, row.getDouble(column));
+                    }
+                }
+            };
         }
 
         @Override
@@ -162,6 +236,18 @@ public class JsonObjectDecoder extends RowDecoder<JSONObject, JSONException> {
                     }
                     to.put(m_fieldName, formatted);
                 }
+
+                final Date m_date = new Date();
+                @Override
+                public final void decode(JSONObject to, ExportRowView row, int column)
+                        throws JSONException {
+                    String formatted = null;
+                    if (!row.isNull(column)) {
+                        m_date.setTime(row.getTimestampMillis(column));
+                        formatted = m_df.format(m_date);
+                    }
+                    to.put(m_fieldName, formatted);
+                }
             };
         }
 
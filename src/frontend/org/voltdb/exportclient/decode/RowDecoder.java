@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowView;
 
 import com.google_voltpatches.common.base.Function;
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -137,6 +139,21 @@ public abstract class RowDecoder<T, E extends Exception> {
      */
     public abstract T decode(long generation, String tableName, List<VoltType> types, List<String> names, T to, Object[] fields) throws E;
 
+    /**
+     * It converts an exported volt row read in place from an export block into
+     * a target type. Decoders that can read the view's typed columns directly
+     * override it; by default the row values are materialized first.
+     *
+     * @param to may be used as an accumulator (byte buffers, lists, maps)
+     * @param row view over an exported row, only valid for the duration of the call
+     * @return the conversion target type
+     * @throws E the exception that this conversion may incur
+     */
+    public T decode(T to, ExportRowView row) throws E {
+        ExportRow schema = row.getSchema();
+        return decode(schema.generation, schema.tableName, schema.types, schema.names, to, row.getValues());
+    }
+
     /**
      * Responsible to build and instantiate row decoders.
      */
@@ -18,6 +18,7 @@
 package org.voltdb.exportclient.decode;
 
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,8 @@ import java.util.TimeZone;
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowView;
 import org.voltdb.exportclient.decode.DecodeType.SimpleVisitor;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
@@ -72,24 +75,7 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 fields != null && fields.length > m_firstFieldOffset,
                 "null or inapropriately sized export row array"
         );
-        /*
-         * Builds a list of string formatters that reflects the row
-         * column types.
-         */
-        StringFieldDecoder [] fieldDecoders;
-        if (!m_fieldDecoders.containsKey(generation)) {
-            int fieldCount = 0;
-            Map<String, DecodeType> typeMap = getTypeMap(generation, types, names);
-            ImmutableList.Builder<StringFieldDecoder> lb = ImmutableList.builder();
-            for (org.voltdb.exportclient.decode.DecodeType dt: typeMap.values()) {
-                lb.add(dt.accept(decodingVisitor, fieldCount++, null));
-            }
-
-            fieldDecoders = lb.build().toArray(new StringFieldDecoder[0]);
-            m_fieldDecoders.put(generation, fieldDecoders);
-        } else {
-            fieldDecoders = m_fieldDecoders.get(generation);
-        }
+        StringFieldDecoder [] fieldDecoders = getFieldDecoders(generation, types, names);
         if (to == null || to.length < fieldDecoders.length) {
             to = new String[fieldDecoders.length];
         }
@@ -104,6 +90,49 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
         return to;
     }
 
+    /**
+     * Converts an exported row read in place into an array of the string
+     * representations of its values. The given array is reused when its
+     * length matches the number of decoded fields.
+     */
+    @Override
+    public String[] decode(String[] to, ExportRowView row) throws RuntimeException {
+        ExportRow schema = row.getSchema();
+        StringFieldDecoder [] fieldDecoders = getFieldDecoders(schema.generation, schema.types, schema.names);
+        if (to == null || to.length != fieldDecoders.length) {
+            to = new String[fieldDecoders.length];
+        }
+        for (
+                int i = m_firstFieldOffset, j = 0;
+                i < row.getColumnCount() && j < fieldDecoders.length;
+                ++i, ++j
+        ) {
+            fieldDecoders[j].decode(to, row, i);
+        }
+
+        return to;
+    }
+
+    /**
+     * Builds a list of string formatters that reflects the row
+     * column types.
+     */
+    private StringFieldDecoder [] getFieldDecoders(long generation, List<VoltType> types, List<String> names) {
+        StringFieldDecoder [] fieldDecoders = m_fieldDecoders.get(generation);
+        if (fieldDecoders == null) {
+            int fieldCount = 0;
+            Map<String, DecodeType> typeMap = getTypeMap(generation, types, names);
+            ImmutableList.Builder<StringFieldDecoder> lb = ImmutableList.builder();
+            for (org.voltdb.exportclient.decode.DecodeType dt: typeMap.values()) {
+                lb.add(dt.accept(decodingVisitor, fieldCount++, null));
+            }
+
+            fieldDecoders = lb.build().toArray(new StringFieldDecoder[0]);
+            m_fieldDecoders.put(generation, fieldDecoders);
+        }
+        return fieldDecoders;
+    }
+
     static abstract class StringFieldDecoder implements FieldDecoder<String[], RuntimeException> {
         protected final int m_fieldIndex;
 
@@ -112,46 +141,45 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
         }
     }
 
+    /**
+     * Formats any integral column straight from the row view
+     */
+    final class IntegralFieldDecoder extends StringFieldDecoder {
+        IntegralFieldDecoder(int fieldIndex) {
+            super(fieldIndex);
+        }
+
+        @Override
+        public final void decode(String[] to, Object field) throws RuntimeException {
+            to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
+        }
+
+        @Override
+        public final void decode(String[] to, ExportRowView row, int column) throws RuntimeException {
+            to[m_fieldIndex] = !row.isNull(column) ? Long.toString(row.getLong(column)) : m_nullRepresentation;
+        }
+    }
+
     final SimpleVisitor<StringFieldDecoder,Integer> decodingVisitor = new SimpleVisitor<StringFieldDecoder,Integer>() {
 
         @Override
         public StringFieldDecoder visitTinyInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p);
         }
 
         @Override
         public StringFieldDecoder visitSmallInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p);
         }
 
         @Override
         public StringFieldDecoder visitInteger(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p);
         }
 
         @Override
         public StringFieldDecoder visitBigInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p);
         }
 
         @Override
@@ -161,6 +189,11 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 public final void decode(String[] to, Object field) throws RuntimeException {
                     to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
                 }
+
+                @Override
+                public final void decode(String[] to, ExportRowView row, int column) throws RuntimeException {
+                    to[m_fieldIndex] = !row.isNull(column) ? Double.toString(row.getDouble(column)) : m_nullRepresentation;
+                }
             };
         }
 
@@ -177,6 +210,17 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                     TimestampType ts = (TimestampType)field;
                     to[m_fieldIndex] = m_df.format(ts.asApproximateJavaDate());
                 }
+
+                final Date m_date = new Date();
+                @Override
+                public final void decode(String[] to, ExportRowView row, int column) throws RuntimeException {
+                    if (row.isNull(column)) {
+                        to[m_fieldIndex] = m_nullRepresentation;
+                        return;
+                    }
+                    m_date.setTime(row.getTimestampMillis(column));
+                    to[m_fieldIndex] = m_df.format(m_date);
+                }
             };
         }
 
@@ -187,6 +231,11 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 public final void decode(String[] to, Object field) throws RuntimeException {
                     to[m_fieldIndex] = field != null ? (String)field : m_nullRepresentation;
                 }
+
+                @Override
+                public final void decode(String[] to, ExportRowView row, int column) throws RuntimeException {
+                    to[m_fieldIndex] = !row.isNull(column) ? row.getString(column) : m_nullRepresentation;
+                }
             };
         }
 
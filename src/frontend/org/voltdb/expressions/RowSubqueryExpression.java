@@ -32,7 +32,7 @@ public class RowSubqueryExpression extends AbstractSubqueryExpression {
     public RowSubqueryExpression() {
         super();
         m_type = ExpressionType.ROW_SUBQUERY;
-        m_subqueryId = AbstractParsedStmt.NEXT_STMT_ID++;
+        m_subqueryId = AbstractParsedStmt.nextStmtId();
     }
 
     /**
@@ -36,6 +36,7 @@ import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
 import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.metrics.MetricsRegistry;
 import org.voltdb.rejoin.TaskLog;
 import org.voltdb.utils.MiscUtils;
 
@@ -100,6 +101,10 @@ public abstract class BaseInitiator<S extends Scheduler> implements Initiator
         agent.registerStatsSource(StatsSelector.QUEUE,
                                   getInitiatorHSId(),
                                   qdt);
+        MetricsRegistry.instance().gauge("voltdb_site_queue_depth", "Tasks waiting in the site task queue",
+                qdt::getCurrentDepth, "site", CoreUtils.hsIdToString(getInitiatorHSId()));
+        MetricsRegistry.instance().counter("voltdb_site_idle_nanoseconds", "Time the site waited for tasks",
+                st::getStarvedNanos, "site", CoreUtils.hsIdToString(getInitiatorHSId()));
 
         String partitionString = " ";
         if (m_partitionId != -1) {
@@ -139,6 +144,8 @@ public abstract class BaseInitiator<S extends Scheduler> implements Initiator
                 taskLog = m_initiatorMailbox.getJoinProducer().constructTaskLog(VoltDB.instance().getVoltDBRootPath());
             }
 
+            m_scheduler.getQueue().setIdleStrategy(
+                    SiteTaskerQueue.IdleStrategy.fromDeployment(catalogContext.getDeployment()));
             m_executionSite = new Site(m_scheduler.getQueue(),
                                        m_initiatorMailbox.getHSId(),
                                        backend, catalogContext,
@@ -197,6 +204,11 @@ public abstract class BaseInitiator<S extends Scheduler> implements Initiator
                 tmLog.info("Interrupted during shutdown", e);
             }
         }
+
+        if (m_initiatorMailbox != null) {
+            MetricsRegistry.instance().remove("voltdb_site_queue_depth", "site", CoreUtils.hsIdToString(getInitiatorHSId()));
+            MetricsRegistry.instance().remove("voltdb_site_idle_nanoseconds", "site", CoreUtils.hsIdToString(getInitiatorHSId()));
+        }
     }
 
     @Override
@@ -101,6 +101,9 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
     // Current topology
     int m_partitionId;
 
+    // This site's share of the memory for MP responses across the read pool
+    final long m_maxTotalMpResponseSize;
+
     //a place holder for current running transaction on this site
     //the transaction will be terminated upon node shutdown.
     private TransactionState m_txnState = null;
@@ -372,13 +375,15 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
             long siteId,
             BackendTarget backend,
             CatalogContext context,
-            int partitionId)
+            int partitionId,
+            long maxTotalMpResponseSize)
     {
         m_siteId = siteId;
         m_context = context;
         m_partitionId = partitionId;
         m_scheduler = scheduler;
         m_backend = backend;
+        m_maxTotalMpResponseSize = maxTotalMpResponseSize;
     }
 
     /** Update the loaded procedures. */
@@ -794,6 +799,6 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
 
     @Override
     public long getMaxTotalMpResponseSize() {
-        return MpTransactionState.MP_MAX_TOTAL_RESP_SIZE / MpRoSitePool.MAX_POOL_SIZE;
+        return m_maxTotalMpResponseSize;
     }
 }
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
@@ -33,17 +34,32 @@ import org.voltdb.BackendTarget;
 import org.voltdb.CatalogContext;
 import org.voltdb.LoadedProcedureSet;
 import org.voltdb.StarvationTracker;
+import org.voltdb.compiler.deploymentfile.SystemSettingsType;
 
 /**
  * Provide a pool of MP Read-only sites to do MP RO work.
  * This should be owned by the MpTransactionTaskQueue and expects all operations
  * to be done while holding its lock.
+ *
+ * The number of reads the pool runs concurrently adapts between the minimum and maximum
+ * size from the deployment. It grows by a site when the read at the head of the backlog
+ * has been waiting for a site longer than {@link #GROW_WAIT_MS} and there is enough heap
+ * headroom, and shrinks by a site when it has not been saturated for {@link #SHRINK_IDLE_MS}.
+ * The owner rechecks a blocked read once it has waited long enough, see {@link #nanosUntilGrowth(long)}.
  */
 class MpRoSitePool {
     final static VoltLogger tmLog = new VoltLogger("TM");
 
-    static final int MAX_POOL_SIZE = Integer.getInteger("MPI_READ_POOL_SIZE", 3);
-    static final int INITIAL_POOL_SIZE = 1;
+    // Overrides the maximum pool size in the deployment when set
+    static final Integer MAX_POOL_SIZE_OVERRIDE = Integer.getInteger("MPI_READ_POOL_SIZE");
+    static final int DEFAULT_MIN_POOL_SIZE = 1;
+    static final int DEFAULT_MAX_POOL_SIZE = 3;
+    // How long the oldest waiting read has to wait before the pool grows
+    static final long GROW_WAIT_MS = Integer.getInteger("MPI_READ_POOL_GROW_WAIT_MS", 10);
+    // How long the pool has to stay below its current size before it shrinks
+    static final long SHRINK_IDLE_MS = Integer.getInteger("MPI_READ_POOL_SHRINK_IDLE_MS", 60_000);
+    // Percentage of the maximum heap which has to be free for the pool to grow
+    static final int MIN_HEAP_HEADROOM_PCT = Integer.getInteger("MPI_READ_POOL_MIN_HEAP_HEADROOM_PCT", 20);
 
     class MpRoSiteContext {
         final private SiteTaskerQueue m_queue;
@@ -51,18 +67,23 @@ class MpRoSitePool {
         final private CatalogContext m_catalogContext;
         final private LoadedProcedureSet m_loadedProcedures;
         final private Thread m_siteThread;
+        final private int m_maxPoolSize;
 
         MpRoSiteContext(long siteId, BackendTarget backend,
                 CatalogContext context, int partitionId,
                 InitiatorMailbox initiatorMailbox,
-                ThreadFactory threadFactory)
+                ThreadFactory threadFactory,
+                int maxPoolSize)
         {
             m_catalogContext = context;
+            m_maxPoolSize = maxPoolSize;
             m_queue = new SiteTaskerQueue(partitionId);
+            m_queue.setIdleStrategy(SiteTaskerQueue.IdleStrategy.fromDeployment(context.getDeployment()));
             // IZZY: Just need something non-null for now
             m_queue.setStarvationTracker(new StarvationTracker(siteId));
             m_queue.setupQueueDepthTracker(siteId);
-            m_site = new MpRoSite(m_queue, siteId, backend, m_catalogContext, partitionId);
+            m_site = new MpRoSite(m_queue, siteId, backend, m_catalogContext, partitionId,
+                    MpTransactionState.MP_MAX_TOTAL_RESP_SIZE / maxPoolSize);
             m_loadedProcedures = new LoadedProcedureSet(m_site);
             m_loadedProcedures.loadProcedures(m_catalogContext);
             m_site.setLoadedProcedures(m_loadedProcedures);
@@ -82,6 +103,14 @@ class MpRoSitePool {
             return m_catalogContext.catalogVersion;
         }
 
+        /**
+         * @return true if this site was created for the current catalog and pool size limits
+         */
+        boolean isCurrent(CatalogContext context, int maxPoolSize) {
+            return getCatalogCRC() == context.getCatalogCRC() && getCatalogVersion() == context.catalogVersion
+                    && m_maxPoolSize == maxPoolSize;
+        }
+
         void shutdown() {
             m_site.startShutdown();
             // Need to unblock the site's run() loop on the take() call on the queue
@@ -113,6 +142,21 @@ class MpRoSitePool {
     private ThreadFactory m_poolThreadFactory;
     private volatile boolean m_shuttingDown = false;
 
+    // Pool size limits and the number of reads currently allowed to run concurrently
+    private volatile int m_minSize;
+    private volatile int m_maxSize;
+    private volatile int m_size;
+    // Last time all of the allowed reads were running
+    private long m_lastSaturatedNanos;
+
+    // Counters reported by MpRoSitePoolStats. Only updated while holding the lock of the owner
+    private volatile long m_dispatched = 0;
+    private volatile long m_totalWaitNanos = 0;
+    private volatile long m_maxWaitNanos = 0;
+    private volatile long m_rejects = 0;
+    private volatile long m_grows = 0;
+    private volatile long m_shrinks = 0;
+
     MpRoSitePool(
             long siteId,
             BackendTarget backend,
@@ -129,21 +173,73 @@ class MpRoSitePool {
             CoreUtils.getThreadFactory("RO MP Site - " + CoreUtils.hsIdToString(m_siteId),
                     CoreUtils.MEDIUM_STACK_SIZE);
 
-        tmLog.info("Setting maximum size of MPI read pool to: " + MAX_POOL_SIZE);
+        configureSize(context);
+        m_size = m_minSize;
+        m_lastSaturatedNanos = nanoTime();
 
         // Construct the initial pool
-        for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
-            MpRoSiteContext site = new MpRoSiteContext(m_siteId,
-                    m_backend,
-                    m_catalogContext,
-                    m_partitionId,
-                    m_initiatorMailbox,
-                    m_poolThreadFactory);
+        for (int i = 0; i < m_size; i++) {
+            MpRoSiteContext site = newSite();
             m_idleSites.push(site);
             m_allSites.add(site);
         }
     }
 
+    // Overridden by unit tests, which do not run real sites
+    MpRoSiteContext newSite() {
+        return new MpRoSiteContext(m_siteId,
+                m_backend,
+                m_catalogContext,
+                m_partitionId,
+                m_initiatorMailbox,
+                m_poolThreadFactory,
+                m_maxSize);
+    }
+
+    /**
+     * Read the pool size limits from the deployment and clamp the current size to them
+     */
+    private void configureSize(CatalogContext context) {
+        int minSize = DEFAULT_MIN_POOL_SIZE;
+        int maxSize = DEFAULT_MAX_POOL_SIZE;
+        SystemSettingsType.Mpreadpool settings = context.getDeployment().getSystemsettings().getMpreadpool();
+        if (settings != null) {
+            minSize = settings.getMinsize();
+            maxSize = settings.getMaxsize();
+        }
+        if (MAX_POOL_SIZE_OVERRIDE != null) {
+            maxSize = MAX_POOL_SIZE_OVERRIDE;
+        }
+        maxSize = Math.max(1, maxSize);
+        if (minSize > maxSize) {
+            tmLog.warn("Minimum size of MPI read pool " + minSize + " is larger than its maximum size " + maxSize
+                    + ", using " + maxSize);
+            minSize = maxSize;
+        }
+        if (minSize != m_minSize || maxSize != m_maxSize) {
+            tmLog.info("Setting size of MPI read pool to between " + minSize + " and " + maxSize);
+        }
+        m_minSize = minSize;
+        m_maxSize = maxSize;
+        m_size = Math.max(minSize, Math.min(maxSize, m_size));
+    }
+
+    /**
+     * Shut down idle sites which do not match the current catalog and pool size limits
+     * or which are in excess of the current pool size.
+     */
+    private void retireIdleSites() {
+        Iterator<MpRoSiteContext> siterator = m_idleSites.iterator();
+        while (siterator.hasNext()) {
+            MpRoSiteContext site = siterator.next();
+            if (!site.isCurrent(m_catalogContext, m_maxSize) || m_busySites.size() + m_idleSites.size() > m_size) {
+                site.shutdown();
+                siterator.remove();
+                m_allSites.remove(site);
+            }
+        }
+    }
+
     /**
      * Update the catalog
      */
@@ -154,19 +250,11 @@ class MpRoSitePool {
         }
 
         m_catalogContext = context;
+        configureSize(context);
         // Wipe out all the idle sites with stale catalogs.
         // Non-idle sites will get killed and replaced when they finish
         // whatever they started before the catalog update
-        Iterator<MpRoSiteContext> siterator = m_idleSites.iterator();
-        while (siterator.hasNext()) {
-            MpRoSiteContext site = siterator.next();
-            if (site.getCatalogCRC() != m_catalogContext.getCatalogCRC()
-                    || site.getCatalogVersion() != m_catalogContext.catalogVersion) {
-                site.shutdown();
-                m_idleSites.remove(site);
-                m_allSites.remove(site);
-            }
-        }
+        retireIdleSites();
     }
 
     /**
@@ -175,6 +263,10 @@ class MpRoSitePool {
     void updateSettings(CatalogContext context)
     {
         m_catalogContext = context;
+        if (!m_shuttingDown) {
+            configureSize(context);
+            retireIdleSites();
+        }
     }
 
     /**
@@ -203,7 +295,65 @@ class MpRoSitePool {
         if (m_shuttingDown) {
             return false;
         }
-        return (!m_idleSites.isEmpty() || m_busySites.size() < MAX_POOL_SIZE);
+        return m_busySites.size() < m_size;
+    }
+
+    /**
+     * Called when a read which has been waiting for {@code waitNanos} cannot be started because all of the
+     * allowed reads are running. Grows the pool when the read has waited long enough and there is heap headroom.
+     *
+     * @param newlyBlocked whether this is the first time this read could not be started
+     * @return true if the pool grew and can accept the read
+     */
+    boolean readBlocked(long waitNanos, boolean newlyBlocked)
+    {
+        if (m_shuttingDown) {
+            return false;
+        }
+        if (newlyBlocked) {
+            m_rejects++;
+        }
+        if (m_size >= m_maxSize || waitNanos < TimeUnit.MILLISECONDS.toNanos(GROW_WAIT_MS) || !hasHeapHeadroom()) {
+            return false;
+        }
+        m_size++;
+        m_grows++;
+        if (tmLog.isDebugEnabled()) {
+            tmLog.debug("Growing MPI read pool to " + m_size + " after a read waited "
+                    + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms");
+        }
+        return canAcceptWork();
+    }
+
+    /**
+     * How long the read at the head of the backlog, which has been waiting for {@code waitNanos},
+     * still has to wait before it may grow the pool. The owner rechecks the read after that long,
+     * so the pool does not have to wait for the next transaction to arrive or complete to grow.
+     *
+     * @return the remaining wait in nanoseconds, or 0 if a longer wait would not let the pool grow
+     */
+    long nanosUntilGrowth(long waitNanos)
+    {
+        if (m_shuttingDown || m_size >= m_maxSize) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.MILLISECONDS.toNanos(GROW_WAIT_MS) - waitNanos);
+    }
+
+    private static boolean hasHeapHeadroom() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return (runtime.maxMemory() - used) * 100 >= runtime.maxMemory() * MIN_HEAP_HEADROOM_PCT;
+    }
+
+    /**
+     * Record that a read was started after waiting {@code waitNanos} in the backlog
+     */
+    void readStarted(long waitNanos)
+    {
+        m_dispatched++;
+        m_totalWaitNanos += waitNanos;
+        m_maxWaitNanos = Math.max(m_maxWaitNanos, waitNanos);
     }
 
     /**
@@ -212,28 +362,29 @@ class MpRoSitePool {
      */
     boolean doWork(long txnId, TransactionTask task)
     {
-        boolean retval = canAcceptWork();
-        if (!retval) {
-            return false;
-        }
         MpRoSiteContext site;
         // Repair case
         if (m_busySites.containsKey(txnId)) {
+            if (m_shuttingDown) {
+                return false;
+            }
             site = m_busySites.get(txnId);
         }
         else {
+            boolean retval = canAcceptWork();
+            if (!retval) {
+                return false;
+            }
             if (m_idleSites.isEmpty()) {
-                MpRoSiteContext newSite = new MpRoSiteContext(m_siteId,
-                        m_backend,
-                        m_catalogContext,
-                        m_partitionId,
-                        m_initiatorMailbox,
-                        m_poolThreadFactory);
+                MpRoSiteContext newSite = newSite();
                 m_idleSites.push(newSite);
                 m_allSites.add(newSite);
             }
             site = m_idleSites.pop();
             m_busySites.put(txnId, site);
+            if (m_busySites.size() >= m_size) {
+                m_lastSaturatedNanos = nanoTime();
+            }
         }
         site.offer(task);
         return true;
@@ -252,11 +403,20 @@ class MpRoSitePool {
         if (site == null) {
             throw new RuntimeException("No busy site for txnID: " + txnId + " found, shouldn't happen.");
         }
+        // Shrink the pool by a site if it has not been saturated for a while
+        long now = nanoTime();
+        if (m_size > m_minSize && now - m_lastSaturatedNanos >= TimeUnit.MILLISECONDS.toNanos(SHRINK_IDLE_MS)) {
+            m_size--;
+            m_shrinks++;
+            m_lastSaturatedNanos = now;
+            if (tmLog.isDebugEnabled()) {
+                tmLog.debug("Shrinking MPI read pool to " + m_size);
+            }
+        }
         // check the catalog versions, only push back onto idle if the catalog hasn't changed
-        // otherwise, just let it get garbage collected and let doWork() construct new ones for the
-        // pool with the updated catalog.
-        if (site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
-                && site.getCatalogVersion() == m_catalogContext.catalogVersion) {
+        // and the pool has not shrunk, otherwise, just let it get garbage collected and let
+        // doWork() construct new ones for the pool with the updated catalog.
+        if (site.isCurrent(m_catalogContext, m_maxSize) && m_busySites.size() + m_idleSites.size() < m_size) {
             m_idleSites.push(site);
         }
         else {
@@ -265,6 +425,17 @@ class MpRoSitePool {
         }
     }
 
+    // Overridden by unit tests to control time
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    MpRoSitePoolStats.Snapshot getStatsSnapshot()
+    {
+        return new MpRoSitePoolStats.Snapshot(m_minSize, m_maxSize, m_size, m_allSites.size(), m_busySites.size(),
+                m_dispatched, m_totalWaitNanos, m_maxWaitNanos, m_rejects, m_grows, m_shrinks);
+    }
+
     void shutdown()
     {
         m_shuttingDown = true;
@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Statistics about the occupancy of the MP read-only site pool and the time reads wait for a site
+ */
+class MpRoSitePoolStats extends SiteStatsSource {
+    private final MpRoSitePool m_pool;
+    private Snapshot m_last = new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    private boolean m_interval;
+
+    /** Point in time values of the pool counters */
+    static final class Snapshot {
+        final int m_minSize;
+        final int m_maxSize;
+        final int m_size;
+        final int m_sites;
+        final int m_busy;
+        final long m_dispatched;
+        final long m_totalWaitNanos;
+        final long m_maxWaitNanos;
+        final long m_rejects;
+        final long m_grows;
+        final long m_shrinks;
+
+        Snapshot(int minSize, int maxSize, int size, int sites, int busy, long dispatched, long totalWaitNanos,
+                long maxWaitNanos, long rejects, long grows, long shrinks) {
+            m_minSize = minSize;
+            m_maxSize = maxSize;
+            m_size = size;
+            m_sites = sites;
+            m_busy = busy;
+            m_dispatched = dispatched;
+            m_totalWaitNanos = totalWaitNanos;
+            m_maxWaitNanos = maxWaitNanos;
+            m_rejects = rejects;
+            m_grows = grows;
+            m_shrinks = shrinks;
+        }
+    }
+
+    MpRoSitePoolStats(long siteId, MpRoSitePool pool) {
+        super(siteId, false);
+        m_pool = pool;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("MIN_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("MAX_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CURRENT_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BUSY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("READS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("REJECTS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("GROWS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SHRINKS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        Snapshot now = m_pool.getStatsSnapshot();
+        Snapshot base = m_interval ? m_last : new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        long reads = now.m_dispatched - base.m_dispatched;
+        long waitNanos = now.m_totalWaitNanos - base.m_totalWaitNanos;
+
+        rowValues[columnNameToIndex.get("MIN_SIZE")] = now.m_minSize;
+        rowValues[columnNameToIndex.get("MAX_SIZE")] = now.m_maxSize;
+        rowValues[columnNameToIndex.get("CURRENT_SIZE")] = now.m_size;
+        rowValues[columnNameToIndex.get("SITES")] = now.m_sites;
+        rowValues[columnNameToIndex.get("BUSY")] = now.m_busy;
+        rowValues[columnNameToIndex.get("READS")] = reads;
+        // Wait times are in microseconds
+        rowValues[columnNameToIndex.get("AVG_WAIT")] =
+                reads == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(waitNanos / reads);
+        rowValues[columnNameToIndex.get("MAX_WAIT")] = TimeUnit.NANOSECONDS.toMicros(now.m_maxWaitNanos);
+        rowValues[columnNameToIndex.get("REJECTS")] = now.m_rejects - base.m_rejects;
+        rowValues[columnNameToIndex.get("GROWS")] = now.m_grows - base.m_grows;
+        rowValues[columnNameToIndex.get("SHRINKS")] = now.m_shrinks - base.m_shrinks;
+        if (m_interval) {
+            m_last = now;
+        }
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        return Collections.<Object>singletonList(m_pool).iterator();
+    }
+}
@@ -26,10 +26,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.CatalogContext;
+import org.voltdb.VoltDB;
 import org.voltdb.exceptions.TransactionRestartException;
 import org.voltdb.messaging.FragmentResponseMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
@@ -48,6 +50,12 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     private final Map<Long, TransactionTask> m_currentWrites = new HashMap<Long, TransactionTask>();
     private final Map<Long, TransactionTask> m_currentReads = new HashMap<Long, TransactionTask>();
     private Deque<TransactionTask> m_backlog = new ArrayDeque<TransactionTask>();
+    // System.nanoTime() at which each task in the backlog was offered, in backlog order
+    private final Deque<Long> m_backlogOfferTimes = new ArrayDeque<Long>();
+    // The read at the head of the backlog last reported to the pool as blocked
+    private long m_blockedReadTxnId = Long.MIN_VALUE;
+    // Whether a recheck of the blocked read is scheduled for when it may grow the pool
+    private boolean m_blockedReadRecheckScheduled = false;
 
     private MpRoSitePool m_sitePool = null;
 
@@ -92,6 +100,7 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
         m_backlog.addLast(task);
+        m_backlogOfferTimes.addLast(System.nanoTime());
         taskQueueOffer();
     }
 
@@ -206,6 +215,7 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
             if (!task.getTransactionState().isReadOnly()) {
                 if (m_currentReads.isEmpty() && m_currentWrites.isEmpty()) {
                     task = m_backlog.pollFirst();
+                    m_backlogOfferTimes.pollFirst();
                     m_currentWrites.put(task.getTxnId(), task);
                     taskQueueOffer(task);
                     retval = true;
@@ -213,10 +223,11 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
             }
             else if (m_currentWrites.isEmpty()) {
                 while (task != null && task.getTransactionState().isReadOnly() &&
-                       m_sitePool.canAcceptWork())
+                       canStartRead(task))
                 {
                     task = m_backlog.pollFirst();
                     assert(task.getTransactionState().isReadOnly());
+                    m_sitePool.readStarted(System.nanoTime() - m_backlogOfferTimes.pollFirst());
                     m_currentReads.put(task.getTxnId(), task);
                     taskQueueOffer(task);
                     retval = true;
@@ -229,6 +240,39 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         return retval;
     }
 
+    /**
+     * Whether the pool can start the read at the head of the backlog, giving the pool
+     * a chance to grow if the read has been waiting for a site.
+     */
+    private boolean canStartRead(TransactionTask head)
+    {
+        if (m_sitePool.canAcceptWork()) {
+            return true;
+        }
+        boolean newlyBlocked = m_blockedReadTxnId != head.getTxnId();
+        m_blockedReadTxnId = head.getTxnId();
+        final long waitNanos = System.nanoTime() - m_backlogOfferTimes.peekFirst();
+        if (m_sitePool.readBlocked(waitNanos, newlyBlocked)) {
+            return true;
+        }
+        // Nothing may arrive or complete before the read has waited long enough to grow the pool
+        final long recheckNanos = m_sitePool.nanosUntilGrowth(waitNanos);
+        if (recheckNanos > 0 && !m_blockedReadRecheckScheduled) {
+            m_blockedReadRecheckScheduled = true;
+            VoltDB.instance().scheduleWork(this::recheckBlockedRead, recheckNanos, -1, TimeUnit.NANOSECONDS);
+        }
+        return false;
+    }
+
+    /**
+     * Give the read at the head of the backlog, if it is still blocked, another chance to grow the pool
+     */
+    private synchronized void recheckBlockedRead()
+    {
+        m_blockedReadRecheckScheduled = false;
+        taskQueueOffer();
+    }
+
     /**
      * Indicate that the transaction associated with txnId is complete.  Perform
      * management of reads/writes in progress then call taskQueueOffer() to
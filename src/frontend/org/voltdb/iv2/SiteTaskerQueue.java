@@ -17,43 +17,222 @@
 
 package org.voltdb.iv2;
 
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.QueueDepthTracker;
 import org.voltdb.StarvationTracker;
+import org.voltdb.compiler.deploymentfile.DeploymentType;
+import org.voltdb.compiler.deploymentfile.SystemSettingsType;
 
-/** SiteTaskerScheduler orders SiteTaskers for execution. */
+/**
+ * SiteTaskerScheduler orders SiteTaskers for execution.
+ *
+ * Tasks are offered by any number of threads and consumed by the single site thread. They are
+ * handed over through a bounded ring buffer which does not allocate per task. The site thread
+ * claims up to {@link #BATCH_SIZE} published tasks at a time and hands them out without checking
+ * the ring again. Since the site thread offers tasks to its own queue it must never block on a
+ * full ring, so when the ring is full tasks spill into an unbounded overflow queue. While the
+ * overflow queue is in use all offers go to it, which keeps the tasks of each producer in order.
+ *
+ * All methods other than {@link #offer}, {@link #clear}, {@link #head}, {@link #size} and
+ * {@link #isEmpty} must only be called by the site thread.
+ */
 public class SiteTaskerQueue
 {
-    private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    /** How the site thread waits for work when its queue is empty */
+    public enum IdleStrategy {
+        /** Busy spin, lowest hand-off latency but keeps the core busy */
+        SPIN,
+        /** Spin for QUEUE_SPIN_MICROS and then yield the core between checks */
+        YIELD,
+        /** Spin for QUEUE_SPIN_MICROS and then park until a task is offered */
+        PARK;
+
+        /**
+         * @return the idle strategy configured in the deployment, {@link #PARK} if none is
+         */
+        public static IdleStrategy fromDeployment(DeploymentType deployment) {
+            SystemSettingsType settings = deployment.getSystemsettings();
+            if (settings == null || settings.getSitequeue() == null) {
+                return PARK;
+            }
+            return valueOf(settings.getSitequeue().getIdlestrategy().name());
+        }
+    }
+
+    /** Number of tasks the ring buffer holds, rounded up to a power of two */
+    static final int CAPACITY = 1 << (32 - Integer.numberOfLeadingZeros(
+            Math.max(2, Integer.getInteger("SITE_TASK_QUEUE_CAPACITY", 8192)) - 1));
+    /** Maximum number of tasks claimed by the site thread at a time */
+    static final int BATCH_SIZE = Math.max(1, Integer.getInteger("SITE_TASK_QUEUE_BATCH", 64));
+
+    private final int m_mask = CAPACITY - 1;
+    private final AtomicReferenceArray<SiteTasker> m_ring = new AtomicReferenceArray<>(CAPACITY);
+    // Sequence of each slot. A slot at position p can be written when its sequence is p
+    // and read when its sequence is p + 1
+    private final AtomicLongArray m_sequences = new AtomicLongArray(CAPACITY);
+    // Next position to be claimed by a producer
+    private final AtomicLong m_tail = new AtomicLong();
+    // Next position to be consumed, only written by the site thread
+    private final AtomicLong m_head = new AtomicLong();
+    // End of the published positions claimed by the site thread
+    private long m_batchEnd = 0;
+    // Positions before this have been cleared and are discarded by the site thread
+    private volatile long m_clearedTo = 0;
+    // Task removed from the queue by peek() and not yet handed out
+    private volatile SiteTasker m_peeked = null;
+
+    // Guarded by itself
+    private final ArrayDeque<SiteTasker> m_overflow = new ArrayDeque<>();
+    private volatile boolean m_overflowing = false;
+
+    private volatile IdleStrategy m_idleStrategy = IdleStrategy.PARK;
+    private volatile Thread m_parkedThread = null;
+
     private StarvationTracker m_starvationTracker;
     private QueueDepthTracker m_queueDepthTracker;
     private int m_partitionId;
 
     public SiteTaskerQueue(int partitionId) {
         m_partitionId = partitionId;
+        for (int i = 0; i < CAPACITY; i++) {
+            m_sequences.set(i, i);
+        }
     }
 
     public int getPartitionId() {
         return m_partitionId;
     }
 
+    /**
+     * Set how the site thread waits for tasks. Takes effect the next time it waits.
+     */
+    public void setIdleStrategy(IdleStrategy idleStrategy) {
+        m_idleStrategy = idleStrategy;
+    }
+
     public boolean offer(SiteTasker task)
     {
         task.setQueueOfferTime();
-        // update tracker before enqueue the task
-        // prevent another thread from polling a task and decrementing
-        // the queue depth before it is incremented
-        // i.e. avoid queueDepth < 0
-        m_queueDepthTracker.offerUpdate();
-        return m_tasks.offer(task);
+        if (m_overflowing || !offerToRing(task)) {
+            synchronized (m_overflow) {
+                m_overflowing = true;
+                m_overflow.addLast(task);
+            }
+        }
+        Thread parked = m_parkedThread;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+        return true;
+    }
+
+    private boolean offerToRing(SiteTasker task) {
+        for (;;) {
+            long position = m_tail.get();
+            int index = (int) position & m_mask;
+            long available = m_sequences.get(index) - position;
+            if (available == 0) {
+                if (m_tail.compareAndSet(position, position + 1)) {
+                    m_ring.lazySet(index, task);
+                    // Volatile write so a parked site thread is seen after publishing
+                    m_sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                // Full
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Wait for the slot at the position to be published by the producer which claimed it
+     */
+    private void awaitPublished(long position) {
+        int index = (int) position & m_mask;
+        while (m_sequences.get(index) != position + 1) {
+            Thread.yield();
+        }
+    }
+
+    private SiteTasker removeFromRing(long position) {
+        int index = (int) position & m_mask;
+        SiteTasker task = m_ring.get(index);
+        m_ring.lazySet(index, null);
+        m_sequences.lazySet(index, position + CAPACITY);
+        m_head.lazySet(position + 1);
+        return task;
+    }
+
+    /**
+     * Claim the next batch of tasks from the ring, discarding any which were cleared
+     * @return true if there is at least one task to hand out
+     */
+    private boolean claimBatch() {
+        long head = m_head.get();
+        long clearedTo = m_clearedTo;
+        if (head < clearedTo) {
+            while (head < clearedTo) {
+                awaitPublished(head);
+                removeFromRing(head++);
+            }
+            m_batchEnd = head;
+        }
+        if (head < m_batchEnd) {
+            return true;
+        }
+        long tail = m_tail.get();
+        if (head == tail) {
+            return false;
+        }
+        // A producer may still be publishing the first claimed position but the ones after it
+        // are only included if they are already published
+        awaitPublished(head);
+        long end = head + 1;
+        long limit = Math.min(tail, head + BATCH_SIZE);
+        while (end < limit && m_sequences.get((int) end & m_mask) == end + 1) {
+            end++;
+        }
+        m_batchEnd = end;
+        return true;
+    }
+
+    private SiteTasker pollTask() {
+        SiteTasker peeked = m_peeked;
+        if (peeked != null) {
+            m_peeked = null;
+            return peeked;
+        }
+        if (claimBatch()) {
+            return removeFromRing(m_head.get());
+        }
+        if (m_overflowing) {
+            synchronized (m_overflow) {
+                // Recheck the ring, producers which raced with the overflow switch may have used it
+                if (claimBatch()) {
+                    return removeFromRing(m_head.get());
+                }
+                SiteTasker task = m_overflow.pollFirst();
+                if (m_overflow.isEmpty()) {
+                    m_overflowing = false;
+                }
+                return task;
+            }
+        }
+        return null;
     }
 
     // Block on the site tasker queue.
     public SiteTasker take() throws InterruptedException
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task = pollTask();
 
         if (task == null) {
             m_starvationTracker.beginStarvation();
@@ -62,7 +241,7 @@ public class SiteTaskerQueue
             return task;
         }
         try {
-            task = CoreUtils.queueSpinTake(m_tasks);
+            task = awaitTask();
             // task is never null
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
             return task;
@@ -71,10 +250,49 @@ public class SiteTaskerQueue
         }
     }
 
+    private SiteTasker awaitTask() throws InterruptedException {
+        final long spinStart = System.nanoTime();
+        boolean spun = false;
+        for (;;) {
+            SiteTasker task = pollTask();
+            if (task != null) {
+                return task;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            IdleStrategy idleStrategy = m_idleStrategy;
+            if (idleStrategy == IdleStrategy.SPIN) {
+                continue;
+            }
+            if (!spun) {
+                spun = System.nanoTime() - spinStart >= CoreUtils.QUEUE_SPIN_MICROSECONDS;
+                if (!spun) {
+                    continue;
+                }
+            }
+            if (idleStrategy == IdleStrategy.YIELD) {
+                Thread.yield();
+                continue;
+            }
+            m_parkedThread = Thread.currentThread();
+            try {
+                // Check again after advertising the parked thread so an offer cannot be missed
+                task = pollTask();
+                if (task != null) {
+                    return task;
+                }
+                LockSupport.park(this);
+            } finally {
+                m_parkedThread = null;
+            }
+        }
+    }
+
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task = pollTask();
         if (task != null) {
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
         }
@@ -84,11 +302,42 @@ public class SiteTaskerQueue
     // Non-blocking peek on the site tasker queue.
     public SiteTasker peek()
     {
-        return m_tasks.peek();
+        // Take the task out of the queue so the next poll returns the same task even if
+        // a producer racing with the switch to the overflow queue publishes to the ring
+        if (m_peeked == null) {
+            m_peeked = pollTask();
+        }
+        return m_peeked;
+    }
+
+    /**
+     * Best effort view of the task at the head of the queue for threads other than the site thread.
+     * The returned task may already have been removed by the site thread.
+     */
+    public SiteTasker head()
+    {
+        SiteTasker peeked = m_peeked;
+        if (peeked != null) {
+            return peeked;
+        }
+        long position = Math.max(m_head.get(), m_clearedTo);
+        if (position < m_tail.get()) {
+            int index = (int) position & m_mask;
+            if (m_sequences.get(index) == position + 1) {
+                return m_ring.get(index);
+            }
+            return null;
+        }
+        if (m_overflowing) {
+            synchronized (m_overflow) {
+                return m_overflow.peekFirst();
+            }
+        }
+        return null;
     }
 
     public boolean isEmpty() {
-        return m_tasks.isEmpty();
+        return size() == 0;
     }
 
     public void setStarvationTracker(StarvationTracker tracker) {
@@ -96,15 +345,29 @@ public class SiteTaskerQueue
     }
 
     public QueueDepthTracker setupQueueDepthTracker(long siteId) {
-        m_queueDepthTracker = new QueueDepthTracker(siteId, m_tasks);
+        m_queueDepthTracker = new QueueDepthTracker(siteId, this);
         return m_queueDepthTracker;
     }
 
     public int size() {
-        return m_tasks.size();
+        long ringSize = m_tail.get() - Math.max(m_head.get(), m_clearedTo);
+        int overflowSize = 0;
+        if (m_overflowing) {
+            synchronized (m_overflow) {
+                overflowSize = m_overflow.size();
+            }
+        }
+        return (int) Math.max(0, ringSize) + overflowSize + (m_peeked == null ? 0 : 1);
     }
 
+    /**
+     * Discard all of the tasks offered so far. Tasks in the ring are dropped by the site thread
+     * the next time it looks for work. A task returned by {@link #peek} is not discarded.
+     */
     public void clear() {
-        m_tasks.clear();
+        synchronized (m_overflow) {
+            m_clearedTo = Math.max(m_clearedTo, m_tail.get());
+            m_overflow.clear();
+        }
     }
 }
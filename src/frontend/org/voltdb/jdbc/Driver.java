@@ -49,6 +49,7 @@ public class Driver implements java.sql.Driver
     static final String TRUSTSTORE_CONFIG_PROP = "truststore";
     static final String TRUSTSTORE_PASSWORD_PROP = "truststorepassword";
     static final String KERBEROS_CONFIG_PROP = "kerberos";
+    static final String TOPOLOGY_AWARE_PROP = "topologyaware";
 
     // Static so it's unit-testable, yes, lazy me
     static String[] getServersFromURL(String url) {
@@ -140,6 +141,7 @@ public class Driver implements java.sql.Driver
                 boolean heavyweight = false;
                 int maxoutstandingtxns = 0;
                 boolean reconnectOnConnectionLoss = false;
+                boolean topologyChangeAware = false;
                 boolean enableSSL = false;
                 String truststorePath = null;
                 String truststorePassword = null;
@@ -161,6 +163,10 @@ public class Driver implements java.sql.Driver
                     else if ("autoreconnect".equals(key)) {
                         reconnectOnConnectionLoss = ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value) || "1".equals(value));
                     }
+                    else if (key.toLowerCase().equals(TOPOLOGY_AWARE_PROP)) {
+                        // connect to every node so that procedure calls go straight to their partition
+                        topologyChangeAware = ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value) || "1".equals(value));
+                    }
                     else if (key.toLowerCase().equals(SSL_PROP)) {
                         enableSSL = value.toLowerCase().equals("true");
                     }
@@ -187,7 +193,7 @@ public class Driver implements java.sql.Driver
                 // Return JDBC connection wrapper for the client
                 return  new JDBC4Connection(JDBC4ClientConnectionPool.get(servers, user, password,
                                                                           heavyweight, maxoutstandingtxns, reconnectOnConnectionLoss, sslConfig,
-                                                                          kerberosConfig),
+                                                                          kerberosConfig, topologyChangeAware),
                                             info);
 
             } catch (Exception x) {
@@ -171,6 +171,26 @@ public class JDBC4ClientConnection implements Closeable {
             int maxOutstandingTxns, boolean reconnectOnConnectionLoss,
             SSLConfiguration.SslConfig sslConfig, String kerberosConfig)
                     throws UnknownHostException, IOException
+    {
+        this(clientConnectionKeyBase, clientConnectionKey, servers, user, password, isHeavyWeight,
+             maxOutstandingTxns, reconnectOnConnectionLoss, sslConfig, kerberosConfig, false);
+    }
+
+    /**
+     * Creates a new native client wrapper from the given parameters (internal use only).
+     *
+     * @param topologyChangeAware
+     *            Connects to every node of the cluster, so that the client affinity sends each
+     *            procedure call straight to the node leading its partition
+     * @throws IOException
+     * @throws UnknownHostException
+     */
+    protected JDBC4ClientConnection(
+            String clientConnectionKeyBase, String clientConnectionKey,
+            String[] servers, String user, String password, boolean isHeavyWeight,
+            int maxOutstandingTxns, boolean reconnectOnConnectionLoss,
+            SSLConfiguration.SslConfig sslConfig, String kerberosConfig, boolean topologyChangeAware)
+                    throws UnknownHostException, IOException
     {
         // Save the list of trimmed non-empty server names.
         this.servers = new ArrayList<String>(servers.length);
@@ -196,6 +216,7 @@ public class JDBC4ClientConnection implements Closeable {
             config.setMaxOutstandingTxns(maxOutstandingTxns);
 
         this.config.setReconnectOnConnectionLoss(reconnectOnConnectionLoss);
+        this.config.setTopologyChangeAware(topologyChangeAware);
 
         if (enableSSL) {
             if (sslConfig.trustStorePath != null && sslConfig.trustStorePath.trim().length() > 0) {
@@ -428,6 +449,42 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a procedure asynchronously with a client side timeout, then calls the provided
+     * user callback with the server response upon completion.
+     *
+     * @param callback
+     *            the user-specified callback to call with the server response upon execution
+     *            completion.
+     * @param timeout
+     *            the query timeout of the calling statement.
+     * @param unit
+     *            the unit of the timeout, seconds when null.
+     * @param procedure
+     *            the name of the procedure to call.
+     * @param parameters
+     *            the list of parameters to pass to the procedure.
+     * @return the result of the submission false if the client connection was terminated and unable
+     *         to post the request to the server, true otherwise.
+     */
+    public boolean executeAsync(ProcedureCallback callback, long timeout, TimeUnit unit,
+            String procedure, Object... parameters)
+            throws NoConnectionsException, IOException
+    {
+        ClientImpl currentClient = this.getClient();
+        if (unit == null) {
+            unit = TimeUnit.SECONDS;
+        }
+        try {
+            return currentClient.callProcedureWithClientTimeout(new TrackingCallback(this, procedure, callback),
+                    BatchTimeoutOverrideType.NO_TIMEOUT, procedure, timeout, unit, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
     /**
      * Executes a procedure asynchronously, returning a Future that can be used by the caller to
      * wait upon completion before processing the server response.
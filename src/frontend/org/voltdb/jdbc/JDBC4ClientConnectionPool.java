@@ -116,8 +116,27 @@ public class JDBC4ClientConnectionPool {
     public static JDBC4ClientConnection get(String[] servers, String user, String password, boolean isHeavyWeight,
                                             int maxOutstandingTxns, boolean reconnectOnConnectionLoss,
                                             SSLConfiguration.SslConfig sslConfig, String kerberosConfig) throws Exception {
+        return get(servers, user, password, isHeavyWeight, maxOutstandingTxns, reconnectOnConnectionLoss,
+                sslConfig, kerberosConfig, false);
+    }
+
+    /**
+     * Gets a client connection to the given VoltDB server(s).
+     *
+     * @param topologyChangeAware
+     *            Connects to every node of the cluster, so that the client affinity sends each
+     *            procedure call straight to the node leading its partition
+     * @return the client connection object the caller should use to post requests.
+     * @see #get(String[] servers, String user, String password, boolean isHeavyWeight, int
+     *      maxOutstandingTxns, boolean reconnectOnConnectionLoss, SSLConfiguration.SslConfig
+     *      sslConfig, String kerberosConfig)
+     */
+    public static JDBC4ClientConnection get(String[] servers, String user, String password, boolean isHeavyWeight,
+                                            int maxOutstandingTxns, boolean reconnectOnConnectionLoss,
+                                            SSLConfiguration.SslConfig sslConfig, String kerberosConfig,
+                                            boolean topologyChangeAware) throws Exception {
         String clientConnectionKeyBase = getClientConnectionKeyBase(servers, user, password,
-                isHeavyWeight, maxOutstandingTxns, reconnectOnConnectionLoss);
+                isHeavyWeight, maxOutstandingTxns, reconnectOnConnectionLoss, topologyChangeAware);
         String clientConnectionKey = clientConnectionKeyBase;
 
         synchronized (ClientConnections) {
@@ -125,7 +144,7 @@ public class JDBC4ClientConnectionPool {
                 ClientConnections.put(clientConnectionKey, new JDBC4ClientConnection(
                         clientConnectionKeyBase, clientConnectionKey, servers, user,
                         password, isHeavyWeight, maxOutstandingTxns, reconnectOnConnectionLoss,
-                        sslConfig, kerberosConfig));
+                        sslConfig, kerberosConfig, topologyChangeAware));
             return ClientConnections.get(clientConnectionKey).use();
         }
     }
@@ -169,13 +188,15 @@ public class JDBC4ClientConnectionPool {
      * @return the base hash/key for the given connection parameter
      */
     private static String getClientConnectionKeyBase(String[] servers, String user,
-            String password, boolean isHeavyWeight, int maxOutstandingTxns, boolean reconnectOnConnectionLoss) {
+            String password, boolean isHeavyWeight, int maxOutstandingTxns, boolean reconnectOnConnectionLoss,
+            boolean topologyChangeAware) {
         String clientConnectionKeyBase = user + ":" + password + "@";
         for (int i = 0; i < servers.length; i++)
             clientConnectionKeyBase += servers[i].trim() + ",";
         clientConnectionKeyBase += "{"
                 + Boolean.toString(isHeavyWeight) + ":" + Integer.toString(maxOutstandingTxns)
-                + ":" + Boolean.toString(reconnectOnConnectionLoss) + "}";
+                + ":" + Boolean.toString(reconnectOnConnectionLoss)
+                + ":" + Boolean.toString(topologyChangeAware) + "}";
         return clientConnectionKeyBase;
     }
 
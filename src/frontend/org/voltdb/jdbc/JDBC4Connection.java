@@ -45,10 +45,16 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
     public static final String COMMIT_THROW_EXCEPTION = "jdbc.committhrowexception";
     public static final String ROLLBACK_THROW_EXCEPTION = "jdbc.rollbackthrowexception";
     public static final String QUERYTIMEOUT_UNIT = "jdbc.querytimeout.unit";
+    // Statements of a batch that may be in flight at once. The default of 1 runs them one
+    // after the other; a larger window pipelines them and is only safe when no statement
+    // of the batch depends on an earlier one, since the server may run them out of order.
+    public static final String BATCH_WINDOW = "jdbc.batchwindow";
+    public static final int DEFAULT_BATCH_WINDOW = 1;
 
     protected final JDBC4ClientConnection NativeConnection;
     protected final String User;
     protected TimeUnit queryTimeOutUnit = TimeUnit.SECONDS;
+    protected int batchWindow = DEFAULT_BATCH_WINDOW;
     private boolean isClosed = false;
     private Properties props;
     private boolean autoCommit = true;
@@ -61,6 +67,9 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         if (this.props.getProperty(JDBC4Connection.QUERYTIMEOUT_UNIT, "Seconds").equalsIgnoreCase("milliseconds")) {
             this.queryTimeOutUnit = TimeUnit.MILLISECONDS;
         }
+        if (this.props.getProperty(BATCH_WINDOW) != null) {
+            this.batchWindow = Integer.parseInt(this.props.getProperty(BATCH_WINDOW).trim());
+        }
     }
 
     private void checkClosed() throws SQLException
@@ -29,12 +29,15 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCallback;
 import org.voltdb.parser.JDBCParser;
 import org.voltdb.parser.SQLLexer;
 import org.voltdb.parser.JDBCParser.ParsedCall;
@@ -126,24 +129,7 @@ public class JDBC4Statement implements java.sql.Statement
             {
                 ClientResponse response = e.getClientResponse();
                 if (response != null) {
-                    // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
-                    // for connection problems.
-                    switch (response.getStatus()) {
-                    case ClientResponse.CONNECTION_LOST:
-                        throw SQLError.get(e, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", e.getMessage());
-                    case ClientResponse.CONNECTION_TIMEOUT:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", e.getMessage());
-                    case ClientResponse.SERVER_UNAVAILABLE:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", e.getMessage());
-                    case ClientResponse.USER_ABORT:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "USER_ABORT", e.getMessage());
-                    case ClientResponse.UNEXPECTED_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", e.getMessage());
-                    case ClientResponse.GRACEFUL_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", e.getMessage());
-                    default:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), e.getMessage());
-                    }
+                    throw getResponseError(response, e, e.getMessage());
                 } else {
                     throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
                 }
@@ -154,6 +140,49 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        // Queues the statement, the callback gets the response. Blocks on client back pressure.
+        protected void executeAsync(JDBC4ClientConnection connection, ProcedureCallback callback,
+                long timeout, TimeUnit queryTimeOutUnit) throws SQLException {
+            try
+            {
+                boolean queued;
+                if (this.type == TYPE_EXEC) {
+                    queued = connection.executeAsync(callback, timeout, queryTimeOutUnit, this.sql[0], this.parameters);
+                } else {
+                    queued = connection.executeAsync(callback, timeout, queryTimeOutUnit, "@AdHoc", this.sql[0]);
+                }
+                if (!queued) {
+                    throw SQLError.get(SQLError.CONNECTION_FAILURE, "Unable to queue " + this.sql[0]);
+                }
+            }
+            catch(IOException e)
+            {
+                throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+            }
+        }
+
+        // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
+        // for connection problems.
+        static SQLException getResponseError(ClientResponse response, Exception cause, String message)
+        {
+            switch (response.getStatus()) {
+            case ClientResponse.CONNECTION_LOST:
+                return SQLError.get(cause, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", message);
+            case ClientResponse.CONNECTION_TIMEOUT:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", message);
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", message);
+            case ClientResponse.USER_ABORT:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "USER_ABORT", message);
+            case ClientResponse.UNEXPECTED_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", message);
+            case ClientResponse.GRACEFUL_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", message);
+            default:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), message);
+            }
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -421,6 +450,18 @@ public class JDBC4Statement implements java.sql.Statement
             return new int[0];
         }
 
+        try {
+            if (sourceConnection.batchWindow > 1) {
+                return executeBatchPipelined(sourceConnection.batchWindow);
+            }
+            return executeBatchSerially();
+        } finally {
+            clearBatch();
+        }
+    }
+
+    private int[] executeBatchSerially() throws SQLException
+    {
         int[] updateCounts = new int[batch.size()];
         // keep a running total of update counts
         int runningUpdateCount = 0;
@@ -443,8 +484,6 @@ public class JDBC4Statement implements java.sql.Statement
             updateCounts[i] = EXECUTE_FAILED;
             throw new BatchUpdateException(Arrays.copyOf(updateCounts, i + 1),
                     x);
-        } finally {
-            clearBatch();
         }
         // replace the update count from the last statement with the update count
         // from the last batch.
@@ -453,6 +492,82 @@ public class JDBC4Statement implements java.sql.Statement
         return updateCounts;
     }
 
+    /**
+     * Queue the whole batch through the client callbacks, with at most window statements
+     * in flight, rather than paying a round trip per statement. Update counts land in
+     * batch order whatever order the responses come back in, but the statements themselves
+     * may run out of order, so this is only used when the connection opts in with a
+     * {@link JDBC4Connection#BATCH_WINDOW} above 1. Once a statement fails no more are
+     * queued, and the statements already in flight are waited for and reported.
+     */
+    private int[] executeBatchPipelined(final int window) throws SQLException
+    {
+        final int size = batch.size();
+        final int[] updateCounts = new int[size];
+        final SQLException[] errors = new SQLException[size];
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        // the responses publish the update counts to this thread through the permits
+        final Semaphore permits = new Semaphore(window);
+
+        int submitted = 0;
+        try {
+            for (; submitted < size; submitted++) {
+                permits.acquire();
+                // a statement may have failed while this one waited for room in the window
+                if (failed.get()) {
+                    permits.release();
+                    break;
+                }
+                final int index = submitted;
+                try {
+                    batch.get(index).executeAsync(sourceConnection.NativeConnection, response -> {
+                        try {
+                            if (response.getStatus() == ClientResponse.SUCCESS) {
+                                updateCounts[index] = (int) response.getResults()[0].fetchRow(0).getLong(0);
+                            } else {
+                                errors[index] = VoltSQL.getResponseError(response, null, response.getStatusString());
+                                failed.set(true);
+                            }
+                        } catch (RuntimeException e) {
+                            errors[index] = SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+                            failed.set(true);
+                        } finally {
+                            permits.release();
+                        }
+                    }, this.m_timeout, sourceConnection.queryTimeOutUnit);
+                } catch (SQLException x) {
+                    permits.release();
+                    errors[index] = x;
+                    failed.set(true);
+                }
+            }
+            // wait for the statements still in flight
+            permits.acquire(window);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+        }
+
+        SQLException firstError = null;
+        int runningUpdateCount = 0;
+        for (int i = 0; i < submitted; i++) {
+            if (errors[i] != null) {
+                updateCounts[i] = EXECUTE_FAILED;
+                if (firstError == null) {
+                    firstError = errors[i];
+                }
+            } else {
+                runningUpdateCount += updateCounts[i];
+            }
+        }
+        if (firstError != null) {
+            throw new BatchUpdateException(Arrays.copyOf(updateCounts, submitted), firstError);
+        }
+        this.lastUpdateCount = runningUpdateCount;
+
+        return updateCounts;
+    }
+
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
         setCurrentResult(query.execute(this.sourceConnection.NativeConnection, this.m_timeout, this.sourceConnection.queryTimeOutUnit), -1);
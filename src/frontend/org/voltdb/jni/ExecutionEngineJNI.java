@@ -582,15 +582,21 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         }
 
         try {
-            m_nextDeserializer.readInt();//Ignore the length of the result tables
+            // Copy all of the result tables out of the shared buffer at once and
+            // slice the individual tables from that copy
+            final ByteBuffer allTables = m_nextDeserializer.readBuffer(m_nextDeserializer.readInt());
             final VoltTable results[] = new VoltTable[numResults];
             for (int ii = 0; ii < numResults; ii++) {
-                int len = m_nextDeserializer.readInt();
-                byte[] bufCopy = new byte[len];
-                m_nextDeserializer.readFully(bufCopy, 0, len);
+                int len = allTables.getInt();
+                allTables.limit(allTables.position() + len);
+                // The slice's capacity ends with this table so that appending rows to it
+                // reallocates rather than overwriting the next table
+                ByteBuffer tableBuf = allTables.slice();
+                allTables.limit(allTables.capacity());
+                allTables.position(allTables.position() + len);
                 // This Table should be readonly (true), but table stats need to be updated
                 // Stream stats until Stream stats are deprecated from Table stats
-                results[ii] = PrivateVoltTableFactory.createVoltTableFromBuffer(ByteBuffer.wrap(bufCopy), false);
+                results[ii] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBuf, false);
             }
             return results;
         } catch (final IOException ex) {
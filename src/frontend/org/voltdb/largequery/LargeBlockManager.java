@@ -18,6 +18,7 @@ package org.voltdb.largequery;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
@@ -27,15 +28,18 @@ import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import org.voltcore.utils.CoreUtils;
+import org.voltdb.metrics.MetricsRegistry;
+import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.VoltFile;
 
 /**
@@ -46,6 +50,13 @@ import org.voltdb.utils.VoltFile;
  *
  * This class is also responsible for managing the files in the
  * directory large_query_swap under voltdbroot.
+ *
+ * The disk I/O is spread over several threads. All the tasks for the
+ * blocks of one site go to the same thread, so a site's requests are
+ * still done in order while different sites no longer wait on each other.
+ * After a block is loaded, the next block of the same site is read ahead
+ * of time since large temp tables are mostly scanned in block order.
+ * Blocks can optionally be compressed on disk.
  */
 public class LargeBlockManager {
     private static LargeBlockManager INSTANCE = null;
@@ -53,10 +64,70 @@ public class LargeBlockManager {
     private final static Set<OpenOption> OPEN_OPTIONS = new HashSet<>();
     private final static FileAttribute<Set<PosixFilePermission>> PERMISSIONS;
 
+    // Number of threads doing the disk I/O for large blocks
+    private final static int IO_THREADS = Integer.getInteger("LARGE_BLOCK_IO_THREADS",
+            Math.max(1, Math.min(8, CoreUtils.availableProcessors() / 2)));
+    // Whether blocks are compressed with snappy before being written
+    private final static boolean COMPRESSION = Boolean.getBoolean("LARGE_BLOCK_COMPRESSION");
+    // Whether the next block of a site is read after each load
+    private final static boolean PREFETCH = Boolean.parseBoolean(System.getProperty("LARGE_BLOCK_PREFETCH", "true"));
+
+    /**
+     * A block that is on disk
+     */
+    private static final class StoredBlock {
+        final Path m_path;
+        final boolean m_compressed;
+
+        StoredBlock(Path path, boolean compressed) {
+            m_path = path;
+            m_compressed = compressed;
+        }
+    }
+
+    /**
+     * A thread doing the disk I/O for a subset of the sites, with the buffer
+     * it uses to hold compressed blocks
+     */
+    private static final class IOThread {
+        final ListeningExecutorService m_es;
+        private ByteBuffer m_buffer;
+
+        IOThread(int index) {
+            m_es = CoreUtils.getCachedSingleThreadExecutor("LargeBlockManager " + index, 1000);
+        }
+
+        ByteBuffer buffer(int size) {
+            if (m_buffer == null || m_buffer.capacity() < size) {
+                m_buffer = ByteBuffer.allocateDirect(size);
+            }
+            m_buffer.clear().limit(size);
+            return m_buffer;
+        }
+    }
+
+    /**
+     * The file contents of the block that was read ahead for a site
+     */
+    private static final class Prefetched {
+        BlockId m_blockId;
+        ByteBuffer m_data;
+    }
+
     private final Path m_largeQuerySwapPath;
-    private final Map<BlockId, Path> m_blockPathMap = new HashMap<>();
-    private final Object m_accessLock = new Object();
-    private final ListeningExecutorService m_es = CoreUtils.getCachedSingleThreadExecutor("LargeBlockManager", 1000);
+    private final Map<BlockId, StoredBlock> m_blockPathMap = new ConcurrentHashMap<>();
+    // by site id
+    private final Map<Long, Prefetched> m_prefetched = new ConcurrentHashMap<>();
+    private final IOThread[] m_ioThreads;
+    private final boolean m_compression;
+    private final boolean m_prefetch;
+
+    private final AtomicInteger m_queuedTasks = new AtomicInteger();
+    private final MetricsRegistry.Counter m_bytesWritten;
+    private final MetricsRegistry.Counter m_bytesRead;
+    private final MetricsRegistry.Counter m_prefetchHits;
+    private final MetricsRegistry.Histogram m_storeLatency;
+    private final MetricsRegistry.Histogram m_loadLatency;
 
     static {
         OPEN_OPTIONS.add(StandardOpenOption.CREATE_NEW);
@@ -73,12 +144,18 @@ public class LargeBlockManager {
      * @throws IOException if for some reason we cannot delete files
      */
     public static void startup(Path largeQuerySwapPath) throws IOException {
+        startup(largeQuerySwapPath, IO_THREADS, COMPRESSION, PREFETCH);
+    }
+
+    // Given package visibility for unit testing purposes.
+    static void startup(Path largeQuerySwapPath, int ioThreads, boolean compression, boolean prefetch)
+            throws IOException {
 
         // There could be an old instance hanging around in the case of some
         // JUnit tests that have an in-process server that is re-used.  This is
         // okay.  Create a new instance of LargeBlockManager regardless.
 
-        INSTANCE = new LargeBlockManager(largeQuerySwapPath);
+        INSTANCE = new LargeBlockManager(largeQuerySwapPath, ioThreads, compression, prefetch);
         INSTANCE.startupInstance();
     }
 
@@ -103,8 +180,30 @@ public class LargeBlockManager {
     /**
      * Private constructor---use initializeInstance and getInstance instead.
      */
-    private LargeBlockManager(Path largeQuerySwapPath) {
+    private LargeBlockManager(Path largeQuerySwapPath, int ioThreads, boolean compression, boolean prefetch) {
         m_largeQuerySwapPath = largeQuerySwapPath;
+        m_ioThreads = new IOThread[Math.max(1, ioThreads)];
+        for (int i = 0; i < m_ioThreads.length; ++i) {
+            m_ioThreads[i] = new IOThread(i);
+        }
+        m_compression = compression;
+        m_prefetch = prefetch;
+
+        MetricsRegistry metrics = MetricsRegistry.instance();
+        m_bytesWritten = metrics.counter("voltdb_large_block_written_bytes",
+                "Bytes of large query blocks written to the swap directory");
+        m_bytesRead = metrics.counter("voltdb_large_block_read_bytes",
+                "Bytes of large query blocks read from the swap directory");
+        m_prefetchHits = metrics.counter("voltdb_large_block_prefetch_hits",
+                "Large query block loads served from a block read ahead of time");
+        m_storeLatency = metrics.histogram("voltdb_large_block_io_seconds",
+                "Time to store or load a large query block", "operation", "store");
+        m_loadLatency = metrics.histogram("voltdb_large_block_io_seconds",
+                "Time to store or load a large query block", "operation", "load");
+        metrics.gauge("voltdb_large_block_queue_depth", "Large query block tasks waiting for an I/O thread",
+                m_queuedTasks::get);
+        metrics.gauge("voltdb_large_block_stored_blocks", "Large query blocks in the swap directory",
+                () -> m_blockPathMap.size());
     }
 
     /**
@@ -160,7 +259,21 @@ public class LargeBlockManager {
     }
 
     public Future<LargeBlockResponse> submitTask(LargeBlockTask task) {
-        return m_es.submit(task);
+        m_queuedTasks.incrementAndGet();
+        try {
+            return ioThreadFor(task.getBlockId()).m_es.submit(() -> {
+                m_queuedTasks.decrementAndGet();
+                return task.call();
+            });
+        }
+        catch (RuntimeException e) {
+            m_queuedTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private IOThread ioThreadFor(BlockId blockId) {
+        return m_ioThreads[Math.floorMod(Long.hashCode(blockId.getSiteId()), m_ioThreads.length)];
     }
 
     /**
@@ -170,24 +283,35 @@ public class LargeBlockManager {
      * @throws IOException
      */
     void storeBlock(BlockId blockId, ByteBuffer block) throws IOException {
-        synchronized (m_accessLock) {
-            if (m_blockPathMap.containsKey(blockId)) {
-                throw new IllegalArgumentException("Request to store block that is already stored: "
-                                                    + blockId.toString());
-            }
+        // Snappy only works on direct buffers, which is what the EE provides
+        final boolean compress = m_compression && block.isDirect();
+        final Path blockPath = makeBlockPath(blockId);
+        if (m_blockPathMap.putIfAbsent(blockId, new StoredBlock(blockPath, compress)) != null) {
+            throw new IllegalArgumentException("Request to store block that is already stored: "
+                                                + blockId.toString());
+        }
 
-            int origPosition = block.position();
-            block.position(0);
-            Path blockPath = makeBlockPath(blockId);
-            try (SeekableByteChannel channel = Files.newByteChannel(blockPath, OPEN_OPTIONS, PERMISSIONS)) {
-                channel.write(block);
+        final long start = System.nanoTime();
+        ByteBuffer source = block.duplicate();
+        source.position(0);
+        try (SeekableByteChannel channel = Files.newByteChannel(blockPath, OPEN_OPTIONS, PERMISSIONS)) {
+            if (compress) {
+                IOThread ioThread = ioThreadFor(blockId);
+                synchronized (ioThread) {
+                    ByteBuffer compressed = ioThread.buffer(CompressionService.maxCompressedLength(source.remaining()));
+                    CompressionService.compressBuffer(source, compressed);
+                    m_bytesWritten.add(writeFully(channel, compressed));
+                }
             }
-            finally {
-                block.position(origPosition);
+            else {
+                m_bytesWritten.add(writeFully(channel, source));
             }
-
-            m_blockPathMap.put(blockId, blockPath);
         }
+        catch (IOException | RuntimeException e) {
+            m_blockPathMap.remove(blockId);
+            throw e;
+        }
+        m_storeLatency.recordNanos(System.nanoTime() - start);
     }
 
     /**
@@ -198,37 +322,147 @@ public class LargeBlockManager {
      * @throws IOException
      */
     void loadBlock(BlockId blockId, ByteBuffer block) throws IOException {
-        synchronized (m_accessLock) {
-            if (! m_blockPathMap.containsKey(blockId)) {
-                throw new IllegalArgumentException("Request to load block that is not stored: " + blockId);
+        StoredBlock stored = m_blockPathMap.get(blockId);
+        if (stored == null) {
+            throw new IllegalArgumentException("Request to load block that is not stored: " + blockId);
+        }
+
+        final long start = System.nanoTime();
+        ByteBuffer target = block.duplicate();
+        target.position(0);
+        if (loadPrefetched(blockId, stored, target)) {
+            m_prefetchHits.increment();
+        }
+        else {
+            try (FileChannel channel = FileChannel.open(stored.m_path)) {
+                if (stored.m_compressed) {
+                    IOThread ioThread = ioThreadFor(blockId);
+                    synchronized (ioThread) {
+                        ByteBuffer compressed = ioThread.buffer((int) channel.size());
+                        m_bytesRead.add(readFully(channel, compressed));
+                        compressed.flip();
+                        CompressionService.decompressBuffer(compressed, target);
+                    }
+                }
+                else {
+                    m_bytesRead.add(readFully(channel, target));
+                }
             }
+        }
+        m_loadLatency.recordNanos(System.nanoTime() - start);
 
-            int origPosition = block.position();
-            block.position(0);
-            Path blockPath = m_blockPathMap.get(blockId);
-            try (SeekableByteChannel channel = Files.newByteChannel(blockPath)) {
-                channel.read(block);
+        if (m_prefetch) {
+            BlockId next = new BlockId(blockId.getSiteId(), blockId.getBlockId() + 1);
+            if (m_blockPathMap.containsKey(next)) {
+                ioThreadFor(next).m_es.execute(() -> prefetch(next));
             }
-            finally {
-                block.position(origPosition);
+        }
+    }
+
+    /**
+     * Read the file of a block into memory so that the following load does not wait for the disk.
+     * Failures are ignored, the load will read the file itself.
+     */
+    private void prefetch(BlockId blockId) {
+        StoredBlock stored = m_blockPathMap.get(blockId);
+        if (stored == null) {
+            // released in the meantime
+            return;
+        }
+
+        Prefetched prefetched = m_prefetched.computeIfAbsent(blockId.getSiteId(), id -> new Prefetched());
+        synchronized (prefetched) {
+            if (blockId.equals(prefetched.m_blockId)) {
+                return;
+            }
+            prefetched.m_blockId = null;
+            try (FileChannel channel = FileChannel.open(stored.m_path)) {
+                final int size = (int) channel.size();
+                if (prefetched.m_data == null || prefetched.m_data.capacity() < size) {
+                    prefetched.m_data = ByteBuffer.allocateDirect(size);
+                }
+                prefetched.m_data.clear().limit(size);
+                m_bytesRead.add(readFully(channel, prefetched.m_data));
+                prefetched.m_data.flip();
+                prefetched.m_blockId = blockId;
+            }
+            catch (IOException e) {
+                // leave it to the load
             }
         }
     }
 
+    /**
+     * Copy the block into target if it is the one that was read ahead for its site
+     * @return true if the block was loaded
+     */
+    private boolean loadPrefetched(BlockId blockId, StoredBlock stored, ByteBuffer target) throws IOException {
+        Prefetched prefetched = m_prefetched.get(blockId.getSiteId());
+        if (prefetched == null) {
+            return false;
+        }
+        synchronized (prefetched) {
+            if (! blockId.equals(prefetched.m_blockId)) {
+                return false;
+            }
+            prefetched.m_blockId = null;
+            ByteBuffer data = prefetched.m_data.duplicate();
+            if (stored.m_compressed) {
+                CompressionService.decompressBuffer(data, target);
+            }
+            else {
+                if (data.remaining() > target.remaining()) {
+                    data.limit(data.position() + target.remaining());
+                }
+                target.put(data);
+            }
+            return true;
+        }
+    }
+
+    private static int writeFully(SeekableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    private static int readFully(SeekableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
     /**
      * The block with the given site id and block counter is no longer needed, so delete it from disk.
      * @param blockId        The blockId of the block to release.
      * @throws IOException
      */
     void releaseBlock(BlockId blockId) throws IOException {
-        synchronized (m_accessLock) {
-            if (! m_blockPathMap.containsKey(blockId)) {
-                throw new IllegalArgumentException("Request to release block that is not stored: " + blockId);
-            }
+        StoredBlock stored = m_blockPathMap.get(blockId);
+        if (stored == null) {
+            throw new IllegalArgumentException("Request to release block that is not stored: " + blockId);
+        }
 
-            Path blockPath = m_blockPathMap.get(blockId);
-            Files.delete(blockPath);
-            m_blockPathMap.remove(blockId);
+        Files.delete(stored.m_path);
+        m_blockPathMap.remove(blockId);
+
+        // Once a site releases the block it read ahead, or releases blocks while
+        // nothing is read ahead, it is done scanning so free the memory
+        Prefetched prefetched = m_prefetched.get(blockId.getSiteId());
+        if (prefetched != null) {
+            synchronized (prefetched) {
+                if (prefetched.m_blockId == null || prefetched.m_blockId.equals(blockId)) {
+                    m_prefetched.remove(blockId.getSiteId(), prefetched);
+                }
+            }
         }
     }
 
@@ -238,15 +472,17 @@ public class LargeBlockManager {
      * @throws IOException
      */
     private void releaseAllBlocks() throws IOException {
-        synchronized (m_accessLock) {
-            Set<Map.Entry<BlockId, Path>> entries = m_blockPathMap.entrySet();
-            while (! entries.isEmpty()) {
-                Map.Entry<BlockId, Path> entry = entries.iterator().next();
-                Files.delete(entry.getValue());
-                m_blockPathMap.remove(entry.getKey());
-                entries = m_blockPathMap.entrySet();
-            }
+        Iterator<Map.Entry<BlockId, StoredBlock>> it = m_blockPathMap.entrySet().iterator();
+        while (it.hasNext()) {
+            Files.delete(it.next().getValue().m_path);
+            it.remove();
         }
+        m_prefetched.clear();
+    }
+
+    // Given package visibility for unit testing purposes.
+    long getPrefetchHits() {
+        return m_prefetchHits.get();
     }
 
     // Given an ID, generate the Path for it.
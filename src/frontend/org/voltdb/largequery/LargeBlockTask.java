@@ -29,6 +29,19 @@ import java.util.concurrent.Callable;
  */
 public abstract class LargeBlockTask implements Callable<LargeBlockResponse> {
 
+    private final BlockId m_blockId;
+
+    private LargeBlockTask(BlockId blockId) {
+        m_blockId = blockId;
+    }
+
+    /**
+     * @return the id of the block this task operates on
+     */
+    public BlockId getBlockId() {
+        return m_blockId;
+    }
+
     /**
      * Get a new "store" task
      * @param blockId   The block id of the block to store
@@ -36,7 +49,7 @@ public abstract class LargeBlockTask implements Callable<LargeBlockResponse> {
      * @return  An instance of LargeBlockTask that will store a block
      */
     public static LargeBlockTask getStoreTask(BlockId blockId, ByteBuffer block) {
-        return new LargeBlockTask() {
+        return new LargeBlockTask(blockId) {
             @Override
             public LargeBlockResponse call() throws Exception {
                 Exception theException = null;
@@ -58,7 +71,7 @@ public abstract class LargeBlockTask implements Callable<LargeBlockResponse> {
      * @return  An instance of LargeBlockTask that will release a block
      */
     public static LargeBlockTask getReleaseTask(BlockId blockId) {
-        return new LargeBlockTask() {
+        return new LargeBlockTask(blockId) {
             @Override
             public LargeBlockResponse call() throws Exception {
                 Exception theException = null;
@@ -81,7 +94,7 @@ public abstract class LargeBlockTask implements Callable<LargeBlockResponse> {
      * @return  An instance of LargeBlockTask that will load a block
      */
     public static LargeBlockTask getLoadTask(BlockId blockId, ByteBuffer block) {
-        return new LargeBlockTask() {
+        return new LargeBlockTask(blockId) {
             @Override
             public LargeBlockResponse call() throws Exception {
                 Exception theException = null;
@@ -0,0 +1,269 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.dtxn.LatencyHistogramStats;
+
+/**
+ * Host wide set of metrics that the code producing them updates directly,
+ * through lock free counters and histograms, as opposed to the stats sources
+ * which are polled and build a VoltTable each time. Reading the registry does
+ * not run a transaction or take any lock on the hot paths. It is written out in
+ * the OpenMetrics text format on the /metrics endpoint of the HTTP interface.
+ *
+ * Metrics are identified by their name and label values. Asking for an existing
+ * metric returns the same instance, so all the sites of a host can share one
+ * counter for a procedure.
+ */
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        final String m_name;
+
+        Type(String name) {
+            m_name = name;
+        }
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final MetricsRegistry s_instance = new MetricsRegistry();
+
+    public static MetricsRegistry instance() {
+        return s_instance;
+    }
+
+    /**
+     * A monotonic counter
+     */
+    public static final class Counter {
+        private final LongAdder m_value = new LongAdder();
+
+        public void increment() {
+            m_value.increment();
+        }
+
+        public void add(long delta) {
+            m_value.add(delta);
+        }
+
+        public long get() {
+            return m_value.sum();
+        }
+    }
+
+    /**
+     * A distribution of durations recorded in microseconds, written out as a summary in seconds
+     */
+    public static final class Histogram {
+        private final AbstractHistogram m_histogram = LatencyHistogramStats.constructHistogram(true);
+
+        public void recordNanos(long nanos) {
+            m_histogram.recordValue(Math.max(1, Math.min(nanos / 1000, m_histogram.getHighestTrackableValue())));
+        }
+    }
+
+    private interface Value {
+        void write(Writer out, String name, String labels) throws IOException;
+    }
+
+    private static final class Family {
+        final String m_name;
+        final String m_help;
+        final Type m_type;
+        // by rendered labels
+        final Map<String, Value> m_values = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Type type) {
+            m_name = name;
+            m_help = help;
+            m_type = type;
+        }
+    }
+
+    private final Map<String, Family> m_families = new ConcurrentSkipListMap<>();
+    private final Map<String, Object> m_owned = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels label names and values, alternating
+     * @return the counter with this name and labels, created if needed
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return owned(name, help, Type.COUNTER, labels, Counter.class, Counter::new,
+                c -> (out, n, l) -> writeSample(out, n + "_total", l, c.get()));
+    }
+
+    /**
+     * Expose a monotonic count maintained elsewhere
+     *
+     * @param labels label names and values, alternating
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).m_values.put(renderLabels(labels),
+                (out, n, l) -> writeSample(out, n + "_total", l, value.getAsLong()));
+    }
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).m_values.put(renderLabels(labels),
+                (out, n, l) -> writeSample(out, n, l, value.getAsLong()));
+    }
+
+    /**
+     * @param labels label names and values, alternating
+     * @return the histogram with this name and labels, created if needed
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return owned(name, help, Type.SUMMARY, labels, Histogram.class, Histogram::new,
+                h -> (out, n, l) -> writeSummary(out, n, l, h.m_histogram));
+    }
+
+    /**
+     * Expose a histogram of microseconds maintained elsewhere
+     *
+     * @param labels label names and values, alternating
+     */
+    public void histogram(String name, String help, Supplier<AbstractHistogram> value, String... labels) {
+        family(name, help, Type.SUMMARY).m_values.put(renderLabels(labels),
+                (out, n, l) -> writeSummary(out, n, l, value.get()));
+    }
+
+    /**
+     * Stop exposing a metric
+     *
+     * @param labels label names and values, alternating
+     */
+    public void remove(String name, String... labels) {
+        Family family = m_families.get(name);
+        if (family != null) {
+            String rendered = renderLabels(labels);
+            family.m_values.remove(rendered);
+            m_owned.remove(name + rendered);
+        }
+    }
+
+    /**
+     * Write all the metrics in the OpenMetrics text format
+     */
+    public void write(Writer out) throws IOException {
+        for (Family family : m_families.values()) {
+            if (family.m_values.isEmpty()) {
+                continue;
+            }
+            out.append("# TYPE ").append(family.m_name).append(' ').append(family.m_type.m_name).append('\n');
+            out.append("# HELP ").append(family.m_name).append(' ').append(family.m_help).append('\n');
+            for (Map.Entry<String, Value> e : family.m_values.entrySet()) {
+                e.getValue().write(out, family.m_name, e.getKey());
+            }
+        }
+        out.append("# EOF\n");
+    }
+
+    private interface ValueFactory<T> {
+        Value of(T metric);
+    }
+
+    private <T> T owned(String name, String help, Type type, String[] labels, Class<T> clazz,
+            Supplier<T> constructor, ValueFactory<T> factory) {
+        final Family family = family(name, help, type);
+        final String rendered = renderLabels(labels);
+        Object metric = m_owned.computeIfAbsent(name + rendered, k -> {
+            T created = constructor.get();
+            family.m_values.put(rendered, factory.of(created));
+            return created;
+        });
+        return clazz.cast(metric);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = m_families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (family.m_type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.m_type.m_name);
+        }
+        return family;
+    }
+
+    static String renderLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append(i == 0 ? "" : ",").append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static void writeSample(Writer out, String name, String labels, Object value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(String.valueOf(value)).append('\n');
+    }
+
+    private static void writeSummary(Writer out, String name, String labels, AbstractHistogram histogram)
+            throws IOException {
+        final String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            writeSample(out, name, labels + separator + "quantile=\"" + quantile + "\"",
+                    histogram.getValueAtPercentile(quantile * 100.0) / 1e6);
+        }
+        final long count = histogram.getTotalCount();
+        writeSample(out, name + "_count", labels, count);
+        writeSample(out, name + "_sum", labels, histogram.getMean() * count / 1e6);
+    }
+}
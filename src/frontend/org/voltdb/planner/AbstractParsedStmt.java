@@ -75,12 +75,26 @@ public abstract class AbstractParsedStmt {
 
     protected String m_contentDeterminismMessage = null;
 
-     // Internal statement counter
-    public static int NEXT_STMT_ID = 0;
+    // Internal statement counter, confined to the planning thread like the plan node ids.
+    private static final ThreadLocal<int[]> NEXT_STMT_ID = ThreadLocal.withInitial(() -> new int[1]);
 
     // The unique id to identify the statement
     private int m_stmtId;
 
+    /**
+     * Allocate the next statement id for the statement being planned on this thread.
+     */
+    public static int nextStmtId() {
+        return NEXT_STMT_ID.get()[0]++;
+    }
+
+    /**
+     * @return the id that the next call to {@link #nextStmtId()} will return.
+     */
+    public static int peekNextStmtId() {
+        return NEXT_STMT_ID.get()[0];
+    }
+
     public String m_sql;
 
     // The initial value is a safety net for the case of parameter-less statements.
@@ -199,7 +213,7 @@ public abstract class AbstractParsedStmt {
             throw new RuntimeException("Unexpected Element: " + stmtTypeElement.name);
         }
         // Set the unique id
-        retval.m_stmtId = NEXT_STMT_ID++;
+        retval.m_stmtId = nextStmtId();
         return retval;
     }
 
@@ -234,7 +248,7 @@ public abstract class AbstractParsedStmt {
             Database db, String joinOrder) {
 
         // reset the statement counters
-        NEXT_STMT_ID = 0;
+        NEXT_STMT_ID.get()[0] = 0;
         AbstractParsedStmt retval = getParsedStmt(parent, stmtTypeElement, paramValues, db);
 
         parse(retval, sql, stmtTypeElement, joinOrder);
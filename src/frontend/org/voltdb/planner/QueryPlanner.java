@@ -23,7 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 
 import org.hsqldb_voltpatches.HSQLInterface;
@@ -89,16 +89,32 @@ public class QueryPlanner implements AutoCloseable {
 
     public final static String UPSERT_TAG = "isUpsert";
 
-    private static final Lock PLANNER_LOCK = new ReentrantLock();
+    /**
+     * All planners share the user defined function registry of FunctionForVoltDB,
+     * which DDL compilation saves, empties and rebuilds. Planners hold the read lock,
+     * so they still plan in parallel, while DDL compilation and UDF registration hold
+     * the write lock so no planner sees the registry half rebuilt.
+     */
+    private static final ReentrantReadWriteLock PLANNER_LOCK = new ReentrantReadWriteLock();
+
+    /**
+     * @return the lock to hold while defining or dropping user defined functions. The
+     * holder may still create planners.
+     */
+    public static Lock getFunctionRegistryLock() {
+        return PLANNER_LOCK.writeLock();
+    }
 
     /**
      * Initialize planner with physical schema info and a reference to HSQLDB parser.
      *
-     * NOTE: Until the planner can handle planning multiple statements in parallel,
-     * creating an instance of this object will lock the global PLANNER_LOCK, which must
-     * be released by calling this class's close method.
+     * NOTE: The per-plan id counters are confined to the planning thread, so separate
+     * instances may plan in parallel as long as each one uses its own HSQLInterface.
+     * An instance must not be shared between threads. Creating an instance takes the
+     * read side of the global PLANNER_LOCK, which must be released by calling this
+     * class's close method.
      *
-     * This class implements AutoCloseable, so the easiest way to achieve this is like so:
+     * This class implements AutoCloseable so that callers scope an instance like so:
      * try (QueryPlanner planner = new QueryPlanner(...)) {
      *     <do all the planning here>
      * }
@@ -120,7 +136,7 @@ public class QueryPlanner implements AutoCloseable {
             String sql, String stmtName, String procName, Database catalogDb, StatementPartitioning partitioning,
             HSQLInterface HSQL, DatabaseEstimates estimates, boolean suppressDebugOutput, AbstractCostModel costModel,
             ScalarValueHints[] paramHints, String joinOrder, DeterminismMode detMode, boolean isLargeQuery) {
-        PLANNER_LOCK.lock();
+        PLANNER_LOCK.readLock().lock();
         assert(sql != null);
         assert(stmtName != null);
         assert(procName != null);
@@ -148,7 +164,7 @@ public class QueryPlanner implements AutoCloseable {
 
     @Override
     public void close() {
-        PLANNER_LOCK.unlock();
+        PLANNER_LOCK.readLock().unlock();
     }
 
     /**
@@ -19,6 +19,7 @@ package org.voltdb.planner;
 
 import java.util.*;
 
+import org.voltdb.VoltType;
 import org.voltdb.exceptions.PlanningErrorException;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
@@ -32,6 +33,7 @@ import org.voltdb.plannodes.IndexSortablePlanNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.IndexUseForOrderBy;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
@@ -572,9 +574,11 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             IndexSortablePlanNode answer = getSelectSubPlanForJoin(branchJoinNode, outerScanPlan, innerScanPlan);
             // Propagate information used for order by clauses in window functions
             // and the statement level order by clause.  This is only if the
-            // branch node is an inner join.
+            // branch node is an inner join, and not a hash join, which does not
+            // keep the order of its outer input.
             if ((answer != null)
                     && (branchJoinNode.getJoinType() == JoinType.INNER)
+                    && ! (answer instanceof HashJoinPlanNode)
                     && outerScanPlan instanceof IndexSortablePlanNode) {
                 IndexUseForOrderBy indexUseForJoin = answer.indexUse();
                 IndexUseForOrderBy indexUseFromScan = ((IndexSortablePlanNode)outerScanPlan).indexUse();
@@ -715,7 +719,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -754,6 +757,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
+            AbstractJoinPlanNode nljNode = createNonIndexJoinNode(joinNode, joinClauses);
             nljNode.setJoinPredicate(ExpressionUtil.combinePredicates(ExpressionType.CONJUNCTION_AND, joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -821,6 +825,70 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return singleTVEExprs;
     }
 
+    /**
+     * Create the join node for a join that does not look up the inner side through an
+     * index driven by the outer row. This is a NestLoopPlanNode unless hash joins are
+     * enabled and some of the join clauses equate an expression on the outer tables
+     * with an expression on the inner tables, in which case it is a HashJoinPlanNode
+     * keyed on those expressions.
+     *
+     * @param joinNode the join being planned
+     * @param joinClauses the clauses that will make up the join predicate
+     * @return a new join node without children or predicates
+     */
+    private static AbstractJoinPlanNode createNonIndexJoinNode(BranchNode joinNode,
+            List<AbstractExpression> joinClauses) {
+        if (! HashJoinPlanNode.isEnabled()) {
+            return new NestLoopPlanNode();
+        }
+        Collection<String> outerAliases = joinNode.getLeftNode().generateTableJoinOrder();
+        Collection<String> innerAliases = joinNode.getRightNode().generateTableJoinOrder();
+        HashJoinPlanNode hjNode = new HashJoinPlanNode();
+        for (AbstractExpression clause : joinClauses) {
+            for (AbstractExpression expr : ExpressionUtil.uncombinePredicate(clause)) {
+                if (expr.getExpressionType() != ExpressionType.COMPARE_EQUAL ||
+                        ! isHashableKeyPair(expr.getLeft(), expr.getRight())) {
+                    continue;
+                }
+                if (referencesOnly(expr.getLeft(), outerAliases) && referencesOnly(expr.getRight(), innerAliases)) {
+                    hjNode.addHashExpressions(expr.getLeft().clone(), expr.getRight().clone());
+                } else if (referencesOnly(expr.getRight(), outerAliases) && referencesOnly(expr.getLeft(), innerAliases)) {
+                    hjNode.addHashExpressions(expr.getRight().clone(), expr.getLeft().clone());
+                }
+            }
+        }
+        if (hjNode.getOuterHashExpressions().isEmpty()) {
+            return new NestLoopPlanNode();
+        }
+        return hjNode;
+    }
+
+    /**
+     * The EE hashes key values as they are, except that integers are widened to BIGINT.
+     * So a pair of keys can only be hashed if equal values of the two are guaranteed
+     * to have the same representation.
+     */
+    private static boolean isHashableKeyPair(AbstractExpression left, AbstractExpression right) {
+        VoltType leftType = left.getValueType();
+        VoltType rightType = right.getValueType();
+        if (leftType == null || rightType == null) {
+            return false;
+        }
+        if (leftType.isAnyIntegerType() && rightType.isAnyIntegerType()) {
+            return true;
+        }
+        return leftType == rightType && (leftType == VoltType.DECIMAL || leftType == VoltType.STRING ||
+                leftType == VoltType.VARBINARY || leftType == VoltType.TIMESTAMP);
+    }
+
+    private static boolean referencesOnly(AbstractExpression expr, Collection<String> tableAliases) {
+        if (expr.hasSubquerySubexpression()) {
+            return false;
+        }
+        List<TupleValueExpression> tves = expr.findAllTupleValueSubexpressions();
+        return ! tves.isEmpty() && tves.stream().allMatch(tve -> tableAliases.contains(tve.getTableAlias()));
+    }
+
     /**
      * For a join node, determines whether any of the inner-outer expressions were used
      * for an inner index access -- this requires joining with a NestLoopIndexJoin.
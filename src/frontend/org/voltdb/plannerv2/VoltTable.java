@@ -41,6 +41,7 @@ import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.voltdb.VoltType;
 import org.voltdb.catalog.Column;
+import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.plannerv2.rel.logical.VoltLogicalTableScan;
 import org.voltdb.utils.CatalogUtil;
 
@@ -89,6 +90,11 @@ public class VoltTable implements TranslatableTable {
             static public final double ESTIMATE_TABLE_ROW_COUNT = 1000000.;
 
             @Override public Double getRowCount() {
+                // The row count found by @Analyze, if the table has been analyzed
+                final long analyzed = m_catTable.getEstimatedtuplecount();
+                if (analyzed > 0) {
+                    return (double) Math.max(analyzed, DatabaseEstimates.MIN_ANALYZED_TUPLES);
+                }
                 return ESTIMATE_TABLE_ROW_COUNT;
             }
             @Override public boolean isKey(ImmutableBitSet columns) {
@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannerv2.rel.physical;
+
+import java.util.Set;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.ImmutableIntList;
+import org.voltdb.plannerv2.converter.RelConverter;
+import org.voltdb.plannerv2.converter.RexConverter;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+
+import com.google.common.collect.ImmutableList;
+import com.google_voltpatches.common.base.Preconditions;
+
+/**
+ * Equi-join that hashes the inner input on its key columns and probes it with the outer input.
+ */
+public class VoltPhysicalHashJoin extends VoltPhysicalJoin {
+
+    private final ImmutableIntList m_outerKeys;
+    private final ImmutableIntList m_innerKeys;
+
+    public VoltPhysicalHashJoin(
+            RelOptCluster cluster, RelTraitSet traitSet, RelNode left, RelNode right, RexNode condition,
+            Set<CorrelationId> variablesSet, JoinRelType joinType, boolean semiJoinDone,
+            ImmutableList<RelDataTypeField> systemFieldList, RexNode whereCondition,
+            ImmutableIntList outerKeys, ImmutableIntList innerKeys, RexNode offset, RexNode limit) {
+        super(cluster, traitSet, left, right, condition, variablesSet, joinType,
+                semiJoinDone, systemFieldList, whereCondition, offset, limit);
+        Preconditions.checkArgument(! outerKeys.isEmpty() && outerKeys.size() == innerKeys.size(),
+                "Hash join needs matching outer and inner keys");
+        m_outerKeys = outerKeys;
+        m_innerKeys = innerKeys;
+    }
+
+    @Override
+    public Join copy(RelTraitSet traitSet, RexNode conditionExpr, RelNode left,
+                     RelNode right, JoinRelType joinType, boolean semiJoinDone) {
+        return new VoltPhysicalHashJoin(getCluster(), traitSet, left, right, conditionExpr,
+                variablesSet, joinType, semiJoinDone, ImmutableList.copyOf(getSystemFieldList()),
+                whereCondition, m_outerKeys, m_innerKeys, m_offset, m_limit);
+    }
+
+    @Override
+    public VoltPhysicalJoin copyWithLimitOffset(RelTraitSet traits, RexNode offset, RexNode limit) {
+        return new VoltPhysicalHashJoin(getCluster(), traits, left, right, condition,
+                variablesSet, joinType, isSemiJoinDone(), ImmutableList.copyOf(getSystemFieldList()),
+                whereCondition, m_outerKeys, m_innerKeys, offset, limit);
+    }
+
+    @Override
+    public RelWriter explainTerms(RelWriter pw) {
+        super.explainTerms(pw);
+        pw.item("outerKeys", m_outerKeys);
+        pw.item("innerKeys", m_innerKeys);
+        return pw;
+    }
+
+    @Override
+    public RelOptCost computeSelfCost(RelOptPlanner planner, RelMetadataQuery mq) {
+        double rowCount = estimateRowCount(mq);
+        double outerRowCount = getInput(0).estimateRowCount(mq);
+        double innerRowCount = getInput(1).estimateRowCount(mq);
+        // Building makes a hash join dearer than a merge join over the same, already sorted, inputs.
+        double cpu = innerRowCount * HashJoinPlanNode.BUILD_FACTOR + outerRowCount * HashJoinPlanNode.PROBE_FACTOR;
+        return planner.getCostFactory().makeCost(rowCount, cpu, 0);
+    }
+
+    @Override
+    public AbstractPlanNode toPlanNode() {
+        final HashJoinPlanNode hjpn = new HashJoinPlanNode();
+        hjpn.setJoinType(RelConverter.convertJointType(joinType));
+        hjpn.addAndLinkChild(inputRelNodeToPlanNode(this, 0));
+        hjpn.addAndLinkChild(inputRelNodeToPlanNode(this, 1));
+
+        final int numOuterFields = getInput(0).getRowType().getFieldCount();
+        // Hash keys, converted the same way as column references in the join predicate
+        final RexBuilder builder = getCluster().getRexBuilder();
+        for (int i = 0; i < m_outerKeys.size(); i++) {
+            hjpn.addHashExpressions(
+                    RexConverter.convertJoinPred(numOuterFields,
+                            builder.makeInputRef(this, m_outerKeys.get(i)), getRowType()),
+                    RexConverter.convertJoinPred(numOuterFields,
+                            builder.makeInputRef(this, numOuterFields + m_innerKeys.get(i)), getRowType()));
+        }
+        hjpn.setJoinPredicate(RexConverter.convertJoinPred(numOuterFields, getCondition(), getRowType()));
+        hjpn.setWherePredicate(RexConverter.convertJoinPred(numOuterFields, getWhereCondition(), getRowType()));
+
+        // Inline LIMIT / OFFSET
+        addLimitOffset(hjpn);
+        // Set output schema
+        setOutputSchema(hjpn);
+        return hjpn;
+    }
+}
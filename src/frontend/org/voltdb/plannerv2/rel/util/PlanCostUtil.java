@@ -34,6 +34,7 @@ import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.sql.SqlKind;
 import org.voltdb.catalog.ColumnRef;
 import org.voltdb.catalog.Index;
+import org.voltdb.catalog.Table;
 import org.voltdb.planner.AccessPath;
 import org.voltdb.types.IndexLookupType;
 import org.voltdb.types.IndexType;
@@ -220,7 +221,7 @@ public final class PlanCostUtil {
         final double keyWidth = getSearchExpressionKeyWidth(accessPath, colCount);
         Preconditions.checkState(keyWidth <= colCount);
 
-        double sparsity = (index.getUnique() || index.getAssumeunique()) ? 1 : TABLE_COLUMN_SPARSITY;
+        double sparsity = (index.getUnique() || index.getAssumeunique()) ? 1 : getAnalyzedSparsity(index);
         // penalize partial index match, and favor longest index match
         sparsity *= Math.log(E_CONST + colCount) / Math.log(Math.abs(colCount - keyWidth) + E_CONST);
         // penalize for collation mismatch
@@ -289,6 +290,27 @@ public final class PlanCostUtil {
         }
     }
 
+    /**
+     * The sparsity of a non unique index, from the number of distinct values @Analyze found in
+     * its columns when its table has been analyzed, TABLE_COLUMN_SPARSITY otherwise.
+     */
+    private static double getAnalyzedSparsity(Index index) {
+        final Table table = (Table) index.getParent();
+        final long rows = table.getEstimatedtuplecount();
+        if (rows <= 0 || ! index.getExpressionsjson().isEmpty()) {
+            return TABLE_COLUMN_SPARSITY;
+        }
+        double distinct = 1;
+        for (ColumnRef colRef : index.getColumns()) {
+            final int columnDistinct = colRef.getColumn().getEstimatedndv();
+            if (columnDistinct <= 0) {
+                return TABLE_COLUMN_SPARSITY;
+            }
+            distinct *= columnDistinct;
+        }
+        return Math.min(1., distinct / rows);
+    }
+
     private static double getSearchExpressionKeyWidth(AccessPath accessPath, final double colCount) {
         double keyWidth = accessPath.getIndexExpressions().size();
         Preconditions.checkState(keyWidth <= colCount);
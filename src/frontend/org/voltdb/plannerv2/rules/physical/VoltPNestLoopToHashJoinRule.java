@@ -0,0 +1,102 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannerv2.rules.physical;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableIntList;
+import org.voltdb.plannerv2.rel.physical.VoltPhysicalHashJoin;
+import org.voltdb.plannerv2.rel.physical.VoltPhysicalNestLoopJoin;
+import org.voltdb.plannodes.HashJoinPlanNode;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Offers a hash join as an alternative to a nest loop join whose condition equates
+ * columns of the outer input with columns of the inner input. Only applies when hash
+ * joins are enabled, see {@link HashJoinPlanNode#isEnabled()}.
+ */
+public class VoltPNestLoopToHashJoinRule extends RelOptRule {
+
+    public static final VoltPNestLoopToHashJoinRule INSTANCE = new VoltPNestLoopToHashJoinRule();
+
+    private VoltPNestLoopToHashJoinRule() {
+        super(operand(VoltPhysicalNestLoopJoin.class, any()), "VoltPNestLoopToHashJoinRule");
+    }
+
+    @Override
+    public boolean matches(RelOptRuleCall call) {
+        return HashJoinPlanNode.isEnabled();
+    }
+
+    @Override
+    public void onMatch(RelOptRuleCall call) {
+        final VoltPhysicalNestLoopJoin join = call.rel(0);
+        final List<Integer> outerKeys = new ArrayList<>();
+        final List<Integer> innerKeys = new ArrayList<>();
+        final List<Boolean> filterNulls = new ArrayList<>();
+        RelOptUtil.splitJoinCondition(join.getLeft(), join.getRight(), join.getCondition(),
+                outerKeys, innerKeys, filterNulls);
+
+        // Keep the plain equalities on types the EE can hash. IS NOT DISTINCT FROM
+        // matches NULLs, which the hash join never does.
+        final List<Integer> hashOuterKeys = new ArrayList<>();
+        final List<Integer> hashInnerKeys = new ArrayList<>();
+        for (int i = 0; i < outerKeys.size(); i++) {
+            final RelDataType outerType = join.getLeft().getRowType().getFieldList().get(outerKeys.get(i)).getType();
+            final RelDataType innerType = join.getRight().getRowType().getFieldList().get(innerKeys.get(i)).getType();
+            if (filterNulls.get(i) && isHashableKeyPair(outerType, innerType)) {
+                hashOuterKeys.add(outerKeys.get(i));
+                hashInnerKeys.add(innerKeys.get(i));
+            }
+        }
+        if (hashOuterKeys.isEmpty()) {
+            return;
+        }
+        // The full condition is still checked for each candidate pair
+        call.transformTo(new VoltPhysicalHashJoin(join.getCluster(), join.getTraitSet(),
+                join.getLeft(), join.getRight(), join.getCondition(), join.getVariablesSet(),
+                join.getJoinType(), join.isSemiJoinDone(), ImmutableList.copyOf(join.getSystemFieldList()),
+                join.getWhereCondition(), ImmutableIntList.copyOf(hashOuterKeys), ImmutableIntList.copyOf(hashInnerKeys),
+                join.getOffset(), join.getLimit()));
+    }
+
+    /**
+     * Mirrors the legacy planner: integers of any width, or the same exact type
+     * among DECIMAL, character, binary and TIMESTAMP.
+     */
+    private static boolean isHashableKeyPair(RelDataType outerType, RelDataType innerType) {
+        final SqlTypeName outerName = outerType.getSqlTypeName();
+        final SqlTypeName innerName = innerType.getSqlTypeName();
+        if (SqlTypeName.INT_TYPES.contains(outerName) && SqlTypeName.INT_TYPES.contains(innerName)) {
+            return true;
+        }
+        if (outerName == SqlTypeName.DECIMAL || outerName == SqlTypeName.TIMESTAMP) {
+            return outerName == innerName;
+        }
+        return outerType.getFamily() == innerType.getFamily() &&
+                (outerType.getFamily() == SqlTypeFamily.CHARACTER || outerType.getFamily() == SqlTypeFamily.BINARY);
+    }
+}
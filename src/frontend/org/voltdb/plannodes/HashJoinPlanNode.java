@@ -0,0 +1,183 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * An equi-join that builds a hash table over the inner child's output and probes it
+ * with each outer tuple. The outer and inner hash expressions come in pairs, one pair
+ * for each equality of the join predicate that compares an outer-only expression to an
+ * inner-only one. The full join predicate is still evaluated for every candidate pair.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_EXPRESSIONS,
+        INNER_HASH_EXPRESSIONS;
+    }
+
+    /**
+     * Name of the system property (or environment variable) that lets the planner
+     * replace nested loop joins with hash joins.
+     */
+    public static final String HASH_JOIN_PROPERTY = "PLANNER_HASH_JOIN";
+
+    /**
+     * Relative cost of inserting an inner tuple into the hash table vs. probing it with an
+     * outer tuple. Weighting the build side makes the smaller input the preferred inner.
+     */
+    public static final double BUILD_FACTOR = 2.0;
+    public static final double PROBE_FACTOR = 1.0;
+
+    // Read once, hash joins are off unless turned on by HASH_JOIN_PROPERTY
+    private static volatile boolean s_enabled = readEnabled();
+
+    private List<AbstractExpression> m_outerHashExpressions = new ArrayList<>();
+    private List<AbstractExpression> m_innerHashExpressions = new ArrayList<>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    private static boolean readEnabled() {
+        String value = System.getenv(HASH_JOIN_PROPERTY);
+        return Boolean.parseBoolean(value == null ? System.getProperty(HASH_JOIN_PROPERTY, "false") : value);
+    }
+
+    /**
+     * Whether the planners may use hash joins, see {@link #HASH_JOIN_PROPERTY}.
+     */
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    public static void setEnabledForTest(boolean enabled) {
+        s_enabled = enabled;
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    public void addHashExpressions(AbstractExpression outerExpr, AbstractExpression innerExpr) {
+        m_outerHashExpressions.add(outerExpr);
+        m_innerHashExpressions.add(innerExpr);
+    }
+
+    public List<AbstractExpression> getOuterHashExpressions() {
+        return m_outerHashExpressions;
+    }
+
+    public List<AbstractExpression> getInnerHashExpressions() {
+        return m_innerHashExpressions;
+    }
+
+    @Override
+    public void validate() {
+        super.validate();
+        if (m_outerHashExpressions.isEmpty() || m_outerHashExpressions.size() != m_innerHashExpressions.size()) {
+            throw new RuntimeException("ERROR: Hash join node '" + this + "' has mismatched hash expressions");
+        }
+        for (int i = 0; i < m_outerHashExpressions.size(); i++) {
+            m_outerHashExpressions.get(i).validate();
+            m_innerHashExpressions.get(i).validate();
+        }
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints) {
+        // Each input is read once: the inner to build the hash table, the outer to probe it.
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        assert(m_children.size() == 2);
+        m_estimatedProcessedTupleCount = (long) (
+                m_children.get(0).m_estimatedProcessedTupleCount * PROBE_FACTOR +
+                m_children.get(1).m_estimatedProcessedTupleCount * BUILD_FACTOR);
+    }
+
+    @Override
+    public void resolveColumnIndexes() {
+        super.resolveColumnIndexes();
+        final NodeSchema outer_schema = m_children.get(0).getOutputSchema();
+        final NodeSchema inner_schema = m_children.get(1).getOutputSchema();
+        resolvePredicate(m_outerHashExpressions, outer_schema, inner_schema);
+        resolvePredicate(m_innerHashExpressions, outer_schema, inner_schema);
+    }
+
+    @Override
+    public void resolveSortDirection() {
+        // The output follows the outer order only while the inner side fits in memory.
+        // Once the join spills, tuples come out partition by partition.
+        m_sortDirection = SortDirectionType.INVALID;
+    }
+
+    @Override
+    public boolean isOutputOrdered(List<AbstractExpression> sortExpressions, List<SortDirectionType> sortDirections) {
+        return false;
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        AbstractExpression.toJSONArray(stringer, Members.OUTER_HASH_EXPRESSIONS.name(), m_outerHashExpressions);
+        AbstractExpression.toJSONArray(stringer, Members.INNER_HASH_EXPRESSIONS.name(), m_innerHashExpressions);
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db) throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        m_outerHashExpressions.clear();
+        m_innerHashExpressions.clear();
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashExpressions, jobj,
+                Members.OUTER_HASH_EXPRESSIONS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashExpressions, jobj,
+                Members.INNER_HASH_EXPRESSIONS.name(), null);
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" + explainFilters(indent);
+    }
+
+}
@@ -30,6 +30,7 @@ import org.hsqldb_voltpatches.lib.StringUtil;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONStringer;
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.ColumnRef;
 import org.voltdb.catalog.Database;
@@ -39,8 +40,10 @@ import org.voltdb.compiler.ScalarValueHints;
 import org.voltdb.exceptions.PlanningErrorException;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ComparisonExpression;
+import org.voltdb.expressions.ConstantValueExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.OperatorExpression;
+import org.voltdb.expressions.ParameterValueExpression;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.planner.ScanPlanNodeWhichCanHaveInlineInsert;
 import org.voltdb.planner.parseinfo.StmtTableScan;
@@ -50,6 +53,7 @@ import org.voltdb.types.IndexLookupType;
 import org.voltdb.types.IndexType;
 import org.voltdb.types.PlanNodeType;
 import org.voltdb.types.SortDirectionType;
+import org.voltdb.types.TimestampType;
 import org.voltdb.utils.CatalogUtil;
 
 public class IndexScanPlanNode extends AbstractScanPlanNode implements IndexSortablePlanNode, ScanPlanNodeWhichCanHaveInlineInsert {
@@ -589,6 +593,78 @@ public class IndexScanPlanNode extends AbstractScanPlanNode implements IndexSort
         return keyWidth;
     }
 
+    /**
+     * Estimate the fraction of the table the index scan reads. Each column matched by equality
+     * keeps one row in the number of distinct values of the column, and a range on the next
+     * column keeps the part of its histogram the range covers. Columns without statistics
+     * count for the same 0.1 per column that is used for tables that have not been analyzed.
+     */
+    private double getSearchSelectivity(DatabaseEstimates.TableEstimates tableEstimates, double keyWidth) {
+        if ( ! tableEstimates.isAnalyzed() || ! m_catalogIndex.getExpressionsjson().isEmpty()) {
+            return Math.pow(0.10, keyWidth);
+        }
+        final List<ColumnRef> indexedColumns =
+                CatalogUtil.getSortedCatalogItems(m_catalogIndex.getColumns(), "index");
+        final int equalityColumns = (int) keyWidth;
+        double selectivity = 1.0;
+        for (int i = 0; i < equalityColumns; ++i) {
+            DatabaseEstimates.ColumnEstimates column =
+                    tableEstimates.columns.get(indexedColumns.get(i).getColumn().getTypeName());
+            selectivity *= (column != null && column.distinctValues > 0) ? 1.0 / column.distinctValues : 0.10;
+        }
+        if (keyWidth > equalityColumns) {
+            // a range on the column following the equalities
+            double rangeSelectivity = Math.sqrt(0.10);
+            DatabaseEstimates.ColumnEstimates column = equalityColumns < indexedColumns.size() ?
+                    tableEstimates.columns.get(indexedColumns.get(equalityColumns).getColumn().getTypeName()) : null;
+            Double bound = equalityColumns < m_searchkeyExpressions.size() ?
+                    getHistogramValue(m_searchkeyExpressions.get(equalityColumns)) : null;
+            if (column != null && column.histogram != null && bound != null) {
+                double below = column.fractionBelow(bound);
+                if (m_lookupType == IndexLookupType.GT || m_lookupType == IndexLookupType.GTE) {
+                    rangeSelectivity = 1.0 - below;
+                } else if (m_lookupType == IndexLookupType.LT || m_lookupType == IndexLookupType.LTE) {
+                    rangeSelectivity = below;
+                }
+            }
+            selectivity *= rangeSelectivity;
+        }
+        return selectivity;
+    }
+
+    /**
+     * @return the value of a constant search key, or of the constant a parameter was
+     * extracted from, on the scale of the column histograms, null if it is not known
+     */
+    private static Double getHistogramValue(AbstractExpression searchKey) {
+        ConstantValueExpression constant = null;
+        if (searchKey instanceof ConstantValueExpression) {
+            constant = (ConstantValueExpression) searchKey;
+        } else if (searchKey instanceof ParameterValueExpression) {
+            constant = ((ParameterValueExpression) searchKey).getOriginalValue();
+        }
+        final String value = constant == null ? null : constant.getValue();
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (constant.getValueType() == VoltType.TIMESTAMP) {
+                // histograms of timestamps are in microseconds since the epoch
+                try {
+                    return (double) Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return (double) new TimestampType(value).getTime();
+                }
+            }
+            if (constant.getValueType().isNumber()) {
+                return Double.parseDouble(value);
+            }
+        } catch (IllegalArgumentException e) {
+            // not a usable value
+        }
+        return null;
+    }
+
     @Override
     public void computeCostEstimates(
             long unusedChildOutputTupleCountEstimate, DatabaseEstimates estimates, ScalarValueHints[] unusedParamHints) {
@@ -657,7 +733,9 @@ public class IndexScanPlanNode extends AbstractScanPlanNode implements IndexSort
             // Using a factor of 0.1 per FULLY covered (equality-filtered) column,
             // the effective scale factor for a single PARTIALLY covered (range-filtered) column
             // comes to SQRT(0.1) which is just under 32% FTW!
-            tuplesToRead += (int) (tableEstimates.maxTuples * 0.90 * Math.pow(0.10, keyWidth));
+            // When the table has been analyzed, the selectivity of the indexed columns comes from
+            // their statistics instead.
+            tuplesToRead += (int) (tableEstimates.maxTuples * 0.90 * getSearchSelectivity(tableEstimates, keyWidth));
             // "Covering cell" indexes get a special adjustment to make them look more favorable
             // than non-unique range filters in particular.
             // I can't quite justify that rationally, but it "seems reasonable". --paul
@@ -29,17 +29,25 @@ import org.voltdb.messaging.VoltDbMessageFactory;
  */
 public class RejoinDataMessage extends VoltMessage {
     private long m_targetId = -1;
-    // compressed snapshot data
-    private byte[] m_data = null;
+    // compressed snapshot data, shared by every destination of the message
+    private ByteBuffer m_data = null;
 
     public RejoinDataMessage() {
         m_subject = Subject.DEFAULT.getId();
     }
 
     public RejoinDataMessage(long targetId, byte[] data) {
+        this(targetId, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * The message only reads the remaining bytes of data, which must not change
+     * until the message is delivered.
+     */
+    public RejoinDataMessage(long targetId, ByteBuffer data) {
         m_subject = Subject.DEFAULT.getId();
         m_targetId = targetId;
-        m_data = data;
+        m_data = data.slice();
     }
 
     public long getTargetId() {
@@ -47,7 +55,19 @@ public class RejoinDataMessage extends VoltMessage {
     }
 
     public byte[] getData() {
-        return m_data;
+        if (m_data.hasArray() && m_data.arrayOffset() == 0 && m_data.remaining() == m_data.array().length) {
+            return m_data.array();
+        }
+        byte[] data = new byte[m_data.remaining()];
+        m_data.duplicate().get(data);
+        return data;
+    }
+
+    /**
+     * @return a read only view of the compressed data
+     */
+    public ByteBuffer getDataBuffer() {
+        return m_data.asReadOnlyBuffer();
     }
 
     @Override
@@ -56,7 +76,7 @@ public class RejoinDataMessage extends VoltMessage {
         msgsize +=
                 8 + // m_targetId
                 4 + // data length
-                m_data.length;
+                m_data.remaining();
         return msgsize;
     }
 
@@ -64,16 +84,18 @@ public class RejoinDataMessage extends VoltMessage {
     protected void initFromBuffer(ByteBuffer buf) throws IOException {
         m_targetId = buf.getLong();
         int len = buf.getInt();
-        m_data = new byte[len];
-        buf.get(m_data);
+        byte[] data = new byte[len];
+        buf.get(data);
+        m_data = ByteBuffer.wrap(data);
     }
 
     @Override
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
         buf.put(VoltDbMessageFactory.REJOIN_DATA_ID);
         buf.putLong(m_targetId);
-        buf.putInt(m_data.length);
-        buf.put(m_data);
+        buf.putInt(m_data.remaining());
+        // the message may be flattened for several hosts at once
+        buf.put(m_data.duplicate());
         buf.limit(buf.position());
     }
 }
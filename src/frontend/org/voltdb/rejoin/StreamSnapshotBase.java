@@ -17,6 +17,8 @@
 
 package org.voltdb.rejoin;
 
+import java.nio.ByteBuffer;
+
 import org.voltcore.messaging.VoltMessage;
 import org.voltdb.exceptions.SerializableException;
 
@@ -30,7 +32,7 @@ public abstract class StreamSnapshotBase {
     public static final int contentOffset = tableIdOffset + 4;
 
     public static interface MessageFactory {
-        public VoltMessage makeDataMessage(long targetId, byte[] data);
+        public VoltMessage makeDataMessage(long targetId, ByteBuffer data);
 
         public boolean isAckEOS(VoltMessage msg);
         public long getAckTargetId(VoltMessage msg);
@@ -40,7 +42,7 @@ public abstract class StreamSnapshotBase {
 
     public static class DefaultMessageFactory implements MessageFactory {
         @Override
-        public VoltMessage makeDataMessage(long targetId, byte[] data)
+        public VoltMessage makeDataMessage(long targetId, ByteBuffer data)
         {
             return new RejoinDataMessage(targetId, data);
         }
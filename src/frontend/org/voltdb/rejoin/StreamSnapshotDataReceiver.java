@@ -130,7 +130,7 @@ implements Runnable {
 
                     assert(msg instanceof RejoinDataMessage);
                     RejoinDataMessage dataMsg = (RejoinDataMessage) msg;
-                    byte[] data = dataMsg.getData();
+                    ByteBuffer data = dataMsg.getDataBuffer();
 
                     // Only grab the buffer from the pool after receiving a message from the
                     // mailbox. If the buffer is grabbed before receiving the message,
@@ -149,7 +149,7 @@ implements Runnable {
                     }
                     compressionBuffer = compressionBufferC.b();
                     compressionBuffer.clear();
-                    compressionBuffer.limit(data.length);
+                    compressionBuffer.limit(data.remaining());
                     compressionBuffer.put(data);
                     compressionBuffer.flip();
                     int uncompressedSize =
@@ -19,6 +19,7 @@ package org.voltdb.rejoin;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +37,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.Mailbox;
+import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
@@ -96,6 +98,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     final AtomicInteger m_outstandingWorkCount = new AtomicInteger(0);
     // map of sent, but un-acked buffers, packaged up a bit
     private final TreeMap<Integer, SendWork> m_outstandingWork = new TreeMap<Integer, SendWork>();
+    // blocks that may be on the wire at once
+    final SendWindow m_window = new SendWindow();
 
     int m_blockIndex = 0;
     private final AtomicReference<Runnable> m_onCloseHandler = new AtomicReference<Runnable>(null);
@@ -142,6 +146,61 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         return m_replicatedTableTarget;
     }
 
+    /**
+     * Limits the blocks of one target that are sent but not yet acked. The limit grows by
+     * one block for every window of acks that came back within twice the shortest round
+     * trip seen, and halves when the round trips stretch past that because the rejoining
+     * node is falling behind.
+     */
+    static class SendWindow {
+        static final int MAX_BLOCKS = Integer.getInteger("REJOIN_MAX_BLOCKS_IN_FLIGHT", 16);
+        static final int INITIAL_BLOCKS = Math.min(4, MAX_BLOCKS);
+
+        private int m_size = INITIAL_BLOCKS;
+        private int m_inFlight = 0;
+        private int m_ackedSinceResize = 0;
+        private long m_maxRttSinceResize = 0;
+        private long m_minRtt = Long.MAX_VALUE;
+        // once the stream failed the remaining blocks are only drained
+        private boolean m_unlimited = false;
+
+        synchronized boolean tryAcquire() {
+            if (!m_unlimited && m_inFlight >= m_size) {
+                return false;
+            }
+            m_inFlight++;
+            return true;
+        }
+
+        synchronized void release(long rttNanos) {
+            if (m_inFlight > 0) {
+                m_inFlight--;
+            }
+            m_minRtt = Math.min(m_minRtt, rttNanos);
+            m_maxRttSinceResize = Math.max(m_maxRttSinceResize, rttNanos);
+            if (++m_ackedSinceResize < m_size) {
+                return;
+            }
+            if (m_maxRttSinceResize > 2 * m_minRtt) {
+                m_size = Math.max(1, m_size / 2);
+            }
+            else {
+                m_size = Math.min(MAX_BLOCKS, m_size + 1);
+            }
+            m_ackedSinceResize = 0;
+            m_maxRttSinceResize = 0;
+        }
+
+        synchronized void removeLimit() {
+            m_unlimited = true;
+            m_inFlight = 0;
+        }
+
+        synchronized int size() {
+            return m_size;
+        }
+    }
+
     /**
      * Packages up a pending write into a piece of work that can be tracked
      * and can be scheduled.
@@ -152,10 +211,14 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         final long m_targetId;
         final long m_destHSId;
         final Set<Long> m_otherDestHSIds;
+        final SendWindow m_window;
         AtomicInteger m_ackCounter;
-        final long m_ts;
+        // zero until the work is sent, held work does not age
+        volatile long m_sentNanos;
 
         final boolean m_isEmpty;
+        // tells the sender the window of m_targetId has room again
+        final boolean m_isResume;
 
         // A listenable future used to notify a listener when this buffer is discarded
         final SettableFuture<Boolean> m_future;
@@ -164,25 +227,35 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
          * Creates an empty send work to terminate the sender thread
          */
         SendWork() {
+            this(-1);
+        }
+
+        /**
+         * Creates an empty send work to resume sending the held work of a target,
+         * or to terminate the sender thread when the target is -1
+         */
+        SendWork(long targetId) {
             m_type = StreamSnapshotMessageType.DATA;
             m_isEmpty = true;
-            m_targetId = -1;
+            m_isResume = targetId != -1;
+            m_targetId = targetId;
             m_destHSId = -1;
             m_otherDestHSIds = null;
-            m_ts = -1;
+            m_window = null;
             m_future = null;
         }
 
         SendWork (StreamSnapshotMessageType type, long targetId, long destHSId,
-                  Set<Long> otherDestIds, BBContainer message,
+                  Set<Long> otherDestIds, SendWindow window, BBContainer message,
                   SettableFuture<Boolean> future) {
             m_isEmpty = false;
+            m_isResume = false;
             m_type = type;
             m_targetId = targetId;
             m_destHSId = destHSId;
             m_otherDestHSIds = otherDestIds;
+            m_window = window;
             m_message = message;
-            m_ts = System.currentTimeMillis();
             m_future = future;
         }
 
@@ -199,37 +272,18 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
 
         /**
-         * Compress the data in the BBContainer provided, then package it up in
-         * a RejoinDataMessage instance, and finally hand it off to the messaging
-         * subsystem.
+         * Compress a block into a heap buffer of its own. The message may still be queued
+         * for serialization after a failure discards this work, so it must not share a
+         * buffer that goes back to a pool.
          */
-        protected int send(Mailbox mb, MessageFactory msgFactory, BBContainer message) throws IOException {
-            final ByteBuffer messageBuffer = message.b();
-            if (messageBuffer.isDirect()) {
-                byte[] data = CompressionService.compressBuffer(messageBuffer);
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
-                return data.length;
-            } else {
-                byte compressedBytes[] =
-                    CompressionService.compressBytes(
-                            messageBuffer.array(), messageBuffer.position(),
-                            messageBuffer.remaining());
-
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, compressedBytes));
-                return compressedBytes.length;
-            }
-        }
-
-        private void sendReplicatedDataToNonLowestSites(Mailbox mb, MessageFactory msgFactory, ByteBuffer message, int len) throws IOException {
-            byte[] compressedBytes;
-            if (message.isDirect()) {
-                compressedBytes = CompressionService.compressBuffer(message);
+        private static ByteBuffer compress(ByteBuffer block) throws IOException {
+            if (block.isDirect()) {
+                return ByteBuffer.wrap(CompressionService.compressBuffer(block.duplicate()));
             }
             else {
-                compressedBytes =
-                    CompressionService.compressBytes(message.array(), 0, len);
+                return ByteBuffer.wrap(CompressionService.compressBytes(
+                        block.array(), block.arrayOffset() + block.position(), block.remaining()));
             }
-            mb.send(Longs.toArray(m_otherDestHSIds), msgFactory.makeDataMessage(m_targetId, compressedBytes));
         }
 
         public synchronized int doWork(Mailbox mb, MessageFactory msgFactory) throws Exception {
@@ -240,35 +294,37 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             }
 
             try {
-                int sentBytes;
+                final ByteBuffer compressed = compress(m_message.b());
+                final VoltMessage message = msgFactory.makeDataMessage(m_targetId, compressed);
+                final int sentBytes = compressed.remaining();
+                m_sentNanos = System.nanoTime();
                 if (m_otherDestHSIds != null) {
                     m_ackCounter = new AtomicInteger(m_otherDestHSIds.size()+1);
-                    sentBytes = send(mb, msgFactory, m_message);
-                    if (m_type == StreamSnapshotMessageType.DATA) {
+                    mb.send(m_destHSId, message);
+                    if (m_otherDestHSIds.isEmpty()) {
+                        // nothing else to send
+                    }
+                    else if (m_type == StreamSnapshotMessageType.DATA) {
                         // Copy the header from the real buffer and add a dummy table that the other non-lowest site can parse
                         ByteBuffer dummyBuffer = ByteBuffer.allocate(DATA_HEADER_BYTES);
-                        m_message.b().get(dummyBuffer.array(), 0, ROW_COUNT_OFFSET);
-                        m_message.b().position(0);
+                        m_message.b().duplicate().get(dummyBuffer.array(), 0, ROW_COUNT_OFFSET);
                         dummyBuffer.position(ROW_COUNT_OFFSET);
                         dummyBuffer.putInt(0);  // Row Count
-                        dummyBuffer.position(0);
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, dummyBuffer, DATA_HEADER_BYTES);
-                    }
-                    else if (m_type == StreamSnapshotMessageType.END) {
-                        // Special case for sending END messages to Non-Leader sites from the site that sent the replicated
-                        // Tables. We do this because replicated tables can race with partitioned tables so the sending 2
-                        // ENDs (one from the Replicated Table data target and one from the Partitioned tables data target)
-                        // means that the sink can be deallocated.
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, m_message.b(), m_message.b().limit());
+                        byte[] compressedDummy = CompressionService.compressBytes(dummyBuffer.array());
+                        mb.send(Longs.toArray(m_otherDestHSIds),
+                                msgFactory.makeDataMessage(m_targetId, ByteBuffer.wrap(compressedDummy)));
                     }
                     else {
-                        // Special case for sending schema for replicated table to all sites of host
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, m_message.b(), m_message.b().remaining());
+                        // END messages and the schema of replicated tables go to all sites of the host.
+                        // Sending END to the non-lowest sites from the replicated table data target as
+                        // well as from the partitioned tables data target lets the sink be deallocated,
+                        // as replicated tables can race with partitioned tables.
+                        mb.send(Longs.toArray(m_otherDestHSIds), message);
                     }
                 }
                 else {
                     m_ackCounter = new AtomicInteger(1);
-                    sentBytes = send(mb, msgFactory, m_message);
+                    mb.send(m_destHSId, message);
                 }
                 rejoinLog.trace("Sent " + m_type.name() + " from " + m_targetId +
                         " expected ackCounter " + m_ackCounter +
@@ -348,14 +404,20 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     private synchronized void checkTimeout(final long timeoutMs) {
         final Entry<Integer, SendWork> oldest = m_outstandingWork.firstEntry();
         if (oldest != null) {
-            final long now = System.currentTimeMillis();
             SendWork work = oldest.getValue();
-            if ((now - work.m_ts) > timeoutMs) {
+            // work is sent in block order, so when the oldest block is still held by the
+            // sender waiting for the window nothing of this target is on the wire
+            final long sentNanos = work.m_sentNanos;
+            if (sentNanos == 0) {
+                return;
+            }
+            final long outstandingMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos);
+            if (outstandingMs > timeoutMs) {
                 StreamSnapshotTimeoutException exception =
                         new StreamSnapshotTimeoutException(String.format(
                                 "A snapshot write task failed after a timeout (currently %d seconds outstanding). " +
                                         "Node rejoin may need to be retried",
-                                (now - work.m_ts) / 1000));
+                                outstandingMs / 1000));
                 rejoinLog.error(exception.getMessage());
                 setWriteFailed(exception);
             }
@@ -378,6 +440,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
         m_outstandingWork.clear();
         m_outstandingWorkCount.set(0);
+        // let the sender drain whatever it still holds of this target
+        m_window.removeLimit();
+        m_sender.resume(m_targetId);
         notifyAll();
     }
 
@@ -404,6 +469,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             }
             m_outstandingWork.remove(blockIndex);
             work.discard();
+            m_window.release(System.nanoTime() - work.m_sentNanos);
+            m_sender.resume(m_targetId);
         }
         else {
             rejoinLog.trace("Received ack for targetId " + m_targetId +
@@ -429,6 +496,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         final Map<Long, AtomicLong> m_worksSent;
         volatile Exception m_lastException = null;
 
+        // work of the targets whose window is full, only used by the sender thread
+        private final Map<Long, ArrayDeque<SendWork>> m_heldWork = new HashMap<>();
+
         public SnapshotSender(Mailbox mb)
         {
             this(mb, new DefaultMessageFactory());
@@ -457,6 +527,28 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_workQueue.offer(work);
         }
 
+        /**
+         * Wake up the sender to send the held work of a target whose window has room
+         */
+        void resume(long targetId)
+        {
+            m_workQueue.offer(new SendWork(targetId));
+        }
+
+        private void send(SendWork work) throws Exception
+        {
+            m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
+            m_worksSent.get(work.m_targetId).incrementAndGet();
+        }
+
+        private void sendHeld(long targetId) throws Exception
+        {
+            ArrayDeque<SendWork> held = m_heldWork.get(targetId);
+            while (held != null && !held.isEmpty() && held.peek().m_window.tryAcquire()) {
+                send(held.poll());
+            }
+        }
+
         @Override
         public void run() {
             rejoinLog.trace("Starting stream sender thread");
@@ -471,6 +563,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                     if (work == null) {
                         rejoinLog.warn("No stream snapshot send work was produced in the past 10 minutes");
                         break;
+                    } else if (work.m_isResume) {
+                        sendHeld(work.m_targetId);
+                        continue;
                     } else if (work.m_isEmpty) {
                         // Empty work indicates the end of the queue.
                         // The sender is shared by multiple data targets, each of them will
@@ -483,8 +578,13 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                         }
                     }
 
-                    m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
-                    m_worksSent.get(work.m_targetId).incrementAndGet();
+                    // keep the blocks of a target in order behind the ones already held
+                    ArrayDeque<SendWork> held = m_heldWork.get(work.m_targetId);
+                    if ((held != null && !held.isEmpty()) || !work.m_window.tryAcquire()) {
+                        m_heldWork.computeIfAbsent(work.m_targetId, k -> new ArrayDeque<>()).add(work);
+                        continue;
+                    }
+                    send(work);
                 }
                 catch (Exception e) {
                     m_lastException = e;
@@ -596,7 +696,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                     (replicatedTable?", " + CoreUtils.hsIdCollectionToString(m_otherDestHostHSIds):""));
         }
         SendWork sendWork = new SendWork(type, m_targetId, m_destHSId,
-                replicatedTable?m_otherDestHostHSIds:null, chunk, sendFuture);
+                replicatedTable?m_otherDestHostHSIds:null, m_window, chunk, sendFuture);
         m_outstandingWork.put(blockIndex, sendWork);
         m_outstandingWorkCount.incrementAndGet();
         m_sender.offer(sendWork);
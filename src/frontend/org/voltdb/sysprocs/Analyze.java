@@ -0,0 +1,316 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.json_voltpatches.JSONException;
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.TableType;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.ColumnRef;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Index;
+import org.voltdb.catalog.Table;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.DatabaseEstimates.ColumnEstimates;
+import org.voltdb.compiler.DatabaseEstimates.TableEstimates;
+import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.CatalogUtil;
+
+/**
+ * Non-transactional procedure to implement public @Analyze system procedure.
+ *
+ * Gathers the row count of every table, the number of distinct values of its fixed
+ * width columns and an equi-depth histogram of the numeric columns leading a countable
+ * index, all through ordinary read only queries. When the statistics of any table moved
+ * by more than {@link DatabaseEstimates#DRIFT_RATIO} since they were last stored, they
+ * are written to the catalog through a catalog update which replans the statements
+ * reading those tables. Otherwise the current plans are kept.
+ */
+public class Analyze extends UpdateApplicationBase {
+    VoltLogger log = new VoltLogger("HOST");
+
+    static final int HISTOGRAM_BUCKETS = 16;
+    static final int HISTOGRAM_PROBES = 64;
+    private static final int QUERY_TIMEOUT_MINUTES = 5;
+
+    private static class AnalyzeFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        AnalyzeFailure(String message) {
+            super(message);
+        }
+    }
+
+    public CompletableFuture<ClientResponse> run() {
+        if (!allowPausedModeWork(false, isAdminConnection())) {
+            return makeQuickResponse(
+                    ClientResponse.SERVER_UNAVAILABLE,
+                    "Server is paused and is available in read-only mode - please try again later.");
+        }
+        boolean useDDLSchema = VoltDB.instance().getCatalogContext().cluster.getUseddlschema();
+        if (!useDDLSchema) {
+            return makeQuickResponse(
+                    ClientResponse.GRACEFUL_FAILURE,
+                    "Cluster is configured to use @UpdateApplicationCatalog " +
+                    "to change application schema.  Use of @Analyze is forbidden.");
+        }
+
+        final Database db = VoltDB.instance().getCatalogContext().database;
+        final DatabaseEstimates previous = DatabaseEstimates.fromCatalog(db);
+        final DatabaseEstimates drifted = new DatabaseEstimates();
+        final VoltTable result = new VoltTable(
+                new ColumnInfo("TABLE_NAME", VoltType.STRING),
+                new ColumnInfo("TUPLE_COUNT", VoltType.BIGINT),
+                new ColumnInfo("PREVIOUS_TUPLE_COUNT", VoltType.BIGINT),
+                new ColumnInfo("DRIFTED", VoltType.TINYINT));
+        try {
+            for (Table table : db.getTables()) {
+                if (TableType.isStream(table.getTabletype())) {
+                    continue;
+                }
+                final TableEstimates current = analyzeTable(table);
+                TableEstimates before = previous.getAnalyzedEstimatesForTable(table.getTypeName());
+                if (before == null) {
+                    before = new TableEstimates();
+                }
+                final boolean changed = DatabaseEstimates.hasDrifted(before, current);
+                if (changed) {
+                    drifted.putEstimatesForTable(table.getTypeName(), current);
+                }
+                result.addRow(table.getTypeName(), current.analyzedTuples, before.analyzedTuples,
+                        changed ? 1 : 0);
+            }
+        }
+        catch (AnalyzeFailure e) {
+            return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE, "@Analyze failed: " + e.getMessage());
+        }
+
+        if (drifted.isEmpty()) {
+            return CompletableFuture.completedFuture(new ClientResponseImpl(ClientResponse.SUCCESS,
+                    new VoltTable[] { result },
+                    "Table statistics have not drifted, the current plans are kept."));
+        }
+
+        final String statistics;
+        try {
+            statistics = drifted.toJSONString();
+        }
+        catch (JSONException e) {
+            return makeQuickResponse(ClientResponse.UNEXPECTED_FAILURE,
+                    "Unable to serialize table statistics: " + e.getMessage());
+        }
+
+        logCatalogUpdateInvocation("@Analyze");
+        return updateApplication("@Analyze",
+                                null,
+                                statistics,
+                                new String[0],
+                                Collections.emptyList(),
+                                null,
+                                false /* isPromotion */
+                                ).thenApply(response -> {
+                                    if (response.getStatus() != ClientResponse.SUCCESS) {
+                                        return response;
+                                    }
+                                    return new ClientResponseImpl(ClientResponse.SUCCESS,
+                                            new VoltTable[] { result }, response.getStatusString());
+                                });
+    }
+
+    /**
+     * Gather the statistics of one table. Empty tables come back as not analyzed so that
+     * they keep the default guesses.
+     */
+    private TableEstimates analyzeTable(Table table) throws AnalyzeFailure {
+        final List<Column> distinctColumns = new ArrayList<>();
+        final List<Column> histogramColumns = new ArrayList<>();
+        for (Column column : CatalogUtil.getSortedCatalogItems(table.getColumns(), "index")) {
+            VoltType type = VoltType.get((byte) column.getType());
+            if (supportsDistinctCount(type)) {
+                distinctColumns.add(column);
+                if (leadsCountableIndex(table, column)) {
+                    histogramColumns.add(column);
+                }
+            }
+        }
+
+        final String tableName = quoteIdentifier(table.getTypeName());
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*)");
+        for (Column column : distinctColumns) {
+            sql.append(", APPROX_COUNT_DISTINCT(").append(quoteIdentifier(column.getTypeName())).append(")");
+        }
+        for (Column column : histogramColumns) {
+            sql.append(", MIN(").append(quoteIdentifier(column.getTypeName())).append(")");
+            sql.append(", MAX(").append(quoteIdentifier(column.getTypeName())).append(")");
+            sql.append(", COUNT(").append(quoteIdentifier(column.getTypeName())).append(")");
+        }
+        sql.append(" FROM ").append(tableName).append(";");
+
+        final VoltTable summary = query(sql.toString())[0];
+        summary.advanceRow();
+        final TableEstimates estimates = new TableEstimates();
+        final long tuples = summary.getLong(0);
+        if (tuples == 0) {
+            return estimates;
+        }
+        estimates.setAnalyzedTuples(tuples);
+
+        int col = 1;
+        for (Column column : distinctColumns) {
+            ColumnEstimates columnEstimates = new ColumnEstimates();
+            columnEstimates.distinctValues = summary.getLong(col++);
+            estimates.columns.put(column.getTypeName(), columnEstimates);
+        }
+        for (Column column : histogramColumns) {
+            final VoltType type = VoltType.get((byte) column.getType());
+            final double min = getDouble(summary, col++, type);
+            final double max = getDouble(summary, col++, type);
+            final long nonNull = summary.getLong(col++);
+            if (Double.isNaN(min) || Double.isNaN(max) || max <= min || nonNull == 0) {
+                continue;
+            }
+            estimates.columns.get(column.getTypeName()).histogram =
+                    buildHistogram(tableName, column, type, min, max, nonNull);
+        }
+        return estimates;
+    }
+
+    /**
+     * Count the rows below evenly spaced probe values, which the leading column of a
+     * countable index answers without scanning, and turn the counts into bucket bounds.
+     */
+    private double[] buildHistogram(String tableName, Column column, VoltType type,
+            double min, double max, long nonNull) throws AnalyzeFailure {
+        final List<Double> probes = new ArrayList<>();
+        final StringBuilder sql = new StringBuilder();
+        for (int i = 1; i < HISTOGRAM_PROBES; ++i) {
+            double probe = min + (max - min) * i / HISTOGRAM_PROBES;
+            if (type.isBackendIntegerType() || type == VoltType.TIMESTAMP) {
+                probe = Math.ceil(probe);
+            }
+            // integer probes of a narrow range repeat, and must stay strictly within the bounds
+            if (probe <= min || probe >= max
+                    || (! probes.isEmpty() && probe <= probes.get(probes.size() - 1))) {
+                continue;
+            }
+            probes.add(probe);
+            sql.append("SELECT COUNT(*) FROM ").append(tableName)
+               .append(" WHERE ").append(quoteIdentifier(column.getTypeName())).append(" < ")
+               .append(toLiteral(probe, type)).append(";");
+        }
+        if (probes.isEmpty()) {
+            return new double[] { min, max };
+        }
+
+        final VoltTable[] counts = query(sql.toString());
+        final double[] probeValues = new double[probes.size()];
+        final long[] below = new long[probes.size()];
+        for (int i = 0; i < probeValues.length; ++i) {
+            probeValues[i] = probes.get(i);
+            below[i] = counts[i].asScalarLong();
+        }
+        return ColumnEstimates.equiDepthHistogram(min, max, probeValues, below, nonNull, HISTOGRAM_BUCKETS);
+    }
+
+    private VoltTable[] query(String sql) throws AnalyzeFailure {
+        final ClientResponse response;
+        try {
+            response = callProcedure("@AdHoc", sql).get(QUERY_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new AnalyzeFailure(e.getMessage());
+        }
+        if (response.getStatus() != ClientResponse.SUCCESS) {
+            throw new AnalyzeFailure(response.getStatusString());
+        }
+        return response.getResults();
+    }
+
+    /**
+     * Catalog names are stored in upper case, quoting them keeps names which are
+     * reserved words or need quoting in the DDL valid in the generated queries.
+     */
+    private static String quoteIdentifier(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * APPROX_COUNT_DISTINCT only takes the fixed width types other than FLOAT
+     */
+    private static boolean supportsDistinctCount(VoltType type) {
+        return type.isBackendIntegerType() || type == VoltType.DECIMAL || type == VoltType.TIMESTAMP;
+    }
+
+    private static boolean leadsCountableIndex(Table table, Column column) {
+        for (Index index : table.getIndexes()) {
+            if (! index.getCountable() || ! index.getExpressionsjson().isEmpty()) {
+                continue;
+            }
+            for (ColumnRef ref : index.getColumns()) {
+                if (ref.getIndex() == 0 && ref.getColumn().getTypeName().equals(column.getTypeName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the value as the planner reads it from a histogram, NaN if it is null
+     */
+    private static double getDouble(VoltTable table, int col, VoltType type) {
+        final double value;
+        if (type == VoltType.DECIMAL) {
+            BigDecimal decimal = table.getDecimalAsBigDecimal(col);
+            value = decimal == null ? 0.0 : decimal.doubleValue();
+        }
+        else if (type == VoltType.TIMESTAMP) {
+            value = table.getTimestampAsLong(col);
+        }
+        else {
+            value = table.getLong(col);
+        }
+        return table.wasNull() ? Double.NaN : value;
+    }
+
+    private static String toLiteral(double value, VoltType type) {
+        if (type == VoltType.TIMESTAMP) {
+            return "TO_TIMESTAMP(MICROSECOND, " + (long) value + ")";
+        }
+        if (type == VoltType.DECIMAL) {
+            return new BigDecimal(value).setScale(VoltDecimalHelper.kDefaultScale, RoundingMode.HALF_UP).toPlainString();
+        }
+        return Long.toString((long) value);
+    }
+}
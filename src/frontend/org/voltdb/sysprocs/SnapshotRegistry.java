@@ -131,19 +131,29 @@ public class SnapshotRegistry {
             public final String filename;
             public final long size;
             public final Throwable error;
+            public final String device;
+            public final long writeDuration;
 
             private Table(String name, String filename) {
                 this.name = name;
                 this.filename = filename;
                 size = 0;
                 error = null;
+                device = null;
+                writeDuration = 0;
             }
 
             public Table(Table t, long size, Throwable error) {
+                this(t, size, error, null, 0);
+            }
+
+            public Table(Table t, long size, Throwable error, String device, long writeDuration) {
                 this.name = t.name;
                 this.filename = t.filename;
                 this.size = size;
                 this.error = error;
+                this.device = device;
+                this.writeDuration = writeDuration;
             }
         }
     }
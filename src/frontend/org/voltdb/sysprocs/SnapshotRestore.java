@@ -1277,8 +1277,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
         final boolean isStartWithNoAutomatedRestore =
             startAction == StartAction.CREATE && mode != org.voltdb.OperationMode.INITIALIZING;
 
-        final boolean isCLEnabled =
-            VoltDB.instance().getCommandLog().getClass().getSimpleName().equals("CommandLogImpl");
+        final boolean isCLEnabled = VoltDB.instance().getCommandLog().isEnabled();
 
         final boolean isStartedWithCreateAction = startAction == StartAction.CREATE;
 
@@ -19,6 +19,7 @@ package org.voltdb.sysprocs;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +31,7 @@ import org.apache.calcite.sql.SqlNode;
 import org.apache.zookeeper_voltpatches.CreateMode;
 import org.apache.zookeeper_voltpatches.KeeperException;
 import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.json_voltpatches.JSONException;
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Pair;
@@ -46,6 +48,7 @@ import org.voltdb.catalog.CatalogException;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.CatalogChangeResult;
+import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.compiler.ClassMatcher;
 import org.voltdb.compiler.ClassMatcher.ClassNameMatchStatus;
 import org.voltdb.compiler.VoltCompiler;
@@ -171,6 +174,24 @@ public abstract class UpdateApplicationBase extends VoltNTSystemProcedure {
                     // here and let it get filled in correctly later.
                     deploymentString = null;
                     break;
+                case "@Analyze":
+                    compilerLog.info("@Analyze is invoked, replanning with new table statistics: " + context.catalogVersion);
+                    // provided operationString is the JSON form of the statistics that drifted
+                    try {
+                        newCatalogJar = addStatisticsToCatalog(context.catalog, oldJar, operationString,
+                                drRole == DrRoleType.XDCR, user);
+                    } catch (IOException | VoltCompilerException | PlanningErrorException e) {
+                        retval.errorMsg = e.getMessage();
+                        return retval;
+                    } catch (Exception ex) {
+                        retval.errorMsg = "Unexpected condition occurred applying table statistics: " + ex.getMessage();
+                        return retval;
+                    }
+                    deploymentString = null;
+
+                    // mark it as non-schema change
+                    retval.hasSchemaChange = false;
+                    break;
                 default: // Shouldn't ever get here
                     retval.errorMsg = invocationName + " is not supported";
                     return retval;
@@ -332,6 +353,19 @@ public abstract class UpdateApplicationBase extends VoltNTSystemProcedure {
         return jarfile;
     }
 
+    /**
+     * Recompile the current schema with the statistics gathered by @Analyze. Only the
+     * statements reading the tables whose statistics are given get replanned.
+     */
+    private static InMemoryJarfile addStatisticsToCatalog(Catalog oldCatalog, InMemoryJarfile jarfile,
+            String statistics, boolean isXDCR, String user)
+            throws IOException, VoltCompilerException, JSONException {
+        VoltCompiler compiler = new VoltCompiler(isXDCR, user);
+        compiler.setAnalyzedEstimates(DatabaseEstimates.fromJSONString(statistics));
+        compiler.compileInMemoryJarfileWithNewDDL(jarfile, "", Collections.emptyList(), oldCatalog);
+        return jarfile;
+    }
+
     /**
      * @return NUll if no classes changed, otherwise return the update jar file.
      *
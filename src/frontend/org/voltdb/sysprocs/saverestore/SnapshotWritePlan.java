@@ -105,7 +105,9 @@ public abstract class SnapshotWritePlan
                             return m_snapshotRecord.new Table(
                                 registryTable,
                                 m_sdt.getBytesWritten(),
-                                m_sdt.getLastWriteException());
+                                m_sdt.getLastWriteException(),
+                                m_sdt.getDeviceName(),
+                                m_sdt.getWriteDurationMillis());
                             }
                     });
             int tablesLeft = m_numTables.decrementAndGet();
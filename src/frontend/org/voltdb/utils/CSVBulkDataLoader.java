@@ -17,6 +17,7 @@
 
 package org.voltdb.utils;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -95,6 +96,11 @@ public class CSVBulkDataLoader implements CSVDataLoader {
         m_loader.insertRow(metaData, values);
     }
 
+    @Override
+    public void insertRows(List<RowWithMetaData> metaData, List<Object[]> values) throws InterruptedException {
+        m_loader.insertRows(metaData, values);
+    }
+
     @Override
     public void close() throws Exception {
         m_loader.close();
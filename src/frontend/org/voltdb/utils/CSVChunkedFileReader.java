@@ -0,0 +1,314 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.supercsv.exception.SuperCsvException;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.ParameterConverter;
+import org.voltdb.VoltType;
+import org.voltdb.VoltTypeException;
+
+/**
+ *
+ * The reader used with --parallel. The file is memory mapped and cut into chunks at
+ * record boundaries, following quotes so that a quoted value spanning lines is never
+ * split. A pool of threads tokenizes, validates and converts the chunks, and each
+ * parsed chunk is handed to the CSVDataLoader in one go, which buckets it by partition.
+ * Chunks reach the loader in file order only with --ordered, otherwise as soon as they
+ * are parsed.
+ *
+ */
+class CSVChunkedFileReader implements Runnable {
+    // target size of a chunk, it runs on to the end of the record crossing it. Tests lower it
+    // to put chunk boundaries in small files.
+    static int m_chunkSize = Integer.getInteger("CSV_CHUNK_SIZE", 8 * 1024 * 1024);
+    // how much of the file the splitter maps at a time
+    private static final long SCAN_WINDOW = 256L * 1024 * 1024;
+
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+    private final CSVLoader.CSVConfig m_config;
+    private final CsvPreference m_csvPreference;
+    private final Charset m_charset;
+    private final CSVDataLoader m_loader;
+    private final BulkLoaderErrorHandler m_errHandler;
+    // checks and reorders the values as the single reader does
+    private final CSVFileReader m_validator;
+    private final VoltType[] m_columnTypes;
+    private final AtomicBoolean m_stop = new AtomicBoolean(false);
+    private final AtomicLong m_parsingNanos = new AtomicLong(0);
+    long m_parsingTime = 0;
+
+    private static class ParsedChunk {
+        final List<RowWithMetaData> m_metaData = new ArrayList<>();
+        final List<Object[]> m_values = new ArrayList<>();
+    }
+
+    public CSVChunkedFileReader(CSVLoader.CSVConfig config, CsvPreference csvPreference,
+            CSVDataLoader loader, BulkLoaderErrorHandler errorHandler) {
+        m_config = config;
+        m_csvPreference = csvPreference;
+        m_charset = Charset.forName(config.charset);
+        m_loader = loader;
+        m_errHandler = errorHandler;
+        m_validator = new CSVFileReader(loader, errorHandler);
+        m_columnTypes = loader.getColumnTypes();
+    }
+
+    @Override
+    public void run() {
+        final ExecutorService parsers = Executors.newFixedThreadPool(m_config.parallel,
+                CoreUtils.getThreadFactory("CSVChunkParser"));
+        try (FileChannel channel = FileChannel.open(Paths.get(m_config.file), StandardOpenOption.READ)) {
+            split(channel, parsers);
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV file: " + ex);
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        } catch (ExecutionException e) {
+            m_log.error("Failed to parse CSV file: " + e.getCause());
+        } finally {
+            parsers.shutdownNow();
+        }
+        m_parsingTime = m_parsingNanos.get();
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_loader.close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    /**
+     * Scan the file for record boundaries and queue a parse task for each chunk, keeping
+     * a bounded number of chunks in memory.
+     */
+    private void split(FileChannel channel, ExecutorService parsers)
+            throws IOException, InterruptedException, ExecutionException {
+        final long fileSize = channel.size();
+        final byte quote = (byte) m_config.quotechar;
+        final boolean quoting = m_config.quotechar != '\u0000';
+        final byte escape = (byte) m_config.escape;
+        final ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        long pos = 0;
+        // lines before the current chunk
+        long line = 0;
+
+        // the header and the lines to skip come first, outside of any chunk
+        final long leadingLines = (m_config.header ? 1 : 0) + m_config.skip;
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (line < leadingLines && pos < fileSize) {
+            if (window == null || pos >= windowStart + window.limit()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SCAN_WINDOW, fileSize - pos));
+            }
+            byte b = window.get((int) (pos - windowStart));
+            pos++;
+            if (b == '\n') {
+                line++;
+            } else if (line == 0 && m_config.header) {
+                header.write(b);
+            }
+        }
+        if (m_config.header) {
+            final String headerLine = new String(header.toByteArray(), m_charset);
+            if (!checkHeader(headerLine)) {
+                m_log.error("In the CSV file " + m_config.file + ", the header "+ headerLine +" does not match "
+                        + "an existing column in the table " + m_config.table + ".");
+                System.exit(-1);
+            }
+        }
+
+        final int chunkSize = m_chunkSize;
+        long chunkStart = pos;
+        long linesInChunk = 0;
+        boolean inQuote = false;
+        boolean escaped = false;
+        byte last = '\n';
+        while (pos < fileSize && !m_stop.get()) {
+            if (window == null || pos >= windowStart + window.limit()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SCAN_WINDOW, fileSize - pos));
+            }
+            final byte b = window.get((int) (pos - windowStart));
+            pos++;
+            last = b;
+            if (b == '\n') {
+                linesInChunk++;
+                escaped = false;
+                final long length = pos - chunkStart;
+                // an unterminated quote is the tokenizer's error to report, do not let it swallow the file
+                if (length >= chunkSize && (!inQuote || length >= chunkSize + m_config.columnsizelimit)) {
+                    submit(channel, parsers, inFlight, chunkStart, length, line);
+                    line += linesInChunk;
+                    linesInChunk = 0;
+                    chunkStart = pos;
+                    inQuote = false;
+                }
+            } else if (escaped) {
+                escaped = false;
+            } else if (b == escape) {
+                escaped = true;
+            } else if (quoting && b == quote) {
+                inQuote = !inQuote;
+            }
+        }
+        if (pos > chunkStart && !m_stop.get()) {
+            submit(channel, parsers, inFlight, chunkStart, pos - chunkStart, line);
+        }
+        line += linesInChunk + (last == '\n' ? 0 : 1);
+        CSVFileReader.m_totalLineCount.set(line);
+
+        while (!inFlight.isEmpty()) {
+            complete(inFlight.poll());
+        }
+    }
+
+    private void submit(final FileChannel channel, ExecutorService parsers, ArrayDeque<Future<ParsedChunk>> inFlight,
+            final long start, final long length, final long firstLine)
+            throws IOException, InterruptedException, ExecutionException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("A record starting after line " + firstLine + " is too large to load");
+        }
+        // two chunks per parser keeps them all busy while the oldest is handed over
+        if (inFlight.size() >= 2 * m_config.parallel) {
+            complete(inFlight.poll());
+        }
+        inFlight.add(parsers.submit(() -> {
+            ParsedChunk chunk = parse(channel.map(FileChannel.MapMode.READ_ONLY, start, length), firstLine);
+            if (!m_config.ordered) {
+                m_loader.insertRows(chunk.m_metaData, chunk.m_values);
+                return null;
+            }
+            return chunk;
+        }));
+    }
+
+    private void complete(Future<ParsedChunk> future) throws InterruptedException, ExecutionException {
+        ParsedChunk chunk = future.get();
+        if (chunk != null) {
+            m_loader.insertRows(chunk.m_metaData, chunk.m_values);
+        }
+    }
+
+    private boolean checkHeader(String line) throws IOException {
+        try (ICsvListReader reader = new CsvListReader(new Tokenizer(new StringReader(line), m_csvPreference,
+                m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, false), m_csvPreference)) {
+            List<String> columns = reader.read();
+            return columns != null && m_validator.checkHeader(columns.toArray(new String[0]));
+        }
+    }
+
+    private ParsedChunk parse(MappedByteBuffer bytes, long firstLine) throws IOException {
+        final long st = System.nanoTime();
+        final ParsedChunk chunk = new ParsedChunk();
+        final CharBuffer chars = m_charset.decode(bytes);
+        final ICsvListReader reader = new CsvListReader(
+                new Tokenizer(new CharArrayReader(chars.array(), chars.arrayOffset(), chars.limit()),
+                        m_csvPreference, m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, false),
+                m_csvPreference);
+        try {
+            while (!m_stop.get()) {
+                if (m_errHandler.hasReachedErrorLimit()) {
+                    m_stop.set(true);
+                    break;
+                }
+                try {
+                    List<String> lineList = reader.read();
+                    if (lineList == null) {
+                        break;
+                    }
+                    CSVFileReader.m_totalRowCount.incrementAndGet();
+                    if (lineList.isEmpty()) {
+                        continue;
+                    }
+
+                    String[] lineValues = lineList.toArray(new String[0]);
+                    String[] reorderValues = new String[m_columnTypes.length];
+                    final RowWithMetaData metaData = new RowWithMetaData(reader.getUntokenizedRow(),
+                            firstLine + reader.getLineNumber());
+                    String lineCheckResult = m_validator.checkparams_trimspace_reorder(lineValues, reorderValues);
+                    if (lineCheckResult != null) {
+                        if (m_errHandler.handleError(metaData, null, lineCheckResult)) {
+                            m_stop.set(true);
+                        }
+                        continue;
+                    }
+                    Object[] values = new Object[reorderValues.length];
+                    try {
+                        for (int i = 0; i < values.length; i++) {
+                            // nulls are left for the loader, which knows the null of each type
+                            values[i] = reorderValues[i] == null ? null :
+                                ParameterConverter.tryToMakeCompatible(m_columnTypes[i].classFromType(), reorderValues[i]);
+                        }
+                    } catch (VoltTypeException e) {
+                        if (m_errHandler.handleError(metaData, null, e.getMessage())) {
+                            m_stop.set(true);
+                        }
+                        continue;
+                    }
+                    chunk.m_metaData.add(metaData);
+                    chunk.m_values.add(values);
+                } catch (SuperCsvException e) {
+                    //Catch rows that can not be read by superCSV reader.
+                    // e.g. items without quotes when strictquotes is enabled.
+                    final RowWithMetaData metaData = new RowWithMetaData(reader.getUntokenizedRow(),
+                            firstLine + reader.getLineNumber());
+                    if (m_errHandler.handleError(metaData, null, e.getMessage())) {
+                        m_stop.set(true);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+            m_parsingNanos.addAndGet(System.nanoTime() - st);
+        }
+        return chunk;
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.voltdb.utils;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
@@ -42,6 +43,19 @@ public interface CSVDataLoader {
      */
     public void insertRow(RowWithMetaData metaData, Object[] values) throws InterruptedException;
 
+    /**
+     * Insert a chunk of rows.
+     *
+     * @param metaData The metadata of each line, in the same order as the values.
+     * @param values   The values of each row to insert.
+     * @throws InterruptedException
+     */
+    public default void insertRows(List<RowWithMetaData> metaData, List<Object[]> values) throws InterruptedException {
+        for (int i = 0; i < values.size(); i++) {
+            insertRow(metaData.get(i), values.get(i));
+        }
+    }
+
     /**
      * Close the loader.
      * @throws InterruptedException
@@ -25,6 +25,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.Properties;
 import java.util.TimeZone;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -118,6 +119,10 @@ public class CSVLoader implements BulkLoaderErrorHandler {
      * Stop when all connections are lost?
      */
     public static final boolean DEFAULT_STOP_ON_DISCONNECT = false;
+    /**
+     * Number of threads parsing the input
+     */
+    public static final int DEFAULT_PARALLEL = 1;
     /**
      * Used for testing only.
      */
@@ -331,6 +336,13 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         @Option(desc = "Stop when all connections are lost", hasArg = false)
         boolean stopondisconnect = DEFAULT_STOP_ON_DISCONNECT;
+
+        @Option(desc = "number of threads parsing chunks of the memory mapped input file in parallel (default: 1, a single reader)")
+        int parallel = DEFAULT_PARALLEL;
+
+        @Option(desc = "keep the rows in input order when parsing in parallel", hasArg = false)
+        boolean ordered = false;
+
         /**
          * Validate command line options.
          */
@@ -357,6 +369,28 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (parallel < 1) {
+                exitWithMessageAndUsage("parallel must be >= 1");
+            }
+            if (parallel > 1) {
+                if (file.equals("")) {
+                    exitWithMessageAndUsage("--parallel needs an input file");
+                }
+                if (limitrows != Integer.MAX_VALUE) {
+                    exitWithMessageAndUsage("--parallel and --limitrows options are mutually exclusive.");
+                }
+                // chunks are cut on the bytes of newlines and quotes
+                try {
+                    Charset cs = Charset.forName(charset);
+                    if ("\n".getBytes(cs).length != 1 || String.valueOf(quotechar).getBytes(cs).length != 1
+                            || String.valueOf(escape).getBytes(cs).length != 1) {
+                        exitWithMessageAndUsage("--parallel needs a character set that stores newlines, quotes " +
+                                "and escapes as single bytes");
+                    }
+                } catch (IllegalArgumentException e) {
+                    exitWithMessageAndUsage("specified charset \"" + charset + "\" is invalid");
+                }
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -424,10 +458,15 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         configuration();
 
-        final Tokenizer tokenizer;
+        Tokenizer tokenizer;
         ICsvListReader listReader = null;
         try {
-            if (CSVLoader.standin) {
+            if (config.parallel > 1) {
+                // each chunk gets its own tokenizer
+                if (!new File(config.file).exists()) {
+                    throw new FileNotFoundException(config.file);
+                }
+            } else if (CSVLoader.standin) {
                 tokenizer = new Tokenizer(new BufferedReader(new InputStreamReader(System.in)), csvPreference,
                         config.strictquotes, config.escape, config.columnsizelimit,
                         config.skip, config.header);
@@ -511,9 +550,16 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             CSVFileReader.initializeReader(cfg, csvClient, listReader);
 
-            CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
-
-            Thread readerThread = new Thread(csvReader);
+            CSVFileReader csvReader = null;
+            CSVChunkedFileReader chunkedReader = null;
+            Thread readerThread;
+            if (config.parallel > 1) {
+                chunkedReader = new CSVChunkedFileReader(cfg, csvPreference, dataLoader, errHandler);
+                readerThread = new Thread(chunkedReader);
+            } else {
+                csvReader = new CSVFileReader(dataLoader, errHandler);
+                readerThread = new Thread(csvReader);
+            }
             readerThread.setName("CSVFileReader");
             readerThread.setDaemon(true);
 
@@ -527,14 +573,16 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            readerTime = (csvReader != null ? csvReader.m_parsingTime : chunkedReader.m_parsingTime) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
 
             //Close the reader.
             try {
-               listReader.close();
+               if (listReader != null) {
+                   listReader.close();
+               }
             } catch (Exception ex) {
                 //Do nothing here.
             }
@@ -1253,6 +1253,11 @@ public abstract class CatalogUtil {
             tt = new SystemSettingsType.Temptables();
             ss.setTemptables(tt);
         }
+        SystemSettingsType.Mpreadpool mrp = ss.getMpreadpool();
+        if (mrp == null) {
+            mrp = new SystemSettingsType.Mpreadpool();
+            ss.setMpreadpool(mrp);
+        }
         ResourceMonitorType rm = ss.getResourcemonitor();
         if (rm == null) {
             rm = new ResourceMonitorType();
@@ -17,8 +17,11 @@
 
 package org.voltdb.utils;
 
+import java.io.Writer;
+
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
 
@@ -37,21 +40,33 @@ public class ClientResponseToJsonApiV2 {
 
     public static String toJSONStringV2(ClientResponse clientResponse) throws JSONException {
         JSONStringer js = new JSONStringer();
-            js.object();
-            js.keySymbolValuePair(JSON_STATUS_KEY, clientResponse.getStatus());
-            js.keySymbolValuePair(JSON_APPSTATUS_KEY, clientResponse.getAppStatus());
-            js.keySymbolValuePair(JSON_STATUSSTRING_KEY, clientResponse.getStatusString());
-            js.keySymbolValuePair(JSON_APPSTATUSSTRING_KEY, clientResponse.getAppStatusString());
-            js.key(JSON_RESULTS_KEY);
-            js.object();
-            VoltTable[] results = clientResponse.getResults();
-            for (int i=0; i<results.length; i++) {
-                js.key(String.valueOf(i));
-                VoltTable o = results[i];
-                o.toJSONStringerV2(js);
-            }
-            js.endObject();
-            js.endObject();
+        write(clientResponse, js);
         return js.toString();
     }
+
+    /**
+     * Write the api/v2 representation of a response to a writer as it is generated,
+     * one row at a time, instead of building it as a string first.
+     */
+    public static void writeJSONV2(ClientResponse clientResponse, Writer out) throws JSONException {
+        write(clientResponse, new JSONWriter(out));
+    }
+
+    private static void write(ClientResponse clientResponse, JSONWriter js) throws JSONException {
+        js.object();
+        js.keySymbolValuePair(JSON_STATUS_KEY, clientResponse.getStatus());
+        js.keySymbolValuePair(JSON_APPSTATUS_KEY, clientResponse.getAppStatus());
+        js.keySymbolValuePair(JSON_STATUSSTRING_KEY, clientResponse.getStatusString());
+        js.keySymbolValuePair(JSON_APPSTATUSSTRING_KEY, clientResponse.getAppStatusString());
+        js.key(JSON_RESULTS_KEY);
+        js.object();
+        VoltTable[] results = clientResponse.getResults();
+        for (int i=0; i<results.length; i++) {
+            js.key(String.valueOf(i));
+            VoltTable o = results[i];
+            o.toJSONWriterV2(js);
+        }
+        js.endObject();
+        js.endObject();
+    }
 }
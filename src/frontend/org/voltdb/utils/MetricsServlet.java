@@ -0,0 +1,52 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.voltdb.AuthenticationResult;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.metrics.MetricsRegistry;
+
+/**
+ *
+ * Serves the metrics of this host in the OpenMetrics text format for Prometheus style scrapers.
+ * Nothing goes through a transaction or @Statistics.
+ */
+public class MetricsServlet extends VoltBaseServlet {
+
+    private static final long serialVersionUID = -3470383738342712874L;
+
+    @Override
+    public void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        super.doGet(request, response);
+        AuthenticationResult authResult = authenticate(request);
+        if (!authResult.isAuthenticated()) {
+            response.getWriter().print(buildClientResponse(null, ClientResponse.UNEXPECTED_FAILURE, authResult.m_message));
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        response.setContentType(MetricsRegistry.CONTENT_TYPE);
+        response.setStatus(HttpServletResponse.SC_OK);
+        MetricsRegistry.instance().write(response.getWriter());
+    }
+}
@@ -33,11 +33,16 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.CRC32;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DBBPool.MBBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
 
@@ -55,6 +60,9 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
     private static final String VALIDATOR_CURSOR = "__validator__";
     private static final int VERSION = 2;
     private static final Random RANDOM = new Random();
+    // Shared by all segments to fault in the pages of mapped segments ahead of their readers
+    private static final ExecutorService s_readAheadService =
+            CoreUtils.getCachedSingleThreadExecutor("PBD read ahead", 60_000);
 
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
     private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
@@ -84,6 +92,10 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
     private DBBPool.BBContainer m_segmentHeaderBuf = null;
     private DBBPool.BBContainer m_entryHeaderBuf = null;
+
+    // Entries to prefetch ahead of readers of the mapping, -1 if mapped reads are disabled
+    private int m_mappedReadAhead = -1;
+    private MappedRegion m_mapped = null;
     Boolean INJECT_PBD_CHECKSUM_ERROR = Boolean.getBoolean("INJECT_PBD_CHECKSUM_ERROR");
 
     PBDRegularSegment(long index, long id, File file, VoltLogger usageSpecificLog,
@@ -108,6 +120,11 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         }
     }
 
+    @Override
+    void enableMappedReads(int readAheadEntries) {
+        m_mappedReadAhead = Math.max(0, readAheadEntries);
+    }
+
     @Override
     int getNumEntries() throws IOException
     {
@@ -579,6 +596,11 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         return m_closed;
     }
 
+    @Override
+    boolean isMapped() {
+        return m_mapped != null;
+    }
+
     @Override
     void close() throws IOException {
         if (m_usageSpecificLog.isDebugEnabled()) {
@@ -590,6 +612,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
     private void closeReadersAndFile() throws IOException {
         m_readCursors.clear();
+        unmap();
         try {
             if (m_fc != null) {
                 m_fc.close();
@@ -601,6 +624,30 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         }
     }
 
+    /**
+     * @return the read-only mapping of this segment, or null if entries have to be read through the file channel
+     */
+    private MappedRegion mappedRegion() {
+        if (m_mapped == null && m_mappedReadAhead >= 0 && !m_isActive) {
+            try {
+                m_mapped = new MappedRegion(
+                        DBBPool.wrapMBB(m_fc.map(FileChannel.MapMode.READ_ONLY, 0, m_fc.size())));
+            } catch (IOException e) {
+                m_usageSpecificLog.warn("Unable to map " + m_file.getName() + ", reading it through the file channel",
+                        e);
+                m_mappedReadAhead = -1;
+            }
+        }
+        return m_mapped;
+    }
+
+    private void unmap() {
+        if (m_mapped != null) {
+            m_mapped.unmap();
+            m_mapped = null;
+        }
+    }
+
     @Override
     void setReadOnly() throws IOException {
         m_fc.reopen(false);
@@ -879,6 +926,14 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
                 return null;
             }
 
+            // Readers which may need to truncate the segment read through the channel
+            if (!canTruncate) {
+                MappedRegion mapped = mappedRegion();
+                if (mapped != null) {
+                    return pollMapped(mapped, factory);
+                }
+            }
+
             final long writePos = m_fc.position();
             m_fc.position(m_readOffset);
 
@@ -945,22 +1000,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
                 m_bytesRead += uncompressedLen;
                 m_objectReadIndex++;
 
-                return new DBBPool.DBBDelegateContainer(retcont) {
-                    private boolean m_discarded = false;
-
-                    @Override
-                    public void discard() {
-                        checkDoubleFree();
-                        if (m_discarded) {
-                            m_usageSpecificLog.error("PBD Container discarded more than once");
-                            return;
-                        }
-
-                        m_discarded = true;
-                        super.discard();
-                        m_discardCount++;
-                    }
-                };
+                return wrapPolled(retcont);
             } catch (IOException e) {
                 if (canTruncate) {
                     m_usageSpecificLog.warn(
@@ -976,6 +1016,89 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
             }
         }
 
+        /**
+         * Read the next entry straight out of the mapping of the segment, decompressing it directly into the
+         * consumer's buffer
+         */
+        private DBBPool.BBContainer pollMapped(MappedRegion mapped, OutputContainerFactory factory)
+                throws IOException {
+            final ByteBuffer region = mapped.m_container.b();
+            final int headerOffset = (int) m_readOffset;
+            if (headerOffset + ENTRY_HEADER_BYTES > region.limit()) {
+                throw new EOFException("EOF encountered reading " + m_file + " at position " + headerOffset
+                        + " expected to be able to read " + ENTRY_HEADER_BYTES + " more bytes");
+            }
+            final int length = region.getInt(headerOffset + ENTRY_HEADER_TOTAL_BYTES_OFFSET);
+            final int entryId = region.getInt(headerOffset + ENTRY_HEADER_ENTRY_ID_OFFSET);
+            final char flags = region.getChar(headerOffset + ENTRY_HEADER_FLAG_OFFSET);
+
+            if (length < 1 || length > PBDSegment.CHUNK_SIZE - PBDSegment.SEGMENT_HEADER_BYTES) {
+                handleCorruptHeader("File corruption detected in " + m_file.getName() + ": invalid entry length.",
+                        false);
+            }
+            if (entryId != m_segmentRandomId + m_objectReadIndex + 1) {
+                handleCorruptHeader("File corruption detected in " + m_file.getName() + ": invalid entry id.",
+                        false);
+            }
+            final int dataOffset = headerOffset + ENTRY_HEADER_BYTES;
+            if (dataOffset + length > region.limit()) {
+                throw new EOFException("EOF encountered reading " + m_file + " at position " + dataOffset
+                        + " expected to be able to read " + length + " more bytes");
+            }
+
+            final ByteBuffer entry = region.duplicate();
+            entry.limit(dataOffset + length).position(dataOffset);
+
+            final int uncompressedLen;
+            DBBPool.BBContainer retcont = null;
+            try {
+                if ((flags & FLAG_COMPRESSED) != 0) {
+                    uncompressedLen = CompressionService.uncompressedLength(entry);
+                    retcont = factory.getContainer(uncompressedLen);
+                    retcont.b().limit(uncompressedLen);
+                    CompressionService.decompressBuffer(entry, retcont.b());
+                } else {
+                    uncompressedLen = length;
+                    retcont = factory.getContainer(length);
+                    final ByteBuffer dest = retcont.b();
+                    dest.limit(length);
+                    dest.put(entry);
+                    dest.position(0);
+                }
+            } catch (Throwable t) {
+                if (retcont != null) {
+                    retcont.discard();
+                }
+                throw t;
+            }
+
+            m_readOffset = dataOffset + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+            mapped.readAhead((int) m_readOffset, m_mappedReadAhead);
+
+            return wrapPolled(retcont);
+        }
+
+        private DBBPool.BBContainer wrapPolled(DBBPool.BBContainer retcont) {
+            return new DBBPool.DBBDelegateContainer(retcont) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        m_usageSpecificLog.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    super.discard();
+                    m_discardCount++;
+                }
+            };
+        }
+
         private void handleCorruptHeader(String message, boolean canTruncate) throws IOException {
             if (canTruncate) {
                 message += " Truncate the file to last safe point.";
@@ -1027,6 +1150,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         }
 
         private void truncateToCurrentReadIndex() throws IOException {
+            unmap();
             boolean wasReadOnly = m_fc.reopen(true);
             try {
                 setFinal(false);
@@ -1113,6 +1237,80 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         }
     }
 
+    /**
+     * Read-only mapping of a segment which is no longer written to. Pages of the entries ahead of the readers are
+     * faulted in on a background thread so that readers do not stall on the disk.
+     */
+    private static final class MappedRegion {
+        final MBBContainer m_container;
+        // Offset of the end of the prefetched region, only used by the read ahead thread
+        private int m_prefetchedTo = 0;
+        // Reader offset which triggers the next prefetch, checked after every poll without locking
+        private volatile int m_prefetchTrigger = 0;
+        private final AtomicBoolean m_prefetchScheduled = new AtomicBoolean();
+        // Guarded by this, held only while a single page is touched so unmap() does not wait for a prefetch
+        private boolean m_unmapped = false;
+        @SuppressWarnings("unused")
+        private volatile int m_sink;
+
+        MappedRegion(MBBContainer container) {
+            m_container = container;
+        }
+
+        void readAhead(final int fromOffset, final int entries) {
+            if (entries == 0 || fromOffset < m_prefetchTrigger || !m_prefetchScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            s_readAheadService.execute(() -> prefetch(fromOffset, entries));
+        }
+
+        private void prefetch(int fromOffset, int entries) {
+            final ByteBuffer region;
+            synchronized (this) {
+                if (m_unmapped) {
+                    return;
+                }
+                region = m_container.b();
+            }
+            final int limit = region.limit();
+            // Walk the entry headers to find the end of the next entries
+            int end = fromOffset;
+            for (int i = 0; i < entries && end + ENTRY_HEADER_BYTES <= limit; i++) {
+                int length;
+                synchronized (this) {
+                    if (m_unmapped) {
+                        return;
+                    }
+                    length = region.getInt(end + ENTRY_HEADER_TOTAL_BYTES_OFFSET);
+                }
+                if (length < 1) {
+                    break;
+                }
+                end = (int) Math.min(limit, (long) end + ENTRY_HEADER_BYTES + length);
+            }
+            // Touch every page which has not been prefetched yet
+            int sink = 0;
+            final int pageSize = Bits.pageSize();
+            for (int pos = Math.max(fromOffset, m_prefetchedTo); pos < end; pos += pageSize) {
+                synchronized (this) {
+                    if (m_unmapped) {
+                        return;
+                    }
+                    sink += region.get(pos);
+                }
+            }
+            m_sink = sink;
+            m_prefetchedTo = Math.max(m_prefetchedTo, end);
+            m_prefetchTrigger = fromOffset + (end - fromOffset) / 2;
+            m_prefetchScheduled.set(false);
+        }
+
+        synchronized void unmap() {
+            m_unmapped = true;
+            m_container.discard();
+        }
+    }
+
     /**
      * A simple delegation wrapper around a {@link FileChannel} which tracks whether or not any exceptions were thrown
      * by the delegate
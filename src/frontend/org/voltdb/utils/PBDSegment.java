@@ -94,6 +94,14 @@ public abstract class PBDSegment<M> {
         return m_file;
     }
 
+    /**
+     * Read the entries of this segment through a read-only memory mapping once it is no longer being written to.
+     * Segments which do not support mapped reads ignore this.
+     *
+     * @param readAheadEntries number of entries ahead of a reader to prefetch from the mapping
+     */
+    void enableMappedReads(int readAheadEntries) {}
+
     abstract int getNumEntries() throws IOException;
 
     abstract boolean isBeingPolled();
@@ -127,6 +135,11 @@ public abstract class PBDSegment<M> {
 
     abstract boolean isClosed();
 
+    /**
+     * @return {@code true} if entries of this segment are read through a memory mapping
+     */
+    abstract boolean isMapped();
+
     abstract void close() throws IOException;
 
     abstract void sync() throws IOException;
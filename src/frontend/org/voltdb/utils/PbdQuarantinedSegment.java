@@ -81,6 +81,11 @@ class PbdQuarantinedSegment<M> extends PBDSegment<M> {
         return true;
     }
 
+    @Override
+    boolean isMapped() {
+        return false;
+    }
+
     @Override
     void close() {}
 
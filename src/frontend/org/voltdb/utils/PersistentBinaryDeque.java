@@ -422,6 +422,8 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
     private final String m_nonce;
     private final boolean m_compress;
     private final PBDSegmentFactory m_pbdSegmentFactory;
+    // Entries to read ahead of mapped segment readers, -1 if segments are read through their file channels
+    private final int m_mappedReadAhead;
     private boolean m_initializedFromExistingFiles = false;
 
     private final BinaryDequeSerializer<M> m_extraHeaderSerializer;
@@ -459,6 +461,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         m_extraHeader = builder.m_initialExtraHeader;
         m_extraHeaderSerializer = builder.m_extraHeaderSerializer;
         m_pbdSegmentFactory = builder.m_pbdSegmentFactory;
+        m_mappedReadAhead = builder.m_mappedReadAhead;
 
         if (!m_path.exists() || !m_path.canRead() || !m_path.canWrite() || !m_path.canExecute()
                 || !m_path.isDirectory()) {
@@ -727,8 +730,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         if (segmentName.m_quarantined) {
             segment = new PbdQuarantinedSegment<>(segmentName.m_file, segmentIndex, segmentId);
         } else {
-            segment = m_pbdSegmentFactory.create(segmentIndex, segmentId, segmentName.m_file, m_usageSpecificLog,
-                    m_extraHeaderSerializer);
+            segment = createSegment(segmentIndex, segmentId, segmentName.m_file);
 
             try {
                 // Delete preceding empty segment
@@ -878,6 +880,15 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         assertions();
     }
 
+    private PBDSegment<M> createSegment(long segmentIndex, long segmentId, File file) {
+        PBDSegment<M> segment = m_pbdSegmentFactory.create(segmentIndex, segmentId, file, m_usageSpecificLog,
+                m_extraHeaderSerializer);
+        if (m_mappedReadAhead >= 0) {
+            segment.enableMappedReads(m_mappedReadAhead);
+        }
+        return segment;
+    }
+
     private PBDSegment<M> initializeNewSegment(long segmentIndex, long segmentId, File file, String reason)
             throws IOException {
         return initializeNewSegment(segmentIndex, segmentId, file, reason, m_extraHeader);
@@ -886,8 +897,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
     private PBDSegment<M> initializeNewSegment(long segmentIndex, long segmentId, File file, String reason,
             M extraHeader)
             throws IOException {
-        PBDSegment<M> segment = m_pbdSegmentFactory.create(segmentIndex, segmentId, file, m_usageSpecificLog,
-                m_extraHeaderSerializer);
+        PBDSegment<M> segment = createSegment(segmentIndex, segmentId, file);
         try {
             segment.openNewSegment(m_compress);
             if (extraHeader != null) {
@@ -1351,6 +1361,18 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         return numOpen;
     }
 
+    // Used by test only
+    int numMappedSegments() {
+        int numMapped = 0;
+        for (PBDSegment<M> segment : m_segments.values()) {
+            if (segment.isMapped()) {
+                numMapped++;
+            }
+        }
+
+        return numMapped;
+    }
+
     @Override
     public synchronized void scanEntries(BinaryDequeScanner scanner) throws IOException
     {
@@ -1458,6 +1480,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         BinaryDequeSerializer<M> m_extraHeaderSerializer;
         M m_initialExtraHeader;
         PBDSegmentFactory m_pbdSegmentFactory = PBDRegularSegment::new;
+        int m_mappedReadAhead = -1;
 
         private Builder(String nonce, File path, VoltLogger logger) {
             super();
@@ -1472,6 +1495,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             m_initialExtraHeader = extraHeader;
             m_extraHeaderSerializer = serializer;
             m_pbdSegmentFactory = builder.m_pbdSegmentFactory;
+            m_mappedReadAhead = builder.m_mappedReadAhead;
         }
 
         /**
@@ -1500,6 +1524,23 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             return this;
         }
 
+        /**
+         * Set whether segments which are no longer being written to should be read through a read-only memory mapping
+         * instead of their file channels. Mapped segments prefetch the pages of the next {@code readAheadEntries}
+         * entries in the background so that readers catching up on a backlog do not block on the disk for every entry.
+         * Readers which validate entry checksums or may truncate a segment always read through the file channel.
+         * <p>
+         * Default: {@code false}
+         *
+         * @param enabled          {@code true} if mapped reads should be used.
+         * @param readAheadEntries Number of entries to prefetch ahead of a reader. {@code 0} disables prefetching
+         * @return An updated {@link Builder} instance
+         */
+        public Builder<M> mappedReads(boolean enabled, int readAheadEntries) {
+            m_mappedReadAhead = enabled ? Math.max(0, readAheadEntries) : -1;
+            return this;
+        }
+
         /**
          * Set the initial extra header metadata to be stored with entries as well as a {@link BinaryDequeSerializer} to
          * write and read that type of metadata.
@@ -36,6 +36,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hsqldb_voltpatches.types.Type;
 import org.voltcore.logging.VoltLogger;
@@ -454,10 +455,13 @@ public class FunctionForVoltDB extends FunctionSQL {
         private static Map<String, FunctionDescriptor> m_by_LC_name = new HashMap<>();
         /**
          * This is the lookup table for user defined SQL functions.
+         * Ad hoc planners read these tables concurrently while they are updated,
+         * DDL compilation holds QueryPlanner's function registry lock while it
+         * swaps them out.
          */
-        private static Map<String, FunctionDescriptor> m_defined_functions = new HashMap<>();
-        private static Map<Integer, FunctionDescriptor> m_defined_functions_by_id = new HashMap<>();
-        private static Map<String, Integer> m_names_to_ids = new HashMap<>();
+        private static volatile Map<String, FunctionDescriptor> m_defined_functions = new ConcurrentHashMap<>();
+        private static final Map<Integer, FunctionDescriptor> m_defined_functions_by_id = new ConcurrentHashMap<>();
+        private static final Map<String, Integer> m_names_to_ids = new ConcurrentHashMap<>();
         /**
          * This is a saved set of user defined SQL functions.
          * <ol>
@@ -472,7 +476,7 @@ public class FunctionForVoltDB extends FunctionSQL {
          *       function definitions.  So, we clear the m_saved_functions.<li>
          * </ol>
          */
-        private static Map<String, FunctionDescriptor> m_saved_functions = new HashMap<>();
+        private static volatile Map<String, FunctionDescriptor> m_saved_functions = new ConcurrentHashMap<>();
         static {
             // These are all permanent, SQL defined functions.  So, they go
             // into m_by_LC_name
@@ -516,23 +520,24 @@ public class FunctionForVoltDB extends FunctionSQL {
 
         public static void removeOneDefinedFunction(String functionName) {
             m_defined_functions.remove(functionName);
-            Integer functionId = m_names_to_ids.get(functionName);
-            m_names_to_ids.remove(functionName);
-            m_defined_functions_by_id.remove(functionId);
+            Integer functionId = m_names_to_ids.remove(functionName);
+            if (functionId != null) {
+                m_defined_functions_by_id.remove(functionId);
+            }
         }
 
         public static void clearSavedFunctions() {
-            m_saved_functions = new HashMap<>();
+            m_saved_functions = new ConcurrentHashMap<>();
         }
 
         public static void restoreSavedFunctions() {
             m_defined_functions = m_saved_functions;
-            m_saved_functions = new HashMap<>();
+            m_saved_functions = new ConcurrentHashMap<>();
         }
 
         public static void saveDefinedFunctions() {
             m_saved_functions = m_defined_functions;
-            m_defined_functions = new HashMap<>();
+            m_defined_functions = new ConcurrentHashMap<>();
         }
 
     }
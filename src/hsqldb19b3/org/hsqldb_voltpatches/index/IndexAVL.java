@@ -1698,6 +1698,14 @@ public class IndexAVL implements Index {
         return false;
     }
 
+    /**
+     * Only the explicit "_BTREE" suffix (IndexType.BTREE's SQL suffix) asks for
+     * a B+tree, so names like IDX_SUBTREE stay balanced tree indexes.
+     */
+    private static boolean isNameRequestingBTreeIndex(String name) {
+        return name.toLowerCase().endsWith("_btree");
+    }
+
     /**
      * VoltDB added method to get a non-catalog-dependent
      * representation of this HSQLDB object.
@@ -1737,6 +1745,7 @@ public class IndexAVL implements Index {
         String hsqlIndexName = getName().name;
         String voltdbIndexName = null;
         boolean isHashIndex = false;
+        boolean isBTreeIndex = false;
 
         if (indexConstraintMapping.containsKey(hsqlIndexName)) {
             // This is an index backing a constraint.
@@ -1751,6 +1760,7 @@ public class IndexAVL implements Index {
 
             if (!isAutoName) {
                 isHashIndex = isNameRequestingHashIndex(hsqlConstraintName);
+                isBTreeIndex = isNameRequestingBTreeIndex(hsqlConstraintName);
                 voltdbIndexName = HSQLInterface.AUTO_GEN_NAMED_CONSTRAINT_IDX + hsqlConstraintName;
             }
             else {
@@ -1789,11 +1799,13 @@ public class IndexAVL implements Index {
         else {
             // This is an index created via CREATE INDEX
             isHashIndex = isNameRequestingHashIndex(hsqlIndexName);
+            isBTreeIndex = isNameRequestingBTreeIndex(hsqlIndexName);
             voltdbIndexName = hsqlIndexName;
         }
 
         index.attributes.put("name", voltdbIndexName);
         index.attributes.put("ishashindex", isHashIndex ? "true" : "false");
+        index.attributes.put("isbtreeindex", isBTreeIndex ? "true" : "false");
 
         index.attributes.put("assumeunique", isAssumeUnique() ? "true" : "false");
         index.attributes.put("unique", isUnique() ? "true" : "false");
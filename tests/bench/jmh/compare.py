@@ -0,0 +1,79 @@
+#!/usr/bin/env python
+# This file is part of VoltDB.
+# Copyright (C) 2008-2020 VoltDB Inc.
+#
+# Permission is hereby granted, free of charge, to any person obtaining
+# a copy of this software and associated documentation files (the
+# "Software"), to deal in the Software without restriction, including
+# without limitation the rights to use, copy, modify, merge, publish,
+# distribute, sublicense, and/or sell copies of the Software, and to
+# permit persons to whom the Software is furnished to do so, subject to
+# the following conditions:
+#
+# The above copyright notice and this permission notice shall be
+# included in all copies or substantial portions of the Software.
+#
+# THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+# EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+# MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+# IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+# OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+# ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+# OTHER DEALINGS IN THE SOFTWARE.
+
+# Compare two JMH json result files, as written by "ant jmh", and report the
+# benchmarks whose score moved by more than the threshold. Exits with status 1
+# if any benchmark regressed so the comparison can gate a build.
+#
+#   compare.py baseline.json current.json [threshold percent, default 10]
+
+import json
+import sys
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for r in json.load(f):
+            params = r.get('params') or {}
+            key = r['benchmark'] + ''.join(
+                ' %s=%s' % (k, params[k]) for k in sorted(params))
+            metric = r['primaryMetric']
+            # JMH reports the error as "NaN" when there are too few iterations to compute it
+            error = float(metric['scoreError'])
+            if error != error:
+                error = 0.0
+            results[key] = (float(metric['score']), error, metric['scoreUnit'], r['mode'])
+        return results
+
+def main(args):
+    if len(args) < 2:
+        sys.stderr.write('usage: compare.py baseline.json current.json [threshold percent]\n')
+        return 2
+    baseline = load(args[0])
+    current = load(args[1])
+    threshold = float(args[2]) if len(args) > 2 else 10.0
+
+    regressions = 0
+    for key in sorted(set(baseline) | set(current)):
+        if key not in baseline or key not in current:
+            print('%-90s only in %s' % (key, 'baseline' if key in baseline else 'current'))
+            continue
+        old, oldError, unit, mode = baseline[key]
+        new, newError = current[key][0], current[key][1]
+        change = (new - old) * 100.0 / old if old else 0.0
+        # Throughput modes report ops per time, everything else reports time per op
+        slower = change < 0 if mode == 'thrpt' else change > 0
+        # Ignore moves that are within the combined error of both runs
+        significant = abs(new - old) > oldError + newError and abs(change) >= threshold
+        flag = ''
+        if significant:
+            flag = 'REGRESSION' if slower else 'improvement'
+            if slower:
+                regressions += 1
+        print('%-90s %12.3f -> %12.3f %-8s %+7.1f%% %s' % (key, old, new, unit, change, flag))
+
+    print('%d regression(s) beyond %.1f%%' % (regressions, threshold))
+    return 1 if regressions else 0
+
+if __name__ == '__main__':
+    sys.exit(main(sys.argv[1:]))
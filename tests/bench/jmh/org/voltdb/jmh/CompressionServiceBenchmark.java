@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.utils.CompressionService;
+
+/**
+ * Snappy compression through {@link CompressionService}, both the direct buffer
+ * path used by snapshots and export and the byte array path used for catalogs
+ * and rejoin. The input is a table-like mix of repeated and random bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionServiceBenchmark {
+
+    @Param({"4096", "1048576"})
+    public int size;
+
+    private byte[] m_raw;
+    private byte[] m_compressed;
+    private ByteBuffer m_rawDirect;
+    private ByteBuffer m_compressedDirect;
+    private ByteBuffer m_outputDirect;
+
+    @Setup
+    public void setup() throws IOException {
+        Random r = new Random(0);
+        m_raw = new byte[size];
+        for (int i = 0; i < size; i += 64) {
+            // Half of each 64 byte "row" is a fixed prefix, half is random
+            for (int j = 0; j < 32 && i + j < size; j++) {
+                m_raw[i + j] = (byte) j;
+            }
+            for (int j = 32; j < 64 && i + j < size; j++) {
+                m_raw[i + j] = (byte) r.nextInt();
+            }
+        }
+        m_rawDirect = ByteBuffer.allocateDirect(size);
+        m_rawDirect.put(m_raw).flip();
+        m_compressedDirect = ByteBuffer.allocateDirect(CompressionService.maxCompressedLength(size));
+        m_outputDirect = ByteBuffer.allocateDirect(Math.max(size, CompressionService.maxCompressedLength(size)));
+
+        CompressionService.compressBuffer(m_rawDirect, m_compressedDirect);
+        m_rawDirect.rewind();
+        m_compressed = new byte[m_compressedDirect.remaining()];
+        m_compressedDirect.duplicate().get(m_compressed);
+    }
+
+    @TearDown
+    public void tearDown() {
+        CompressionService.releaseThreadLocal();
+    }
+
+    @Benchmark
+    public int compressDirect() throws IOException {
+        m_rawDirect.rewind();
+        m_outputDirect.clear();
+        return CompressionService.compressBuffer(m_rawDirect, m_outputDirect);
+    }
+
+    @Benchmark
+    public int decompressDirect() throws IOException {
+        m_compressedDirect.rewind();
+        m_outputDirect.clear();
+        return CompressionService.decompressBuffer(m_compressedDirect, m_outputDirect);
+    }
+
+    @Benchmark
+    public byte[] compressBytes() throws IOException {
+        return CompressionService.compressBytes(m_raw);
+    }
+
+    @Benchmark
+    public byte[] decompressBytes() throws IOException {
+        return CompressionService.decompressBytes(m_compressed);
+    }
+}
@@ -0,0 +1,116 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * Primitive, string and varbinary encoding through {@link FastSerializer} and
+ * {@link FastDeserializer}. Each invocation writes or reads one record of
+ * {@code fields} values of each kind.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastSerializerBenchmark {
+
+    @Param({"4", "32"})
+    public int fields;
+
+    @Param({"16", "256"})
+    public int stringLength;
+
+    private FastSerializer m_serializer;
+    private String m_string;
+    private byte[] m_varbinary;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder(stringLength);
+        for (int i = 0; i < stringLength; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        m_string = sb.toString();
+        m_varbinary = new byte[stringLength];
+        for (int i = 0; i < m_varbinary.length; i++) {
+            m_varbinary[i] = (byte) i;
+        }
+
+        m_serializer = new FastSerializer();
+        writeRecord(m_serializer);
+        m_serialized = ByteBuffer.wrap(m_serializer.getBytes());
+        m_serializer.clear();
+    }
+
+    private void writeRecord(FastSerializer fs) throws IOException {
+        for (int i = 0; i < fields; i++) {
+            fs.writeInt(i);
+            fs.writeLong(i * 31L);
+            fs.writeDouble(i * 0.5);
+            fs.writeString(m_string);
+            fs.writeVarbinary(m_varbinary);
+        }
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        m_serializer.clear();
+        writeRecord(m_serializer);
+        return m_serializer.size();
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole bh) throws IOException {
+        m_serialized.rewind();
+        FastDeserializer fds = new FastDeserializer(m_serialized);
+        for (int i = 0; i < fields; i++) {
+            bh.consume(fds.readInt());
+            bh.consume(fds.readLong());
+            bh.consume(fds.readDouble());
+            bh.consume(fds.readString());
+            bh.consume(fds.readVarbinary());
+        }
+    }
+}
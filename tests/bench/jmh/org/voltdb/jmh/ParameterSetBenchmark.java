@@ -0,0 +1,104 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.ParameterSet;
+import org.voltdb.types.TimestampType;
+
+/**
+ * {@link ParameterSet} flattening and parsing for a typical mix of procedure
+ * parameters: scalars, a string, a decimal, a timestamp and two arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterSetBenchmark {
+
+    private ParameterSet m_params;
+    private ByteBuffer m_flattenBuffer;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        long[] longs = new long[64];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = i * 7919L;
+        }
+        m_params = ParameterSet.fromArrayNoCopy(
+                (byte) 1,
+                (short) 2,
+                3,
+                4L,
+                5.5,
+                "a string parameter of moderate length",
+                new BigDecimal("12345.678900000000"),
+                new TimestampType(1_500_000_000_000_000L),
+                new byte[128],
+                longs);
+        m_flattenBuffer = ByteBuffer.allocate(m_params.getSerializedSize());
+        m_serialized = ByteBuffer.allocate(m_params.getSerializedSize());
+        m_params.flattenToBuffer(m_serialized);
+        m_serialized.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer flatten() throws IOException {
+        m_flattenBuffer.clear();
+        m_params.flattenToBuffer(m_flattenBuffer);
+        return m_flattenBuffer;
+    }
+
+    @Benchmark
+    public ParameterSet parse() throws IOException {
+        m_serialized.rewind();
+        return ParameterSet.fromByteBuffer(m_serialized);
+    }
+
+    @Benchmark
+    public int sizeAndFlatten() throws IOException {
+        // The client and initiator paths build a fresh set and size it before every flatten
+        ParameterSet params = ParameterSet.fromArrayNoCopy(m_params.toArray());
+        ByteBuffer buf = ByteBuffer.allocate(params.getSerializedSize());
+        params.flattenToBuffer(buf);
+        return buf.position();
+    }
+}
@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * {@link VoltTable} construction with {@code addRow}, row iteration with typed
+ * getters, and the flatten/wrap round trip a table takes through a response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltTableBenchmark {
+
+    private static final VoltTable.ColumnInfo[] COLUMNS = new VoltTable.ColumnInfo[] {
+            new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+            new VoltTable.ColumnInfo("VALUE", VoltType.FLOAT),
+            new VoltTable.ColumnInfo("COUNT", VoltType.INTEGER)
+    };
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    private VoltTable m_table;
+    private ByteBuffer m_flattenBuffer;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() {
+        m_table = build();
+        m_flattenBuffer = ByteBuffer.allocate(m_table.getSerializedSize());
+        m_serialized = ByteBuffer.allocate(m_table.getSerializedSize());
+        m_table.flattenToBuffer(m_serialized);
+        m_serialized.flip();
+    }
+
+    private VoltTable build() {
+        VoltTable table = new VoltTable(COLUMNS);
+        for (int i = 0; i < rows; i++) {
+            table.addRow((long) i, "row name " + (i % 100), i * 1.5, i);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public VoltTable construct() {
+        return build();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        m_table.resetRowPosition();
+        while (m_table.advanceRow()) {
+            bh.consume(m_table.getLong(0));
+            bh.consume(m_table.getString(1));
+            bh.consume(m_table.getDouble(2));
+            bh.consume(m_table.getLong(3));
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer flatten() {
+        m_flattenBuffer.clear();
+        m_table.flattenToBuffer(m_flattenBuffer);
+        return m_flattenBuffer;
+    }
+
+    @Benchmark
+    public void wrapAndIterate(Blackhole bh) {
+        // Skip the length prefix written by flattenToBuffer
+        m_serialized.position(4);
+        VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(m_serialized.slice(), true);
+        while (table.advanceRow()) {
+            bh.consume(table.getLong(0));
+            bh.consume(table.getString(1));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <vector>
+
+#include "harness.h"
+
+#include "common/SQLException.h"
+#include "common/TupleSchemaBuilder.h"
+#include "common/ValueFactory.hpp"
+#include "common/tabletuple.h"
+#include "expressions/comparisonexpression.h"
+#include "expressions/constantvalueexpression.h"
+#include "expressions/expressionutil.h"
+#include "expressions/operatorexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "expressions/vectorizedexpression.h"
+
+using namespace voltdb;
+
+static const int NUM_ROWS = TupleBatch::CAPACITY;
+
+/*
+ * Rows of (INTEGER a, BIGINT b, DOUBLE c, VARCHAR d), every column
+ * nullable. Every seventh row has a NULL a and every eleventh a NULL c.
+ */
+class VectorizedExpressionTest : public Test {
+public:
+    VectorizedExpressionTest() {
+        TupleSchemaBuilder builder(4);
+        builder.setColumnAtIndex(0, ValueType::tINTEGER, 4, true, false);
+        builder.setColumnAtIndex(1, ValueType::tBIGINT, 8, true, false);
+        builder.setColumnAtIndex(2, ValueType::tDOUBLE, 8, true, false);
+        builder.setColumnAtIndex(3, ValueType::tVARCHAR, 8, true, false);
+        m_schema = builder.build();
+        m_tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+        m_storage.resize(NUM_ROWS * m_tupleLength);
+        for (int i = 0; i < NUM_ROWS; ++i) {
+            TableTuple tuple(&m_storage[i * m_tupleLength], m_schema);
+            tuple.setNValue(0, i % 7 == 0 ? NValue::getNullValue(ValueType::tINTEGER) :
+                    ValueFactory::getIntegerValue(i - NUM_ROWS / 2));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(int64_t(i) * 1000));
+            tuple.setNValue(2, i % 11 == 0 ? NValue::getNullValue(ValueType::tDOUBLE) :
+                    ValueFactory::getDoubleValue(i / 4.0));
+            tuple.setNValue(3, NValue::getNullValue(ValueType::tVARCHAR));
+            m_batch.add(tuple);
+        }
+    }
+
+    ~VectorizedExpressionTest() {
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+protected:
+    TableTuple tupleAt(int row) {
+        return TableTuple(m_batch.address(row), m_schema);
+    }
+
+    /** Check that the batch result of every row matches the scalar eval() */
+    void checkMatchesScalar(AbstractExpression* expr) {
+        std::unique_ptr<VectorizedExpression> vectorized = VectorizedExpression::compile(expr, m_schema);
+        ASSERT_TRUE(vectorized.get() != NULL);
+        vectorized->evaluate(m_batch);
+        for (int row = 0; row < m_batch.size(); ++row) {
+            TableTuple tuple = tupleAt(row);
+            NValue expected = expr->eval(&tuple, NULL);
+            NValue actual = vectorized->value(row, tuple);
+            EXPECT_EQ(ValuePeeker::peekValueType(expected), ValuePeeker::peekValueType(actual));
+            EXPECT_EQ(expected.isNull(), actual.isNull());
+            if ( ! expected.isNull() && ! actual.isNull()) {
+                EXPECT_EQ(0, expected.compare(actual));
+            }
+        }
+    }
+
+    TupleSchema* m_schema;
+    int m_tupleLength;
+    std::vector<char> m_storage;
+    TupleBatch m_batch;
+};
+
+TEST_F(VectorizedExpressionTest, Arithmetic) {
+    // a * 3 + b
+    AbstractExpression* product = ExpressionUtil::operatorFactory(EXPRESSION_TYPE_OPERATOR_MULTIPLY,
+            new TupleValueExpression(0, 0), new ConstantValueExpression(ValueFactory::getIntegerValue(3)));
+    std::unique_ptr<AbstractExpression> sum(ExpressionUtil::operatorFactory(EXPRESSION_TYPE_OPERATOR_PLUS,
+            product, new TupleValueExpression(0, 1)));
+    checkMatchesScalar(sum.get());
+
+    // c / b, mixing DOUBLE and BIGINT
+    std::unique_ptr<AbstractExpression> quotient(ExpressionUtil::operatorFactory(EXPRESSION_TYPE_OPERATOR_DIVIDE,
+            new TupleValueExpression(0, 2), new TupleValueExpression(0, 1)));
+    checkMatchesScalar(quotient.get());
+}
+
+TEST_F(VectorizedExpressionTest, ThreeValuedLogic) {
+    // (a < 0 AND c > 10.0) OR (b >= 5000 AND NOT (a IS NULL))
+    AbstractExpression* left = ExpressionUtil::conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_AND,
+            new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN,
+                    new TupleValueExpression(0, 0), new ConstantValueExpression(ValueFactory::getBigIntValue(0))),
+            new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                    new TupleValueExpression(0, 2), new ConstantValueExpression(ValueFactory::getDoubleValue(10.0))));
+    AbstractExpression* right = ExpressionUtil::conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_AND,
+            new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO,
+                    new TupleValueExpression(0, 1), new ConstantValueExpression(ValueFactory::getBigIntValue(5000))),
+            new OperatorNotExpression(new OperatorIsNullExpression(new TupleValueExpression(0, 0))));
+    std::unique_ptr<AbstractExpression> predicate(ExpressionUtil::conjunctionFactory(
+            EXPRESSION_TYPE_CONJUNCTION_OR, left, right));
+    checkMatchesScalar(predicate.get());
+
+    std::unique_ptr<VectorizedExpression> vectorized = VectorizedExpression::compile(predicate.get(), m_schema);
+    ASSERT_TRUE(vectorized.get() != NULL);
+    TupleBatch selection = m_batch;
+    bool recheck[TupleBatch::CAPACITY];
+    vectorized->select(selection, recheck);
+    int expected = 0;
+    for (int row = 0; row < m_batch.size(); ++row) {
+        TableTuple tuple = tupleAt(row);
+        if (predicate->eval(&tuple, NULL).isTrue()) {
+            ASSERT_TRUE(expected < selection.size());
+            EXPECT_EQ(m_batch.address(row), selection.address(expected));
+            EXPECT_FALSE(recheck[expected]);
+            ++expected;
+        }
+    }
+    EXPECT_EQ(expected, selection.size());
+}
+
+TEST_F(VectorizedExpressionTest, ErrorsAreDeferredToTheRow) {
+    // b * b overflows BIGINT for the later rows, but only consuming such a row raises the error.
+    std::unique_ptr<AbstractExpression> square(ExpressionUtil::operatorFactory(EXPRESSION_TYPE_OPERATOR_MULTIPLY,
+            new TupleValueExpression(0, 1), new ConstantValueExpression(ValueFactory::getBigIntValue(INT64_MAX / 2000))));
+    std::unique_ptr<AbstractExpression> predicate(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+            square.release(), new ConstantValueExpression(ValueFactory::getBigIntValue(0))));
+    std::unique_ptr<VectorizedExpression> vectorized = VectorizedExpression::compile(predicate.get(), m_schema);
+    ASSERT_TRUE(vectorized.get() != NULL);
+
+    TupleBatch selection = m_batch;
+    bool recheck[TupleBatch::CAPACITY];
+    vectorized->select(selection, recheck);
+    // Row 0 is 0 * x, rows 1 and 2 fit, every later row overflows.
+    ASSERT_EQ(m_batch.size() - 1, selection.size());
+    EXPECT_FALSE(recheck[0]);
+    EXPECT_FALSE(recheck[1]);
+    EXPECT_TRUE(recheck[2]);
+    TableTuple overflowing(selection.address(2), m_schema);
+    bool thrown = false;
+    try {
+        vectorized->passes(overflowing);
+    } catch (const SQLException&) {
+        thrown = true;
+    }
+    EXPECT_TRUE(thrown);
+}
+
+TEST_F(VectorizedExpressionTest, UnsupportedTrees) {
+    // VARCHAR columns and the second tuple of a join are left to eval().
+    std::unique_ptr<AbstractExpression> varcharColumn(new TupleValueExpression(0, 3));
+    EXPECT_TRUE(VectorizedExpression::compile(varcharColumn.get(), m_schema).get() == NULL);
+
+    std::unique_ptr<AbstractExpression> innerColumn(new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL,
+            new TupleValueExpression(0, 0), new TupleValueExpression(1, 0)));
+    EXPECT_TRUE(VectorizedExpression::compile(innerColumn.get(), m_schema).get() == NULL);
+}
+
+int main() {
+     return TestSuite::globalInstance()->runAll();
+}
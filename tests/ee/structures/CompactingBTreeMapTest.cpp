@@ -0,0 +1,310 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include <iostream>
+#include <map>
+#include <algorithm>
+#include <cstdlib>
+#include <cstdio>
+#include <vector>
+#include "harness.h"
+#include "structures/CompactingBTreeMap.h"
+
+using namespace voltdb;
+using namespace std;
+
+class StringComparator {
+public:
+    inline int operator()(const std::string &lhs, const std::string &rhs) const {
+        return lhs.compare(rhs);
+    }
+
+    int compareWithoutPointer(const std::string &lhs, const std::string &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+class IntComparator {
+public:
+    inline int operator()(const int &lhs, const int &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+
+    int compareWithoutPointer(const int &lhs, const int &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+typedef CompactingBTreeMap<NormalKeyValuePair<int, int>, IntComparator, true> IntMap;
+typedef CompactingBTreeMap<NormalKeyValuePair<std::string, std::string>, StringComparator, true> StringMap;
+
+class CompactingBTreeMapTest : public Test {
+public:
+    std::string keyFromInt(int i) {
+        char buf[256];
+        snprintf(buf, 256, "%010d", i);
+        return std::string(buf);
+    }
+
+    template<typename StlMap, typename VoltMap>
+    void verifyContents(StlMap &stl, VoltMap &volt) {
+        ASSERT_EQ(stl.size(), volt.size());
+        typename VoltMap::iterator volti = volt.begin();
+        for (typename StlMap::iterator stli = stl.begin(); stli != stl.end(); stli++) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_TRUE(stli->first == volti.key());
+            ASSERT_TRUE(stli->second == volti.value());
+            volti.moveNext();
+        }
+        ASSERT_TRUE(volti.isEnd());
+
+        // and backwards
+        volti = volt.rbegin();
+        for (typename StlMap::reverse_iterator stli = stl.rbegin(); stli != stl.rend(); stli++) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_TRUE(stli->first == volti.key());
+            volti.movePrev();
+        }
+        ASSERT_TRUE(volti.isEnd());
+        ASSERT_TRUE(volt.verify());
+        ASSERT_TRUE(volt.verifyRank());
+    }
+};
+
+TEST_F(CompactingBTreeMapTest, Bounds) {
+    IntMap volt(true, IntComparator());
+
+    ASSERT_TRUE(volt.lowerBound(1).isEnd());
+    ASSERT_TRUE(volt.upperBound(1).isEnd());
+
+    volt.insert(std::pair<int,int>(1,1));
+
+    ASSERT_TRUE(volt.lowerBound(0).key() == 1);
+    ASSERT_TRUE(volt.lowerBound(1).key() == 1);
+    ASSERT_TRUE(volt.lowerBound(2).isEnd());
+
+    ASSERT_TRUE(volt.upperBound(0).key() == 1);
+    ASSERT_TRUE(volt.upperBound(1).isEnd());
+    ASSERT_TRUE(volt.upperBound(2).isEnd());
+
+    // enough to take several levels of nodes
+    for (int i = 3; i <= 99999; i += 2) {
+        ASSERT_TRUE(volt.insert(std::pair<int,int>(i,i)));
+    }
+    ASSERT_FALSE(volt.insert(std::pair<int,int>(501,0)));
+    ASSERT_TRUE(volt.verify());
+
+    ASSERT_TRUE(volt.lowerBound(99999).key() == 99999);
+    ASSERT_TRUE(volt.upperBound(99999).isEnd());
+    ASSERT_TRUE(volt.lowerBound(100000).isEnd());
+    ASSERT_TRUE(volt.upperBound(100000).isEnd());
+
+    for (int i = 0; i <= 99998; i += 2) {
+        ASSERT_TRUE(volt.upperBound(i).key() == i + 1);
+        ASSERT_TRUE(volt.lowerBound(i).key() == i + 1);
+        ASSERT_TRUE(volt.find(i).isEnd());
+    }
+    for (int i = 1; i <= 99998; i += 2) {
+        ASSERT_TRUE(volt.upperBound(i).key() == i + 2);
+        ASSERT_TRUE(volt.lowerBound(i).key() == i);
+        ASSERT_EQ(volt.rankLower(i), (i + 1) / 2);
+        ASSERT_TRUE(volt.findRank((i + 1) / 2).key() == i);
+    }
+
+    // test range
+    CompactingBTreeMap<NormalKeyValuePair<int, int>, IntComparator> volt2(false, IntComparator());
+
+    volt2.insert(std::pair<int,int>(0,0));
+    volt2.insert(std::pair<int,int>(1,666));
+    volt2.insert(std::pair<int,int>(1,1));
+    volt2.insert(std::pair<int,int>(1,777));
+    volt2.insert(std::pair<int,int>(2,2));
+    volt2.insert(std::pair<int,int>(3,888));
+    volt2.insert(std::pair<int,int>(3,3));
+    volt2.insert(std::pair<int,int>(3,3));
+    volt2.insert(std::pair<int,int>(3,999));
+
+    auto p = volt2.equalRange(1);
+    ASSERT_TRUE(p.first.value() == 666);
+    ASSERT_TRUE(p.second.value() == 2);
+
+    p = volt2.equalRange(3);
+    ASSERT_TRUE(p.first.value() == 888);
+    ASSERT_TRUE(p.second.isEnd());
+
+    p = volt2.equalRange(2);
+    ASSERT_TRUE(p.first.value() == 2);
+    ASSERT_TRUE(p.second.value() == 888);
+}
+
+TEST_F(CompactingBTreeMapTest, RandomUniqueRank) {
+    const int ITERATIONS = 200000;
+    const int BIGGEST_VAL = 20000;
+
+    std::map<int, int> stl;
+    IntMap volt(true, IntComparator());
+
+    srand(0);
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 50000) == 0) {
+            verifyContents(stl, volt);
+        }
+
+        int val = rand() % BIGGEST_VAL;
+        switch (rand() % 5) {
+        case 0:
+        case 1: {
+            bool stlSuccess = stl.insert(std::pair<int,int>(val, i)).second;
+            const int *conflict = volt.insert(val, i);
+            ASSERT_EQ(stlSuccess, conflict == NULL);
+            if (!stlSuccess) {
+                ASSERT_EQ(stl[val], *conflict);
+            }
+            break;
+        }
+        case 2: {
+            ASSERT_EQ(stl.erase(val) == 1, volt.erase(val));
+            break;
+        }
+        case 3: {
+            IntMap::iterator volti = volt.lowerBound(val);
+            std::map<int, int>::iterator stli = stl.lower_bound(val);
+            if (stli == stl.end()) {
+                ASSERT_TRUE(volti.isEnd());
+            }
+            else {
+                ASSERT_EQ(stli->first, volti.key());
+                if (stli->first == val) {
+                    ASSERT_EQ(std::distance(stl.begin(), stli) + 1, volt.rankLower(val));
+                    ASSERT_TRUE(volt.erase(volti));
+                    stl.erase(stli);
+                }
+            }
+            break;
+        }
+        default: {
+            IntMap::iterator volti = volt.upperBound(val);
+            std::map<int, int>::iterator stli = stl.upper_bound(val);
+            ASSERT_EQ(stli == stl.end(), volti.isEnd());
+            if (stli != stl.end()) {
+                ASSERT_EQ(stli->first, volti.key());
+                ASSERT_EQ(stli->second, volti.value());
+            }
+        }
+        }
+    }
+    verifyContents(stl, volt);
+}
+
+TEST_F(CompactingBTreeMapTest, RandomMultiRank) {
+    const int ITERATIONS = 2000;
+    const int BIGGEST_VAL = 300;
+
+    std::multimap<std::string, std::string> stl;
+    StringMap volt(false, StringComparator());
+
+    srand(1);
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 200) == 0) {
+            verifyContents(stl, volt);
+        }
+
+        int op = rand() % 3;
+        for (int j = 0; j < 50; j++) {
+            std::string val = keyFromInt(rand() % BIGGEST_VAL);
+            if (op == 0 || op == 1) {
+                std::string value = keyFromInt(rand());
+                stl.insert(std::pair<std::string, std::string>(val, value));
+                ASSERT_TRUE(volt.insert(std::pair<std::string, std::string>(val, value)));
+            }
+            else {
+                std::multimap<std::string, std::string>::iterator stli = stl.find(val);
+                StringMap::iterator volti = volt.find(val);
+                if (stli == stl.end()) {
+                    ASSERT_TRUE(volti.isEnd());
+                    ASSERT_FALSE(volt.erase(val));
+                    continue;
+                }
+                // duplicates keep their insertion order
+                ASSERT_TRUE(stli->second == volti.value());
+                ASSERT_EQ(std::distance(stl.begin(), stli) + 1, volt.rankLower(val));
+                ASSERT_EQ(std::distance(stl.begin(), stl.upper_bound(val)), volt.rankUpper(val));
+                stl.erase(stli);
+                if (j % 2 == 0) {
+                    ASSERT_TRUE(volt.erase(val));
+                }
+                else {
+                    ASSERT_TRUE(volt.erase(volti));
+                }
+            }
+        }
+    }
+    verifyContents(stl, volt);
+
+    // drain it
+    while (!stl.empty()) {
+        std::string val = stl.begin()->first;
+        stl.erase(stl.begin());
+        ASSERT_TRUE(volt.erase(val));
+    }
+    verifyContents(stl, volt);
+    ASSERT_EQ(0, volt.bytesAllocated());
+}
+
+TEST_F(CompactingBTreeMapTest, PackingAndCompaction) {
+    const int COUNT = 100000;
+
+    CompactingMap<NormalKeyValuePair<int, int>, IntComparator, true> rb(true, IntComparator());
+    IntMap volt(true, IntComparator());
+
+    // appending keeps the leaves full
+    for (int i = 0; i < COUNT; i++) {
+        rb.insert(i, i);
+        volt.insert(i, i);
+    }
+    ASSERT_TRUE(volt.verify());
+    size_t full = volt.bytesAllocated();
+    ASSERT_TRUE(full * 4 < rb.bytesAllocated());
+
+    // deleting in random order gives memory back
+    std::vector<int> keys;
+    for (int i = 0; i < COUNT; i++) {
+        keys.push_back(i);
+    }
+    srand(2);
+    for (int i = COUNT - 1; i > 0; i--) {
+        std::swap(keys[i], keys[rand() % (i + 1)]);
+    }
+    for (int i = 0; i < COUNT; i++) {
+        ASSERT_TRUE(volt.erase(keys[i]));
+        if (i == COUNT / 2) {
+            ASSERT_TRUE(volt.verify());
+            ASSERT_TRUE(volt.verifyRank());
+            ASSERT_TRUE(volt.bytesAllocated() < full);
+        }
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_EQ(0, volt.size());
+    ASSERT_TRUE(volt.begin().isEnd());
+    ASSERT_TRUE(volt.rbegin().isEnd());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
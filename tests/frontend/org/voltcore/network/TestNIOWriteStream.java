@@ -452,4 +452,56 @@ public class TestNIOWriteStream extends TestCase {
         assertEquals(0, queue.get());
     }
 
+    public void testLargeMessageSerializedDirectly() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        final int size = NIOWriteStreamBase.DIRECT_SERIALIZATION_THRESHOLD * 3 + 7;
+        ByteBuffer tmp = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            tmp.put((byte) i);
+        }
+        tmp.flip();
+        wstream.enqueue(tmp);
+        wstream.enqueue(ByteBuffer.allocate(2));
+        wstream.serializeQueuedWrites(pool);
+
+        // The large message is queued whole in its own direct buffer, the small
+        // one that follows goes into a regular network buffer
+        assertEquals(2, wstream.getOutstandingMessageCount());
+        ByteBuffer large = wstream.m_queuedBuffers.peekFirst().b().duplicate();
+        assertTrue(large.isDirect());
+        large.flip();
+        assertEquals(size, large.remaining());
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) i, large.get());
+        }
+
+        assertEquals(size + 2, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        wstream.shutdown();
+    }
+
+    public void testOversizedMessageNotPooled() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        // Pooled buffers are rounded up to a power of 2, an oversized message
+        // gets an unpooled buffer of its exact size
+        final int size = NIOWriteStreamBase.MAX_POOLED_DIRECT_SERIALIZATION_SIZE + 7;
+        wstream.enqueue(ByteBuffer.allocate(size));
+        wstream.serializeQueuedWrites(pool);
+        assertEquals(1, wstream.getOutstandingMessageCount());
+        ByteBuffer large = wstream.m_queuedBuffers.peekFirst().b();
+        assertTrue(large.isDirect());
+        assertEquals(size, large.capacity());
+        assertEquals(size, large.position());
+
+        assertEquals(size, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        wstream.shutdown();
+    }
+
 }
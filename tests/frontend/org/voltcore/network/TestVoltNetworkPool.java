@@ -0,0 +1,199 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.Pair;
+
+import com.google_voltpatches.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+public class TestVoltNetworkPool extends TestCase {
+
+    private static final int MESSAGE_SIZE = 10 * 1024;
+
+    ServerSocketChannel ssc;
+    VoltNetworkPool pool;
+    final List<SocketChannel> rawChannels = new ArrayList<>();
+    final List<CountingHandler> handlers = new ArrayList<>();
+
+    private static class CountingHandler extends VoltProtocolHandler {
+        final AtomicLong bytesReceived = new AtomicLong();
+        volatile VoltPort port;
+
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            bytesReceived.addAndGet(message.capacity() + 4);
+        }
+
+        @Override
+        public void started(Connection c) {
+            port = (VoltPort)c;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        ssc = ServerSocketChannel.open();
+        ssc.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        pool = new VoltNetworkPool(2, 0, null, "Test");
+        pool.start();
+        // Ports are placed round robin, 0 and 2 land on the first network, 1 and 3 on the second
+        for (int ii = 0; ii < 4; ii++) {
+            SocketChannel raw = SocketChannel.open(ssc.getLocalAddress());
+            SocketChannel accepted = ssc.accept();
+            CountingHandler handler = new CountingHandler();
+            pool.registerChannel(accepted, handler, null, null);
+            rawChannels.add(raw);
+            handlers.add(handler);
+        }
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        for (SocketChannel raw : rawChannels) {
+            raw.close();
+        }
+        ssc.close();
+    }
+
+    private void send(int connection, long bytes) throws Exception {
+        final CountingHandler handler = handlers.get(connection);
+        final long expected = handler.bytesReceived.get() + bytes;
+        ByteBuffer buf = ByteBuffer.allocate(MESSAGE_SIZE);
+        for (long sent = 0; sent < bytes; sent += MESSAGE_SIZE) {
+            buf.clear();
+            buf.putInt(MESSAGE_SIZE - 4);
+            buf.position(0);
+            while (buf.hasRemaining()) {
+                rawChannels.get(connection).write(buf);
+            }
+        }
+        final long start = System.currentTimeMillis();
+        while (handler.bytesReceived.get() < expected) {
+            assertTrue("Timed out waiting for bytes", System.currentTimeMillis() - start < 60000);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testRebalanceMovesBusyPort() throws Exception {
+        final VoltNetwork first = handlers.get(0).port.m_network;
+        final VoltNetwork second = handlers.get(1).port.m_network;
+        assertNotSame(first, second);
+        assertSame(first, handlers.get(2).port.m_network);
+        assertSame(second, handlers.get(3).port.m_network);
+
+        // Nothing moved yet, nothing to rebalance
+        pool.rebalance(0);
+
+        send(0, 100 * MESSAGE_SIZE);
+        send(2, 50 * MESSAGE_SIZE);
+        send(1, 20 * MESSAGE_SIZE);
+        pool.rebalance(0);
+
+        // The lighter of the two busy ports is the one that evens out the load
+        final long start = System.currentTimeMillis();
+        while (handlers.get(2).port.m_network != second) {
+            assertTrue("Timed out waiting for port to move", System.currentTimeMillis() - start < 60000);
+            Thread.sleep(1);
+        }
+        assertSame(first, handlers.get(0).port.m_network);
+        assertEquals(1, first.numPorts());
+        assertEquals(3, second.numPorts());
+
+        // The moved port keeps reading and writing from its new network
+        send(2, 10 * MESSAGE_SIZE);
+        ByteBuffer response = ByteBuffer.allocate(MESSAGE_SIZE);
+        response.putInt(MESSAGE_SIZE - 4);
+        response.position(0);
+        handlers.get(2).port.writeStream().enqueue(response.duplicate());
+        ByteBuffer received = ByteBuffer.allocate(MESSAGE_SIZE);
+        while (received.hasRemaining()) {
+            rawChannels.get(2).read(received);
+        }
+        received.flip();
+        assertEquals(MESSAGE_SIZE - 4, received.getInt());
+    }
+
+    @Test
+    public void testSelectorStats() throws Exception {
+        send(0, 10 * MESSAGE_SIZE);
+        Map<Long, Pair<String, long[]>> stats = pool.getIOStats(false, ImmutableList.<VoltNetworkPool.IOStatsIntf>of());
+        Pair<String, long[]> first = stats.get(VoltNetwork.SELECTOR_STATS_KEY_BASE);
+        Pair<String, long[]> second = stats.get(VoltNetwork.SELECTOR_STATS_KEY_BASE - 1);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(8, first.getSecond().length);
+        assertTrue(first.getSecond()[0] >= 10 * MESSAGE_SIZE);
+        // select loops and ready keys
+        assertTrue(first.getSecond()[4] > 0);
+        assertTrue(first.getSecond()[5] > 0);
+        // connection and global rows keep their shape
+        assertEquals(4, stats.get(-1L).getSecond().length);
+        assertEquals(4, stats.get(handlers.get(0).connectionId()).getSecond().length);
+    }
+}
@@ -37,6 +37,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -46,6 +47,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
@@ -77,6 +79,7 @@ import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.common.Constants;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.messaging.InitiateResponseMessage;
@@ -440,6 +443,73 @@ public class TestClientInterface {
         assertEquals(ClientResponse.GRACEFUL_FAILURE, resp.getStatus());
     }
 
+    /**
+     * Create a message coalescing the given invocations, each with its length prefix.
+     */
+    private static ByteBuffer createBatch(ByteBuffer... invocations) {
+        int size = 1 + 4;
+        for (ByteBuffer invocation : invocations) {
+            size += 4 + invocation.remaining();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(Constants.INVOCATION_BATCH);
+        buf.putInt(invocations.length);
+        for (ByteBuffer invocation : invocations) {
+            buf.putInt(invocation.remaining());
+            buf.put(invocation);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    @Test
+    public void testBatchedInvocations() throws Exception {
+        ByteBuffer msg = createBatch(createMsg("hello", 1), createMsg("hellooooo", 1), createMsg("hellorw", 2));
+        List<ClientResponseImpl> errors = m_ci.handleBatchRead(msg, m_handler, m_cxn);
+        assertNotNull(errors);
+        assertEquals(1, errors.size());
+        assertEquals(ClientResponse.UNEXPECTED_FAILURE, errors.get(0).getStatus());
+
+        ArgumentCaptor<Iv2InitiateTaskMessage> messageCaptor =
+            ArgumentCaptor.forClass(Iv2InitiateTaskMessage.class);
+        verify(m_messenger, times(2)).send(anyLong(), messageCaptor.capture());
+        List<Iv2InitiateTaskMessage> messages = messageCaptor.getAllValues();
+        assertEquals("hello", messages.get(0).getStoredProcedureName());
+        assertEquals("hellorw", messages.get(1).getStoredProcedureName());
+        assertEquals(2, messages.get(1).getStoredProcedureInvocation().getParameterAtIndex(0));
+    }
+
+    @Test
+    public void testMalformedBatch() throws Exception {
+        ByteBuffer invocation = createMsg("hello", 1);
+        final int length = invocation.remaining();
+
+        // lengths past the end of the message, negative, or leaving bytes behind
+        ByteBuffer overrun = createBatch(createMsg("hello", 1), invocation);
+        overrun.putInt(1 + 4 + 4 + length, length + 1);
+        ByteBuffer negative = createBatch(createMsg("hello", 1));
+        negative.putInt(1 + 4, -1);
+        ByteBuffer extraCount = createBatch(createMsg("hello", 1));
+        extraCount.putInt(1, 2);
+        ByteBuffer trailing = ByteBuffer.allocate(1 + 4 + 4 + length + 1);
+        trailing.put(Constants.INVOCATION_BATCH).putInt(1).putInt(length).put(createMsg("hello", 1));
+        trailing.position(0);
+
+        for (ByteBuffer msg : new ByteBuffer[] { overrun, negative, extraCount, trailing }) {
+            assertNull(m_ci.handleBatchRead(msg, m_handler, m_cxn));
+        }
+        // nothing of a malformed batch is dispatched
+        verify(m_messenger, never()).send(anyLong(), any(VoltMessage.class));
+
+        // and the connection it came from is closed
+        Connection c = mock(Connection.class);
+        ClientInputHandler handler = m_ci.new ClientInputHandler("", false);
+        ByteBuffer truncated = createBatch(createMsg("hello", 1));
+        truncated.limit(4);
+        handler.handleMessage(truncated, c);
+        verify(c).unregister();
+    }
+
     @Test
     public void testPromoteWithoutCommandLogging() throws Exception {
         final ByteBuffer msg = createMsg("@Promote");
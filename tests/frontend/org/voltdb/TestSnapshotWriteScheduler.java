@@ -0,0 +1,176 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+public class TestSnapshotWriteScheduler {
+
+    private File m_file;
+    private RandomAccessFile m_raf;
+    private FileChannel m_channel;
+
+    private static final class TestChunk {
+        final int m_index;
+        final SettableFuture<ByteBuffer> m_data = SettableFuture.create();
+        volatile int m_completions = 0;
+        volatile Throwable m_error = null;
+
+        TestChunk(int index) {
+            m_index = index;
+        }
+    }
+
+    private static class TestWriter implements SnapshotWriteScheduler.ChunkWriter<TestChunk> {
+        @Override
+        public boolean isReady(TestChunk chunk) {
+            return chunk.m_data.isDone();
+        }
+
+        @Override
+        public ByteBuffer prepare(TestChunk chunk) throws Exception {
+            return chunk.m_data.get();
+        }
+
+        @Override
+        public void completed(TestChunk chunk, long bytesWritten, Throwable error) {
+            chunk.m_error = error;
+            chunk.m_completions++;
+        }
+    }
+
+    private static ByteBuffer chunkData(int index) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1024 + index);
+        while (buf.hasRemaining()) {
+            buf.put((byte) index);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = File.createTempFile("TestSnapshotWriteScheduler", ".vpt");
+        m_raf = new RandomAccessFile(m_file, "rw");
+        m_channel = m_raf.getChannel();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        m_channel.close();
+        m_raf.close();
+        m_file.delete();
+    }
+
+    @Test
+    public void testOrderedWhenReadyOutOfOrder() throws Exception {
+        SnapshotWriteScheduler.WriteQueue<TestChunk> queue =
+                SnapshotWriteScheduler.newQueue(m_file, m_channel, new TestWriter());
+        assertNotNull(queue.device());
+
+        final int count = 200;
+        List<TestChunk> chunks = new ArrayList<>();
+        List<ListenableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestChunk chunk = new TestChunk(i);
+            chunks.add(chunk);
+            futures.add(queue.submit(chunk));
+        }
+
+        // Make the chunks ready in random order, the file must still be written in submission order
+        List<TestChunk> shuffled = new ArrayList<>(chunks);
+        Collections.shuffle(shuffled, new Random(42));
+        for (TestChunk chunk : shuffled) {
+            chunk.m_data.set(chunkData(chunk.m_index));
+        }
+        for (ListenableFuture<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+
+        byte[] contents = Files.readAllBytes(m_file.toPath());
+        int offset = 0;
+        for (TestChunk chunk : chunks) {
+            assertEquals(1, chunk.m_completions);
+            assertNull(chunk.m_error);
+            for (int i = 0; i < 1024 + chunk.m_index; i++) {
+                assertEquals((byte) chunk.m_index, contents[offset++]);
+            }
+        }
+        assertEquals(contents.length, offset);
+    }
+
+    @Test
+    public void testFailedChunk() throws Exception {
+        SnapshotWriteScheduler.WriteQueue<TestChunk> queue =
+                SnapshotWriteScheduler.newQueue(m_file, m_channel, new TestWriter());
+
+        TestChunk good = new TestChunk(1);
+        TestChunk bad = new TestChunk(2);
+        TestChunk after = new TestChunk(3);
+        ListenableFuture<?> goodFuture = queue.submit(good);
+        good.m_data.set(chunkData(1));
+        goodFuture.get(30, TimeUnit.SECONDS);
+
+        ListenableFuture<?> badFuture = queue.submit(bad);
+        bad.m_data.setException(new IOException("Disk full"));
+        try {
+            badFuture.get(30, TimeUnit.SECONDS);
+            fail("Write of a failed chunk should fail");
+        } catch (ExecutionException expected) {}
+        assertEquals(1, bad.m_completions);
+        assertTrue(bad.m_error instanceof ExecutionException);
+
+        // The queue keeps going after a failed chunk
+        ListenableFuture<?> afterFuture = queue.submit(after);
+        after.m_data.set(chunkData(3));
+        afterFuture.get(30, TimeUnit.SECONDS);
+        assertEquals(1, after.m_completions);
+        assertNull(after.m_error);
+        assertEquals(1025 + 1027, m_channel.size());
+    }
+}
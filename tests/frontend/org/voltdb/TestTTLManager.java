@@ -0,0 +1,60 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestTTLManager {
+
+    @Test
+    public void testAdaptChunkSize() {
+        // mostly idle sites double the chunk size up to the maximum
+        assertEquals(200, TTLManager.adaptChunkSize(100, 0.9, 25, 400));
+        assertEquals(400, TTLManager.adaptChunkSize(300, 0.9, 25, 400));
+        // mostly busy sites halve it down to the minimum
+        assertEquals(50, TTLManager.adaptChunkSize(100, 0.0, 25, 400));
+        assertEquals(25, TTLManager.adaptChunkSize(30, 0.05, 25, 400));
+        // in between it stays as it is
+        assertEquals(100, TTLManager.adaptChunkSize(100, 0.3, 25, 400));
+        // a lowered maximum applies right away
+        assertEquals(100, TTLManager.adaptChunkSize(400, 0.3, 25, 100));
+        // no overflow on large batch sizes
+        assertEquals(Integer.MAX_VALUE, TTLManager.adaptChunkSize(Integer.MAX_VALUE / 2 + 1, 1.0, 1, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testPurgeRate() {
+        TTLManager.TTLStats stats = new TTLManager.TTLStats("T");
+        stats.update(100, 1000, 1000);
+        assertEquals(0.0, stats.purgeRate, 0.0);
+        stats.update(200, 800, 2000);
+        assertEquals(200.0, stats.purgeRate, 0.001);
+        stats.update(600, 200, 3000);
+        assertEquals(300.0, stats.purgeRate, 0.001);
+        assertEquals(900, stats.rowsDeleted);
+        assertEquals(200, stats.rowsLeft);
+    }
+}
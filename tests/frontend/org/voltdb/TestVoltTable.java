@@ -750,6 +750,157 @@ public class TestVoltTable extends TestCase {
         assertEquals(3L, t.fetchRow(1).getLong(2));
     }
 
+    public void testRowBuilder() {
+        t = new VoltTable(new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("big", VoltType.BIGINT),
+                new ColumnInfo("float", VoltType.FLOAT),
+                new ColumnInfo("str", VoltType.STRING),
+                new ColumnInfo("bin", VoltType.VARBINARY),
+                new ColumnInfo("dec", VoltType.DECIMAL),
+                new ColumnInfo("ts", VoltType.TIMESTAMP),
+                new ColumnInfo("pt", VoltType.GEOGRAPHY_POINT),
+                new ColumnInfo("geog", VoltType.GEOGRAPHY));
+        t2 = new VoltTable(t.getTableSchema());
+
+        // small enough start to grow in the middle of rows
+        final int rows = 500;
+        final TimestampType ts = new TimestampType(12345L);
+        for (int i = 0; i < rows; i++) {
+            String str = RandomStringUtils.random(i % 50);
+            t.beginRow().putLong(i % 100).putLong(i).putDouble(i / 2.0).putString(str)
+                    .putBytes(new byte[] { (byte) i }).putDecimal(new BigDecimal(i)).putTimestamp(ts)
+                    .putGeographyPoint(GEOG_PT_VALUE).putGeography(GEOG_VALUE).endRow();
+            t2.addRow((byte) (i % 100), (long) i, i / 2.0, str, new byte[] { (byte) i },
+                    new BigDecimal(i), ts, GEOG_PT_VALUE, GEOG_VALUE);
+        }
+        t.beginRow().putNull().putNull().putNull().putString(null).putBytes(null).putDecimal(null)
+                .putNull().putGeographyPoint(null).putGeography(null).endRow();
+        t2.addRow(null, null, null, null, null, null, null, null, null);
+
+        assertEquals(rows + 1, t.getRowCount());
+        assertEquals(t2, t);
+        assertEquals(t2, roundTrip(t));
+    }
+
+    public void testRowBuilderExceptionSafe() {
+        t = new VoltTable(new ColumnInfo("foo", VoltType.TINYINT),
+                new ColumnInfo("bar", VoltType.STRING));
+
+        t.beginRow().putLong(1).putString("a").endRow();
+        try {
+            t.beginRow().putLong(1000);
+            fail("expected overflow");
+        } catch (VoltTypeException e) {
+        }
+        try {
+            t.beginRow().putLong(2).putLong(2);
+            fail("expected type mismatch");
+        } catch (VoltTypeException e) {
+        }
+        try {
+            t.beginRow().putLong(3).endRow();
+            fail("expected missing value");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            t.beginRow().putLong(4).putString("d").putString("e");
+            fail("expected too many values");
+        } catch (IllegalArgumentException e) {
+        }
+        // an unfinished row is dropped
+        t.beginRow().putLong(5);
+        t.beginRow().putLong(6).putString("f").endRow();
+
+        assertEquals(2, t.getRowCount());
+        assertEquals(1L, t.fetchRow(0).getLong(0));
+        assertEquals("a", t.fetchRow(0).getString(1));
+        assertEquals(6L, t.fetchRow(1).getLong(0));
+        assertEquals("f", t.fetchRow(1).getString(1));
+        assertEquals(t, roundTrip(t));
+    }
+
+    public void testRowBuilderBlocksOtherChanges() {
+        t = new VoltTable(new ColumnInfo("foo", VoltType.BIGINT));
+        t.beginRow().putLong(1).endRow();
+        VoltTable other = t.clone(0);
+        other.addRow(3);
+
+        VoltTable.RowBuilder builder = t.beginRow().putLong(2);
+        try {
+            t.addRow(3);
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            t.add(other.fetchRow(0));
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            t.ensureRowCapacity(10);
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            t.getSerializedSize();
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            t.flattenToBuffer(ByteBuffer.allocate(1024));
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            t.getBuffer();
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+
+        try {
+            t.addTable(other);
+            fail("expected a row being built");
+        } catch (IllegalStateException e) {
+        }
+
+        // the open row is still intact
+        builder.endRow();
+        assertEquals(2, t.getRowCount());
+        assertEquals(2L, t.fetchRow(1).getLong(0));
+        assertEquals(t, roundTrip(t));
+    }
+
+    public void testClearRowDataDropsRowBeingBuilt() {
+        t = new VoltTable(new ColumnInfo("foo", VoltType.BIGINT));
+        t.beginRow().putLong(1).endRow();
+        VoltTable.RowBuilder builder = t.beginRow().putLong(2);
+
+        t.clearRowData();
+        assertEquals(0, t.getRowCount());
+        try {
+            builder.endRow();
+            fail("expected the row to be dropped");
+        } catch (IllegalStateException e) {
+        }
+
+        t.addRow(3);
+        assertEquals(1, t.getRowCount());
+        assertEquals(3L, t.fetchRow(0).getLong(0));
+        assertEquals(t, roundTrip(t));
+    }
+
+    public void testEnsureRowCapacity() {
+        t = new VoltTable(new ColumnInfo("foo", VoltType.BIGINT));
+        t.ensureRowCapacity(10000);
+        final int capacity = t.getBuffer().capacity();
+        assertTrue(capacity >= 10000 * 12);
+        for (int i = 0; i < 10000; i++) {
+            t.beginRow().putLong(i).endRow();
+        }
+        assertEquals(capacity, t.getBuffer().capacity());
+        assertEquals(9999L, t.fetchRow(9999).getLong(0));
+    }
+
     public void testClone() {
         VoltTable item_data_template = new VoltTable(new ColumnInfo("i_name",
                 VoltType.STRING),
@@ -47,6 +47,7 @@ import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
 
 import junit.framework.TestCase;
 
@@ -68,6 +69,24 @@ public class TestDistributer extends TestCase {
 
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
+            if (message.get(message.position()) == Constants.INVOCATION_BATCH) {
+                batches.incrementAndGet();
+                message.get();
+                final int count = message.getInt();
+                for (int i = 0; i < count; ++i) {
+                    final int length = message.getInt();
+                    ByteBuffer invocation = message.slice();
+                    invocation.limit(length);
+                    message.position(message.position() + length);
+                    handleInvocation(invocation, c);
+                }
+            }
+            else {
+                handleInvocation(message, c);
+            }
+        }
+
+        private void handleInvocation(ByteBuffer message, Connection c) {
             try {
                 StoredProcedureInvocation spi = new StoredProcedureInvocation();
                 spi.initFromBuffer(message);
@@ -140,6 +159,7 @@ public class TestDistributer extends TestCase {
 
         }
         AtomicInteger roundTrips = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
 
         @Override
         public Runnable offBackPressure() {
@@ -170,6 +190,7 @@ public class TestDistributer extends TestCase {
     // A fake server.
     class MockVolt extends Thread {
         boolean handleConnection = true;
+        boolean acceptBatches = false;
         MockVolt(int port) throws IOException {
             network = new VoltNetworkPool();
             network.start();
@@ -227,8 +248,8 @@ public class TestDistributer extends TestCase {
                         @SuppressWarnings("unused")
                         final String username = new String(usernameBytes);
 
-                        final ByteBuffer responseBuffer = ByteBuffer.allocate(34);
-                        responseBuffer.putInt(30);
+                        final ByteBuffer responseBuffer = ByteBuffer.allocate(acceptBatches ? 35 : 34);
+                        responseBuffer.putInt(responseBuffer.capacity() - 4);
                         responseBuffer.put((byte)0);//version
                         responseBuffer.put((byte)0);//success response
                         responseBuffer.putInt(0);//hostId
@@ -236,6 +257,9 @@ public class TestDistributer extends TestCase {
                         responseBuffer.putLong(0);//instanceId
                         responseBuffer.putInt(0);//instanceId pt 2
                         responseBuffer.putInt(0);
+                        if (acceptBatches) {
+                            responseBuffer.put(Constants.FEATURE_INVOCATION_BATCH);
+                        }
                         responseBuffer.flip();
                         handler = new MockInputHandler();
                         client.write(responseBuffer);
@@ -528,6 +552,132 @@ public class TestDistributer extends TestCase {
         }
     }
 
+    @Test
+    public void testRequestCoalescing() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        // Only servers listing the feature get batched invocations
+        MockVolt volt0 = null, volt1 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.acceptBatches = true;
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            dist.setRequestCoalescing(true);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20001, ClientAuthScheme.HASH_SHA1);
+
+            final AtomicInteger responses = new AtomicInteger();
+            for (int handle = 1; handle <= 2000; ++handle) {
+                dist.queue(new ProcedureInvocation(handle, "i1", new Integer(1)), new ProcedureCallback() {
+                    @Override
+                    public void clientCallback(ClientResponse clientResponse) throws Exception {
+                        assertEquals(ClientResponse.SUCCESS, clientResponse.getStatus());
+                        responses.incrementAndGet();
+                    }
+                }, true, System.nanoTime(), 0);
+            }
+            dist.drain();
+
+            assertEquals(2000, responses.get());
+            assertEquals(1000, volt0.handler.roundTrips.get());
+            assertEquals(1000, volt1.handler.roundTrips.get());
+            assertTrue(volt0.handler.batches.get() > 0);
+            assertEquals(0, volt1.handler.batches.get());
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentQueue() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        // Routing is lock free, many threads queueing at once must still get exact round-robin use.
+        final int threadCount = 8;
+        final int invocationsPerThread = 300;
+        MockVolt volt0, volt1, volt2;
+        volt0 = volt1 = volt2 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+            volt2 = new MockVolt(20002);
+            volt2.start();
+
+            final Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20001, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20002, ClientAuthScheme.HASH_SHA1);
+
+            final AtomicInteger handle = new AtomicInteger();
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < invocationsPerThread; i++) {
+                                ProcedureInvocation pi =
+                                        new ProcedureInvocation(handle.incrementAndGet(), "i1", new Integer(1));
+                                dist.queue(pi, new ProcCallback(), true, System.nanoTime(), 0);
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                            failed.set(true);
+                        }
+                    }
+                };
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertFalse(failed.get());
+
+            dist.drain();
+
+            final int expectedPerConnection = threadCount * invocationsPerThread / 3;
+            assertEquals(expectedPerConnection, volt0.handler.roundTrips.get());
+            assertEquals(expectedPerConnection, volt1.handler.roundTrips.get());
+            assertEquals(expectedPerConnection, volt2.handler.roundTrips.get());
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+            if (volt2 != null) {
+                volt2.shutdown();
+            }
+        }
+    }
+
     @Test
     public void testQueueMixed() throws Exception {
         // TODO: write a mock server that can grock ssl
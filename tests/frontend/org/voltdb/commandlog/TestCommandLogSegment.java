@@ -0,0 +1,387 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.commandlog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.LogEntryType;
+import org.voltdb.SnapshotCompletionInterest.SnapshotCompletionEvent;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.sysprocs.saverestore.SnapshotPathType;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.io.Files;
+
+public class TestCommandLogSegment {
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    private File m_dir;
+
+    @Before
+    public void setUp() {
+        m_dir = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : m_dir.listFiles()) {
+            f.delete();
+        }
+        m_dir.delete();
+    }
+
+    static Iv2InitiateTaskMessage initiation(long txnId, long uniqueId, String proc, Object... params) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName(proc);
+        invocation.setParams(params);
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, txnId, uniqueId,
+                false, true, invocation, 4, 5, false);
+        msg.setSpHandle(txnId);
+        return msg;
+    }
+
+    private List<ByteBuffer> writeEntries(int partitionId, int count) throws IOException {
+        List<ByteBuffer> entries = new ArrayList<>();
+        TxnEgo ego = TxnEgo.makeZero(partitionId);
+        for (int i = 0; i < count; i++) {
+            ego = ego.makeNext();
+            entries.add(CommandLogSegment.initiationEntry(partitionId, ego.getTxnId(), null,
+                    initiation(ego.getTxnId(), 1000 + i, "proc" + i, (long) i, "value" + i)));
+        }
+        return entries;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        InstanceId instanceId = new InstanceId(3, 12345L);
+        CommandLogSegment segment = CommandLogSegment.create(m_dir, 7, SEGMENT_SIZE, instanceId);
+        List<ByteBuffer> entries = writeEntries(1, 10);
+        int[] involved = new int[] { 0, 1, 2 };
+        entries.add(CommandLogSegment.initiationEntry(2, 99, involved, initiation(4242, 77, "mp")));
+        entries.add(CommandLogSegment.faultEntry(LogEntryType.IV2FAULT, 2, 100, 55, ImmutableSet.of(1L, 2L)));
+
+        // two group commits
+        segment.appendBlock(entries, 0, 5);
+        segment.appendBlock(entries, 5, entries.size());
+        segment.force();
+        assertEquals(entries.size(), segment.entryCount());
+        segment.seal();
+
+        List<File> files = CommandLogSegment.listSegments(m_dir);
+        assertEquals(1, files.size());
+        VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(files.get(0))) {
+            assertEquals(7, reader.id());
+            assertEquals(instanceId, reader.instanceId());
+            assertTrue(reader.isSealed());
+            for (int i = 0; i < 10; i++) {
+                ByteBuffer entry = reader.nextEntry();
+                assertEquals(LogEntryType.INITIATION, CommandLogSegment.entryType(entry));
+                assertEquals(1, CommandLogSegment.entryPartitionId(entry));
+                assertEquals(1000 + i, CommandLogSegment.entryUniqueId(entry));
+                assertNull(CommandLogSegment.entryInvolvedPartitions(entry));
+                Iv2InitiateTaskMessage msg = CommandLogSegment.entryMessage(entry, factory);
+                assertEquals("proc" + i, msg.getStoredProcedureName());
+                assertEquals("value" + i, msg.getParameters()[1]);
+                assertEquals(CommandLogSegment.entryTxnId(entry), msg.getTxnId());
+                assertEquals(entry, reader.entryAt(reader.lastEntryOffset()));
+            }
+            ByteBuffer mp = reader.nextEntry();
+            assertArrayEquals(involved, CommandLogSegment.entryInvolvedPartitions(mp));
+            assertEquals(4242, CommandLogSegment.entryTxnId(mp));
+            assertEquals("mp", CommandLogSegment.entryMessage(mp, factory).getStoredProcedureName());
+            ByteBuffer fault = reader.nextEntry();
+            assertEquals(LogEntryType.IV2FAULT, CommandLogSegment.entryType(fault));
+            assertEquals(100, CommandLogSegment.entrySpHandle(fault));
+            assertNull(reader.nextEntry());
+            assertFalse(reader.hasTornTail());
+        }
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        CommandLogSegment segment = CommandLogSegment.create(m_dir, 0, SEGMENT_SIZE, null);
+        List<ByteBuffer> entries = writeEntries(0, 6);
+        segment.appendBlock(entries, 0, 3);
+        int firstBlockEnd = segment.size();
+        segment.appendBlock(entries, 3, 6);
+        segment.force();
+        segment.close();
+
+        // Damage the payload of the second block as if the process died mid write
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file(), "rw")) {
+            raf.seek(firstBlockEnd + CommandLogSegment.BLOCK_HEADER_BYTES + 10);
+            raf.write(0x7f);
+        }
+
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(segment.file())) {
+            assertFalse(reader.isSealed());
+            int count = 0;
+            while (reader.nextEntry() != null) {
+                count++;
+            }
+            assertEquals(3, count);
+            assertTrue(reader.hasTornTail());
+        }
+    }
+
+    @Test
+    public void testCorruptSealedSegment() throws Exception {
+        CommandLogSegment segment = CommandLogSegment.create(m_dir, 0, SEGMENT_SIZE, null);
+        List<ByteBuffer> entries = writeEntries(0, 4);
+        segment.appendBlock(entries, 0, 4);
+        File file = segment.file();
+        segment.seal();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(CommandLogSegment.HEADER_BYTES + CommandLogSegment.BLOCK_HEADER_BYTES + 1);
+            raf.write(0x7f);
+        }
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file)) {
+            reader.nextEntry();
+            fail("Corruption inside a sealed segment must not be treated as the end of the log");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testGroupCommitAcknowledgesAllSites() throws Exception {
+        final int sites = 4;
+        final int txnsPerSite = 500;
+        FileCommandLog log = new FileCommandLog(true, 10, 1000, m_dir.getPath(), null);
+        try {
+            CountingListener[] listeners = new CountingListener[sites];
+            CountDownLatch done = new CountDownLatch(sites * txnsPerSite);
+            for (int i = 0; i < sites; i++) {
+                listeners[i] = new CountingListener(done);
+                log.registerDurabilityListener(listeners[i]);
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < sites; i++) {
+                final CountingListener listener = listeners[i];
+                final int partition = i;
+                Thread t = new Thread(() -> {
+                    TxnEgo ego = TxnEgo.makeZero(partition);
+                    for (int j = 0; j < txnsPerSite; j++) {
+                        ego = ego.makeNext();
+                        assertNull(log.log(initiation(ego.getTxnId(), j, "proc"), ego.getTxnId(), null,
+                                listener, null));
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            for (CountingListener listener : listeners) {
+                assertEquals(txnsPerSite, listener.m_durable.get());
+                // Every fsync covers whatever was pending, so there are never more checks than txns
+                assertTrue(listener.m_checks.get() <= txnsPerSite);
+            }
+        } finally {
+            log.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteRollAndTruncate() throws Exception {
+        final int txnsPerSite = 600;
+        FileCommandLog log = new FileCommandLog(true, 10, 1000, m_dir.getPath(), null);
+        long[] lastSpHandles = new long[2];
+        try {
+            // 4MB log size gives 1MB segments, the entries below need a few of them
+            log.initialize(4, Long.MIN_VALUE, null, new InstanceId(0, 1));
+            CountDownLatch done = new CountDownLatch(2 * txnsPerSite);
+            CountingListener[] listeners = new CountingListener[] {
+                    new CountingListener(done), new CountingListener(done) };
+            for (int partition = 0; partition < 2; partition++) {
+                log.registerDurabilityListener(listeners[partition]);
+                TxnEgo ego = TxnEgo.makeZero(partition);
+                for (int j = 0; j < txnsPerSite; j++) {
+                    ego = ego.makeNext();
+                    log.log(initiation(ego.getTxnId(), j, "proc", new byte[2048]), ego.getTxnId(), null,
+                            listeners[partition], null);
+                }
+                lastSpHandles[partition] = ego.getTxnId();
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+
+            int[] counts = new int[2];
+            long[] previous = new long[] { Long.MIN_VALUE, Long.MIN_VALUE };
+            List<File> segments = CommandLogSegment.listSegments(m_dir);
+            assertTrue(segments.size() > 2);
+            for (File file : segments) {
+                try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file)) {
+                    ByteBuffer entry;
+                    while ((entry = reader.nextEntry()) != null) {
+                        int partition = CommandLogSegment.entryPartitionId(entry);
+                        long spHandle = CommandLogSegment.entrySpHandle(entry);
+                        assertTrue(spHandle > previous[partition]);
+                        previous[partition] = spHandle;
+                        counts[partition]++;
+                    }
+                }
+            }
+            assertEquals(txnsPerSite, counts[0]);
+            assertEquals(txnsPerSite, counts[1]);
+
+            // A truncation snapshot covering everything removes all sealed segments
+            Map<Integer, Long> snapshotTxnIds = new HashMap<>();
+            snapshotTxnIds.put(0, lastSpHandles[0]);
+            snapshotTxnIds.put(1, lastSpHandles[1]);
+            log.snapshotCompleted(SnapshotCompletionEvent.newInstanceForTest("", SnapshotPathType.SNAP_CL, "",
+                    1234, snapshotTxnIds, true, 0, 0));
+            long deadline = System.currentTimeMillis() + 30000;
+            while (CommandLogSegment.listSegments(m_dir).size() > 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // Only the open segment and the preallocated one are left
+            assertEquals(2, CommandLogSegment.listSegments(m_dir).size());
+            TruncationPoint point = TruncationPoint.read(m_dir);
+            assertEquals(1234, point.m_txnId);
+            assertEquals(snapshotTxnIds, point.m_partitionTxnIds);
+            assertEquals(new InstanceId(0, 1), point.m_instanceId);
+        } finally {
+            log.shutdown();
+        }
+    }
+
+    /**
+     * Minimal durability listener counting how many tasks were made durable.
+     */
+    static class CountingListener implements DurabilityListener {
+        final AtomicInteger m_durable = new AtomicInteger();
+        final AtomicInteger m_checks = new AtomicInteger();
+        final CountDownLatch m_done;
+        Checks m_current = new Checks();
+
+        CountingListener(CountDownLatch done) {
+            m_done = done;
+        }
+
+        class Checks implements CompletionChecks {
+            int m_tasks = 0;
+
+            @Override
+            public CompletionChecks startNewCheckList(int startSize) {
+                return new Checks();
+            }
+
+            @Override
+            public void addTask(TransactionTask task) {
+                m_tasks++;
+            }
+
+            @Override
+            public void setLastDurableUniqueId(long uniqueId) {}
+
+            @Override
+            public boolean isChanged() {
+                return m_tasks > 0;
+            }
+
+            @Override
+            public int getTaskListSize() {
+                return m_tasks;
+            }
+
+            @Override
+            public void processChecks() {
+                m_durable.addAndGet(m_tasks);
+                for (int i = 0; i < m_tasks; i++) {
+                    m_done.countDown();
+                }
+            }
+        }
+
+        @Override
+        public void configureUniqueIdListener(DurableUniqueIdListener listener, boolean install) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public void addTransaction(TransactionTask pendingTask) {
+            m_current.addTask(pendingTask);
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return m_current.getTaskListSize();
+        }
+
+        @Override
+        public CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            CompletionChecks last = m_current;
+            m_current = (Checks) m_current.startNewCheckList(nextMaxRowCnt);
+            return last;
+        }
+
+        @Override
+        public void processDurabilityChecks(CompletionChecks completionChecks) {
+            if (completionChecks.isChanged()) {
+                m_checks.incrementAndGet();
+                completionChecks.processChecks();
+            }
+        }
+    }
+}
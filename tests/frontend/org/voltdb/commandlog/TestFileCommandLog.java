@@ -0,0 +1,326 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.commandlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.voltdb.commandlog.TestCommandLogSegment.initiation;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.network.Connection;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.CreateTransactionResult;
+import org.voltdb.InvocationDispatcher.OverrideCheck;
+import org.voltdb.StartAction;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.commandlog.TestCommandLogSegment.CountingListener;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.io.Files;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestFileCommandLog {
+    private static final InstanceId INSTANCE_ID = new InstanceId(0, 1);
+
+    private File m_dir;
+
+    @Before
+    public void setUp() {
+        m_dir = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : m_dir.listFiles()) {
+            f.delete();
+        }
+        m_dir.delete();
+    }
+
+    private static Iv2InitiateTaskMessage mpInitiation(long txnId, long uniqueId, long spHandle) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("mp");
+        invocation.setParams();
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, txnId, uniqueId,
+                false, false, invocation, 4, 5, false);
+        msg.setSpHandle(spHandle);
+        return msg;
+    }
+
+    private static void awaitDurable(CountingListener listener, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (listener.m_durable.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, listener.m_durable.get());
+    }
+
+    private FileCommandLogReinitiator replay(RecordingCreator creator) throws Exception {
+        FileCommandLogReinitiator reinitiator = new FileCommandLogReinitiator(0, StartAction.RECOVER, null,
+                m_dir.getPath(), ImmutableSet.of(0));
+        reinitiator.setInitiator(creator);
+        // Every partition and the MPI are led by this host
+        Cartographer cartographer = mock(Cartographer.class);
+        when(cartographer.getHSIdForMaster(anyInt())).thenReturn(CoreUtils.getHSIdFromHostAndSite(0, 1));
+        when(cartographer.getHSIdForMultiPartitionInitiator()).thenReturn(CoreUtils.getHSIdFromHostAndSite(0, 2));
+        reinitiator.replaySegments(cartographer);
+        return reinitiator;
+    }
+
+    @Test
+    public void testGroupedFlush() throws Exception {
+        final int sites = 3;
+        final int txnsPerSite = 20;
+        // The fsync interval is too long to matter, the group is committed once max txns are outstanding
+        FileCommandLog log = new FileCommandLog(false, 60000, sites * txnsPerSite, m_dir.getPath(), null);
+        try {
+            log.initialize(4, Long.MIN_VALUE, null, INSTANCE_ID);
+            CountDownLatch done = new CountDownLatch(sites * txnsPerSite);
+            CountingListener[] listeners = new CountingListener[sites];
+            TxnEgo[] egos = new TxnEgo[sites];
+            for (int i = 0; i < sites; i++) {
+                listeners[i] = new CountingListener(done);
+                log.registerDurabilityListener(listeners[i]);
+                egos[i] = TxnEgo.makeZero(i);
+            }
+            ListenableFuture<Object> backpressure = null;
+            for (int j = 0; j < txnsPerSite; j++) {
+                for (int i = 0; i < sites; i++) {
+                    egos[i] = egos[i].makeNext();
+                    backpressure = log.log(initiation(egos[i].getTxnId(), j, "proc", (long) j),
+                            egos[i].getTxnId(), null, listeners[i], null);
+                }
+            }
+            // The last transaction reached max txns, it is held back until the group is durable
+            assertFalse(backpressure.isDone());
+            backpressure.get(30, TimeUnit.SECONDS);
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            for (CountingListener listener : listeners) {
+                assertEquals(txnsPerSite, listener.m_durable.get());
+                assertEquals(1, listener.m_checks.get());
+            }
+
+            // Every site's entries went out in a single block, in the order each site logged them
+            List<File> segments = CommandLogSegment.listSegments(m_dir);
+            try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(segments.get(0))) {
+                int expectedOffset = CommandLogSegment.HEADER_BYTES + CommandLogSegment.BLOCK_HEADER_BYTES;
+                long[] previous = new long[sites];
+                int count = 0;
+                ByteBuffer entry;
+                while ((entry = reader.nextEntry()) != null) {
+                    assertEquals(expectedOffset, reader.lastEntryOffset());
+                    expectedOffset += entry.remaining();
+                    int partition = CommandLogSegment.entryPartitionId(entry);
+                    assertTrue(CommandLogSegment.entrySpHandle(entry) > previous[partition]);
+                    previous[partition] = CommandLogSegment.entrySpHandle(entry);
+                    count++;
+                }
+                assertEquals(sites * txnsPerSite, count);
+            }
+        } finally {
+            log.shutdown();
+        }
+    }
+
+    @Test
+    public void testReplayOrdering() throws Exception {
+        final int partitions = 2;
+        final int rounds = 12;
+        List<List<String>> expected = new ArrayList<>();
+        List<Long> expectedMp = new ArrayList<>();
+
+        FileCommandLog log = new FileCommandLog(true, 10, 1000, m_dir.getPath(), null);
+        try {
+            log.initialize(4, Long.MIN_VALUE, null, INSTANCE_ID);
+            CountingListener[] listeners = new CountingListener[partitions];
+            TxnEgo[] egos = new TxnEgo[partitions];
+            for (int p = 0; p < partitions; p++) {
+                listeners[p] = new CountingListener(new CountDownLatch(0));
+                log.registerDurabilityListener(listeners[p]);
+                egos[p] = TxnEgo.makeZero(p);
+                expected.add(new ArrayList<>());
+            }
+            TxnEgo mpEgo = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+            int[] involved = new int[] { 0, 1 };
+            int logged = 0;
+            for (int r = 0; r < rounds; r++) {
+                for (int p = 0; p < partitions; p++) {
+                    egos[p] = egos[p].makeNext();
+                    long txnId = egos[p].getTxnId();
+                    log.log(initiation(txnId, r, "proc"), txnId, null, listeners[p], null);
+                    expected.get(p).add("sp " + txnId);
+                }
+                logged++;
+                if (r % 3 == 2) {
+                    // Every participating site logs the multi-partition transaction
+                    mpEgo = mpEgo.makeNext();
+                    long uniqueId = 5000 + r;
+                    for (int p = partitions - 1; p >= 0; p--) {
+                        egos[p] = egos[p].makeNext();
+                        log.log(mpInitiation(mpEgo.getTxnId(), uniqueId, egos[p].getTxnId()),
+                                egos[p].getTxnId(), involved, listeners[p], null);
+                        expected.get(p).add("sentinel " + uniqueId);
+                    }
+                    expectedMp.add(mpEgo.getTxnId());
+                    logged++;
+                }
+            }
+            for (CountingListener listener : listeners) {
+                awaitDurable(listener, logged);
+            }
+        } finally {
+            log.shutdown();
+        }
+
+        RecordingCreator creator = new RecordingCreator();
+        FileCommandLogReinitiator reinitiator = replay(creator);
+        // Each partition sees its transactions and the place of each multi-partition one in log order
+        for (int p = 0; p < partitions; p++) {
+            assertEquals(expected.get(p), creator.partitionLog(p));
+        }
+        // The MPI resubmits each multi-partition transaction once, in txn id order
+        assertEquals(expectedMp, creator.m_mpTxnIds);
+        assertTrue(reinitiator.hasReplayedTxns());
+    }
+
+    @Test
+    public void testReplayPartiallyWrittenGroup() throws Exception {
+        final int txns = 5;
+        List<String> expected = new ArrayList<>();
+
+        FileCommandLog log = new FileCommandLog(true, 10, 1000, m_dir.getPath(), null);
+        try {
+            log.initialize(4, Long.MIN_VALUE, null, INSTANCE_ID);
+            CountingListener listener = new CountingListener(new CountDownLatch(0));
+            log.registerDurabilityListener(listener);
+            TxnEgo ego = TxnEgo.makeZero(0);
+            for (int i = 0; i < txns; i++) {
+                // Wait for each transaction to be durable so that each one is a group of its own
+                ego = ego.makeNext();
+                log.log(initiation(ego.getTxnId(), i, "proc", (long) i), ego.getTxnId(), null, listener, null);
+                awaitDurable(listener, i + 1);
+                expected.add("sp " + ego.getTxnId());
+            }
+        } finally {
+            log.shutdown();
+        }
+
+        // Damage the last group as if the process died while it was being written
+        File segment = CommandLogSegment.listSegments(m_dir).get(0);
+        int lastEntryOffset;
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(segment)) {
+            assertFalse(reader.isSealed());
+            while (reader.nextEntry() != null) {}
+            lastEntryOffset = reader.lastEntryOffset();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(lastEntryOffset + CommandLogSegment.ENTRY_HEADER_BYTES + 1);
+            raf.write(0x7f);
+        }
+
+        // Replay stops at the damaged group, the complete groups before it are replayed
+        RecordingCreator creator = new RecordingCreator();
+        replay(creator);
+        assertEquals(expected.subList(0, txns - 1), creator.partitionLog(0));
+        assertTrue(creator.m_mpTxnIds.isEmpty());
+    }
+
+    /**
+     * Records what replay submits, per partition and for the MPI.
+     */
+    private static class RecordingCreator implements TransactionCreator {
+        final Map<Integer, List<String>> m_partitionLogs = new ConcurrentHashMap<>();
+        final List<Long> m_mpTxnIds = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> partitionLog(int partitionId) {
+            return m_partitionLogs.getOrDefault(partitionId, Collections.emptyList());
+        }
+
+        private void record(int partitionId, String event) {
+            m_partitionLogs.computeIfAbsent(partitionId, p -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(event);
+        }
+
+        @Override
+        public CreateTransactionResult createTransaction(long connectionId, StoredProcedureInvocation invocation,
+                boolean isReadOnly, boolean isSinglePartition, boolean isEverySite, int partition,
+                int messageSize, long nowNanos) {
+            throw new UnsupportedOperationException("Replay must keep the logged txn ids");
+        }
+
+        @Override
+        public CreateTransactionResult createTransaction(long connectionId, long txnId, long uniqueId,
+                StoredProcedureInvocation invocation, boolean isReadOnly, boolean isSinglePartition,
+                boolean isEverySite, int partition, int messageSize, long nowNanos) {
+            if (isSinglePartition) {
+                record(partition, "sp " + txnId);
+            } else {
+                assertEquals(MpInitiator.MP_INIT_PID, partition);
+                m_mpTxnIds.add(txnId);
+            }
+            return CreateTransactionResult.SUCCESS;
+        }
+
+        @Override
+        public ClientResponseImpl dispatch(StoredProcedureInvocation invocation, Connection connection,
+                boolean isAdmin, OverrideCheck bypass) {
+            return null;
+        }
+
+        @Override
+        public void sendSentinel(long uniqueId, int partitionId) {
+            record(partitionId, "sentinel " + uniqueId);
+        }
+
+        @Override
+        public void sendEOLMessage(int partitionId) {}
+
+        @Override
+        public void bindAdapter(Connection adapter) {}
+    }
+}
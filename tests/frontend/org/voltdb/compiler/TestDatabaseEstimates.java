@@ -0,0 +1,96 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import junit.framework.TestCase;
+
+import org.voltdb.compiler.DatabaseEstimates.ColumnEstimates;
+import org.voltdb.compiler.DatabaseEstimates.TableEstimates;
+
+public class TestDatabaseEstimates extends TestCase {
+
+    private static TableEstimates analyzed(long tuples, long distinct) {
+        TableEstimates estimates = new TableEstimates();
+        estimates.setAnalyzedTuples(tuples);
+        ColumnEstimates column = new ColumnEstimates();
+        column.distinctValues = distinct;
+        estimates.columns.put("A", column);
+        return estimates;
+    }
+
+    public void testJSONRoundTrip() throws Exception {
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        TableEstimates table = analyzed(5000, 40);
+        table.columns.get("A").histogram = new double[] { 0.0, 10.0, 100.0 };
+        estimates.putEstimatesForTable("T", table);
+
+        DatabaseEstimates copy = DatabaseEstimates.fromJSONString(estimates.toJSONString());
+        TableEstimates copied = copy.getAnalyzedEstimatesForTable("T");
+        assertNotNull(copied);
+        assertEquals(5000, copied.analyzedTuples);
+        assertEquals(5000, copied.maxTuples);
+        assertEquals(40, copied.columns.get("A").distinctValues);
+        assertEquals(3, copied.columns.get("A").histogram.length);
+        assertEquals(10.0, copied.columns.get("A").histogram[1]);
+        assertNull(copy.getAnalyzedEstimatesForTable("U"));
+        assertFalse(copy.getEstimatesForTable("U").isAnalyzed());
+    }
+
+    public void testSmallTablesKeepAFloor() {
+        TableEstimates table = analyzed(3, 3);
+        assertEquals(DatabaseEstimates.MIN_ANALYZED_TUPLES, table.maxTuples);
+        assertEquals(DatabaseEstimates.MIN_ANALYZED_TUPLES, table.minTuples);
+    }
+
+    public void testDrift() {
+        assertFalse(DatabaseEstimates.hasDrifted(analyzed(1000, 10), analyzed(1900, 15)));
+        assertTrue(DatabaseEstimates.hasDrifted(analyzed(1000, 10), analyzed(2100, 10)));
+        assertTrue(DatabaseEstimates.hasDrifted(analyzed(1000, 10), analyzed(1000, 30)));
+        assertTrue(DatabaseEstimates.hasDrifted(new TableEstimates(), analyzed(1000, 10)));
+        assertFalse(DatabaseEstimates.hasDrifted(new TableEstimates(), new TableEstimates()));
+    }
+
+    public void testEquiDepthHistogram() {
+        // uniform values from 0 to 100
+        double[] probes = { 25.0, 50.0, 75.0 };
+        long[] below = { 250, 500, 750 };
+        double[] bounds = ColumnEstimates.equiDepthHistogram(0.0, 100.0, probes, below, 1000, 4);
+        assertEquals(5, bounds.length);
+        for (int i = 0; i < bounds.length; ++i) {
+            assertEquals(25.0 * i, bounds[i], 0.001);
+        }
+
+        // skewed, with nine rows in ten below 10
+        probes = new double[] { 10.0, 50.0 };
+        below = new long[] { 900, 950 };
+        bounds = ColumnEstimates.equiDepthHistogram(0.0, 100.0, probes, below, 1000, 2);
+        assertTrue(bounds[1] < 10.0);
+
+        ColumnEstimates column = new ColumnEstimates();
+        column.histogram = bounds;
+        assertEquals(0.0, column.fractionBelow(-1.0));
+        assertEquals(1.0, column.fractionBelow(100.0));
+        assertEquals(0.5, column.fractionBelow(bounds[1]), 0.001);
+    }
+}
@@ -1424,6 +1424,41 @@ public class TestVoltCompiler extends TestCase {
         }
     }
 
+    public void testDDLCompilerBTreeIndexAllowed() {
+        for (int ii = 0; ii < column_types.length; ii++) {
+            String schema =
+                "create table t(id " + column_types[ii] + " not null, num integer not null, " +
+                "constraint pk_btree primary key (id, num));\n" +
+                "create index idx_t_id_btree on t(id);";
+            VoltCompiler c = compileSchemaForDDLTest(schema, can_be_tree[ii]);
+            assertFalse(c.hasErrors());
+            Table tbl = assertTableT(c);
+            Index index = tbl.getIndexes().getIgnoreCase("idx_t_id_btree");
+            assertEquals(IndexType.BTREE.getValue(), index.getType());
+            assertTrue(index.getCountable());
+            for (Index pk : tbl.getIndexes()) {
+                if (pk.getUnique()) {
+                    assertEquals(IndexType.BTREE.getValue(), pk.getType());
+                }
+            }
+        }
+    }
+
+    public void testDDLCompilerBTreeIndexNeedsSuffix() {
+        String schema =
+            "create table t(id integer not null, num integer not null, " +
+            "constraint pk_btree_t primary key (id, num));\n" +
+            "create index idx_subtree on t(id);\n" +
+            "create index idx_btree_t on t(num);";
+        VoltCompiler c = compileSchemaForDDLTest(schema, true);
+        assertFalse(c.hasErrors());
+        Table tbl = assertTableT(c);
+        for (Index index : tbl.getIndexes()) {
+            assertEquals(index.getTypeName(), IndexType.BALANCED_TREE.getValue(), index.getType());
+        }
+        assertEquals(3, tbl.getIndexes().size());
+    }
+
     public void testUniqueIndexAllowed() {
         String schema =
                 "create table t(id integer not null, num integer not null);\n" +
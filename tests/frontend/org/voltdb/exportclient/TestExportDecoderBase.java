@@ -46,6 +46,7 @@ import org.voltdb.FlakyTestRule.Flaky;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
+import org.voltdb.exportclient.decode.CSVWriterDecoder;
 import org.voltdb.export.AdvertisedDataSource;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.types.GeographyPointValue;
@@ -405,4 +406,74 @@ public class TestExportDecoderBase
         }
     }
 
+    @Test
+    public void testRowView() throws IOException {
+        long l = System.currentTimeMillis();
+        vtable.clearRowData();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1, (short) 2, 3, 4, 5.5, 6, "xx", new BigDecimal(88), GEOG_POINT, GEOG);
+        vtable.addRow(l, l, l, 0, l, l, null, null, null, null, null, null, null, null, null, null);
+        byte[] rowBytes = ExportEncoder.encodeTable(vtable, "mytable", 7, 1L);
+        ByteBuffer bb = ByteBuffer.wrap(rowBytes);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        int schemaSize = bb.getInt();
+        ExportRow schemaRow = ExportRow.decodeBufferSchema(bb, schemaSize, 1, 0);
+
+        ExportRowView view = new ExportRowView();
+        view.bind(schemaRow, 0);
+        CSVWriterDecoder csvDecoder = CSVWriterDecoder.builder().build();
+        for (int r = 0; r < 2; r++) {
+            int length = bb.getInt();
+            int offset = bb.position();
+            view.reset(bb, offset, length);
+            assertEquals(offset, bb.position());
+            ExportRow rowdata = ExportRow.decodeRow(schemaRow, 0, 0L, bb);
+            assertEquals(offset + length, bb.position());
+
+            // the view reads the same values decodeRow materializes
+            assertEquals(rowdata.values.length, view.getColumnCount());
+            for (int i = 0; i < rowdata.values.length; i++) {
+                assertEquals(rowdata.values[i] == null, view.isNull(i));
+                if (rowdata.values[i] != null) {
+                    assertEquals(rowdata.values[i].toString(), view.getObject(i).toString());
+                }
+            }
+            ExportRow copy = view.toExportRow();
+            assertEquals(rowdata.partitionValue, copy.partitionValue);
+            assertEquals(rowdata.partitionColIndex, copy.partitionColIndex);
+
+            // and decoders produce the same output off either of them
+            StringWriter fromValues = new StringWriter();
+            CSVWriter csv = new CSVWriter(fromValues);
+            csvDecoder.decode(rowdata.generation, rowdata.tableName, rowdata.types, rowdata.names, csv, rowdata.values);
+            csv.flush();
+            StringWriter fromView = new StringWriter();
+            csv = new CSVWriter(fromView);
+            csvDecoder.decode(csv, view);
+            csv.flush();
+            assertEquals(fromValues.toString(), fromView.toString());
+        }
+
+        // typed getters on the last row
+        assertEquals(l, view.getLong(0));
+        assertTrue(view.isNull(6));
+
+        vtable.clearRowData();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1, (short) 2, 3, 4, 5.5, 6, "xx", new BigDecimal(88), GEOG_POINT, GEOG);
+        bb = ByteBuffer.wrap(ExportEncoder.encodeTable(vtable, "mytable", 7, 1L));
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        ExportRow.decodeBufferSchema(bb, bb.getInt(), 1, 0);
+        int length = bb.getInt();
+        view.reset(bb, bb.position(), length);
+        assertEquals(1, view.getByte(6));
+        assertEquals(2, view.getShort(7));
+        assertEquals(3, view.getInt(8));
+        assertEquals(4L, view.getLong(9));
+        assertEquals(3L, view.getLong(8));
+        assertEquals(5.5, view.getDouble(10), 0.0);
+        assertEquals(6L, view.getTimestampMicros(11));
+        assertEquals("xx", view.getString(12));
+        assertEquals(0, view.getDecimal(13).compareTo(new BigDecimal(88)));
+        assertEquals(GEOG_POINT.toString(), view.getGeographyPoint(14).toString());
+        assertEquals(GEOG.toString(), view.getGeography(15).toString());
+    }
 }
@@ -29,10 +29,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -42,6 +45,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -133,6 +137,18 @@ public class TestExportToFileClient extends ExportClientTestBase {
         props.put("binaryencoding", "base64");
         eclient.configure(props);
 
+        // Invalid compression
+        eclient = new ExportToFileClient();
+        props.put("compression", "lz4");
+        try {
+            eclient.configure(props);
+            fail("Invalid compression");
+        } catch (IllegalArgumentException e) {}
+
+        // Valid compression
+        props.put("compression", "gzip");
+        eclient.configure(props);
+
         // Invalid directory - can't create
         eclient = new ExportToFileClient();
         props.put("outdir", "/root/thereisnosuchdirectory");
@@ -676,10 +692,84 @@ public class TestExportToFileClient extends ExportClientTestBase {
         assertTrue(validName);
     }
 
+    @Test
+    public void testPerPartitionCompressed() throws Exception
+    {
+        ExportToFileClient client = new ExportToFileClient();
+        Properties props = new Properties();
+        props.put("nonce", Long.toString(System.currentTimeMillis()));
+        props.put("type", "csv");
+        props.put("outdir", m_dir);
+        props.put("period", "100"); // roll explicitly below
+        props.put("perpartition", "true");
+        props.put("compression", "gzip");
+        client.configure(props);
+        assertEquals(ExportClientBase.DecodingPolicy.BY_PARTITION_TABLE, client.getDecodingPolicy());
+
+        long l = System.currentTimeMillis();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1,
+                /* partitioning column */ (short) 2,
+                3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                GEOG_POINT, GEOG);
+        vtable.advanceRow();
+        byte[] rowBytes = ExportEncoder.encodeRow(vtable, "mytable", 0, 1L);
+        for (int partition = 0; partition < 2; ++partition) {
+            final ExportToFileClient.ExportToFileDecoder decoder =
+                    client.constructExportDecoder(constructTestSource(false, partition));
+            ByteBuffer bb = ByteBuffer.wrap(rowBytes);
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+            int schemaSize = bb.getInt();
+            ExportRow schemaRow = ExportRow.decodeBufferSchema(bb, schemaSize, partition, 0);
+            bb.getInt(); // row size
+            ExportRow row = ExportRow.decodeRow(schemaRow, partition, 0L, bb);
+            decoder.getExecutor().submit(() -> {
+                decoder.onBlockStart(row);
+                decoder.processRow(row);
+                decoder.onBlockCompletion(row);
+                return null;
+            }).get();
+        }
+        client.roll();
+
+        final long startTs = System.currentTimeMillis();
+        while (System.currentTimeMillis() - startTs < 60 * 1000) { // timeout after 1 minute
+            final File[] files = new File(m_dir).listFiles((d, name) -> !name.startsWith("active"));
+            if (files != null && files.length == 2) {
+                Arrays.sort(files);
+                for (int partition = 0; partition < 2; ++partition) {
+                    assertTrue(files[partition].getName().matches(".*\\d+\\-\\d\\-mytable\\-" + partition + "\\-\\d+\\.csv\\.gz"));
+                    verifyContent(decompress(files[partition]), l);
+                }
+                client.shutdown();
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Timed out waiting for partition files to roll over");
+    }
+
+    private static String decompress(File f) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(f))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray(), Charsets.UTF_8);
+        }
+    }
+
     void verifyContent(File f, long ts) throws IOException
+    {
+        verifyContent(new String(Files.readAllBytes(f.toPath()), Charsets.UTF_8), ts);
+    }
+
+    void verifyContent(String content, long ts)
     {
         assertEquals(String.format("\"%d\",\"%d\",\"%d\",\"0\",\"%d\",\"%d\",\"1\",\"2\",\"3\",\"4\",\"5.5\",\"1970-01-01 00:00:00.000\",\"xx\",\"88.000000000000\","
                 + "\"" + GEOG_POINT.toWKT() + "\",\"" + GEOG.toWKT() + "\"", ts, ts, ts, ts, ts),
-                new String(Files.readAllBytes(f.toPath()), Charsets.UTF_8).trim());
+                content.trim());
     }
 }
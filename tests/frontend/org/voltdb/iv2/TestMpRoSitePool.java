@@ -0,0 +1,195 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.voltdb.BackendTarget;
+import org.voltdb.CatalogContext;
+import org.voltdb.compiler.deploymentfile.SystemSettingsType;
+
+import junit.framework.TestCase;
+
+public class TestMpRoSitePool extends TestCase
+{
+    static final long GROW_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(MpRoSitePool.GROW_WAIT_MS);
+    static final long SHRINK_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(MpRoSitePool.SHRINK_IDLE_MS);
+
+    // Sites created by the pool, in creation order
+    final List<MpRoSitePool.MpRoSiteContext> m_sites = new ArrayList<>();
+    long m_now = 0;
+
+    // A pool which creates mocked sites and runs on the test's clock
+    class TestPool extends MpRoSitePool
+    {
+        TestPool(CatalogContext context)
+        {
+            super(0, BackendTarget.NATIVE_EE_JNI, context, MpInitiator.MP_INIT_PID, null);
+        }
+
+        @Override
+        MpRoSiteContext newSite()
+        {
+            MpRoSiteContext site = mock(MpRoSiteContext.class);
+            when(site.isCurrent(any(CatalogContext.class), anyInt())).thenReturn(true);
+            m_sites.add(site);
+            return site;
+        }
+
+        @Override
+        long nanoTime()
+        {
+            return m_now;
+        }
+    }
+
+    MpRoSitePool m_dut;
+
+    @Override
+    public void setUp()
+    {
+        if (MpRoSitePool.MAX_POOL_SIZE_OVERRIDE != null) {
+            fail("MPI_READ_POOL_SIZE must not be set for this test");
+        }
+        SystemSettingsType.Mpreadpool readPool = new SystemSettingsType.Mpreadpool();
+        readPool.setMinsize(1);
+        readPool.setMaxsize(3);
+        CatalogContext context = mock(CatalogContext.class, RETURNS_DEEP_STUBS);
+        when(context.getDeployment().getSystemsettings().getMpreadpool()).thenReturn(readPool);
+        m_dut = new TestPool(context);
+    }
+
+    @Override
+    public void tearDown()
+    {
+        m_dut.shutdown();
+    }
+
+    // Start reads until the pool is full, growing it as a blocked read would
+    private void fill(long firstTxnId)
+    {
+        long txnId = firstTxnId;
+        assertTrue(m_dut.doWork(txnId++, mock(TransactionTask.class)));
+        while (m_dut.readBlocked(GROW_WAIT_NANOS, true)) {
+            assertTrue(m_dut.doWork(txnId++, mock(TransactionTask.class)));
+        }
+        assertFalse(m_dut.canAcceptWork());
+    }
+
+    @Test
+    public void testGrowth()
+    {
+        MpRoSitePoolStats.Snapshot stats = m_dut.getStatsSnapshot();
+        assertEquals(1, stats.m_size);
+        assertEquals(1, stats.m_sites);
+
+        assertTrue(m_dut.doWork(1, mock(TransactionTask.class)));
+        assertFalse(m_dut.canAcceptWork());
+        assertFalse(m_dut.doWork(2, mock(TransactionTask.class)));
+
+        // A read which has not waited long enough does not grow the pool,
+        // the owner is told when to check again
+        assertFalse(m_dut.readBlocked(GROW_WAIT_NANOS / 2, true));
+        assertEquals(GROW_WAIT_NANOS - GROW_WAIT_NANOS / 2, m_dut.nanosUntilGrowth(GROW_WAIT_NANOS / 2));
+        assertEquals(1, m_dut.getStatsSnapshot().m_size);
+
+        // Once it has, the pool grows by a site
+        assertTrue(m_dut.readBlocked(GROW_WAIT_NANOS, false));
+        assertTrue(m_dut.doWork(2, mock(TransactionTask.class)));
+        stats = m_dut.getStatsSnapshot();
+        assertEquals(2, stats.m_size);
+        assertEquals(2, stats.m_sites);
+        assertEquals(2, stats.m_busy);
+        assertEquals(1, stats.m_grows);
+        assertEquals(1, stats.m_rejects);
+
+        // Up to its maximum
+        assertTrue(m_dut.readBlocked(GROW_WAIT_NANOS, true));
+        assertTrue(m_dut.doWork(3, mock(TransactionTask.class)));
+        assertFalse(m_dut.readBlocked(GROW_WAIT_NANOS * 100, true));
+        assertEquals(0, m_dut.nanosUntilGrowth(0));
+        stats = m_dut.getStatsSnapshot();
+        assertEquals(3, stats.m_size);
+        assertEquals(3, stats.m_sites);
+        assertEquals(2, stats.m_grows);
+        assertEquals(3, stats.m_rejects);
+    }
+
+    @Test
+    public void testShrink()
+    {
+        fill(1);
+        assertEquals(3, m_dut.getStatsSnapshot().m_size);
+
+        // Completing reads right after the pool was saturated keeps its size
+        m_dut.completeWork(1);
+        MpRoSitePoolStats.Snapshot stats = m_dut.getStatsSnapshot();
+        assertEquals(3, stats.m_size);
+        assertEquals(3, stats.m_sites);
+        assertEquals(0, stats.m_shrinks);
+        for (MpRoSitePool.MpRoSiteContext site : m_sites) {
+            verify(site, never()).shutdown();
+        }
+
+        // After being idle for a while the pool shrinks by a site per completed read
+        m_now += SHRINK_IDLE_NANOS;
+        m_dut.completeWork(2);
+        stats = m_dut.getStatsSnapshot();
+        assertEquals(2, stats.m_size);
+        assertEquals(2, stats.m_sites);
+        assertEquals(1, stats.m_shrinks);
+        verify(m_sites.get(1)).shutdown();
+
+        // The idle time restarts with each shrink
+        m_dut.completeWork(3);
+        assertEquals(2, m_dut.getStatsSnapshot().m_size);
+        m_now += SHRINK_IDLE_NANOS;
+        assertTrue(m_dut.doWork(4, mock(TransactionTask.class)));
+        m_dut.completeWork(4);
+        stats = m_dut.getStatsSnapshot();
+        assertEquals(1, stats.m_size);
+        assertEquals(1, stats.m_sites);
+        assertEquals(2, stats.m_shrinks);
+
+        // But not below its minimum
+        m_now += SHRINK_IDLE_NANOS;
+        assertTrue(m_dut.doWork(5, mock(TransactionTask.class)));
+        m_dut.completeWork(5);
+        stats = m_dut.getStatsSnapshot();
+        assertEquals(1, stats.m_size);
+        assertEquals(1, stats.m_sites);
+        assertEquals(2, stats.m_shrinks);
+    }
+}
@@ -24,10 +24,12 @@
 package org.voltdb.iv2;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,8 +38,11 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
+import org.voltdb.MockVoltDB;
+import org.voltdb.VoltDB;
 
 import junit.framework.TestCase;
 
@@ -150,4 +155,64 @@ public class TestMpTransactionTaskQueue extends TestCase
         verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
         verify(m_MPpool).doWork(eq(readtxnid2), any(TransactionTask.class));
     }
+
+    // Blocked reads give the pool a chance to grow and are started once it does
+    @Test
+    public void testBlockedReadsGrowPool()
+    {
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+        txnId = txnId.makeNext();
+        long runningtxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(runningtxnid, true));
+        verify(m_MPpool).doWork(eq(runningtxnid), any(TransactionTask.class));
+        verify(m_MPpool).readStarted(anyLong());
+
+        // The pool is full and does not grow, the read waits and is only counted as blocked once
+        when(m_MPpool.canAcceptWork()).thenReturn(false);
+        txnId = txnId.makeNext();
+        long blockedtxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(blockedtxnid, true));
+        txnId = txnId.makeNext();
+        long queuedtxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(queuedtxnid, true));
+        verify(m_MPpool, never()).doWork(eq(blockedtxnid), any(TransactionTask.class));
+        verify(m_MPpool).readBlocked(anyLong(), eq(true));
+        verify(m_MPpool).readBlocked(anyLong(), eq(false));
+
+        // The pool grows for the head of the backlog
+        when(m_MPpool.readBlocked(anyLong(), anyBoolean())).thenReturn(true).thenReturn(false);
+        m_dut.offer(makeTransactionTask(txnId.makeNext().getTxnId(), false));
+        verify(m_MPpool).doWork(eq(blockedtxnid), any(TransactionTask.class));
+        verify(m_MPpool, never()).doWork(eq(queuedtxnid), any(TransactionTask.class));
+        verify(m_MPpool, times(2)).readStarted(anyLong());
+    }
+
+    // A blocked read is rechecked once it may grow the pool, without waiting
+    // for another transaction to arrive or complete
+    @Test
+    public void testBlockedReadRecheck() throws Exception
+    {
+        MockVoltDB voltdb = new MockVoltDB();
+        VoltDB.replaceVoltDBInstanceForTest(voltdb);
+        try {
+            when(m_MPpool.canAcceptWork()).thenReturn(false);
+            when(m_MPpool.readBlocked(anyLong(), anyBoolean())).thenReturn(false).thenReturn(true);
+            when(m_MPpool.nanosUntilGrowth(anyLong())).thenReturn(TimeUnit.MILLISECONDS.toNanos(100)).thenReturn(0L);
+
+            TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+            txnId = txnId.makeNext();
+            long blockedtxnid = txnId.getTxnId();
+            m_dut.offer(makeTransactionTask(blockedtxnid, true));
+            verify(m_MPpool).readBlocked(anyLong(), eq(true));
+            verify(m_MPpool, never()).doWork(eq(blockedtxnid), any(TransactionTask.class));
+
+            // The recheck lets the pool grow and starts the read
+            verify(m_MPpool, timeout(10000)).doWork(eq(blockedtxnid), any(TransactionTask.class));
+            verify(m_MPpool).readBlocked(anyLong(), eq(false));
+            verify(m_MPpool).readStarted(anyLong());
+        }
+        finally {
+            voltdb.shutdown(null);
+        }
+    }
 }
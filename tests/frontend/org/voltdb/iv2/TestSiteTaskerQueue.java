@@ -0,0 +1,186 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.rejoin.TaskLog;
+
+public class TestSiteTaskerQueue {
+
+    private static final class TestTask extends SiteTasker {
+        final int m_producer;
+        final int m_sequence;
+
+        TestTask(int producer, int sequence) {
+            m_producer = producer;
+            m_sequence = sequence;
+        }
+
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog) {}
+    }
+
+    private static SiteTaskerQueue getSiteTaskerQueue() {
+        SiteTaskerQueue queue = new SiteTaskerQueue(0);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        return queue;
+    }
+
+    @Test
+    public void testOverflowKeepsOrder() {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        final int count = SiteTaskerQueue.CAPACITY * 2 + 5;
+        for (int i = 0; i < count; i++) {
+            queue.offer(new TestTask(0, i));
+            // Consume a few along the way so the ring has space while the overflow queue is in use
+            if (i % 1000 == 999) {
+                assertEquals(i / 1000, ((TestTask) queue.poll()).m_sequence);
+            }
+        }
+        int consumed = count / 1000;
+        assertEquals(count - consumed, queue.size());
+        for (int i = consumed; i < count; i++) {
+            TestTask task = (TestTask) queue.poll();
+            assertEquals(i, task.m_sequence);
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+
+        // Back to the ring once the overflow queue is drained
+        queue.offer(new TestTask(0, count));
+        assertEquals(count, ((TestTask) queue.poll()).m_sequence);
+    }
+
+    @Test
+    public void testPeekThenPoll() {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        assertNull(queue.peek());
+        TestTask first = new TestTask(0, 0);
+        queue.offer(first);
+        queue.offer(new TestTask(0, 1));
+        assertSame(first, queue.peek());
+        assertSame(first, queue.head());
+        assertEquals(2, queue.size());
+        assertSame(first, queue.poll());
+        assertEquals(1, ((TestTask) queue.poll()).m_sequence);
+        assertNull(queue.head());
+    }
+
+    @Test
+    public void testClear() {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        for (int i = 0; i < SiteTaskerQueue.CAPACITY + 10; i++) {
+            queue.offer(new TestTask(0, i));
+        }
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertNull(queue.head());
+        for (int i = 0; i < 3; i++) {
+            queue.offer(new TestTask(1, i));
+        }
+        assertEquals(3, queue.size());
+        for (int i = 0; i < 3; i++) {
+            TestTask task = (TestTask) queue.poll();
+            assertEquals(1, task.m_producer);
+            assertEquals(i, task.m_sequence);
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        for (SiteTaskerQueue.IdleStrategy idleStrategy : SiteTaskerQueue.IdleStrategy.values()) {
+            runConcurrentProducers(idleStrategy);
+        }
+    }
+
+    private void runConcurrentProducers(SiteTaskerQueue.IdleStrategy idleStrategy) throws Exception {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        queue.setIdleStrategy(idleStrategy);
+        final int producers = 4;
+        final int perProducer = SiteTaskerQueue.CAPACITY * 4;
+        ExecutorService es = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                futures.add(es.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.offer(new TestTask(producer, i));
+                        if (i % 10_000 == 0) {
+                            // Give the consumer a chance to park while producers are idle
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+
+            int[] expected = new int[producers];
+            for (int i = 0; i < producers * perProducer; i++) {
+                TestTask task = (TestTask) queue.take();
+                assertEquals("Out of order task with " + idleStrategy, expected[task.m_producer]++, task.m_sequence);
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+            assertTrue(queue.isEmpty());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParkedTakeIsWoken() throws Exception {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        queue.setIdleStrategy(SiteTaskerQueue.IdleStrategy.PARK);
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            Future<SiteTasker> taken = es.submit(() -> queue.take());
+            Thread.sleep(100);
+            TestTask task = new TestTask(0, 0);
+            queue.offer(task);
+            assertSame(task, taken.get(30, TimeUnit.SECONDS));
+        } finally {
+            es.shutdownNow();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -41,6 +42,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Properties;
 
 import org.voltdb.BackendTarget;
 import org.voltdb.ServerThread;
@@ -712,6 +714,114 @@ public class TestJDBCQueries {
 
     }
 
+    @Test
+    public void testQueryBatchWindow() throws Exception
+    {
+        // pipelined and one statement at a time must give the same update counts in batch order
+        for (String window : new String[] { "1", "4" }) {
+            Properties props = new Properties();
+            props.setProperty(JDBC4Connection.BATCH_WINDOW, window);
+            Connection windowConn = DriverManager.getConnection("jdbc:voltdb://localhost:21212" +
+                    (ClientConfig.ENABLE_SSL_FOR_TEST ? "?" + JDBCTestCommons.SSL_URL_SUFFIX : ""), props);
+            try {
+                String q = String.format("update %s set value = 'x' where id = ?", data[2].tablename);
+                PreparedStatement pStmt = windowConn.prepareStatement(q);
+                for (int i = 0; i < 10; i++) {
+                    // ids 0 to 2 exist, 3 and 4 do not
+                    pStmt.setInt(1, i % 5);
+                    pStmt.addBatch();
+                }
+                int[] resultCodes = pStmt.executeBatch();
+                assertEquals(10, resultCodes.length);
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(i % 5 < 3 ? 1 : 0, resultCodes[i]);
+                }
+                assertEquals(6, pStmt.getUpdateCount());
+            }
+            finally {
+                windowConn.close();
+            }
+        }
+    }
+
+    @Test
+    public void testQueryBatchDependent() throws Exception
+    {
+        // without opting in to a window each statement sees the effects of the ones before it
+        Statement batch = conn.createStatement();
+        batch.addBatch(String.format("insert into %s(id, value) values(9001, 'a')", data[2].tablename));
+        batch.addBatch(String.format("update %s set value='b' where id = 9001", data[2].tablename));
+        batch.addBatch(String.format("delete from %s where id = 9001", data[2].tablename));
+        int[] resultCodes = batch.executeBatch();
+        assertEquals(3, resultCodes.length);
+        for (int resultCode : resultCodes) {
+            assertEquals(1, resultCode);
+        }
+    }
+
+    @Test
+    public void testQueryBatchFailure() throws Exception
+    {
+        Statement batch = conn.createStatement();
+        batch.addBatch(String.format("update %s set value='x' where id = 11", data[0].tablename));
+        batch.addBatch(String.format("update %s set value='x' where id = 'abc'", data[0].tablename));
+        batch.addBatch(String.format("update %s set value='x' where id = 22", data[0].tablename));
+        try {
+            batch.executeBatch();
+            fail();
+        }
+        catch (BatchUpdateException e) {
+            // the default window runs the batch in order and stops at the first failure
+            int[] resultCodes = e.getUpdateCounts();
+            assertEquals(2, resultCodes.length);
+            assertEquals(1, resultCodes[0]);
+            assertEquals(Statement.EXECUTE_FAILED, resultCodes[1]);
+        }
+    }
+
+    @Test
+    public void testQueryBatchFailureWithWindow() throws Exception
+    {
+        final int size = 200;
+        Properties props = new Properties();
+        props.setProperty(JDBC4Connection.BATCH_WINDOW, "4");
+        Connection windowConn = DriverManager.getConnection("jdbc:voltdb://localhost:21212" +
+                (ClientConfig.ENABLE_SSL_FOR_TEST ? "?" + JDBCTestCommons.SSL_URL_SUFFIX : ""), props);
+        try {
+            Statement batch = windowConn.createStatement();
+            for (int i = 0; i < size; i++) {
+                if (i == 1) {
+                    batch.addBatch(String.format("insert into %s(id, value) values('abc', 'x')", data[2].tablename));
+                }
+                else {
+                    batch.addBatch(String.format("insert into %s(id, value) values(%d, 'x')", data[2].tablename, 1000 + i));
+                }
+            }
+            try {
+                batch.executeBatch();
+                fail();
+            }
+            catch (BatchUpdateException e) {
+                // queuing stops once the failure comes back, at most a few windows later
+                int[] resultCodes = e.getUpdateCounts();
+                assertTrue(resultCodes.length >= 2);
+                assertTrue(resultCodes.length < size);
+                for (int i = 0; i < resultCodes.length; i++) {
+                    assertEquals(i == 1 ? Statement.EXECUTE_FAILED : 1, resultCodes[i]);
+                }
+
+                // every statement that was submitted is reported, and no other one ran
+                ResultSet rs = windowConn.createStatement().executeQuery(
+                        String.format("select count(*) from %s where id >= 1000", data[2].tablename));
+                assertTrue(rs.next());
+                assertEquals(resultCodes.length - 1, rs.getInt(1));
+            }
+        }
+        finally {
+            windowConn.close();
+        }
+    }
+
     @Test
     public void testParameterizedQueries() throws Exception
     {
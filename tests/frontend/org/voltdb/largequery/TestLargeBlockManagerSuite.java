@@ -209,6 +209,55 @@ public class TestLargeBlockManagerSuite {
         assertTrue(responseFuture.get().wasSuccessful());
     }
 
+    @Test
+    public void testCompressionAndPrefetch() throws Exception {
+        LargeBlockManager.startup(m_largeQuerySwapPath, 2, true, true);
+        try {
+            LargeBlockManager lbm = LargeBlockManager.getInstance();
+            long prefetchHits = lbm.getPrefetchHits();
+
+            // Blocks with repetitive content, which compresses well
+            int blockSize = 12 + 8 * 1000;
+            long[] ids = {1, 2, 3};
+            for (long id : ids) {
+                ByteBuffer block = ByteBuffer.allocateDirect(blockSize);
+                block.putLong(id);
+                block.putInt(1000);
+                for (int i = 0; i < 1000; ++i) {
+                    block.putLong(i % 10);
+                }
+                Future<LargeBlockResponse> responseFuture =
+                        lbm.submitTask(LargeBlockTask.getStoreTask(new BlockId(7, id), block));
+                assertTrue(responseFuture.get().wasSuccessful());
+                assertTrue(Files.size(lbm.makeBlockPath(new BlockId(7, id))) < blockSize);
+            }
+
+            // Loading a block reads the next one ahead of time
+            for (long id : ids) {
+                ByteBuffer loadedBlock = ByteBuffer.allocateDirect(blockSize);
+                Future<LargeBlockResponse> responseFuture =
+                        lbm.submitTask(LargeBlockTask.getLoadTask(new BlockId(7, id), loadedBlock));
+                assertTrue(responseFuture.get().wasSuccessful());
+                assertEquals(0, loadedBlock.position());
+                assertEquals(id, loadedBlock.getLong());
+                assertEquals(1000, loadedBlock.getInt());
+                for (int i = 0; i < 1000; ++i) {
+                    assertEquals(i % 10, loadedBlock.getLong());
+                }
+            }
+            assertEquals(prefetchHits + 2, lbm.getPrefetchHits());
+
+            for (long id : ids) {
+                Future<LargeBlockResponse> responseFuture =
+                        lbm.submitTask(LargeBlockTask.getReleaseTask(new BlockId(7, id)));
+                assertTrue(responseFuture.get().wasSuccessful());
+            }
+        }
+        finally {
+            LargeBlockManager.startup(m_largeQuerySwapPath);
+        }
+    }
+
     @Test
     public void testFilenames() {
         LargeBlockManager lbm = LargeBlockManager.getInstance();
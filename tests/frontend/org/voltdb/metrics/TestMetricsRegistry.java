@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TestMetricsRegistry {
+
+    private static String write(MetricsRegistry metrics) throws Exception {
+        StringWriter out = new StringWriter();
+        metrics.write(out);
+        return out.toString();
+    }
+
+    @Test
+    public void testCounterAndGauge() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Counter counter = metrics.counter("voltdb_test_calls", "Calls", "procedure", "Foo");
+        assertSame(counter, metrics.counter("voltdb_test_calls", "Calls", "procedure", "Foo"));
+        counter.increment();
+        counter.add(2);
+        metrics.counter("voltdb_test_calls", "Calls", "procedure", "Bar").increment();
+        metrics.gauge("voltdb_test_depth", "Depth", () -> 7, "site", "0:1");
+
+        assertEquals("# TYPE voltdb_test_calls counter\n" +
+                     "# HELP voltdb_test_calls Calls\n" +
+                     "voltdb_test_calls_total{procedure=\"Bar\"} 1\n" +
+                     "voltdb_test_calls_total{procedure=\"Foo\"} 3\n" +
+                     "# TYPE voltdb_test_depth gauge\n" +
+                     "# HELP voltdb_test_depth Depth\n" +
+                     "voltdb_test_depth{site=\"0:1\"} 7\n" +
+                     "# EOF\n",
+                     write(metrics));
+
+        metrics.remove("voltdb_test_depth", "site", "0:1");
+        assertEquals(-1, write(metrics).indexOf("voltdb_test_depth"));
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Histogram histogram = metrics.histogram("voltdb_test_seconds", "Time");
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordNanos(i * 1000_000L);
+        }
+        String text = write(metrics);
+        assertTrue(text, text.contains("# TYPE voltdb_test_seconds summary\n"));
+        assertTrue(text, text.contains("voltdb_test_seconds{quantile=\"0.5\"} 0.05"));
+        assertTrue(text, text.contains("voltdb_test_seconds_count 100\n"));
+        assertTrue(text, text.contains("voltdb_test_seconds_sum 5.05"));
+    }
+
+    @Test
+    public void testLabelsAndTypes() {
+        assertEquals("a=\"x\\\"y\\\\z\\n\",b=\"\"", MetricsRegistry.renderLabels(new String[] { "a", "x\"y\\z\n", "b", "" }));
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("voltdb_test", "Test");
+        try {
+            metrics.gauge("voltdb_test", "Test", () -> 1);
+            fail("Registered a gauge with the name of a counter");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -27,11 +27,18 @@ import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.voltcore.messaging.HostMessenger;
 import org.voltdb.CatalogContext;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.compiler.AdHocCompilerCache;
 import org.voltdb.compiler.AdHocPlannedStatement;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.VoltProjectBuilder;
@@ -171,4 +178,147 @@ public class TestPlannerTool extends TestCase {
         // would return a Stream Closed error
         m_pt.planSqlForTest("select * from A;");
     }
+
+    private static String planToString(CompiledPlan plan) {
+        String json = plan.rootPlanGraph.toJSONString();
+        if (plan.subPlanGraph != null) {
+            json += plan.subPlanGraph.toJSONString();
+        }
+        return json;
+    }
+
+    public void testConcurrentPlanning() throws Exception {
+        TPCCProjectBuilder builder = new TPCCProjectBuilder();
+        builder.addAllDefaults();
+        final File jar = new File("tpcc-concurrent-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("tpcc-concurrent-oop.jar");
+
+        byte[] bytes = MiscUtils.fileToBytes(jar);
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCatalog);
+        DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(),NodeSettings.create());
+        CatalogContext context = new CatalogContext(catalog, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+
+        final String[] queries = {
+                "select * from warehouse where w_id = 1;",
+                "select count(*) from district where d_w_id = 2 group by d_id;",
+                "select c_last, o_id from customer, orders where c_id = o_c_id and c_w_id = o_w_id order by o_id;",
+                "select * from stock where s_w_id = 4 and s_i_id in (select i_id from item where i_price > 10);",
+                "select ol_i_id, sum(ol_quantity) from order_line group by ol_i_id order by 2 desc limit 10;",
+                "update new_order set no_d_id = 3 where no_o_id = 5;",
+        };
+
+        // Plans planned one at a time are the reference, including plan node ids.
+        m_pt = new PlannerTool(context.database, context.getCatalogHash());
+        final List<String> expected = new ArrayList<>();
+        for (String sql : queries) {
+            expected.add(planToString(m_pt.planSqlCore(sql, StatementPartitioning.inferPartitioning())));
+        }
+
+        AdHocCompilerCache.clearHashCache();
+        final PlannerTool pt = new PlannerTool(context.database, context.getCatalogHash());
+        final int threads = 4;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                final int offset = t;
+                futures.add(es.submit(() -> {
+                    for (int round = 0; round < 5; ++round) {
+                        for (int i = 0; i < queries.length; ++i) {
+                            int q = (i + offset) % queries.length;
+                            CompiledPlan plan = pt.planSqlCore(queries[q], StatementPartitioning.inferPartitioning());
+                            assertEquals(expected.get(q), planToString(plan));
+                            AdHocPlannedStatement stmt = pt.planSqlForTest(queries[q]);
+                            assertNotNull(stmt);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    public void testConcurrentPlanningWithFunctionRegistration() throws Exception {
+        final String ddl =
+                "create table t1 (id bigint not null, val bigint, primary key(id));" +
+                "partition table t1 on column id;" +
+                "create function add2bigint from method org.voltdb_testfuncs.UserDefinedTestFunctions.add2Bigint;";
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema(ddl);
+        final File jar = new File("udf-concurrent-oop.jar");
+        jar.deleteOnExit();
+        assertTrue(builder.compile("udf-concurrent-oop.jar"));
+
+        byte[] bytes = MiscUtils.fileToBytes(jar);
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCatalog);
+        DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(),NodeSettings.create());
+        CatalogContext context = new CatalogContext(catalog, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+
+        final String[] queries = {
+                "select add2bigint(id, val) from t1 where id = 1;",
+                "select id from t1 where add2bigint(val, val) > 10 order by id;",
+                "select count(*) from t1;",
+        };
+
+        AdHocCompilerCache.clearHashCache();
+        final PlannerTool pt = new PlannerTool(context.database, context.getCatalogHash());
+        final List<String> expected = new ArrayList<>();
+        for (String sql : queries) {
+            expected.add(planToString(pt.planSqlCore(sql, StatementPartitioning.inferPartitioning())));
+        }
+
+        // DDL compilation saves the defined functions away and registers them again,
+        // planners running meanwhile must still find them.
+        final AtomicBoolean compiling = new AtomicBoolean(true);
+        final int threads = 3;
+        ExecutorService es = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> compiler = es.submit(() -> {
+                try {
+                    for (int round = 0; round < 5; ++round) {
+                        VoltProjectBuilder ddlBuilder = new VoltProjectBuilder();
+                        ddlBuilder.addLiteralSchema(ddl);
+                        final File ddlJar = new File("udf-concurrent-ddl-oop.jar");
+                        ddlJar.deleteOnExit();
+                        assertTrue(ddlBuilder.compile("udf-concurrent-ddl-oop.jar"));
+                    }
+                } finally {
+                    compiling.set(false);
+                }
+                return null;
+            });
+            List<Future<?>> planners = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                final int offset = t;
+                planners.add(es.submit(() -> {
+                    int round = 0;
+                    while (compiling.get() || round < 5) {
+                        for (int i = 0; i < queries.length; ++i) {
+                            int q = (i + offset) % queries.length;
+                            CompiledPlan plan = pt.planSqlCore(queries[q], StatementPartitioning.inferPartitioning());
+                            assertEquals(expected.get(q), planToString(plan));
+                        }
+                        ++round;
+                    }
+                    return null;
+                }));
+            }
+            compiler.get();
+            for (Future<?> f : planners) {
+                f.get();
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,168 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.planner;
+
+import java.util.List;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.AbstractScanPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.plannodes.PlanNodeTree;
+import org.voltdb.types.JoinType;
+import org.voltdb.types.PlanNodeType;
+
+public class TestPlansHashJoin extends PlannerTestCase {
+
+    private static void assertKey(AbstractExpression expr, int tableIdx, String columnName) {
+        assertTrue(expr instanceof TupleValueExpression);
+        TupleValueExpression tve = (TupleValueExpression) expr;
+        assertEquals(tableIdx, tve.getTableIndex());
+        assertEquals(columnName, tve.getColumnName());
+    }
+
+    public void testEquiJoin() {
+        AbstractPlanNode pn = compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.C = R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        HashJoinPlanNode hjNode = (HashJoinPlanNode) pn.getChild(0);
+        assertEquals(JoinType.INNER, hjNode.getJoinType());
+        assertEquals(1, hjNode.getOuterHashExpressions().size());
+        assertKey(hjNode.getOuterHashExpressions().get(0), 0, "C");
+        assertKey(hjNode.getInnerHashExpressions().get(0), 1, "C");
+        // The join predicate is kept to weed out hash collisions
+        assertNotNull(hjNode.getJoinPredicate());
+
+        // Keys come out in outer, inner order whichever side of the equality they are on
+        pn = compile("SELECT * FROM R1 JOIN R2 ON R2.A = R1.A AND R1.C = R2.C AND R1.D > R2.C");
+        hjNode = (HashJoinPlanNode) pn.getChild(0);
+        List<AbstractExpression> outerKeys = hjNode.getOuterHashExpressions();
+        List<AbstractExpression> innerKeys = hjNode.getInnerHashExpressions();
+        assertEquals(2, outerKeys.size());
+        for (int i = 0; i < outerKeys.size(); i++) {
+            assertEquals(0, ((TupleValueExpression) outerKeys.get(i)).getTableIndex());
+            assertEquals(1, ((TupleValueExpression) innerKeys.get(i)).getTableIndex());
+        }
+        assertTrue(hjNode.toExplainPlanString().contains("HASH INNER JOIN"));
+    }
+
+    public void testOuterJoins() {
+        AbstractPlanNode pn = compileToTopDownTree("SELECT * FROM R1 LEFT JOIN R2 ON R1.C = R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        assertEquals(JoinType.LEFT, ((HashJoinPlanNode) pn.getChild(0)).getJoinType());
+
+        pn = compileToTopDownTree("SELECT * FROM R1 FULL JOIN R2 ON R1.C = R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        assertEquals(JoinType.FULL, ((HashJoinPlanNode) pn.getChild(0)).getJoinType());
+    }
+
+    public void testNoHashJoin() {
+        // No equality between the two sides
+        compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.C > R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        // NULLs match each other
+        compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.C IS NOT DISTINCT FROM R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        // An index on the inner table still wins
+        compileToTopDownTree("SELECT * FROM R1 JOIN R3 ON R1.A = R3.A", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOPINDEX,
+                PlanNodeType.SEQSCAN);
+    }
+
+    public void testDisabled() {
+        HashJoinPlanNode.setEnabledForTest(false);
+        compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.C = R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+    }
+
+    public void testCostIsLinear() {
+        AbstractPlanNode pn = compile("SELECT * FROM R1 JOIN R2 ON R1.C = R2.C");
+        HashJoinPlanNode hjNode = (HashJoinPlanNode) pn.getChild(0);
+        // One pass over the outer to probe and one over the inner to build
+        long outerCount = hjNode.getChild(0).getEstimatedProcessedTupleCount();
+        long innerCount = hjNode.getChild(1).getEstimatedProcessedTupleCount();
+        assertEquals((long) (outerCount * HashJoinPlanNode.PROBE_FACTOR + innerCount * HashJoinPlanNode.BUILD_FACTOR),
+                hjNode.getEstimatedProcessedTupleCount());
+    }
+
+    public void testOrderByIsKept() {
+        // The hash join does not preserve the outer order. The scan of R3's index for the
+        // ORDER BY is estimated a little cheaper than a sequential scan, so with the build
+        // side weighted higher it becomes the inner.
+        AbstractPlanNode pn = compileToTopDownTree(
+                "SELECT R3.A, R2.C FROM R3 JOIN R2 ON R3.C = R2.C ORDER BY R3.A", 2,
+                PlanNodeType.SEND,
+                PlanNodeType.PROJECTION,
+                PlanNodeType.ORDERBY,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.INDEXSCAN);
+        AbstractPlanNode hjNode = pn.getChild(0).getChild(0).getChild(0);
+        assertEquals("R2", ((AbstractScanPlanNode) hjNode.getChild(0)).getTargetTableName());
+        assertEquals("R3", ((AbstractScanPlanNode) hjNode.getChild(1)).getTargetTableName());
+    }
+
+    public void testJSONRoundTrip() throws JSONException {
+        AbstractPlanNode pn = compile("SELECT * FROM R1 JOIN R2 ON R1.A = R2.A AND R1.C = R2.C");
+        String json = new PlanNodeTree(pn).toJSONString();
+        PlanNodeTree loaded = new PlanNodeTree();
+        loaded.loadFromJSONPlan(new JSONObject(json), getDatabase());
+        assertEquals(json, loaded.toJSONString());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        HashJoinPlanNode.setEnabledForTest(true);
+        setupSchema(TestJoinOrder.class.getResource("testplans-join-ddl.sql"),
+                "testplanshashjoin", false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        HashJoinPlanNode.setEnabledForTest(false);
+        super.tearDown();
+    }
+}
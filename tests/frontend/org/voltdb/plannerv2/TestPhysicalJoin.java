@@ -24,6 +24,7 @@
 package org.voltdb.plannerv2;
 
 import org.voltdb.plannerv2.rules.PlannerRules;
+import org.voltdb.plannodes.HashJoinPlanNode;
 
 public class TestPhysicalJoin extends Plannerv2TestCase {
 
@@ -42,6 +43,23 @@ public class TestPhysicalJoin extends Plannerv2TestCase {
         super.tearDown();
     }
 
+    public void testHashJoin() {
+        HashJoinPlanNode.setEnabledForTest(true);
+        try {
+            // Integer keys of different widths can be hashed together
+            m_tester.sql("SELECT R1.si, R2.bi FROM R1 INNER JOIN R2 ON R1.i = R2.si")
+                    .transform("VoltPhysicalCalc(expr#0..3=[{inputs}], SI=[$t1], BI0=[$t2])\n" +
+                            "  VoltPhysicalHashJoin(condition=[=($0, $3)], joinType=[inner], outerKeys=[[0]], innerKeys=[[1]])\n" +
+                            "    VoltPhysicalCalc(expr#0..5=[{inputs}], proj#0..1=[{exprs}])\n" +
+                            "      VoltPhysicalTableSequentialScan(table=[[public, R1]], expr#0..5=[{inputs}], proj#0..5=[{exprs}])\n" +
+                            "    VoltPhysicalCalc(expr#0..5=[{inputs}], expr#6=[CAST($t1):INTEGER], BI=[$t3], SI0=[$t6])\n" +
+                            "      VoltPhysicalTableSequentialScan(table=[[public, R2]], expr#0..5=[{inputs}], proj#0..5=[{exprs}])\n")
+                    .pass();
+        } finally {
+            HashJoinPlanNode.setEnabledForTest(false);
+        }
+    }
+
     public void testNLIJ1() {
         m_tester.sql("SELECT RI1.i FROM RI1 INNER JOIN R2 ON RI1.i = R2.i")
                 .transform("VoltPhysicalCalc(expr#0..1=[{inputs}], I=[$t1])\n" +
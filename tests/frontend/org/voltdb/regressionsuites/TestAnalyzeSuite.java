@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.io.IOException;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+import junit.framework.Test;
+
+public class TestAnalyzeSuite extends RegressionSuite {
+
+    static final int ROWS = 2000;
+
+    // A and C take few values while B is unique, which only the statistics can tell
+    static final String SCHEMA =
+            "CREATE TABLE T (ID INTEGER NOT NULL, A INTEGER, B INTEGER, C INTEGER);\n" +
+            "CREATE INDEX IDX_AC ON T (A, C);\n" +
+            "CREATE INDEX IDX_B ON T (B);\n";
+
+    static final String QUERY = "SELECT * FROM T WHERE A = 1 AND C = 1 AND B = 5";
+
+    public TestAnalyzeSuite(String name) {
+        super(name);
+    }
+
+    private static String explain(Client client) throws IOException, ProcCallException {
+        VoltTable vt = client.callProcedure("@Explain", QUERY).getResults()[0];
+        assertTrue(vt.advanceRow());
+        return vt.getString(0);
+    }
+
+    private static VoltTable analyze(Client client) throws IOException, ProcCallException {
+        ClientResponse response = client.callProcedure("@Analyze");
+        assertEquals(ClientResponse.SUCCESS, response.getStatus());
+        VoltTable result = response.getResults()[0];
+        assertTrue(result.advanceRow());
+        assertEquals("T", result.getString("TABLE_NAME"));
+        assertFalse(result.advanceRow());
+        return result;
+    }
+
+    public void testAnalyzeChangesPlan() throws IOException, ProcCallException {
+        Client client = getClient();
+        for (int i = 0; i < ROWS; ++i) {
+            client.callProcedure("T.insert", i, i % 2, i, i % 3);
+        }
+
+        // Without statistics every indexed column counts the same, so the wider index wins
+        String plan = explain(client);
+        assertTrue(plan, plan.contains("INDEX SCAN of \"T\" using \"IDX_AC\""));
+
+        VoltTable result = analyze(client);
+        assertEquals(ROWS, result.getLong("TUPLE_COUNT"));
+        assertEquals(0, result.getLong("PREVIOUS_TUPLE_COUNT"));
+        assertEquals(1, result.getLong("DRIFTED"));
+
+        // The distinct counts now make the unique column the better choice
+        plan = explain(client);
+        assertTrue(plan, plan.contains("INDEX SCAN of \"T\" using \"IDX_B\""));
+        VoltTable vt = client.callProcedure("@AdHoc", QUERY).getResults()[0];
+        assertEquals(0, vt.getRowCount());
+        vt = client.callProcedure("@AdHoc", "SELECT * FROM T WHERE A = 1 AND C = 2 AND B = 5").getResults()[0];
+        assertEquals(1, vt.getRowCount());
+
+        // A second run reads the previous statistics back from the catalog
+        result = analyze(client);
+        assertEquals(ROWS, result.getLong("TUPLE_COUNT"));
+        assertEquals(ROWS, result.getLong("PREVIOUS_TUPLE_COUNT"));
+        assertEquals(0, result.getLong("DRIFTED"));
+        plan = explain(client);
+        assertTrue(plan, plan.contains("INDEX SCAN of \"T\" using \"IDX_B\""));
+    }
+
+    static public Test suite() throws IOException {
+        VoltServerConfig config = null;
+
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestAnalyzeSuite.class);
+
+        VoltProjectBuilder project = new VoltProjectBuilder();
+        project.addLiteralSchema(SCHEMA);
+        project.setUseDDLSchema(true);
+
+        boolean success;
+
+        /////////////////////////////////////////////////////////////
+        // CONFIG #1: 1 Local Site/Partitions running on JNI backend
+        /////////////////////////////////////////////////////////////
+        config = new LocalCluster("testAnalyze-onesite.jar", 1, 1, 0, BackendTarget.NATIVE_EE_JNI);
+        success = config.compile(project);
+        assert(success);
+        builder.addServerConfig(config);
+
+        return builder;
+    }
+}
@@ -24,7 +24,9 @@
 package org.voltdb.rejoin;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -41,17 +43,21 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.voltcore.messaging.MockMailbox;
+import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.Pair;
 import org.voltdb.MockVoltDB;
+import org.voltdb.SnapshotSiteProcessor;
 import org.voltdb.VoltDB;
+import org.voltdb.messaging.VoltDbMessageFactory;
 import org.voltdb.utils.CompressionService;
 
 import com.google.common.primitives.Longs;
 import com.google_voltpatches.common.collect.Maps;
 import com.google_voltpatches.common.primitives.Ints;
 import com.google_voltpatches.common.util.concurrent.Callables;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 public class TestStreamSnapshotDataTarget {
     private MockMailbox m_mb;
@@ -270,4 +276,81 @@ public class TestStreamSnapshotDataTarget {
 
         closeStream(dut);
     }
+
+    @Test
+    public void testMessageOutlivesDiscardedWork() throws Exception
+    {
+        // snapshot blocks come from the direct buffer pool
+        DBBPool.BBContainer block = DBBPool.allocateDirectAndPool(SnapshotSiteProcessor.m_snapshotBufferLength);
+        ByteBuffer blockBuf = block.b();
+        blockBuf.clear();
+        for (int i = 0; i < 1024; i++) {
+            blockBuf.putInt(i);
+        }
+        blockBuf.flip();
+        byte[] expected = new byte[blockBuf.remaining()];
+        blockBuf.duplicate().get(expected);
+
+        StreamSnapshotDataTarget.SendWork work =
+            new StreamSnapshotDataTarget.SendWork(StreamSnapshotMessageType.DATA, 1, 200, null,
+                                                  new StreamSnapshotDataTarget.SendWindow(), block,
+                                                  SettableFuture.<Boolean>create());
+        MockMailbox mb = new MockMailbox();
+        work.doWork(mb, new StreamSnapshotBase.DefaultMessageFactory());
+        RejoinDataMessage msg = (RejoinDataMessage) mb.pollMessage();
+
+        // A failure discards the work while the message may still be queued for serialization,
+        // and the pool hands the buffers out again
+        work.discard();
+        DBBPool.BBContainer reused = DBBPool.allocateDirectAndPool(SnapshotSiteProcessor.m_snapshotBufferLength);
+        DBBPool.BBContainer reusedCompressed = DBBPool.allocateDirectAndPool(SnapshotSiteProcessor.m_snapshotBufferCompressedLen);
+        try {
+            for (ByteBuffer b : new ByteBuffer[] { reused.b(), reusedCompressed.b() }) {
+                b.clear();
+                while (b.hasRemaining()) {
+                    b.put((byte) -1);
+                }
+            }
+
+            RejoinDataMessage received = (RejoinDataMessage)
+                new VoltDbMessageFactory().createMessageFromBuffer(VoltMessage.toBuffer(msg), 100);
+            assertTrue(Arrays.equals(expected, CompressionService.decompressBytes(received.getData())));
+        } finally {
+            reused.discard();
+            reusedCompressed.discard();
+        }
+    }
+
+    @Test
+    public void testSendWindow()
+    {
+        StreamSnapshotDataTarget.SendWindow window = new StreamSnapshotDataTarget.SendWindow();
+        final int initial = window.size();
+        for (int i = 0; i < initial; i++) {
+            assertTrue(window.tryAcquire());
+        }
+        assertFalse(window.tryAcquire());
+
+        // a window of acks with steady round trips opens the window by one
+        for (int i = 0; i < initial; i++) {
+            window.release(1000);
+        }
+        assertEquals(initial + 1, window.size());
+
+        // round trips stretching past twice the shortest one halve it
+        for (int i = 0; i < initial + 1; i++) {
+            assertTrue(window.tryAcquire());
+        }
+        assertFalse(window.tryAcquire());
+        for (int i = 0; i < initial + 1; i++) {
+            window.release(5000);
+        }
+        assertEquals((initial + 1) / 2, window.size());
+
+        // no limit once the stream failed
+        window.removeLimit();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(window.tryAcquire());
+        }
+    }
 }
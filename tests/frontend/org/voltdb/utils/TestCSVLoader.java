@@ -40,6 +40,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -338,6 +339,147 @@ public class TestCSVLoader {
         test_Interface(myOptions, myData, invalidLineCnt, validLineCnt);
     }
 
+    @Test
+    public void testParallel() throws Exception
+    {
+        String []myOptions = {
+                "-f" + path_csv,
+                "--reportdir=" + reportDir,
+                "--maxerrors=50",
+                "--user=",
+                "--password=",
+                "--port=",
+                "--separator=,",
+                "--quotechar=\"",
+                "--escape=\\",
+                "--skip=1",
+                "--parallel=2",
+                "BlAh"
+        };
+        String currentTime = new TimestampType().toString();
+        String []myData = {
+                "1 ,1,1,11111111,first,1.10,1.11,"+currentTime+",POINT(1 1),\"POLYGON((0 0, 1 0, 0 1, 0 0))\"",
+                "2,2,2,222222,second,3.30,NULL,"+currentTime+",POINT(2 2),\"POLYGON((0 0, 2 0, 0 2, 0 0))\"",
+                "3,3,3,333333, \"thi\nrd\" ,NULL, 3.33,"+currentTime+",POINT(3 3),\"POLYGON((0 0, 3 0, 0 3, 0 0))\"",
+                "4,4,4,444444, NULL ,4.40 ,4.44,"+currentTime+",POINT(4 4),\"POLYGON((0 0, 4 0, 0 4, 0 0))\"",
+                //empty line
+                "",
+                //invalid lines below
+                "8, 8",
+                "9, NLL,9,\"1,000\",nine,1.10,1.11,"+currentTime+",POINT(9 9),\"POLYGON((0 0, 9 0, 0 9, 0 0))\"",
+        };
+        int invalidLineCnt = 2;
+        int validLineCnt = 3;
+        test_Interface(myOptions, myData, invalidLineCnt, validLineCnt );
+    }
+
+    private static String[] parallelOptions(String... extra) {
+        List<String> options = new ArrayList<>();
+        options.add("-f" + path_csv);
+        options.add("--reportdir=" + reportDir);
+        options.add("--maxerrors=50");
+        options.add("--user=");
+        options.add("--password=");
+        options.add("--port=");
+        options.add("--separator=,");
+        options.add("--quotechar=\"");
+        options.add("--escape=\\");
+        options.add("--skip=1");
+        for (String option : extra) {
+            options.add(option);
+        }
+        options.add("BlAh");
+        return options.toArray(new String[0]);
+    }
+
+    private static String parallelRow(String key, String string, String currentTime) {
+        return key + ",1,1,11111111," + string + ",1.10,1.11," + currentTime +
+                ",POINT(1 1),\"POLYGON((0 0, 1 0, 0 1, 0 0))\"";
+    }
+
+    // Run the loader with a chunk size small enough to put chunk boundaries in the test files
+    private void test_ParallelInterface(int chunkSize, String[] myOptions, String[] myData, int invalidLineCnt,
+            int validLineCnt, int validLineUpsertCnt) throws Exception {
+        final int savedChunkSize = CSVChunkedFileReader.m_chunkSize;
+        CSVChunkedFileReader.m_chunkSize = chunkSize;
+        try {
+            test_Interface(myOptions, myData, invalidLineCnt, validLineCnt, validLineUpsertCnt, new String[0], "");
+        } finally {
+            CSVChunkedFileReader.m_chunkSize = savedChunkSize;
+        }
+    }
+
+    private static List<Long> invalidLineNumbers() throws IOException {
+        final String prefix = "Invalid input on line ";
+        List<Long> lines = new ArrayList<>();
+        try (BufferedReader log = new BufferedReader(new FileReader(CSVLoader.pathLogfile))) {
+            String line;
+            while ((line = log.readLine()) != null) {
+                if (line.startsWith(prefix)) {
+                    lines.add(Long.parseLong(line.substring(prefix.length(), line.indexOf('.', prefix.length()))));
+                }
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testParallelChunkBoundaries() throws Exception
+    {
+        String currentTime = new TimestampType().toString();
+        List<String> myData = new ArrayList<>();
+        myData.add(parallelRow("0", "skipped", currentTime));
+        for (int i = 1; i <= 200; i++) {
+            // the row on line 150 sits in one of the last chunks
+            myData.add(parallelRow(i == 149 ? "149, NLL" : Integer.toString(i), "row " + i, currentTime));
+        }
+        // rows are about 100 bytes, so every chunk ends a few rows in
+        test_ParallelInterface(256, parallelOptions("--parallel=3"), myData.toArray(new String[0]), 1, 199, 0);
+        assertEquals(Arrays.asList(150L), invalidLineNumbers());
+    }
+
+    @Test
+    public void testParallelQuotedNewlineAcrossChunks() throws Exception
+    {
+        String currentTime = new TimestampType().toString();
+        List<String> myData = new ArrayList<>();
+        myData.add(parallelRow("0", "skipped", currentTime));
+        for (int i = 1; i <= 20; i++) {
+            // the quoted newline comes after the chunk size, where only the end of the record may end the chunk
+            myData.add(parallelRow(Integer.toString(i), "\"ro\nw " + i + "\"", currentTime));
+        }
+        // every row above spans two lines, so this is line 42
+        myData.add(parallelRow("21, NLL", "last", currentTime));
+        test_ParallelInterface(16, parallelOptions("--parallel=2"), myData.toArray(new String[0]), 1, 20, 0);
+        assertEquals(Arrays.asList(42L), invalidLineNumbers());
+
+        VoltTable result = client.callProcedure("@AdHoc",
+                "SELECT clm_string FROM BLAH WHERE clm_integer = 20;").getResults()[0];
+        assertTrue(result.advanceRow());
+        assertEquals("ro\nw 20", result.getString(0));
+    }
+
+    @Test
+    public void testParallelOrdered() throws Exception
+    {
+        String currentTime = new TimestampType().toString();
+        List<String> myData = new ArrayList<>();
+        myData.add(parallelRow("0", "skipped", currentTime));
+        for (int i = 1; i <= 30; i++) {
+            myData.add(parallelRow(Integer.toString(i), "first", currentTime));
+        }
+        for (int i = 1; i <= 30; i++) {
+            myData.add(parallelRow(Integer.toString(i), "second", currentTime));
+        }
+        // each row is a chunk of its own, and the later upserts must land last
+        test_ParallelInterface(64, parallelOptions("--parallel=4", "--ordered", "--update"),
+                myData.toArray(new String[0]), 0, 60, 30);
+
+        VoltTable result = client.callProcedure("@AdHoc",
+                "SELECT COUNT(*) FROM BLAH WHERE clm_string = 'second';").getResults()[0];
+        assertEquals(30, result.asScalarLong());
+    }
+
     //Test batch option that splits.
     @Test
     public void testBatchOptionThatSplits() throws Exception {
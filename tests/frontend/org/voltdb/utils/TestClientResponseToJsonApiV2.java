@@ -0,0 +1,64 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.StringWriter;
+
+import org.json_voltpatches.JSONObject;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+
+import junit.framework.TestCase;
+
+public class TestClientResponseToJsonApiV2 extends TestCase {
+
+    private static ClientResponse makeResponse() {
+        VoltTable first = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT),
+                                        new ColumnInfo("NAME", VoltType.STRING),
+                                        new ColumnInfo("VALUE", VoltType.FLOAT));
+        for (int i = 0; i < 1000; i++) {
+            first.addRow(i, i % 7 == 0 ? null : "name \"" + i + "\"", i / 3.0);
+        }
+        VoltTable second = new VoltTable(new ColumnInfo("C", VoltType.INTEGER));
+        return new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { first, second }, "ok");
+    }
+
+    public void testStreamedMatchesString() throws Exception {
+        ClientResponse response = makeResponse();
+        StringWriter out = new StringWriter();
+        ClientResponseToJsonApiV2.writeJSONV2(response, out);
+        assertEquals(ClientResponseToJsonApiV2.toJSONStringV2(response), out.toString());
+
+        JSONObject json = new JSONObject(out.toString());
+        assertEquals(ClientResponse.SUCCESS, json.getInt("status"));
+        JSONObject results = json.getJSONObject("results");
+        assertEquals(1000, results.getJSONArray("0").length());
+        assertEquals(999, results.getJSONArray("0").getJSONObject(999).getLong("ID"));
+        assertEquals("name \"1\"", results.getJSONArray("0").getJSONObject(1).getString("NAME"));
+        assertEquals(0, results.getJSONArray("1").length());
+    }
+}
@@ -871,6 +871,45 @@ public class TestPersistentBinaryDeque {
         assertEquals(1, listing.size());
     }
 
+    @Test
+    public void testMappedReads() throws Exception {
+        System.out.println("Running testMappedReads");
+        m_pbd.close();
+        for (boolean compress : new boolean[] { true, false }) {
+            setupTestDir();
+            m_pbd = PersistentBinaryDeque.builder(TEST_NONCE, TEST_DIR, logger).compression(compress)
+                    .mappedReads(true, 4).initialExtraHeader(m_metadata, SERIALIZER).build();
+            // Sealed segments written by this instance are read through a mapping
+            for (int ii = 0; ii < 96; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+            }
+            BinaryDequeReader<ExtraHeaderMetadata> reader = m_pbd.openForRead(CURSOR_ID);
+            for (int ii = 0; ii < 48; ii++) {
+                pollOnceAndVerify(reader, getFilledBuffer(ii));
+            }
+            assertTrue(m_pbd.numMappedSegments() > 0);
+            m_pbd.sync();
+            m_pbd.close();
+
+            // As are recovered segments, and the mapping survives a reader being reopened
+            m_pbd = PersistentBinaryDeque.builder(TEST_NONCE, TEST_DIR, logger).compression(compress)
+                    .mappedReads(true, 4).initialExtraHeader(m_metadata, SERIALIZER).build();
+            reader = m_pbd.openForRead(CURSOR_ID);
+            assertEquals(0, m_pbd.numMappedSegments());
+            for (int ii = 0; ii < 96; ii++) {
+                pollOnceAndVerify(reader, getFilledBuffer(ii));
+                if (ii == 0) {
+                    assertEquals(1, m_pbd.numMappedSegments());
+                }
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+
+            m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(96)));
+            pollOnceAndVerify(reader, getFilledBuffer(96));
+            m_pbd.close();
+        }
+    }
+
     @Test
     public void testInvalidDirectory() throws Exception {
         System.out.println("Running testInvalidDirectory");